@@ -0,0 +1,114 @@
+package com.example.shellexecutor.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 比较两次JMH运行的JSON结果(-rf json)，逐项输出得分变化
+ * 吞吐量越高越好，其他模式(平均耗时等)越低越好；变差超过阈值且超出两次结果的误差范围时记为退化，
+ * 存在退化时以退出码1结束，可用于提交前后的对比：
+ * java -cp target/benchmarks.jar com.example.shellexecutor.benchmark.BenchmarkCompare 基线.json 当前.json [阈值百分比]
+ */
+public class BenchmarkCompare {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("用法: BenchmarkCompare <基线结果.json> <当前结果.json> [阈值百分比，默认10]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        Map<String, Score> baseline = load(new File(args[0]));
+        Map<String, Score> current = load(new File(args[1]));
+
+        int regressions = 0;
+        System.out.printf("%-72s %14s %14s %9s  %s%n", "基准", "基线", "当前", "变化", "单位");
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            Score now = entry.getValue();
+            Score before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-72s %14s %14.3f %9s  %s  新增%n", entry.getKey(), "-", now.score, "-", now.unit);
+                continue;
+            }
+            double change = before.score == 0 ? 0 : (now.score - before.score) / before.score * 100;
+            // 按"越大越好"统一方向后的变差百分比
+            double worse = now.higherIsBetter ? -change : change;
+            boolean significant = Math.abs(now.score - before.score) > now.error + before.error;
+            String verdict = "";
+            if (worse > threshold && significant) {
+                verdict = "退化";
+                regressions++;
+            } else if (worse < -threshold && significant) {
+                verdict = "提升";
+            }
+            System.out.printf("%-72s %14.3f %14.3f %+8.1f%%  %s  %s%n", entry.getKey(), before.score, now.score,
+                change, now.unit, verdict);
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.printf("%-72s  当前结果中没有该项%n", key);
+            }
+        }
+        System.out.printf("共比较 %d 项，退化 %d 项(阈值 %.1f%%)%n", current.size(), regressions, threshold);
+        System.exit(regressions > 0 ? 1 : 0);
+    }
+
+    /**
+     * 读取结果，键为"基准方法[:次级指标] 参数=值..."，次级指标为分组基准中每个方法的得分
+     */
+    private static Map<String, Score> load(File file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            // 去掉包名，只保留"类名.方法名"
+            String name = result.path("benchmark").asText();
+            int method = name.lastIndexOf('.');
+            name = name.substring(name.lastIndexOf('.', method - 1) + 1);
+            String mode = result.path("mode").asText();
+            String params = params(result.path("params"));
+            scores.put(name + params, new Score(result.path("primaryMetric"), mode));
+            Iterator<Map.Entry<String, JsonNode>> secondaries = result.path("secondaryMetrics").fields();
+            while (secondaries.hasNext()) {
+                Map.Entry<String, JsonNode> secondary = secondaries.next();
+                // 分析器等附加指标(带有·前缀)不参与比较
+                if (!secondary.getKey().startsWith("·")) {
+                    scores.put(name + ":" + secondary.getKey() + params, new Score(secondary.getValue(), mode));
+                }
+            }
+        }
+        return scores;
+    }
+
+    private static String params(JsonNode params) {
+        Map<String, String> sorted = new TreeMap<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = params.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            sorted.put(field.getKey(), field.getValue().asText());
+        }
+        StringBuilder builder = new StringBuilder();
+        sorted.forEach((key, value) -> builder.append(' ').append(key).append('=').append(value));
+        return builder.toString();
+    }
+
+    private static final class Score {
+        private final double score;
+        private final double error;
+        private final String unit;
+        private final boolean higherIsBetter;
+
+        Score(JsonNode metric, String mode) {
+            this.score = metric.path("score").asDouble();
+            // 只有一次测量时误差为NaN
+            double scoreError = metric.path("scoreError").asDouble();
+            this.error = Double.isNaN(scoreError) ? 0 : scoreError;
+            this.unit = metric.path("scoreUnit").asText();
+            this.higherIsBetter = "thrpt".equals(mode);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.shellexecutor.benchmark;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 命令策略检查的耗时
+ * 黑名单命令和危险关键字各{@link #patterns}条(默认关键字加随机生成的关键字)，
+ * 检查不命中任何条目的常见命令(需要比较所有条目，是原实现最慢的情况)：
+ * scan为原实现，逐条转小写后比较；compiled为编译后的策略(命令行解析结果已缓存)；
+ * uncached为不缓存解析结果时的完整检查，即每条命令首次提交时的耗时
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandPolicyBenchmark {
+
+    private static final String[] COMMANDS = {
+        "ls -la /var/log/app",
+        "tail -n 200 /var/log/app/application.log | grep -i error",
+        "df -h && free -m",
+        "ps aux --sort=-%cpu | head -20",
+        "cat /proc/loadavg",
+        "find /data/backup -name '*.tar.gz' -mtime +7 -print",
+        "systemctl status shell-executor",
+        "netstat -anp | grep 20880"
+    };
+
+    @Param({"10", "1000", "10000"})
+    public int patterns;
+
+    private ShellExecutorConfig config;
+    private ShellExecutorConfig uncachedConfig;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        config = new ShellExecutorConfig();
+        Random random = new Random(42);
+        List<String> keywords = new ArrayList<>(config.getDangerousKeywords());
+        while (keywords.size() < patterns) {
+            keywords.add(randomPattern(random));
+        }
+        List<String> blocked = new ArrayList<>();
+        while (blocked.size() < patterns) {
+            blocked.add(randomPattern(random) + " " + randomPattern(random));
+        }
+        config.setDangerousKeywords(new ArrayList<>(keywords.subList(0, patterns)));
+        config.setBlockedCommands(blocked);
+        uncachedConfig = new ShellExecutorConfig();
+        uncachedConfig.setDangerousKeywords(config.getDangerousKeywords());
+        uncachedConfig.setBlockedCommands(blocked);
+        uncachedConfig.setCommandPolicyCacheSize(0);
+        for (String command : COMMANDS) {
+            if (config.isCommandBlocked(command) || uncachedConfig.isCommandBlocked(command) || scan(command)) {
+                throw new IllegalStateException("基准命令不应被禁止: " + command);
+            }
+        }
+    }
+
+    /**
+     * 随机关键字，以不会出现在基准命令中的字符开头，保证基准命令不命中
+     */
+    private static String randomPattern(Random random) {
+        StringBuilder pattern = new StringBuilder("q");
+        int length = 5 + random.nextInt(10);
+        for (int i = 0; i < length; i++) {
+            pattern.append((char) ('a' + random.nextInt(26)));
+        }
+        return pattern.toString();
+    }
+
+    private String command() {
+        String command = COMMANDS[next];
+        next = next + 1 == COMMANDS.length ? 0 : next + 1;
+        return command;
+    }
+
+    /**
+     * 原实现
+     */
+    private boolean scan(String command) {
+        if (command == null || command.trim().isEmpty()) {
+            return true;
+        }
+        String normalizedCommand = command.toLowerCase().trim();
+        for (String blockedCmd : config.getBlockedCommands()) {
+            if (normalizedCommand.equals(blockedCmd.toLowerCase())) {
+                return true;
+            }
+        }
+        for (String keyword : config.getDangerousKeywords()) {
+            if (normalizedCommand.contains(keyword.toLowerCase())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean scan() {
+        return scan(command());
+    }
+
+    @Benchmark
+    public boolean compiled() {
+        return config.isCommandBlocked(command());
+    }
+
+    @Benchmark
+    public boolean uncached() {
+        return uncachedConfig.isCommandBlocked(command());
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.shellexecutor.benchmark;
+
+import ch.qos.logback.classic.Logger;
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.model.ShellOutputChunk;
+import com.example.shellexecutor.service.ExecutionEngine;
+import com.example.shellexecutor.service.ShellExecutionManager;
+import com.example.shellexecutor.store.ExecutionJournal;
+import com.example.shellexecutor.store.OutputBudget;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 执行输出的写入和增量读取在竞争下的吞吐量(每秒操作数)
+ * 一个写入线程按行追加标准输出(与读取进程输出的线程相同)，每{@link #LINES_PER_EXECUTION}行结束当前执行并开始新的执行；
+ * contended组另有3个读取线程各自跟随最新的输出增量读取(与轮询接口相同)，appendOnly组只有写入线程
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutionManagerBenchmark {
+
+    private static final int LINES_PER_EXECUTION = 100000;
+    private static final int READ_MAX_LINES = 100;
+    private static final byte[] LINE = "2024-01-01 12:00:00.000 INFO  [worker-1] processed item 1234567 in 12 ms"
+        .getBytes(StandardCharsets.UTF_8);
+
+    private AnnotationConfigApplicationContext context;
+    private ShellExecutionManager executionManager;
+    private volatile String executionId;
+    private int written;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(ch.qos.logback.classic.Level.WARN);
+        ShellExecutorConfig config = new ShellExecutorConfig();
+        // 结束的执行立即过期，由写入线程在开始新的执行时清理
+        config.setOutputExpirationMs(0);
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(ShellExecutorConfig.class, () -> config);
+        context.register(OutputBudget.class, ExecutionJournal.class, ShellExecutionManager.class, ExecutionEngine.class);
+        context.refresh();
+        executionManager = context.getBean(ShellExecutionManager.class);
+        executionId = executionManager.createExecution("benchmark");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * 每个读取线程的读取位置
+     */
+    @State(Scope.Thread)
+    public static class Reader {
+        String executionId;
+        long offset;
+    }
+
+    private void append() {
+        executionManager.appendOutput(executionId, LINE, 0, LINE.length);
+        if (++written == LINES_PER_EXECUTION) {
+            String finished = executionId;
+            executionId = executionManager.createExecution("benchmark");
+            executionManager.setFinished(finished, 0);
+            executionManager.cleanupExpiredOutputs();
+            written = 0;
+        }
+    }
+
+    private ShellOutputChunk read(Reader reader) {
+        String current = executionId;
+        if (!current.equals(reader.executionId)) {
+            reader.executionId = current;
+            reader.offset = 0;
+        }
+        ShellOutputChunk chunk = executionManager.getOutput(current, reader.offset, 0, READ_MAX_LINES);
+        if (chunk != null) {
+            reader.offset = chunk.getNextStdoutOffset();
+        }
+        return chunk;
+    }
+
+    @Benchmark
+    @Group("appendOnly")
+    public void appendOnly() {
+        append();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void contendedAppend() {
+        append();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public ShellOutputChunk contendedRead(Reader reader) {
+        return read(reader);
+    }
+}
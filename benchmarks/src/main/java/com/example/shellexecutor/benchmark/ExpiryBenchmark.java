@@ -0,0 +1,59 @@
+package com.example.shellexecutor.benchmark;
+
+import ch.qos.logback.classic.Logger;
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.service.ExecutionEngine;
+import com.example.shellexecutor.service.ShellExecutionManager;
+import com.example.shellexecutor.store.ExecutionJournal;
+import com.example.shellexecutor.store.OutputBudget;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 过期清理一次的耗时
+ * 保留{@link #entries}个已结束且未过期的执行，即两次过期之间每次定时清理的开销：
+ * 逐个检查所有执行时与保留的执行数成正比，按结束顺序排列时只检查队首
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ExpiryBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int entries;
+
+    private AnnotationConfigApplicationContext context;
+    private ShellExecutionManager executionManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(ch.qos.logback.classic.Level.WARN);
+        ShellExecutorConfig config = new ShellExecutorConfig();
+        config.setOutputExpirationMs(TimeUnit.HOURS.toMillis(1));
+        config.getStorage().setSpillEnabled(false);
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(ShellExecutorConfig.class, () -> config);
+        context.register(OutputBudget.class, ExecutionJournal.class, ShellExecutionManager.class, ExecutionEngine.class);
+        context.refresh();
+        executionManager = context.getBean(ShellExecutionManager.class);
+        for (int i = 0; i < entries; i++) {
+            executionManager.setFinished(executionManager.createExecution("echo " + i), 0);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void cleanup() {
+        executionManager.cleanupExpiredOutputs();
+    }
+}
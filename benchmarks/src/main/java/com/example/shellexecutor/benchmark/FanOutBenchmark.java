@@ -0,0 +1,87 @@
+package com.example.shellexecutor.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.model.ExecuteResult;
+import com.example.shellexecutor.model.FanOutRequest;
+import com.example.shellexecutor.model.FanOutResult;
+import com.example.shellexecutor.service.ExecutionMetrics;
+import com.example.shellexecutor.service.FanOutService;
+import com.example.shellexecutor.service.NodeRegistry;
+import com.example.shellexecutor.service.ShellReferences;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.dubbo.config.bootstrap.DubboBootstrap;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 扇出执行的本地基准测试
+ * 在同一进程内启动N个Dubbo提供者(每个端口一个替身节点，固定延迟返回，不启动进程)，
+ * 对比逐个节点同步调用与FanOutService异步扇出的总耗时：
+ * java -cp target/benchmarks.jar com.example.shellexecutor.benchmark.FanOutBenchmark [节点数] [节点延迟毫秒] [并发上限]
+ */
+public class FanOutBenchmark {
+
+    private static final String COMMAND = "uptime";
+
+    public static void main(String[] args) throws Exception {
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        long latencyMs = args.length > 1 ? Long.parseLong(args[1]) : 50;
+        int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        ScheduledExecutorService timer = Executors.newScheduledThreadPool(4);
+        List<String> targets = StandInNode.export("fanout-benchmark", nodes, timer, latencyMs);
+
+        ShellExecutorConfig config = new ShellExecutorConfig();
+        config.setFanOutMaxConcurrency(concurrency);
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.registerBean(ShellExecutorConfig.class, () -> config);
+        context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+        context.register(ShellReferences.class, NodeRegistry.class, ExecutionMetrics.class, FanOutService.class);
+        context.refresh();
+        try {
+            ShellReferences references = context.getBean(ShellReferences.class);
+            FanOutService fanOutService = context.getBean(FanOutService.class);
+            FanOutRequest request = new FanOutRequest();
+            request.setCommand(COMMAND);
+            request.setTargets(targets);
+
+            // 预热：建立所有连接
+            fanOutService.execute(request);
+
+            System.out.printf("节点数: %d, 节点延迟: %dms, 并发上限: %d%n", nodes, latencyMs, concurrency);
+            System.out.printf("%-12s %10s %10s%n", "mode", "totalMs", "succeeded");
+            for (int round = 0; round < 3; round++) {
+                long start = System.nanoTime();
+                int succeeded = 0;
+                for (String target : targets) {
+                    int separator = target.lastIndexOf(':');
+                    ExecuteResult result = references.get(target.substring(0, separator),
+                        Integer.parseInt(target.substring(separator + 1))).executeCommand(COMMAND);
+                    if (result.isSuccess()) {
+                        succeeded++;
+                    }
+                }
+                System.out.printf("%-12s %10d %10d%n", "sequential",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), succeeded);
+
+                start = System.nanoTime();
+                FanOutResult result = fanOutService.execute(request);
+                System.out.printf("%-12s %10d %10d%n", "fanout",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), result.getSucceeded());
+            }
+        } finally {
+            context.close();
+            DubboBootstrap.getInstance().stop();
+            timer.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.shellexecutor.benchmark;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.store.LineStore;
+import com.example.shellexecutor.store.OutputBudget;
+import com.example.shellexecutor.store.OutputQuota;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jol.info.GraphLayout;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 行存储与ArrayList&lt;String&gt;的对比
+ * JMH基准测试追加吞吐量，每次操作追加{@link #LINES}行典型日志输出；
+ * 直接运行main方法时使用JOL统计两种存储保存相同输出(日志行和seq短行)占用的堆内存：
+ * java -cp target/benchmarks.jar com.example.shellexecutor.benchmark.LineStoreBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(LineStoreBenchmark.LINES)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LineStoreBenchmark {
+
+    static final int LINES = 100000;
+
+    private byte[][] lines;
+    private AnnotationConfigApplicationContext context;
+    private OutputBudget outputBudget;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        lines = logLines(LINES);
+        context = newContext(16L * 1024 * 1024);
+        outputBudget = context.getBean(OutputBudget.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * 原实现：每行解码为String后加入ArrayList
+     */
+    @Benchmark
+    public List<String> arrayList() {
+        List<String> list = new ArrayList<>();
+        for (byte[] line : lines) {
+            list.add(new String(line, 0, line.length, StandardCharsets.UTF_8));
+        }
+        return list;
+    }
+
+    /**
+     * 行存储：直接追加原始字节，结束后释放数据块
+     */
+    @Benchmark
+    public long lineStore() {
+        LineStore store = outputBudget.newQuota("benchmark").newStore("stdout");
+        for (byte[] line : lines) {
+            store.append(line, 0, line.length);
+        }
+        store.seal();
+        long lineCount = store.getLineCount();
+        store.close();
+        return lineCount;
+    }
+
+    public static void main(String[] args) {
+        int[] lineCounts = args.length > 0 ? new int[]{Integer.parseInt(args[0])} : new int[]{1000, 100000, 1000000};
+        System.out.printf("JVM: %s%n", System.getProperty("java.version"));
+        System.out.printf("%-6s %10s %18s %16s %12s %12s %8s%n",
+            "output", "lines", "ArrayList<String>", "LineStore", "listB/line", "storeB/line", "ratio");
+        // 数据块池不保留空闲块，避免统计到其他执行的数据块
+        AnnotationConfigApplicationContext context = newContext(0);
+        try {
+            OutputBudget outputBudget = context.getBean(OutputBudget.class);
+            for (int lineCount : lineCounts) {
+                footprint(outputBudget, "log", logLines(lineCount));
+                footprint(outputBudget, "seq", seqLines(lineCount));
+            }
+        } finally {
+            context.close();
+        }
+    }
+
+    private static void footprint(OutputBudget outputBudget, String name, byte[][] lines) {
+        List<String> list = new ArrayList<>();
+        OutputQuota quota = outputBudget.newQuota("footprint");
+        LineStore store = quota.newStore("stdout");
+        for (byte[] line : lines) {
+            list.add(new String(line, 0, line.length, StandardCharsets.UTF_8));
+            store.append(line, 0, line.length);
+        }
+        store.seal();
+
+        long listBytes = GraphLayout.parseInstance(list).totalSize();
+        // LineStore引用了配额和全局预算，扣除这部分共享对象
+        long storeBytes = GraphLayout.parseInstance(store).totalSize() - GraphLayout.parseInstance(quota).totalSize();
+        int lineCount = lines.length;
+        System.out.printf("%-6s %10d %18d %16d %12.1f %12.1f %7.2fx%n", name, lineCount, listBytes, storeBytes,
+            (double) listBytes / lineCount, (double) storeBytes / lineCount, (double) listBytes / storeBytes);
+        store.close();
+    }
+
+    /**
+     * 存储全部在堆内，不触发转存
+     */
+    private static AnnotationConfigApplicationContext newContext(long chunkPoolBytes) {
+        ShellExecutorConfig config = new ShellExecutorConfig();
+        config.getStorage().setMemoryBudgetBytes(Long.MAX_VALUE);
+        config.getStorage().setMemoryBytesPerExecution(Long.MAX_VALUE);
+        config.getStorage().setSpillEnabled(false);
+        config.getStorage().setChunkPoolBytes(chunkPoolBytes);
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.registerBean(ShellExecutorConfig.class, () -> config);
+        context.register(OutputBudget.class);
+        context.refresh();
+        return context;
+    }
+
+    /**
+     * 生成典型的应用日志行，长度约60到140字节
+     */
+    private static byte[][] logLines(int count) {
+        String[] levels = {"INFO ", "DEBUG", "WARN ", "ERROR"};
+        String[] loggers = {"c.e.s.service.OrderService", "o.s.web.servlet.DispatcherServlet",
+            "c.e.s.repository.UserRepository", "o.a.dubbo.registry.nacos.NacosRegistry"};
+        Random random = new Random(42);
+        byte[][] lines = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            String line = String.format("2024-01-20 20:%02d:%02d.%03d %s [exec-%d] %s - processed request %d in %d ms",
+                i / 60000 % 60, i / 1000 % 60, i % 1000, levels[random.nextInt(levels.length)], random.nextInt(16),
+                loggers[random.nextInt(loggers.length)], random.nextInt(1000000), random.nextInt(500));
+            lines[i] = line.getBytes(StandardCharsets.UTF_8);
+        }
+        return lines;
+    }
+
+    /**
+     * 生成seq命令风格的短行
+     */
+    private static byte[][] seqLines(int count) {
+        byte[][] lines = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            lines[i] = Integer.toString(i + 1).getBytes(StandardCharsets.UTF_8);
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.shellexecutor.benchmark;
+
+import ch.qos.logback.classic.Logger;
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.model.ExecuteResult;
+import com.example.shellexecutor.service.CommandResultCache;
+import com.example.shellexecutor.service.ExecutionEngine;
+import com.example.shellexecutor.service.ExecutionMetrics;
+import com.example.shellexecutor.service.ExecutionScheduler;
+import com.example.shellexecutor.service.OutputPump;
+import com.example.shellexecutor.service.ShellExecutionManager;
+import com.example.shellexecutor.service.ShellService;
+import com.example.shellexecutor.service.ShellWorkerPool;
+import com.example.shellexecutor.store.ExecutionJournal;
+import com.example.shellexecutor.store.OutputBudget;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 执行指标的开销：同步执行的吞吐量(每秒命令数)，记录指标(Prometheus注册表，发布直方图)与关闭指标对比
+ * true只测量启动进程的开销；seq输出约590KB、10万行，每个字节都经过输出统计；
+ * pool在常驻工作进程中执行，单条命令耗时最短，指标的相对开销最大
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+
+    @Param({"off", "on"})
+    public String metrics;
+
+    @Param({"spawn", "pool"})
+    public String mode;
+
+    @Param({"true", "seq 1 100000"})
+    public String command;
+
+    private AnnotationConfigApplicationContext context;
+    private ShellService shellService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(ch.qos.logback.classic.Level.WARN);
+        ShellExecutorConfig config = new ShellExecutorConfig();
+        config.getMetrics().setEnabled("on".equals(metrics));
+        config.getWorkers().setEnabled("pool".equals(mode));
+        config.getWorkers().setSize(4);
+        config.getWorkers().setMaxCommandsPerWorker(Long.MAX_VALUE);
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(ShellExecutorConfig.class, () -> config);
+        context.registerBean(MeterRegistry.class, () -> new PrometheusMeterRegistry(PrometheusConfig.DEFAULT));
+        context.register(OutputBudget.class, ExecutionJournal.class, ShellExecutionManager.class, ExecutionEngine.class,
+            OutputPump.class, CommandResultCache.class, ShellWorkerPool.class, ExecutionMetrics.class,
+            ExecutionScheduler.class, ShellService.class);
+        context.refresh();
+        shellService = context.getBean(ShellService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ExecuteResult execute() {
+        ExecuteResult result = shellService.executeCommand(command);
+        if (!result.isSuccess()) {
+            throw new IllegalStateException(result.getError());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.shellexecutor.benchmark;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.service.OutputPump;
+import com.example.shellexecutor.service.ShellService;
+import com.example.shellexecutor.util.LineSplitter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 输出泵与每个输出流一个阻塞读取线程的对比
+ * 每次操作同时启动N个进程，各输出{@link #LINES_PER_PROCESS}行，读完全部输出后结束
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OutputPumpBenchmark {
+
+    private static final int LINES_PER_PROCESS = 2000;
+    private static final String[] COMMAND = {"/bin/sh", "-c", "seq 1 " + LINES_PER_PROCESS};
+
+    @Param({"10", "100", "1000"})
+    public int processes;
+
+    private AnnotationConfigApplicationContext context;
+    private OutputPump outputPump;
+    private ExecutorService readerThreads;
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext(ShellExecutorConfig.class, OutputPump.class);
+        outputPump = context.getBean(OutputPump.class);
+        readerThreads = Executors.newCachedThreadPool();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        readerThreads.shutdownNow();
+        context.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPeakThreads() {
+        threadMXBean.resetPeakThreadCount();
+    }
+
+    /**
+     * 每次迭代中JVM的峰值线程数
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class ThreadCounters {
+        public long peakThreads;
+    }
+
+    @Benchmark
+    public long readerThreadPerStream(ThreadCounters counters) throws Exception {
+        LongAdder lines = new LongAdder();
+        List<CompletableFuture<Void>> readers = new ArrayList<>();
+        List<Process> started = startProcesses();
+        for (Process process : started) {
+            readers.add(readLines(process.getInputStream(), lines));
+            readers.add(readLines(process.getErrorStream(), lines));
+        }
+        CompletableFuture.allOf(readers.toArray(new CompletableFuture[0])).get();
+        waitAll(started);
+        counters.peakThreads = threadMXBean.getPeakThreadCount();
+        return verify(lines);
+    }
+
+    @Benchmark
+    public long outputPump(ThreadCounters counters) throws Exception {
+        LongAdder lines = new LongAdder();
+        List<CompletableFuture<Void>> readers = new ArrayList<>();
+        List<Process> started = startProcesses();
+        for (Process process : started) {
+            readers.add(outputPump.register(process, process.getInputStream(), countingSplitter(lines)));
+            readers.add(outputPump.register(process, process.getErrorStream(), countingSplitter(lines)));
+        }
+        CompletableFuture.allOf(readers.toArray(new CompletableFuture[0])).get();
+        waitAll(started);
+        counters.peakThreads = threadMXBean.getPeakThreadCount();
+        return verify(lines);
+    }
+
+    private List<Process> startProcesses() throws IOException {
+        List<Process> started = new ArrayList<>(processes);
+        for (int i = 0; i < processes; i++) {
+            started.add(new ProcessBuilder(COMMAND).start());
+        }
+        return started;
+    }
+
+    private CompletableFuture<Void> readLines(InputStream inputStream, LongAdder lines) {
+        return CompletableFuture.runAsync(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, ShellService.CHARSET))) {
+                while (reader.readLine() != null) {
+                    lines.increment();
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }, readerThreads);
+    }
+
+    private static LineSplitter countingSplitter(LongAdder lines) {
+        return new LineSplitter((buffer, offset, length) -> {
+            if (new String(buffer, offset, length, ShellService.CHARSET).length() >= 0) {
+                lines.increment();
+            }
+        });
+    }
+
+    private static void waitAll(List<Process> started) throws InterruptedException {
+        for (Process process : started) {
+            process.waitFor();
+        }
+    }
+
+    private long verify(LongAdder lines) {
+        long expected = (long) processes * LINES_PER_PROCESS;
+        if (lines.sum() != expected) {
+            throw new IllegalStateException("expected " + expected + " lines but read " + lines.sum());
+        }
+        return lines.sum();
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.shellexecutor.benchmark;
+
+import com.example.shellexecutor.model.ShellExecutionOutput;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 执行输出序列化为JSON(HTTP接口返回的格式)的耗时
+ * 使用与Spring MVC相同方式构建的ObjectMapper，输出为{@link #lines}行标准输出和十分之一行数的错误输出
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutputSerializationBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int lines;
+
+    private ObjectMapper objectMapper;
+    private ShellExecutionOutput output;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        output = new ShellExecutionOutput();
+        output.setExecutionId("10.0.0.1:20880-7f0e3609-bae5-466b-bfb4-1e8562d0594f");
+        output.setCommand("tail -n " + lines + " /var/log/app/application.log");
+        output.setOutputLines(lines("2024-01-01 12:00:00.000 INFO  [worker-1] processed item ", lines));
+        output.setErrorLines(lines("警告: 第", lines / 10));
+        output.setFinished(true);
+        output.setExitCode(0);
+        output.setStartTime(LocalDateTime.now().minusSeconds(1));
+        output.setEndTime(LocalDateTime.now());
+        output.setStatus("COMPLETED");
+        output.setExecutionTimeMs(1000L);
+        output.setOutputLineCount((long) lines);
+        output.setErrorLineCount((long) lines / 10);
+        output.setTruncated(false);
+        output.setSpilled(false);
+    }
+
+    private static List<String> lines(String prefix, int count) {
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            lines.add(prefix + i + " \"quoted\"\ttab");
+        }
+        return lines;
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(output);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.shellexecutor.benchmark;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.model.ShellExecutionRequest;
+import com.example.shellexecutor.model.ShellOutputChunk;
+import com.example.shellexecutor.service.CommandResultCache;
+import com.example.shellexecutor.service.ExecutionEngine;
+import com.example.shellexecutor.service.ExecutionMetrics;
+import com.example.shellexecutor.service.ExecutionScheduler;
+import com.example.shellexecutor.service.OutputPump;
+import com.example.shellexecutor.service.ShellExecutionManager;
+import com.example.shellexecutor.service.ShellService;
+import com.example.shellexecutor.service.ShellWorkerPool;
+import com.example.shellexecutor.store.ExecutionJournal;
+import com.example.shellexecutor.store.OutputBudget;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步输出存储的内存浸泡测试
+ * 同时运行N个各输出指定字节数的命令，每秒采样一次GC后的堆内存、输出内存预算和转存文件大小，
+ * 堆内存应保持平稳，不随输出总量增长：
+ * java -Xmx512m -cp target/benchmarks.jar com.example.shellexecutor.benchmark.OutputSoakTest [命令数] [每个命令输出MB] [每个执行转存上限MB]
+ */
+public class OutputSoakTest {
+
+    private static final long MB = 1024 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        int jobs = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        long bytesPerJob = (args.length > 1 ? Long.parseLong(args[1]) : 1024) * MB;
+        long spillBytesPerExecution = (args.length > 2 ? Long.parseLong(args[2]) : 1024) * MB;
+
+        ShellExecutorConfig config = new ShellExecutorConfig();
+        config.setCommandTimeoutMs(TimeUnit.HOURS.toMillis(1));
+        config.getEngine().setWaiterMaxPoolSize(Math.max(jobs, 16));
+        config.getScheduler().setMaxConcurrent(jobs);
+        config.getScheduler().setHighPriorityReserved(0);
+        config.getStorage().setSpillBytesPerExecution(spillBytesPerExecution);
+
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.registerBean(ShellExecutorConfig.class, () -> config);
+        context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+        context.register(OutputBudget.class, ExecutionJournal.class, ShellExecutionManager.class, ExecutionEngine.class,
+            OutputPump.class, CommandResultCache.class, ShellWorkerPool.class, ExecutionMetrics.class,
+            ExecutionScheduler.class, ShellService.class);
+        context.refresh();
+        try {
+            ShellService shellService = context.getBean(ShellService.class);
+            ShellExecutionManager executionManager = context.getBean(ShellExecutionManager.class);
+            OutputBudget outputBudget = context.getBean(OutputBudget.class);
+            MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+
+            List<String> executionIds = new ArrayList<>(jobs);
+            long start = System.nanoTime();
+            for (int i = 0; i < jobs; i++) {
+                ShellExecutionRequest request = new ShellExecutionRequest();
+                request.setCommand("yes 'shell executor output soak test line' | head -c " + bytesPerJob);
+                executionIds.add(shellService.executeCommandAsync(request));
+            }
+
+            System.out.printf("%8s %10s %12s %14s %12s %10s%n",
+                "seconds", "finished", "heapUsedMB", "budgetUsedMB", "spilledMB", "truncated");
+            int finished = 0;
+            long peakHeap = 0;
+            while (finished < jobs) {
+                Thread.sleep(1000);
+                finished = 0;
+                int truncated = 0;
+                for (String executionId : executionIds) {
+                    // 只取1行，避免采样本身读取大量输出
+                    ShellOutputChunk chunk = executionManager.getOutput(executionId, 0, 0, 1);
+                    if (Boolean.TRUE.equals(chunk.getFinished())) {
+                        finished++;
+                    }
+                    if (chunk.isTruncated()) {
+                        truncated++;
+                    }
+                }
+                System.gc();
+                long heapUsed = memoryMXBean.getHeapMemoryUsage().getUsed();
+                peakHeap = Math.max(peakHeap, heapUsed);
+                System.out.printf("%8d %10d %12d %14d %12d %10d%n",
+                    TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start), finished, heapUsed / MB,
+                    outputBudget.getMemoryUsed() / MB, outputBudget.getDiskUsed() / MB, truncated);
+            }
+            System.out.printf("命令数: %d, 总输出: %dMB, GC后峰值堆内存: %dMB%n",
+                jobs, jobs * bytesPerJob / MB, peakHeap / MB);
+        } finally {
+            context.close();
+        }
+    }
+}
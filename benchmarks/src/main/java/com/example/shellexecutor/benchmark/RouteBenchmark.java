@@ -0,0 +1,97 @@
+package com.example.shellexecutor.benchmark;
+
+import com.example.shellexecutor.api.ShellExecutorService;
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.service.ShellReferences;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.config.bootstrap.DubboBootstrap;
+import org.apache.dubbo.rpc.RpcContext;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 跨节点调用的路由开销
+ * urlPerCall为原实现：每次调用拼接并解析URL后设置到RpcContext；cachedReference为按节点缓存的引用查找
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteBenchmark {
+
+    @Param({"1", "64"})
+    public int nodes;
+
+    private List<String> targets;
+    private String[] hosts;
+    private int[] ports;
+    private ScheduledExecutorService timer;
+    private AnnotationConfigApplicationContext context;
+    private ShellReferences references;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        timer = Executors.newSingleThreadScheduledExecutor();
+        targets = StandInNode.export("route-benchmark", nodes, timer, 0);
+        hosts = new String[nodes];
+        ports = new int[nodes];
+        for (int i = 0; i < nodes; i++) {
+            String target = targets.get(i);
+            int separator = target.lastIndexOf(':');
+            hosts[i] = target.substring(0, separator);
+            ports[i] = Integer.parseInt(target.substring(separator + 1));
+        }
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(ShellExecutorConfig.class, ShellExecutorConfig::new);
+        context.register(ShellReferences.class);
+        context.refresh();
+        references = context.getBean(ShellReferences.class);
+        for (int i = 0; i < nodes; i++) {
+            references.get(hosts[i], ports[i]).executeCommand("warmup");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        DubboBootstrap.getInstance().stop();
+        timer.shutdownNow();
+    }
+
+    private int next(Cursor cursor) {
+        int index = cursor.next;
+        cursor.next = index + 1 == nodes ? 0 : index + 1;
+        return index;
+    }
+
+    @Benchmark
+    public URL urlPerCall(Cursor cursor) {
+        int index = next(cursor);
+        URL url = URL.valueOf("dubbo://" + hosts[index] + ":" + ports[index] + "/" + ShellExecutorService.class.getName())
+            .addParameter("version", "1.0.0")
+            .addParameter("timeout", "60000")
+            .addParameter("retries", "0")
+            .addParameter("connections", "1")
+            .addParameter("check", "false");
+        RpcContext.getContext().setUrl(url);
+        return url;
+    }
+
+    @Benchmark
+    public ShellExecutorService cachedReference(Cursor cursor) {
+        int index = next(cursor);
+        return references.get(hosts[index], ports[index]);
+    }
+}
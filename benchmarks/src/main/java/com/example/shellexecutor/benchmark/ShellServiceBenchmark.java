@@ -0,0 +1,97 @@
+package com.example.shellexecutor.benchmark;
+
+import ch.qos.logback.classic.Logger;
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.model.ExecuteResult;
+import com.example.shellexecutor.model.ShellExecutionRequest;
+import com.example.shellexecutor.model.ShellOutputChunk;
+import com.example.shellexecutor.service.CommandResultCache;
+import com.example.shellexecutor.service.ExecutionEngine;
+import com.example.shellexecutor.service.ExecutionMetrics;
+import com.example.shellexecutor.service.ExecutionScheduler;
+import com.example.shellexecutor.service.OutputPump;
+import com.example.shellexecutor.service.ShellExecutionManager;
+import com.example.shellexecutor.service.ShellService;
+import com.example.shellexecutor.service.ShellWorkerPool;
+import com.example.shellexecutor.store.ExecutionJournal;
+import com.example.shellexecutor.store.OutputBudget;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 同步和异步执行的吞吐量(每秒命令数)，使用默认配置(每条命令启动进程、输出泵读取、记录执行指标)
+ * true只测量启动进程和收集结果的开销；seq输出约590KB、10万行，测量输出读取和存储的开销。
+ * 异步执行提交后轮询执行状态直到结束；已结束的执行超过保留内存上限时按最久未访问淘汰
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class ShellServiceBenchmark {
+
+    private static final long AWAIT_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    @Param({"true", "seq 1 100000"})
+    public String command;
+
+    private AnnotationConfigApplicationContext context;
+    private ShellService shellService;
+    private ShellExecutionManager executionManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(ch.qos.logback.classic.Level.WARN);
+        ShellExecutorConfig config = new ShellExecutorConfig();
+        config.getStorage().setRetainedMemoryBytes(64L * 1024 * 1024);
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(ShellExecutorConfig.class, () -> config);
+        context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+        context.register(OutputBudget.class, ExecutionJournal.class, ShellExecutionManager.class, ExecutionEngine.class,
+            OutputPump.class, CommandResultCache.class, ShellWorkerPool.class, ExecutionMetrics.class,
+            ExecutionScheduler.class, ShellService.class);
+        context.refresh();
+        shellService = context.getBean(ShellService.class);
+        executionManager = context.getBean(ShellExecutionManager.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ExecuteResult executeCommand() {
+        ExecuteResult result = shellService.executeCommand(command);
+        if (!result.isSuccess()) {
+            throw new IllegalStateException(result.getError());
+        }
+        return result;
+    }
+
+    @Benchmark
+    public ShellOutputChunk executeCommandAsync() {
+        ShellExecutionRequest request = new ShellExecutionRequest();
+        request.setCommand(command);
+        String executionId = shellService.executeCommandAsync(request);
+        // 只检查执行状态，不随每行新输出唤醒
+        long deadline = System.nanoTime() + AWAIT_NANOS;
+        while (!executionManager.isFinished(executionId) && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(POLL_NANOS);
+        }
+        ShellOutputChunk chunk = executionManager.getOutput(executionId, 0, 0, 1);
+        if (chunk == null || !"COMPLETED".equals(chunk.getStatus())) {
+            throw new IllegalStateException("异步执行未成功: " + (chunk == null ? null : chunk.getStatus()));
+        }
+        return chunk;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.shellexecutor.benchmark;
+
+import ch.qos.logback.classic.Logger;
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.model.ExecuteResult;
+import com.example.shellexecutor.service.CommandResultCache;
+import com.example.shellexecutor.service.ExecutionEngine;
+import com.example.shellexecutor.service.ExecutionMetrics;
+import com.example.shellexecutor.service.ExecutionScheduler;
+import com.example.shellexecutor.service.OutputPump;
+import com.example.shellexecutor.service.ShellExecutionManager;
+import com.example.shellexecutor.service.ShellService;
+import com.example.shellexecutor.service.ShellWorkerPool;
+import com.example.shellexecutor.store.ExecutionJournal;
+import com.example.shellexecutor.store.OutputBudget;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同步执行简单命令的吞吐量(每秒命令数)
+ * spawn为每条命令启动一个/bin/sh -c进程；pool为在常驻工作进程中执行(工作进程数与线程数相同)。
+ * true和echo是shell内置命令，只测量启动进程的开销；date需要启动外部程序
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class ShellWorkerPoolBenchmark {
+
+    @Param({"spawn", "pool"})
+    public String mode;
+
+    @Param({"true", "echo hello", "date"})
+    public String command;
+
+    private AnnotationConfigApplicationContext context;
+    private ShellService shellService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(ch.qos.logback.classic.Level.WARN);
+        ShellExecutorConfig config = new ShellExecutorConfig();
+        config.getWorkers().setEnabled("pool".equals(mode));
+        config.getWorkers().setSize(4);
+        config.getWorkers().setMaxCommandsPerWorker(Long.MAX_VALUE);
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(ShellExecutorConfig.class, () -> config);
+        context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+        context.register(OutputBudget.class, ExecutionJournal.class, ShellExecutionManager.class, ExecutionEngine.class,
+            OutputPump.class, CommandResultCache.class, ShellWorkerPool.class, ExecutionMetrics.class,
+            ExecutionScheduler.class, ShellService.class);
+        context.refresh();
+        shellService = context.getBean(ShellService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ExecuteResult execute() {
+        ExecuteResult result = shellService.executeCommand(command);
+        if (!result.isSuccess()) {
+            throw new IllegalStateException(result.getError());
+        }
+        return result;
+    }
+}
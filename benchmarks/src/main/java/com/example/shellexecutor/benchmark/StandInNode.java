@@ -0,0 +1,151 @@
+package com.example.shellexecutor.benchmark;
+
+import com.example.shellexecutor.api.ShellExecutorService;
+import com.example.shellexecutor.model.ExecuteResult;
+import com.example.shellexecutor.model.FileChunk;
+import com.example.shellexecutor.model.FileTransferResult;
+import com.example.shellexecutor.model.NodeLoad;
+import com.example.shellexecutor.model.ShellBatchRequest;
+import com.example.shellexecutor.model.ShellBatchResult;
+import com.example.shellexecutor.model.ShellExecutionOutput;
+import com.example.shellexecutor.model.ShellExecutionRequest;
+import com.example.shellexecutor.model.ShellOutputChunk;
+import org.apache.dubbo.config.ApplicationConfig;
+import org.apache.dubbo.config.ProtocolConfig;
+import org.apache.dubbo.config.RegistryConfig;
+import org.apache.dubbo.config.ServiceConfig;
+import org.apache.dubbo.config.bootstrap.DubboBootstrap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 替身执行器节点：不启动进程，固定延迟后返回成功结果
+ */
+class StandInNode implements ShellExecutorService {
+
+    static final int BASE_PORT = 30880;
+
+    private final ScheduledExecutorService timer;
+    private final long latencyMs;
+
+    StandInNode(ScheduledExecutorService timer, long latencyMs) {
+        this.timer = timer;
+        this.latencyMs = latencyMs;
+    }
+
+    /**
+     * 在当前进程内启动替身节点，每个节点监听一个端口(从{@link #BASE_PORT}开始)
+     * @return 节点地址"127.0.0.1:port"
+     */
+    static List<String> export(String application, int nodes, ScheduledExecutorService timer, long latencyMs) {
+        List<ProtocolConfig> protocols = new ArrayList<>();
+        List<String> targets = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            ProtocolConfig protocol = new ProtocolConfig("dubbo", BASE_PORT + i);
+            protocol.setId("dubbo-" + (BASE_PORT + i));
+            protocols.add(protocol);
+            targets.add("127.0.0.1:" + (BASE_PORT + i));
+        }
+        ServiceConfig<ShellExecutorService> service = new ServiceConfig<>();
+        service.setInterface(ShellExecutorService.class);
+        service.setRef(new StandInNode(timer, latencyMs));
+        service.setVersion("1.0.0");
+        service.setProtocols(protocols);
+        DubboBootstrap.getInstance()
+            .application(new ApplicationConfig(application))
+            .registry(new RegistryConfig(RegistryConfig.NO_AVAILABLE))
+            .service(service)
+            .start();
+        return targets;
+    }
+
+    @Override
+    public ExecuteResult executeCommand(String command) {
+        if (latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return result(command);
+    }
+
+    @Override
+    public CompletableFuture<ExecuteResult> executeCommandFuture(String command) {
+        CompletableFuture<ExecuteResult> future = new CompletableFuture<>();
+        timer.schedule(() -> future.complete(result(command)), latencyMs, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    private static ExecuteResult result(String command) {
+        ExecuteResult result = new ExecuteResult();
+        result.setExitCode(0);
+        result.setOutput(command + " ok");
+        result.setError("");
+        return result;
+    }
+
+    @Override
+    public ShellBatchResult executeBatch(ShellBatchRequest request) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<String> executeBatchAsync(ShellBatchRequest request) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String executeCommandAsync(ShellExecutionRequest request) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ShellExecutionOutput getOutput(String executionId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ShellOutputChunk getOutput(String executionId, long stdoutOffset, long stderrOffset, int maxLines) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public CompletableFuture<ShellOutputChunk> awaitOutput(String executionId, long stdoutOffset, long stderrOffset,
+                                                           int maxLines, long waitMs) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean cancel(String executionId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public FileChunk readFile(String path, long offset, int length) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public FileTransferResult writeFile(String path, long offset, byte[] data) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public FileTransferResult checksumFile(String path, String algorithm, long offset, long length) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public NodeLoad getLoad() {
+        NodeLoad load = new NodeLoad();
+        load.setAvailableProcessors(1);
+        load.setUpdateTime(System.currentTimeMillis());
+        return load;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.shellexecutor.benchmark;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.model.ShellExecutionOutput;
+import com.example.shellexecutor.model.ShellExecutionRequest;
+import com.example.shellexecutor.service.CommandResultCache;
+import com.example.shellexecutor.service.ExecutionEngine;
+import com.example.shellexecutor.service.ExecutionMetrics;
+import com.example.shellexecutor.service.ExecutionScheduler;
+import com.example.shellexecutor.service.OutputPump;
+import com.example.shellexecutor.service.ShellExecutionManager;
+import com.example.shellexecutor.service.ShellService;
+import com.example.shellexecutor.service.ShellWorkerPool;
+import com.example.shellexecutor.store.ExecutionJournal;
+import com.example.shellexecutor.store.OutputBudget;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 平台线程与虚拟线程的并发负载测试
+ * 同时提交N个sleep命令，输出两种线程模型下的峰值线程数和提交延迟分位数。
+ * 虚拟线程需要Java 21运行：
+ * java -cp target/benchmarks.jar com.example.shellexecutor.benchmark.ThreadingLoadTest [命令数] [sleep秒数] [platform|virtual]...
+ */
+public class ThreadingLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        int commands = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int sleepSeconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        List<String> modes = args.length > 2
+            ? Arrays.asList(args).subList(2, args.length)
+            : Arrays.asList(ShellExecutorConfig.THREADING_PLATFORM, ShellExecutorConfig.THREADING_VIRTUAL);
+
+        System.out.printf("%-10s %8s %12s %12s %12s %12s %10s %10s%n",
+            "mode", "commands", "peakThreads", "p50SubmitUs", "p99SubmitUs", "maxSubmitUs", "rejected", "totalMs");
+        for (String mode : modes) {
+            run(mode, commands, sleepSeconds);
+        }
+    }
+
+    private static void run(String mode, int commands, int sleepSeconds) throws InterruptedException {
+        ShellExecutorConfig config = new ShellExecutorConfig();
+        config.setThreading(mode);
+        config.setCommandTimeoutMs(TimeUnit.SECONDS.toMillis(sleepSeconds + 120));
+        // 平台线程模式需要足够的等待线程才能让所有命令同时运行
+        config.getEngine().setWaiterCorePoolSize(16);
+        config.getEngine().setWaiterMaxPoolSize(commands);
+        config.getEngine().setWaiterQueueCapacity(0);
+        config.getScheduler().setMaxConcurrent(commands);
+        config.getScheduler().setHighPriorityReserved(0);
+
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.registerBean(ShellExecutorConfig.class, () -> config);
+        context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+        context.register(OutputBudget.class, ExecutionJournal.class, ShellExecutionManager.class, ExecutionEngine.class,
+            OutputPump.class, CommandResultCache.class, ShellWorkerPool.class, ExecutionMetrics.class,
+            ExecutionScheduler.class, ShellService.class);
+        context.refresh();
+        try {
+            ShellService shellService = context.getBean(ShellService.class);
+            ShellExecutionManager executionManager = context.getBean(ShellExecutionManager.class);
+            ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+            threadMXBean.resetPeakThreadCount();
+
+            long[] submitNanos = new long[commands];
+            List<String> executionIds = new ArrayList<>(commands);
+            long start = System.nanoTime();
+            for (int i = 0; i < commands; i++) {
+                ShellExecutionRequest request = new ShellExecutionRequest();
+                request.setCommand("sleep " + sleepSeconds);
+                long submitStart = System.nanoTime();
+                executionIds.add(shellService.executeCommandAsync(request));
+                submitNanos[i] = System.nanoTime() - submitStart;
+            }
+
+            int rejected = 0;
+            for (String executionId : executionIds) {
+                ShellExecutionOutput output;
+                while (!Boolean.TRUE.equals((output = executionManager.getOutput(executionId)).getFinished())) {
+                    Thread.sleep(10);
+                }
+                if ("REJECTED".equals(output.getStatus())) {
+                    rejected++;
+                }
+            }
+            long totalMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            Arrays.sort(submitNanos);
+            System.out.printf("%-10s %8d %12d %12d %12d %12d %10d %10d%n",
+                context.getBean(ExecutionEngine.class).isVirtual() ? "virtual" : "platform",
+                commands, threadMXBean.getPeakThreadCount(),
+                percentileMicros(submitNanos, 0.50), percentileMicros(submitNanos, 0.99),
+                TimeUnit.NANOSECONDS.toMicros(submitNanos[submitNanos.length - 1]), rejected, totalMs);
+        } finally {
+            context.close();
+        }
+    }
+
+    private static long percentileMicros(long[] sortedNanos, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return TimeUnit.NANOSECONDS.toMicros(sortedNanos[Math.max(0, index)]);
+    }
+}
@@ -1,8 +1,17 @@
 package com.example.shellexecutor.api;
 
 import com.example.shellexecutor.model.ExecuteResult;
+import com.example.shellexecutor.model.FileChunk;
+import com.example.shellexecutor.model.FileTransferResult;
+import com.example.shellexecutor.model.NodeLoad;
+import com.example.shellexecutor.model.ShellBatchRequest;
+import com.example.shellexecutor.model.ShellBatchResult;
 import com.example.shellexecutor.model.ShellExecutionOutput;
 import com.example.shellexecutor.model.ShellExecutionRequest;
+import com.example.shellexecutor.model.ShellOutputChunk;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface ShellExecutorService {
     
@@ -11,13 +20,78 @@ public interface ShellExecutorService {
      */
     ExecuteResult executeCommand(String command);
     
+    /**
+     * 同步执行shell命令，以Dubbo异步调用方式返回
+     * 消费端调用后立即返回，命令结束后完成；提供端在等待线程池上执行，不占用Dubbo业务线程
+     */
+    CompletableFuture<ExecuteResult> executeCommandFuture(String command);
+    
     /**
      * 异步执行shell命令
      */
     String executeCommandAsync(ShellExecutionRequest request);
     
+    /**
+     * 批量同步执行shell命令，一次调用执行多个命令，由节点按并行度上限调度
+     * @return 每个命令的执行结果，顺序与请求一致
+     */
+    ShellBatchResult executeBatch(ShellBatchRequest request);
+    
+    /**
+     * 批量异步执行shell命令
+     * @return 每个命令的执行ID，顺序与请求一致
+     */
+    List<String> executeBatchAsync(ShellBatchRequest request);
+    
     /**
      * 获取执行输出
      */
     ShellExecutionOutput getOutput(String executionId);
-} 
\ No newline at end of file
+    
+    /**
+     * 增量获取执行输出，只返回偏移量之后的新增行
+     * @param stdoutOffset 标准输出起始行号，首次请求传0
+     * @param stderrOffset 错误输出起始行号，首次请求传0
+     * @param maxLines 每个输出流最多返回的行数，小于等于0时使用服务端上限
+     */
+    ShellOutputChunk getOutput(String executionId, long stdoutOffset, long stderrOffset, int maxLines);
+    
+    /**
+     * 等待新输出后增量获取(长轮询)
+     * 偏移量之后已有输出或执行已结束时立即返回，否则等待新输出追加后返回，等待超时返回不含新行的结果。
+     * 循环调用即可在不固定间隔轮询的情况下持续获取输出。
+     * 以Dubbo异步调用方式返回，提供端等待期间不占用Dubbo业务线程
+     * @param waitMs 最长等待时间(毫秒)，超过服务端心跳间隔时按心跳间隔等待
+     */
+    CompletableFuture<ShellOutputChunk> awaitOutput(String executionId, long stdoutOffset, long stderrOffset, int maxLines, long waitMs);
+    
+    /**
+     * 取消异步执行：排队中的执行不再启动，正在运行的执行结束命令进程及其所有子孙进程，状态变为CANCELLED
+     * @return 执行存在且尚未结束时返回true
+     */
+    boolean cancel(String executionId);
+    
+    /**
+     * 获取节点负载：正在运行的命令数、等待队列长度和系统负载
+     */
+    NodeLoad getLoad();
+    
+    /**
+     * 读取本节点文件的一个数据块，文件必须位于允许传输的目录下
+     * @param length 读取的字节数，超过节点的数据块上限时按上限读取，0时只返回文件大小和修改时间
+     */
+    FileChunk readFile(String path, long offset, int length);
+    
+    /**
+     * 将数据块写入本节点文件的offset位置，文件截断到写入的末尾；依次写入各数据块即得到完整文件
+     * @param offset 不能超过当前文件大小，0时覆盖整个文件
+     */
+    FileTransferResult writeFile(String path, long offset, byte[] data);
+    
+    /**
+     * 计算本节点文件指定范围的校验值
+     * @param algorithm CRC32或JDK支持的摘要算法(MD5、SHA-1、SHA-256等)
+     * @param length 小于0时到文件末尾
+     */
+    FileTransferResult checksumFile(String path, String algorithm, long offset, long length);
+}
@@ -0,0 +1,393 @@
+package com.example.shellexecutor.config;
+
+import com.example.shellexecutor.util.KeywordMatcher;
+import com.example.shellexecutor.util.ShellCommandParser;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 编译后的命令策略
+ * 黑名单命令放入开放寻址的哈希表，危险关键字编译为一个多关键字匹配自动机；
+ * 查找黑名单时直接按小写计算命令的哈希值并逐字符比较，不创建小写副本。
+ * 命令行按/bin/sh语法解析为简单命令(包括管道、;、&&、命令替换中的命令)，
+ * 每个简单命令的可执行程序按允许列表和禁止列表检查，去掉引号和多余空白后再检查一次危险关键字。
+ * 解析结果按命令文本缓存，相同命令重复提交时不再解析
+ */
+final class CommandPolicy {
+
+    // 超过该长度的命令不缓存，限制缓存占用的内存
+    private static final int MAX_CACHED_COMMAND_LENGTH = 4096;
+    // sh -c和eval中嵌套命令的最大解析深度，更深时禁止
+    private static final int MAX_NESTING = 4;
+
+    // 在命令位置出现时跳过的保留字，其后的单词仍是命令
+    private static final Set<String> RESERVED_WORDS = new HashSet<>(Arrays.asList(
+        "!", "if", "then", "else", "elif", "fi", "do", "done", "while", "until"));
+    // 出现时本简单命令中没有可执行程序的保留字
+    private static final Set<String> NON_COMMAND_WORDS = new HashSet<>(Arrays.asList(
+        "for", "case", "select", "function", "in", "esac"));
+    // 执行其参数中命令的包装命令：带参数的短选项字母和命令前的位置参数个数
+    private static final Map<String, Wrapper> WRAPPERS = new HashMap<>();
+    private static final Set<String> SHELLS = new HashSet<>(Arrays.asList(
+        "sh", "bash", "dash", "zsh", "ksh", "ash"));
+
+    static {
+        WRAPPERS.put("sudo", new Wrapper("ugChDpRrTtU", 0));
+        WRAPPERS.put("doas", new Wrapper("uC", 0));
+        WRAPPERS.put("env", new Wrapper("uCS", 0));
+        WRAPPERS.put("nice", new Wrapper("n", 0));
+        WRAPPERS.put("nohup", new Wrapper("", 0));
+        WRAPPERS.put("timeout", new Wrapper("sk", 1));
+        WRAPPERS.put("stdbuf", new Wrapper("ioe", 0));
+        WRAPPERS.put("ionice", new Wrapper("cnp", 0));
+        WRAPPERS.put("xargs", new Wrapper("adEeIiLlnPs", 0));
+        WRAPPERS.put("exec", new Wrapper("a", 0));
+        WRAPPERS.put("command", new Wrapper("", 0));
+        WRAPPERS.put("builtin", new Wrapper("", 0));
+        WRAPPERS.put("time", new Wrapper("fo", 0));
+        WRAPPERS.put("chroot", new Wrapper("", 1));
+        WRAPPERS.put("busybox", new Wrapper("", 0));
+        WRAPPERS.put("watch", new Wrapper("n", 0));
+    }
+
+    // 编译所用的配置列表，配置重新绑定后列表对象改变，据此判断是否需要重新编译
+    private final List<String> blockedSource;
+    private final List<String> keywordSource;
+    private final List<String> allowedSource;
+    private final List<String> deniedSource;
+    private final int cacheSize;
+    // 小写的黑名单命令，空位为null，容量为2的幂且至少是条目数的2倍
+    private final String[] blockedTable;
+    private final int[] blockedHashes;
+    private final int blockedCount;
+    private final KeywordMatcher keywords;
+    // 小写的可执行程序名，允许列表为空时不限制
+    private final Set<String> allowedCommands;
+    private final Set<String> deniedCommands;
+    // 命令文本到检查结果，按最近使用顺序淘汰
+    private final LinkedHashMap<String, Boolean> decisions = new LinkedHashMap<>(16, 0.75f, true);
+
+    private CommandPolicy(ShellExecutorConfig config) {
+        this.blockedSource = config.getBlockedCommands();
+        this.keywordSource = config.getDangerousKeywords();
+        this.allowedSource = config.getAllowedCommands();
+        this.deniedSource = config.getDeniedCommands();
+        this.cacheSize = config.getCommandPolicyCacheSize();
+        Set<String> blocked = lowerCaseSet(blockedSource);
+        int capacity = Integer.highestOneBit(Math.max(blocked.size(), 1) * 4 - 1);
+        this.blockedTable = new String[capacity];
+        this.blockedHashes = new int[capacity];
+        this.blockedCount = blocked.size();
+        for (String command : blocked) {
+            int hash = hash(command, 0, command.length());
+            int slot = hash & (capacity - 1);
+            while (blockedTable[slot] != null) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            blockedTable[slot] = command;
+            blockedHashes[slot] = hash;
+        }
+        this.keywords = KeywordMatcher.compile(keywordSource);
+        this.allowedCommands = lowerCaseSet(allowedSource);
+        this.deniedCommands = lowerCaseSet(deniedSource);
+    }
+
+    static CommandPolicy compile(ShellExecutorConfig config) {
+        return new CommandPolicy(config);
+    }
+
+    boolean isCompiledFrom(ShellExecutorConfig config) {
+        return blockedSource == config.getBlockedCommands() && keywordSource == config.getDangerousKeywords()
+            && allowedSource == config.getAllowedCommands() && deniedSource == config.getDeniedCommands()
+            && cacheSize == config.getCommandPolicyCacheSize();
+    }
+
+    /**
+     * 以下情况禁止执行：
+     * 去掉首尾空白后与黑名单完全匹配(忽略大小写)；包含任一危险关键字；命令行无法解析；
+     * 任一可执行程序在禁止列表中，或允许列表不为空而可执行程序不在允许列表中(包括无法确定的程序，如$CMD)
+     */
+    boolean isBlocked(String command) {
+        if (command == null) {
+            return true;
+        }
+        int start = 0;
+        int end = command.length();
+        while (start < end && command.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && command.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return true;
+        }
+        if (blockedCount > 0 && isBlockedCommand(command, start, end)) {
+            return true;
+        }
+        if (keywords.matches(command, start, end)) {
+            return true;
+        }
+        boolean cacheable = cacheSize > 0 && command.length() <= MAX_CACHED_COMMAND_LENGTH;
+        if (cacheable) {
+            synchronized (decisions) {
+                Boolean blocked = decisions.get(command);
+                if (blocked != null) {
+                    return blocked;
+                }
+            }
+        }
+        boolean blocked = isBlockedCommandLine(command, 0);
+        if (cacheable) {
+            synchronized (decisions) {
+                decisions.put(command, blocked);
+                if (decisions.size() > cacheSize) {
+                    decisions.remove(decisions.keySet().iterator().next());
+                }
+            }
+        }
+        return blocked;
+    }
+
+    /**
+     * 缓存的命令数
+     */
+    int cachedCommands() {
+        synchronized (decisions) {
+            return decisions.size();
+        }
+    }
+
+    private boolean isBlockedCommandLine(String commandLine, int depth) {
+        if (depth > MAX_NESTING) {
+            return true;
+        }
+        List<ShellCommandParser.SimpleCommand> commands;
+        try {
+            commands = ShellCommandParser.parse(commandLine);
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+        for (ShellCommandParser.SimpleCommand command : commands) {
+            String text = command.getText();
+            if (keywords.matches(text, 0, text.length()) || isBlockedSimpleCommand(command, depth)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isBlockedSimpleCommand(ShellCommandParser.SimpleCommand command, int depth) {
+        List<String> words = command.getWords();
+        int index = 0;
+        while (index < words.size()) {
+            String word = words.get(index);
+            if (isAssignment(word) || RESERVED_WORDS.contains(word)) {
+                index++;
+                continue;
+            }
+            if (NON_COMMAND_WORDS.contains(word)) {
+                return false;
+            }
+            if (command.isDynamic(index)) {
+                // 执行前无法确定程序，只有未配置允许列表时放行
+                return !allowedCommands.isEmpty();
+            }
+            String executable = executableName(word);
+            if (!isAllowedExecutable(executable)) {
+                return true;
+            }
+            if (SHELLS.contains(executable) || "eval".equals(executable)) {
+                String script = script(executable, words, index + 1);
+                return script != null && isBlockedCommandLine(script, depth + 1);
+            }
+            if ("find".equals(executable)) {
+                return isBlockedFindExec(command, index + 1);
+            }
+            Wrapper wrapper = WRAPPERS.get(executable);
+            if (wrapper == null) {
+                return false;
+            }
+            index = wrapper.commandIndex(words, index + 1);
+        }
+        return false;
+    }
+
+    /**
+     * find的-exec/-execdir/-ok/-okdir之后的单词为执行的程序
+     */
+    private boolean isBlockedFindExec(ShellCommandParser.SimpleCommand command, int index) {
+        List<String> words = command.getWords();
+        for (int i = index; i + 1 < words.size(); i++) {
+            String word = words.get(i);
+            if ("-exec".equals(word) || "-execdir".equals(word) || "-ok".equals(word) || "-okdir".equals(word)) {
+                if (command.isDynamic(i + 1) ? !allowedCommands.isEmpty()
+                    : !isAllowedExecutable(executableName(words.get(i + 1)))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isAllowedExecutable(String executable) {
+        if (!allowedCommands.isEmpty() && !allowedCommands.contains(executable)) {
+            return false;
+        }
+        if (deniedCommands.contains(executable)) {
+            return false;
+        }
+        // 禁止mkfs时同时禁止mkfs.ext4等变体
+        int dot = executable.indexOf('.');
+        return dot <= 0 || !deniedCommands.contains(executable.substring(0, dot));
+    }
+
+    /**
+     * sh -c的脚本参数，或eval的所有参数
+     * @return 没有脚本时为null
+     */
+    private static String script(String executable, List<String> words, int index) {
+        if ("eval".equals(executable)) {
+            return index < words.size() ? String.join(" ", words.subList(index, words.size())) : null;
+        }
+        boolean command = false;
+        for (int i = index; i < words.size(); i++) {
+            String word = words.get(i);
+            if ("-o".equals(word) || "+o".equals(word)) {
+                i++;
+            } else if (word.startsWith("--")) {
+                continue;
+            } else if ((word.startsWith("-") || word.startsWith("+")) && word.length() > 1) {
+                command |= word.indexOf('c') > 0;
+            } else {
+                // 没有-c时为脚本文件(sh script.sh)，内容无法检查
+                return command ? word : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 去掉路径和.exe后缀的小写程序名
+     */
+    private static String executableName(String word) {
+        int separator = Math.max(word.lastIndexOf('/'), word.lastIndexOf('\\'));
+        String name = toLowerCase(separator >= 0 ? word.substring(separator + 1) : word);
+        return name.endsWith(".exe") ? name.substring(0, name.length() - 4) : name;
+    }
+
+    private static boolean isAssignment(String word) {
+        int equals = word.indexOf('=');
+        if (equals <= 0 || !(Character.isLetter(word.charAt(0)) || word.charAt(0) == '_')) {
+            return false;
+        }
+        for (int i = 1; i < equals; i++) {
+            if (!Character.isLetterOrDigit(word.charAt(i)) && word.charAt(i) != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<String> lowerCaseSet(List<String> values) {
+        if (values == null) {
+            return Collections.emptySet();
+        }
+        Set<String> set = new LinkedHashSet<>();
+        for (String value : values) {
+            if (value != null) {
+                set.add(toLowerCase(value));
+            }
+        }
+        return set;
+    }
+
+    private boolean isBlockedCommand(String command, int start, int end) {
+        int hash = hash(command, start, end);
+        int mask = blockedTable.length - 1;
+        for (int slot = hash & mask; blockedTable[slot] != null; slot = (slot + 1) & mask) {
+            if (blockedHashes[slot] == hash && equalsLowerCase(blockedTable[slot], command, start, end)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按小写字符计算[start, end)的哈希值
+     */
+    private static int hash(String value, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + Character.toLowerCase(value.charAt(i));
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equalsLowerCase(String lowerCase, String value, int start, int end) {
+        if (lowerCase.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (lowerCase.charAt(i - start) != Character.toLowerCase(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String toLowerCase(String value) {
+        char[] chars = new char[value.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(value.charAt(i));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 包装命令的参数格式，用于找到被包装的命令
+     */
+    private static final class Wrapper {
+        private final String optionsWithArgument;
+        private final int positionalArguments;
+
+        Wrapper(String optionsWithArgument, int positionalArguments) {
+            this.optionsWithArgument = optionsWithArgument;
+            this.positionalArguments = positionalArguments;
+        }
+
+        /**
+         * 跳过选项、环境变量赋值和位置参数
+         * @return 被包装命令的下标
+         */
+        int commandIndex(List<String> words, int index) {
+            while (index < words.size()) {
+                String word = words.get(index);
+                if ("--".equals(word)) {
+                    index++;
+                    break;
+                }
+                if (word.length() < 2 || word.charAt(0) != '-') {
+                    break;
+                }
+                index++;
+                // 单独的短选项(如-u)的参数为下一个单词，参数紧跟在选项后时(如-uroot)不跳过
+                if (word.length() == 2 && optionsWithArgument.indexOf(word.charAt(1)) >= 0) {
+                    index++;
+                }
+            }
+            while (index < words.size() && isAssignment(words.get(index))) {
+                index++;
+            }
+            return index + positionalArguments;
+        }
+    }
+}
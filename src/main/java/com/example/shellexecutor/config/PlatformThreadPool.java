@@ -0,0 +1,10 @@
+package com.example.shellexecutor.config;
+
+import org.apache.dubbo.common.threadpool.support.fixed.FixedThreadPool;
+
+/**
+ * Dubbo提供者平台线程池扩展(dubbo.provider.threadpool=platform)
+ * 与Dubbo默认的fixed线程池相同，使dubbo.provider.threadpool可以直接引用shell.executor.threading
+ */
+public class PlatformThreadPool extends FixedThreadPool {
+}
@@ -5,13 +5,21 @@ import org.springframework.context.annotation.Configuration;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Arrays;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 @Data
 @Configuration
 @ConfigurationProperties(prefix = "shell.executor")
 public class ShellExecutorConfig {
     
+    public static final String THREADING_PLATFORM = "platform";
+    public static final String THREADING_VIRTUAL = "virtual";
+    
     // 命令黑名单
     private List<String> blockedCommands = new ArrayList<>();
     
@@ -26,41 +34,343 @@ public class ShellExecutorConfig {
         "shutdown", "reboot", "init 0", "init 6"        // 系统控制
     ));
     
+    // 允许执行的程序名，为空时不限制；命令行中的每个程序(包括管道、;、&&和命令替换中的程序)都必须在列表中
+    private List<String> allowedCommands = new ArrayList<>();
+    
+    // 禁止执行的程序名，命令行中出现任一程序即禁止(mkfs同时禁止mkfs.ext4等)
+    private List<String> deniedCommands = new ArrayList<>(Arrays.asList(
+        "mkfs", "fdisk", "shutdown", "reboot", "halt", "poweroff"
+    ));
+    
+    // 命令策略按命令文本缓存检查结果的条数，0表示不缓存
+    private int commandPolicyCacheSize = 4096;
+    
     // 命令执行超时时间(毫秒)
     private long commandTimeoutMs = 60000;
     
+    // 同步执行时每个输出流最多保留的字节数，超出部分丢弃
+    private long maxOutputBytes = 16 * 1024 * 1024; // 16MB
+    
+    // 增量获取输出时每个输出流单次最多返回的行数
+    private int outputFetchMaxLines = 10000;
+    
+    // 推送输出时的心跳间隔(毫秒)，也是长轮询等待新输出的最长时间
+    private long streamHeartbeatMs = 15000;
+    
+    // 批量执行单次最多包含的命令数
+    private int batchMaxCommands = 1000;
+    
+    // 批量执行在本节点的最大并行度，请求指定的并行度超过该值时按该值执行
+    private int batchMaxParallelism = 8;
+    
+    // 扇出执行时同时调用的最大节点数
+    private int fanOutMaxConcurrency = 64;
+    
+    // 扇出执行时单个节点的默认超时时间(毫秒)
+    private long fanOutNodeTimeoutMs = 65000;
+    
     // 输出缓存过期时间(毫秒)
     private long outputExpirationMs = 1800000; // 30分钟
     
-    // 清理任务执行间隔(毫秒)
-    private long cleanupIntervalMs = 300000; // 5分钟
+    // 过期清理执行间隔(毫秒)，每次只处理已过期的执行，同时清理过期的执行历史日志分段
+    private long cleanupIntervalMs = 60000; // 1分钟
+    
+    // 线程模型: platform(有界平台线程池) 或 virtual(虚拟线程，需要Java 21)
+    private String threading = THREADING_PLATFORM;
+    
+    // 执行引擎线程池配置
+    private Engine engine = new Engine();
+    
+    // 异步执行输出存储配置
+    private Storage storage = new Storage();
+    
+    // 跨节点调用配置
+    private Route route = new Route();
+    
+    // 同步命令结果缓存配置
+    private ResultCache resultCache = new ResultCache();
+    
+    // 常驻shell工作进程池配置
+    private Workers workers = new Workers();
+    
+    // 异步执行调度配置
+    private Scheduler scheduler = new Scheduler();
+    
+    // 执行历史日志配置
+    private Journal journal = new Journal();
+    
+    // 执行指标配置
+    private Metrics metrics = new Metrics();
+    
+    // 文件传输配置
+    private FileTransfer fileTransfer = new FileTransfer();
+    
+    // 由黑名单、危险关键字、允许和禁止的程序编译的命令策略，配置重新绑定(替换列表)后重新编译
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private volatile CommandPolicy commandPolicy;
     
     /**
      * 检查命令是否被禁止
+     * 策略首次使用时编译，黑名单和危险关键字的检查只扫描命令一遍，与策略条目数量无关；
+     * 命令行按/bin/sh语法解析后检查每个程序，解析结果按命令文本缓存
      * @param command 要执行的命令
      * @return true如果命令被禁止，false如果命令允许执行
      */
     public boolean isCommandBlocked(String command) {
-        if (command == null || command.trim().isEmpty()) {
-            return true;
+        return commandPolicy().isBlocked(command);
+    }
+    
+    /**
+     * 重新编译命令策略并清空缓存，在原地修改了策略列表后调用
+     */
+    public void reloadCommandPolicy() {
+        commandPolicy = CommandPolicy.compile(this);
+    }
+    
+    private CommandPolicy commandPolicy() {
+        CommandPolicy policy = commandPolicy;
+        if (policy == null || !policy.isCompiledFrom(this)) {
+            policy = CommandPolicy.compile(this);
+            commandPolicy = policy;
         }
+        return policy;
+    }
+    
+    /**
+     * 是否使用虚拟线程执行
+     */
+    public boolean isVirtualThreading() {
+        return THREADING_VIRTUAL.equalsIgnoreCase(threading);
+    }
+    
+    /**
+     * 执行引擎线程池配置
+     * 等待线程池负责启动进程并等待其结束，IO线程池负责读取进程输出
+     * 使用虚拟线程时不再使用线程池大小和队列配置，每个任务一个虚拟线程
+     */
+    @Data
+    public static class Engine {
+        // 等待线程池核心线程数，队列容量大于0时不使用(线程先增长到最大线程数再排队)
+        private int waiterCorePoolSize = 16;
         
-        String normalizedCommand = command.toLowerCase().trim();
+        // 等待线程池最大线程数，也限制同时运行的异步命令数
+        private int waiterMaxPoolSize = 64;
         
-        // 检查完全匹配的黑名单命令
-        for (String blockedCmd : blockedCommands) {
-            if (normalizedCommand.equals(blockedCmd.toLowerCase())) {
-                return true;
-            }
-        }
+        // 等待线程池队列容量，线程数达到上限后排队，队列满时拒绝新命令
+        private int waiterQueueCapacity = 1000;
         
-        // 检查危险关键字
-        for (String keyword : dangerousKeywords) {
-            if (normalizedCommand.contains(keyword.toLowerCase())) {
-                return true;
-            }
-        }
+        // IO线程池核心线程数，队列容量大于0时不使用
+        private int ioCorePoolSize = 16;
+        
+        // IO线程池最大线程数
+        private int ioMaxPoolSize = 256;
+        
+        // IO线程池队列容量，0表示直接移交(读取任务不排队，避免管道写满阻塞子进程)
+        private int ioQueueCapacity = 0;
+        
+        // 空闲线程存活时间(毫秒)
+        private long keepAliveMs = 60000;
+        
+        // 是否使用输出泵读取进程输出，关闭时每个输出流占用一个IO线程阻塞读取
+        private boolean pumpEnabled = true;
+        
+        // 输出泵线程数
+        private int pumpThreads = 2;
+        
+        // 输出泵空闲时的最长休眠时间(毫秒)，决定无输出时的轮询间隔上限
+        private long pumpMaxParkMs = 5;
+    }
+    
+    /**
+     * 异步执行输出存储配置
+     * 输出先保存在堆内，超出单个执行的内存上限或全局内存预算后转存到磁盘文件，超出磁盘上限后丢弃并标记截断
+     */
+    @Data
+    public static class Storage {
+        // 所有执行的输出占用堆内存总预算(字节)
+        private long memoryBudgetBytes = 256L * 1024 * 1024; // 256MB
+        
+        // 单个执行的输出占用堆内存上限(字节)，标准输出和错误输出合计
+        private long memoryBytesPerExecution = 4L * 1024 * 1024; // 4MB
+        
+        // 堆内输出按固定大小的数据块分配(字节)
+        private int chunkBytes = 16 * 1024; // 16KB
+        
+        // 数据块池保留的空闲数据块总大小上限(字节)，不计入内存预算
+        private long chunkPoolBytes = 16L * 1024 * 1024; // 16MB
+        
+        // 是否将超出内存上限的输出转存到磁盘，关闭时直接截断
+        private boolean spillEnabled = true;
+        
+        // 转存文件目录，启动时清理遗留文件
+        private String spillDir = System.getProperty("java.io.tmpdir") + "/shell-executor/spill";
+        
+        // 单个执行的转存文件上限(字节)，标准输出和错误输出合计
+        private long spillBytesPerExecution = 1024L * 1024 * 1024; // 1GB
+        
+        // 输出占用堆内存超过该值(字节)时，从最久未访问的已结束执行开始提前淘汰，小于等于0表示只按过期时间删除
+        private long retainedMemoryBytes = 0;
+    }
+    
+    /**
+     * 跨节点调用配置
+     * 每个目标节点缓存一个点对点Dubbo引用，按最近使用顺序淘汰
+     */
+    @Data
+    public static class Route {
+        // 缓存的节点引用数上限，超出时销毁最久未使用的引用
+        private int maxReferences = 256;
+        
+        // 节点引用空闲超过该时间(毫秒)后销毁并关闭连接
+        private long referenceIdleMs = 600000; // 10分钟
+        
+        // 每个节点的连接数
+        private int connections = 1;
+        
+        // 调用超时时间(毫秒)
+        private long timeoutMs = 60000;
+        
+        // 是否定期检查缓存中的节点，不可用的节点移出缓存
+        private boolean healthCheckEnabled = false;
+        
+        // 健康检查间隔(毫秒)
+        private long healthCheckIntervalMs = 30000;
+        
+        // 节点列表和节点负载的后台刷新间隔(毫秒)
+        private long nodeRefreshMs = 5000;
+        
+        // 查询单个节点负载的超时时间(毫秒)
+        private long loadTimeoutMs = 2000;
+    }
+    
+    /**
+     * 同步命令结果缓存配置
+     * 只缓存匹配规则的只读命令，规则按顺序匹配规范化后的命令(去掉首尾空白，引号外的连续空白合并为一个空格)；
+     * 同时执行的相同命令只启动一个进程，其余调用等待并共享其结果
+     */
+    @Data
+    public static class ResultCache {
+        // 是否启用结果缓存
+        private boolean enabled = false;
+        
+        // 缓存的结果数上限，超出时淘汰最久未使用的结果
+        private int maxEntries = 1024;
+        
+        // 单个结果的标准输出和错误输出字符数上限，超过时不缓存
+        private int maxResultChars = 64 * 1024;
+        
+        // 可缓存的命令及结果有效期，未匹配任何规则的命令不缓存也不合并
+        private List<CacheRule> rules = new ArrayList<>();
+    }
+    
+    /**
+     * 结果缓存规则
+     */
+    @Data
+    public static class CacheRule {
+        // 正则表达式，需匹配整个规范化后的命令
+        private String pattern;
+        
+        // 结果有效期(毫秒)
+        private long ttlMs = 5000;
+    }
+    
+    /**
+     * 常驻shell工作进程池配置
+     * 同步命令在预先启动的/bin/sh工作进程的子shell中执行，不再为每条命令启动新的shell进程
+     */
+    @Data
+    public static class Workers {
+        // 是否启用工作进程池(Windows下不使用)
+        private boolean enabled = false;
+        
+        // 工作进程数上限，都在忙时按原方式启动进程执行
+        private int size = 8;
+        
+        // 每个工作进程执行的命令数上限，达到后回收
+        private long maxCommandsPerWorker = 1000;
+        
+        // 工作进程存活时间上限(毫秒)，超过后回收
+        private long maxWorkerAgeMs = 600000; // 10分钟
+    }
+    
+    /**
+     * 异步执行调度配置
+     * 异步命令按优先级(high、normal、low)和调用方排队，同时运行的命令数不超过maxConcurrent
+     */
+    @Data
+    public static class Scheduler {
+        // 同时运行的异步命令数上限，应不超过等待线程池的容量
+        private int maxConcurrent = 64;
+        
+        // 只给高优先级命令使用的运行名额，普通和低优先级命令最多同时运行maxConcurrent - highPriorityReserved个
+        // 不超过maxConcurrent - 1，普通和低优先级命令至少有一个名额
+        private int highPriorityReserved = 4;
+        
+        // 每个调用方同时运行的命令数上限，小于等于0表示不限制
+        private int maxRunningPerCaller = 0;
+        
+        // 排队的命令数上限，超出时拒绝
+        private int maxQueued = 10000;
+    }
+    
+    /**
+     * 执行历史日志配置
+     * 结束的异步执行追加写入本地分段日志，重启后恢复，内存中的执行过期后仍可按执行ID查询
+     */
+    @Data
+    public static class Journal {
+        // 是否记录执行历史
+        private boolean enabled = false;
+        
+        // 日志目录，应位于重启和部署后保留的磁盘上
+        private String dir = System.getProperty("user.home") + "/shell-executor/journal";
+        
+        // 单个日志分段文件的大小上限(字节)，超出后写入新的分段
+        private long segmentBytes = 64L * 1024 * 1024; // 64MB
+        
+        // 日志保留时间(毫秒)，最后写入时间早于该时间的分段在写入新分段时删除
+        private long retentionMs = 7L * 24 * 3600 * 1000; // 7天
+        
+        // 保留的分段数上限，超出时删除最早的分段
+        private int maxSegments = 64;
+        
+        // 每个输出流记录的前若干行，其余行不写入日志
+        private int maxOutputLines = 1000;
+        
+        // 每条记录写入后是否强制刷盘，关闭时由操作系统决定写回时机
+        private boolean fsync = false;
+    }
+    
+    /**
+     * 执行指标配置
+     * 指标通过Spring Boot Actuator暴露(/actuator/metrics、/actuator/prometheus)
+     */
+    @Data
+    public static class Metrics {
+        // 是否记录执行指标，关闭时计时和计数均不记录
+        private boolean enabled = true;
+        
+        // 耗时指标是否发布直方图分桶，供Prometheus计算分位数
+        private boolean histogram = true;
+    }
+    
+    /**
+     * 文件传输配置
+     * 只能上传、下载和校验允许目录下的文件，本节点的传输在文件和连接之间直接复制，跨节点传输按数据块通过Dubbo转发
+     */
+    @Data
+    public static class FileTransfer {
+        // 允许传输的目录，为空时禁止文件传输；路径解析符号链接后必须位于其中一个目录下
+        private List<String> roots = new ArrayList<>();
+        
+        // 跨节点传输时每次Dubbo调用读写的字节数，应小于Dubbo的payload上限(默认8MB)
+        private int chunkBytes = 1024 * 1024; // 1MB
         
-        return false;
+        // 本节点下载不小于该字节数时由Tomcat通过sendfile发送，小于0表示不使用sendfile
+        private long sendfileMinBytes = 48 * 1024; // 48KB
     }
-} 
\ No newline at end of file
+}
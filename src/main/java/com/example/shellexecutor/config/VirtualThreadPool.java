@@ -0,0 +1,27 @@
+package com.example.shellexecutor.config;
+
+import com.example.shellexecutor.util.VirtualThreads;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.common.threadpool.ThreadPool;
+import org.apache.dubbo.common.threadpool.support.fixed.FixedThreadPool;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Dubbo提供者虚拟线程池扩展(dubbo.provider.threadpool=virtual)
+ * 每个请求一个虚拟线程；当前JVM不支持虚拟线程时退回Dubbo默认的fixed线程池
+ */
+@Slf4j
+public class VirtualThreadPool implements ThreadPool {
+
+    @Override
+    public Executor getExecutor(URL url) {
+        if (VirtualThreads.isSupported()) {
+            log.info("Dubbo提供者使用虚拟线程处理请求: {}", url.getAddress());
+            return VirtualThreads.newThreadPerTaskExecutor("dubbo-virtual");
+        }
+        log.warn("当前JVM({})不支持虚拟线程, Dubbo提供者使用fixed线程池", System.getProperty("java.version"));
+        return new FixedThreadPool().getExecutor(url);
+    }
+}
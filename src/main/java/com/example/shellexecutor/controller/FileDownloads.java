@@ -0,0 +1,106 @@
+package com.example.shellexecutor.controller;
+
+import com.example.shellexecutor.model.FileChunk;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * 文件下载的响应头和Range请求处理，本节点和跨节点下载共用
+ */
+final class FileDownloads {
+
+    // Tomcat的sendfile请求属性，设置后由连接器在请求结束后直接从文件发送响应体
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private FileDownloads() {
+    }
+
+    /**
+     * 按Range请求头设置响应状态和响应头，只支持单个范围，请求多个范围时返回整个文件
+     * If-Range与当前文件的ETag或修改时间不一致时忽略Range
+     * @return 要发送的范围{起始位置, 字节数}，范围无效或无法满足时已返回416，返回null
+     */
+    static long[] prepare(HttpServletRequest request, HttpServletResponse response, String path, FileChunk file) {
+        long size = file.getFileSize();
+        String etag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(file.getLastModified()) + "\"";
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, file.getLastModified());
+
+        long start = 0;
+        long length = size;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && matchesIfRange(request, etag, file.getLastModified())) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                ranges = null;
+            }
+            if (ranges != null && ranges.size() == 1) {
+                HttpRange byteRange = ranges.get(0);
+                start = byteRange.getRangeStart(size);
+                long end = Math.min(byteRange.getRangeEnd(size), size - 1);
+                if (start >= size || start > end) {
+                    ranges = null;
+                } else {
+                    length = end - start + 1;
+                    response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+                }
+            }
+            if (ranges == null) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                response.setContentLength(0);
+                return null;
+            }
+        }
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+            .filename(String.valueOf(Paths.get(path).getFileName()), StandardCharsets.UTF_8).build().toString());
+        response.setContentLengthLong(length);
+        return new long[]{start, length};
+    }
+
+    private static boolean matchesIfRange(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) == lastModified / 1000 * 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 连接器支持sendfile且范围不小于minBytes时，设置sendfile请求属性由Tomcat直接从文件发送
+     * @return 是否已交给sendfile发送，否则由调用方写出响应体
+     */
+    static boolean sendfile(HttpServletRequest request, String file, long start, long length, long minBytes) {
+        if (minBytes < 0 || length < minBytes || !Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            return false;
+        }
+        request.setAttribute(SENDFILE_FILENAME, file);
+        request.setAttribute(SENDFILE_START, start);
+        request.setAttribute(SENDFILE_END, start + length);
+        return true;
+    }
+}
@@ -1,12 +1,37 @@
 package com.example.shellexecutor.controller;
 
+import com.example.shellexecutor.model.CommandCacheStats;
 import com.example.shellexecutor.model.ExecuteResult;
+import com.example.shellexecutor.model.ExecutorPoolStats;
+import com.example.shellexecutor.model.FileChunk;
+import com.example.shellexecutor.model.FileTransferResult;
+import com.example.shellexecutor.model.NodeLoad;
+import com.example.shellexecutor.model.SchedulerStats;
+import com.example.shellexecutor.model.ShellBatchRequest;
+import com.example.shellexecutor.model.ShellBatchResult;
 import com.example.shellexecutor.model.ShellExecutionOutput;
 import com.example.shellexecutor.model.ShellExecutionRequest;
+import com.example.shellexecutor.model.ShellOutputChunk;
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.service.CommandResultCache;
+import com.example.shellexecutor.service.ExecutionEngine;
+import com.example.shellexecutor.service.ExecutionScheduler;
+import com.example.shellexecutor.service.FileTransferService;
+import com.example.shellexecutor.service.OutputStreamer;
 import com.example.shellexecutor.service.ShellExecutionManager;
 import com.example.shellexecutor.service.ShellService;
+import com.example.shellexecutor.util.ExecutionIds;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/shell")
@@ -18,6 +43,24 @@ public class ShellController {
     @Autowired
     private ShellExecutionManager executionManager;
     
+    @Autowired
+    private ExecutionEngine executionEngine;
+    
+    @Autowired
+    private OutputStreamer outputStreamer;
+    
+    @Autowired
+    private CommandResultCache resultCache;
+    
+    @Autowired
+    private ExecutionScheduler executionScheduler;
+    
+    @Autowired
+    private FileTransferService fileTransferService;
+    
+    @Autowired
+    private ShellExecutorConfig config;
+    
     @PostMapping("/execute")
     public ExecuteResult executeCommand(@RequestBody String command) {
         return shellService.executeCommand(command);
@@ -28,8 +71,127 @@ public class ShellController {
         return shellService.executeCommandAsync(request);
     }
     
+    @PostMapping("/execute/batch")
+    public ShellBatchResult executeBatch(@RequestBody ShellBatchRequest request) {
+        return shellService.executeBatch(request);
+    }
+    
+    @PostMapping("/execute/batch/async")
+    public List<String> executeBatchAsync(@RequestBody ShellBatchRequest request) {
+        return shellService.executeBatchAsync(request);
+    }
+    
     @GetMapping("/output/{executionId}")
     public ShellExecutionOutput getOutput(@PathVariable String executionId) {
-        return executionManager.getOutput(executionId);
+        return executionManager.getOutput(ExecutionIds.local(executionId));
+    }
+    
+    @GetMapping("/output/{executionId}/incremental")
+    public ShellOutputChunk getOutput(@PathVariable String executionId,
+                                      @RequestParam(defaultValue = "0") long stdoutOffset,
+                                      @RequestParam(defaultValue = "0") long stderrOffset,
+                                      @RequestParam(defaultValue = "0") int maxLines) {
+        return executionManager.getOutput(ExecutionIds.local(executionId), stdoutOffset, stderrOffset, maxLines);
+    }
+    
+    @GetMapping(value = "/output/{executionId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamOutput(@PathVariable String executionId,
+                                   @RequestParam(defaultValue = "0") long stdoutOffset,
+                                   @RequestParam(defaultValue = "0") long stderrOffset,
+                                   @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        String localId = ExecutionIds.local(executionId);
+        return outputStreamer.openSse((stdout, stderr, waitMs) ->
+                executionManager.awaitOutput(localId, stdout, stderr, 0, waitMs),
+            stdoutOffset, stderrOffset, lastEventId);
+    }
+    
+    /**
+     * 取消异步执行
+     * @return 执行存在且尚未结束时返回true
+     */
+    @PostMapping("/cancel/{executionId}")
+    public boolean cancel(@PathVariable String executionId) {
+        return shellService.cancel(ExecutionIds.local(executionId));
+    }
+    
+    /**
+     * 查询执行历史，如最近一小时失败的执行: status=FAILED&from=当前时间减一小时
+     * @param from 开始时间下限(毫秒时间戳)
+     * @param to 开始时间上限(毫秒时间戳)，不指定时不限制
+     */
+    @GetMapping("/history")
+    public List<ShellExecutionOutput> getHistory(@RequestParam(required = false) String status,
+                                                 @RequestParam(defaultValue = "0") long from,
+                                                 @RequestParam(required = false) Long to,
+                                                 @RequestParam(defaultValue = "100") int limit) {
+        return executionManager.queryHistory(status, from, to == null ? Long.MAX_VALUE : to, limit);
+    }
+    
+    @GetMapping("/engine/stats")
+    public List<ExecutorPoolStats> getEngineStats() {
+        return executionEngine.getStats();
+    }
+    
+    @GetMapping("/scheduler/stats")
+    public SchedulerStats getSchedulerStats() {
+        return executionScheduler.getStats();
+    }
+    
+    @GetMapping("/load")
+    public NodeLoad getLoad() {
+        return shellService.getLoad();
+    }
+    
+    @GetMapping("/cache/stats")
+    public CommandCacheStats getCacheStats() {
+        return resultCache.getStats();
+    }
+    
+    @DeleteMapping("/cache")
+    public void clearCache() {
+        resultCache.clear();
+    }
+    
+    /**
+     * 下载本节点的文件，支持Range请求(单个范围)
+     * 响应体由Tomcat通过sendfile或FileChannel.transferTo直接从文件发送，不经过行解码，内存占用与文件大小无关
+     */
+    @GetMapping("/file")
+    public void downloadFile(@RequestParam String path, HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        Path file = fileTransferService.resolveExisting(path);
+        FileChunk info = fileTransferService.stat(file);
+        long[] range = FileDownloads.prepare(request, response, path, info);
+        if (range == null || range[1] == 0 || FileDownloads.sendfile(request, file.toString(), range[0], range[1],
+                config.getFileTransfer().getSendfileMinBytes())) {
+            return;
+        }
+        fileTransferService.transferTo(file, range[0], range[1], Channels.newChannel(response.getOutputStream()));
+    }
+    
+    /**
+     * 上传文件到本节点，请求体为文件内容(application/octet-stream)，通过FileChannel.transferFrom写入
+     * @param offset 写入位置，0时覆盖文件，大于0时从该位置续传(不能超过当前文件大小)
+     * @param algorithm 校验算法，指定时返回写入范围的校验值
+     */
+    @PutMapping("/file")
+    public FileTransferResult uploadFile(@RequestParam String path,
+                                         @RequestParam(defaultValue = "0") long offset,
+                                         @RequestParam(required = false) String algorithm,
+                                         HttpServletRequest request) throws IOException {
+        return fileTransferService.upload(path, offset, Channels.newChannel(request.getInputStream()), algorithm);
+    }
+    
+    /**
+     * 计算本节点文件指定范围的校验值
+     * @param algorithm CRC32或MD5、SHA-1、SHA-256等摘要算法
+     * @param length 小于0时到文件末尾
+     */
+    @GetMapping("/file/checksum")
+    public FileTransferResult checksumFile(@RequestParam String path,
+                                           @RequestParam(defaultValue = "SHA-256") String algorithm,
+                                           @RequestParam(defaultValue = "0") long offset,
+                                           @RequestParam(defaultValue = "-1") long length) {
+        return fileTransferService.checksum(path, algorithm, offset, length);
     }
-} 
\ No newline at end of file
+}
@@ -1,12 +1,28 @@
 package com.example.shellexecutor.controller;
 
 import com.example.shellexecutor.model.ExecuteResult;
+import com.example.shellexecutor.model.FanOutRequest;
+import com.example.shellexecutor.model.FanOutResult;
+import com.example.shellexecutor.model.FileChunk;
+import com.example.shellexecutor.model.FileTransferResult;
+import com.example.shellexecutor.model.NodeLoad;
+import com.example.shellexecutor.model.ShellBatchRequest;
+import com.example.shellexecutor.model.ShellBatchResult;
 import com.example.shellexecutor.model.ShellExecutionOutput;
 import com.example.shellexecutor.model.ShellExecutionRequest;
+import com.example.shellexecutor.model.ShellOutputChunk;
+import com.example.shellexecutor.service.FanOutService;
+import com.example.shellexecutor.service.OutputStreamer;
 import com.example.shellexecutor.service.ShellRouteService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -16,10 +32,19 @@ public class ShellRouteController {
     @Autowired
     private ShellRouteService shellRouteService;
     
+    @Autowired
+    private OutputStreamer outputStreamer;
+    
+    @Autowired
+    private FanOutService fanOutService;
+    
+    /**
+     * 在指定节点上执行命令，未指定节点时在负载最低的节点上执行
+     */
     @PostMapping("/execute")
     public ExecuteResult executeCommand(@RequestParam String command,
-                                      @RequestParam String targetHost,
-                                      @RequestParam Integer targetPort) {
+                                      @RequestParam(required = false) String targetHost,
+                                      @RequestParam(required = false) Integer targetPort) {
         return shellRouteService.executeCommand(command, targetHost, targetPort);
     }
     
@@ -28,15 +53,131 @@ public class ShellRouteController {
         return shellRouteService.executeCommandAsync(request);
     }
     
+    @PostMapping("/execute/batch")
+    public ShellBatchResult executeBatch(@RequestBody ShellBatchRequest request) {
+        return shellRouteService.executeBatch(request);
+    }
+    
+    @PostMapping("/execute/batch/async")
+    public List<String> executeBatchAsync(@RequestBody ShellBatchRequest request) {
+        return shellRouteService.executeBatchAsync(request);
+    }
+    
+    /**
+     * 在多个节点上执行同一命令，等待所有节点返回
+     */
+    @PostMapping("/fanout")
+    public FanOutResult fanOut(@RequestBody FanOutRequest request) {
+        return fanOutService.execute(request);
+    }
+    
+    /**
+     * 在多个节点上执行同一命令，每个节点返回后立即推送结果
+     */
+    @PostMapping(value = "/fanout/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter fanOutStream(@RequestBody FanOutRequest request) {
+        return fanOutService.stream(request);
+    }
+    
+    /**
+     * 获取远程节点的执行输出，执行ID带节点信息时不需要指定节点
+     */
     @GetMapping("/output/{executionId}")
     public ShellExecutionOutput getOutput(@PathVariable String executionId,
-                                        @RequestParam String targetHost,
-                                        @RequestParam Integer targetPort) {
+                                        @RequestParam(required = false) String targetHost,
+                                        @RequestParam(required = false) Integer targetPort) {
         return shellRouteService.getOutput(executionId, targetHost, targetPort);
     }
     
+    @GetMapping("/output/{executionId}/incremental")
+    public ShellOutputChunk getOutput(@PathVariable String executionId,
+                                      @RequestParam(required = false) String targetHost,
+                                      @RequestParam(required = false) Integer targetPort,
+                                      @RequestParam(defaultValue = "0") long stdoutOffset,
+                                      @RequestParam(defaultValue = "0") long stderrOffset,
+                                      @RequestParam(defaultValue = "0") int maxLines) {
+        return shellRouteService.getOutput(executionId, stdoutOffset, stderrOffset, maxLines, targetHost, targetPort);
+    }
+    
+    /**
+     * 推送远程节点的输出，通过Dubbo长轮询转发，不固定间隔轮询
+     */
+    @GetMapping(value = "/output/{executionId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamOutput(@PathVariable String executionId,
+                                   @RequestParam(required = false) String targetHost,
+                                   @RequestParam(required = false) Integer targetPort,
+                                   @RequestParam(defaultValue = "0") long stdoutOffset,
+                                   @RequestParam(defaultValue = "0") long stderrOffset,
+                                   @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return outputStreamer.openSse((stdout, stderr, waitMs) ->
+                shellRouteService.awaitOutput(executionId, stdout, stderr, 0, waitMs, targetHost, targetPort),
+            stdoutOffset, stderrOffset, lastEventId);
+    }
+    
+    /**
+     * 取消远程节点上的执行，执行ID带节点信息时不需要指定节点
+     */
+    @PostMapping("/cancel/{executionId}")
+    public boolean cancel(@PathVariable String executionId,
+                          @RequestParam(required = false) String targetHost,
+                          @RequestParam(required = false) Integer targetPort) {
+        return shellRouteService.cancel(executionId, targetHost, targetPort);
+    }
+    
+    /**
+     * 下载指定节点上的文件，支持Range请求(单个范围)，按数据块通过Dubbo读取后立即写出
+     */
+    @GetMapping("/file")
+    public void downloadFile(@RequestParam String path,
+                             @RequestParam String targetHost,
+                             @RequestParam Integer targetPort,
+                             HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        FileChunk info = shellRouteService.statFile(path, targetHost, targetPort);
+        long[] range = FileDownloads.prepare(request, response, path, info);
+        if (range == null || range[1] == 0) {
+            return;
+        }
+        shellRouteService.downloadFile(path, range[0], range[1], info, response.getOutputStream(),
+            targetHost, targetPort);
+    }
+    
+    /**
+     * 上传文件到指定节点，请求体为文件内容(application/octet-stream)，按数据块通过Dubbo写入
+     */
+    @PutMapping("/file")
+    public FileTransferResult uploadFile(@RequestParam String path,
+                                         @RequestParam String targetHost,
+                                         @RequestParam Integer targetPort,
+                                         @RequestParam(defaultValue = "0") long offset,
+                                         @RequestParam(required = false) String algorithm,
+                                         HttpServletRequest request) throws IOException {
+        return shellRouteService.uploadFile(path, offset, request.getInputStream(), algorithm, targetHost, targetPort);
+    }
+    
+    /**
+     * 在指定节点上计算文件指定范围的校验值
+     */
+    @GetMapping("/file/checksum")
+    public FileTransferResult checksumFile(@RequestParam String path,
+                                           @RequestParam String targetHost,
+                                           @RequestParam Integer targetPort,
+                                           @RequestParam(defaultValue = "SHA-256") String algorithm,
+                                           @RequestParam(defaultValue = "0") long offset,
+                                           @RequestParam(defaultValue = "-1") long length) {
+        return shellRouteService.checksumFile(path, algorithm, offset, length, targetHost, targetPort);
+    }
+    
     @GetMapping("/nodes")
     public Map<String, String> getAvailableNodes() {
         return shellRouteService.getAvailableNodes();
     }
+    
+    /**
+     * 各节点的负载，由后台定期刷新，不发起远程调用
+     */
+    @GetMapping("/nodes/load")
+    public List<NodeLoad> getNodeLoads() {
+        return shellRouteService.getNodeLoads();
+    }
 } 
\ No newline at end of file
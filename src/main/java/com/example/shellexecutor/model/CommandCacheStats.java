@@ -0,0 +1,17 @@
+package com.example.shellexecutor.model;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+@Data
+public class CommandCacheStats implements Serializable {
+    private boolean enabled;
+    private int size;
+    private int maxEntries;
+    private long hits;         // 命中缓存的调用数
+    private long misses;       // 启动了进程的调用数
+    private long coalesced;    // 等待同时执行的相同命令并共享结果的调用数
+    private long evictions;    // 超过上限被淘汰的结果数
+    private long expirations;  // 过期被移除的结果数
+}
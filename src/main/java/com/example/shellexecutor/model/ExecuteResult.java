@@ -2,12 +2,17 @@ package com.example.shellexecutor.model;
 
 import lombok.Data;
 
+import java.io.Serializable;
+
 @Data
-public class ExecuteResult {
+public class ExecuteResult implements Serializable {
     private int exitCode;
     private String output;
     private String error;
     private boolean success;
+    private boolean truncated;  // 输出超过上限被截断
+    private boolean skipped;    // 批量执行时因前序命令失败未执行
+    private boolean cached;     // 结果来自缓存或同时执行的相同命令，本次调用未启动进程
     
     public void setExitCode(int exitCode) {
         this.exitCode = exitCode;
@@ -0,0 +1,18 @@
+package com.example.shellexecutor.model;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+@Data
+public class ExecutorPoolStats implements Serializable {
+    private String name;
+    private int poolSize;
+    private int corePoolSize;
+    private int maxPoolSize;
+    private int activeCount;
+    private int queueSize;
+    private int queueCapacity;
+    private long completedTaskCount;
+    private long rejectedCount;
+}
@@ -0,0 +1,19 @@
+package com.example.shellexecutor.model;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+@Data
+public class FanOutNodeResult implements Serializable {
+    public static final String STATUS_SUCCESS = "SUCCESS";  // 退出码为0
+    public static final String STATUS_FAILED = "FAILED";    // 退出码非0
+    public static final String STATUS_TIMEOUT = "TIMEOUT";  // 节点在超时时间内未返回
+    public static final String STATUS_ERROR = "ERROR";      // 调用失败，如节点不可达
+
+    private String node;
+    private String status;
+    private ExecuteResult result;   // 节点返回的执行结果，超时或调用失败时为空
+    private String errorMessage;
+    private long elapsedMs;
+}
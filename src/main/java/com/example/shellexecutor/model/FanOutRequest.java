@@ -0,0 +1,15 @@
+package com.example.shellexecutor.model;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class FanOutRequest implements Serializable {
+    private String command;
+    private List<String> targets = new ArrayList<>();  // 目标节点"host:port"，为空时在注册中心的所有节点上执行
+    private Integer concurrency;                        // 同时执行的节点数，为空时使用配置上限
+    private Long timeoutMs;                             // 单个节点的超时时间，为空时使用配置值
+}
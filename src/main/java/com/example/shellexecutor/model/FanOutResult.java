@@ -0,0 +1,17 @@
+package com.example.shellexecutor.model;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Data
+public class FanOutResult implements Serializable {
+    private String command;
+    private int total;
+    private int succeeded;
+    private int failed;                     // 退出码非0或调用失败
+    private int timedOut;
+    private long executionTimeMs;
+    private List<FanOutNodeResult> results; // 与目标节点顺序一致
+}
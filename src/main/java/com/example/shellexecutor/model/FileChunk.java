@@ -0,0 +1,17 @@
+package com.example.shellexecutor.model;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 跨节点读取的文件数据块
+ */
+@Data
+public class FileChunk implements Serializable {
+    private String path;
+    private long offset;                 // 数据块在文件中的起始位置
+    private byte[] data;                 // 读取的数据，到达文件末尾时少于请求的长度
+    private long fileSize;               // 读取时的文件大小
+    private long lastModified;           // 读取时的文件修改时间(毫秒时间戳)
+}
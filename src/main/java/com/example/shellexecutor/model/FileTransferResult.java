@@ -0,0 +1,19 @@
+package com.example.shellexecutor.model;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 文件上传或校验的结果
+ */
+@Data
+public class FileTransferResult implements Serializable {
+    private String path;
+    private long offset;                 // 写入或校验的起始位置
+    private long length;                 // 写入或校验的字节数
+    private long fileSize;               // 操作后的文件大小
+    private long lastModified;           // 操作后的文件修改时间(毫秒时间戳)
+    private String algorithm;            // 校验算法，未校验时为null
+    private String checksum;             // [offset, offset + length)范围的校验值(十六进制)，未校验时为null
+}
@@ -0,0 +1,16 @@
+package com.example.shellexecutor.model;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+@Data
+public class NodeLoad implements Serializable {
+    private String node;                 // 节点地址host:port，由调用方填写
+    private boolean available = true;    // 最近一次查询是否成功，失败时其余字段无效
+    private int runningCommands;         // 正在运行的命令数，包括同步和异步执行
+    private int queueDepth;              // 调度队列和等待线程池中排队的任务数
+    private double systemLoad;           // 系统平均负载(1分钟)，不支持时为-1
+    private int availableProcessors;
+    private long updateTime;             // 采集时间(毫秒时间戳)
+}
@@ -0,0 +1,20 @@
+package com.example.shellexecutor.model;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Map;
+
+@Data
+public class SchedulerStats implements Serializable {
+    private int maxConcurrent;                      // 生效的并发上限，不超过等待线程池的线程数
+    private int maxQueued;
+    private int running;
+    private int queued;
+    private Map<String, Integer> queuedByPriority;  // 各优先级排队的命令数
+    private int queuedCallers;                      // 有排队命令的调用方数(按优先级分别计数)
+    private long dispatched;                        // 已出队启动的命令数
+    private long rejected;                          // 队列已满或等待线程池已满被拒绝的命令数
+    private long averageQueueWaitMs;
+    private long maxQueueWaitMs;
+}
@@ -0,0 +1,16 @@
+package com.example.shellexecutor.model;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ShellBatchRequest implements Serializable {
+    private List<ShellExecutionRequest> requests = new ArrayList<>();
+    private Integer parallelism;     // 并行度，为空时使用节点上限
+    private boolean stopOnFailure;   // 按顺序逐个执行，某个命令失败后跳过其余命令
+    private String targetHost;       // 目标机器IP
+    private Integer targetPort;      // 目标机器端口
+}
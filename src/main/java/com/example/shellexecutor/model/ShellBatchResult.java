@@ -0,0 +1,15 @@
+package com.example.shellexecutor.model;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Data
+public class ShellBatchResult implements Serializable {
+    private List<ExecuteResult> results;  // 与请求中的命令一一对应
+    private int succeeded;
+    private int failed;
+    private int skipped;                  // stopOnFailure时因前序命令失败未执行的命令数
+    private long executionTimeMs;
+}
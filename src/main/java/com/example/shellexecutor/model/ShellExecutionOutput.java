@@ -1,11 +1,12 @@
 package com.example.shellexecutor.model;
 
 import lombok.Data;
+import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Data
-public class ShellExecutionOutput {
+public class ShellExecutionOutput implements Serializable {
     private String executionId;
     private String command;
     private List<String> outputLines;
@@ -16,7 +17,12 @@ public class ShellExecutionOutput {
     // 新增字段
     private LocalDateTime startTime;
     private LocalDateTime endTime;
-    private String status; // PENDING, RUNNING, COMPLETED, FAILED, TIMEOUT
+    private String status; // QUEUED, RUNNING, COMPLETED, FAILED, TIMEOUT, REJECTED, SKIPPED, CANCELLED
     private Long executionTimeMs;
     private String errorMessage;
+    private Long outputLineCount;   // 已保存的标准输出总行数
+    private Long errorLineCount;    // 已保存的错误输出总行数
+    private Boolean truncated;      // 输出超出存储上限，后续行已丢弃
+    private Boolean spilled;        // 输出已转存到磁盘，输出行只包含前outputFetchMaxLines行
+    private Long queueWaitMs;       // 排队等待调度的时间，仍在排队时为已等待的时间
 } 
\ No newline at end of file
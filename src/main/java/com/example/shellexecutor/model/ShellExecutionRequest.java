@@ -2,10 +2,14 @@ package com.example.shellexecutor.model;
 
 import lombok.Data;
 
+import java.io.Serializable;
+
 @Data
-public class ShellExecutionRequest {
+public class ShellExecutionRequest implements Serializable {
     private String command;
     private String executionId;  // 可以为空,由服务端生成
     private String targetHost;   // 目标机器IP
     private Integer targetPort;  // 目标机器端口
+    private String caller;       // 调用方标识，同一优先级内按调用方轮流调度，为空时归入默认调用方
+    private String priority;     // 优先级: high、normal(默认)、low
 } 
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.example.shellexecutor.model;
+
+import lombok.Data;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 增量输出
+ * 只包含从请求偏移量开始的新增行，客户端下次请求时使用nextStdoutOffset/nextStderrOffset
+ */
+@Data
+public class ShellOutputChunk implements Serializable {
+    private String executionId;
+    private List<String> outputLines;
+    private List<String> errorLines;
+    private long stdoutOffset;      // outputLines第一行的行号(从0开始)
+    private long stderrOffset;      // errorLines第一行的行号(从0开始)
+    private long nextStdoutOffset;  // 下次请求的标准输出偏移量
+    private long nextStderrOffset;  // 下次请求的错误输出偏移量
+    private boolean hasMore;        // 受maxLines限制还有未返回的行
+    private boolean truncated;      // 输出超出存储上限，后续行已丢弃
+    private boolean spilled;        // 输出已转存到磁盘
+    private Boolean finished;
+    private Integer exitCode;
+    private String status;
+    private String errorMessage;
+    private Long queueWaitMs;       // 排队等待调度的时间，仍在排队时为已等待的时间
+}
@@ -0,0 +1,260 @@
+package com.example.shellexecutor.service;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.model.CommandCacheStats;
+import com.example.shellexecutor.model.ExecuteResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 同步命令的结果缓存
+ * 只缓存匹配配置规则的只读命令，按规范化后的命令文本缓存成功且未截断的结果，到期或超过上限(最久未使用)时移除；
+ * 同时执行的相同命令只启动一个进程，其余调用等待该进程结束并共享其结果
+ */
+@Slf4j
+@Component
+public class CommandResultCache {
+
+    @Autowired
+    private ShellExecutorConfig config;
+
+    // 按访问顺序排列，最久未使用的在最前面
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // 正在执行的可缓存命令，相同命令的调用等待同一个结果
+    private final ConcurrentHashMap<String, CompletableFuture<ExecuteResult>> inFlight = new ConcurrentHashMap<>();
+    private volatile Rules rules;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * 执行命令，可缓存的命令优先返回缓存或正在执行的相同命令的结果
+     * @param executor 实际启动进程执行命令
+     */
+    public ExecuteResult execute(String command, Supplier<ExecuteResult> executor) {
+        ShellExecutorConfig.ResultCache settings = config.getResultCache();
+        if (!settings.isEnabled()) {
+            return executor.get();
+        }
+        String key = normalize(command);
+        long ttlMs = rules(settings).ttlMs(key);
+        if (ttlMs <= 0) {
+            return executor.get();
+        }
+
+        ExecuteResult cached = lookup(key);
+        if (cached != null) {
+            hits.increment();
+            return shared(cached);
+        }
+        CompletableFuture<ExecuteResult> pending = new CompletableFuture<>();
+        CompletableFuture<ExecuteResult> running = inFlight.putIfAbsent(key, pending);
+        if (running != null) {
+            coalesced.increment();
+            log.debug("等待正在执行的相同命令: {}", key);
+            try {
+                return shared(running.join());
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        try {
+            // 上一次执行可能在查找缓存之后、登记之前刚结束
+            cached = lookup(key);
+            if (cached != null) {
+                hits.increment();
+                pending.complete(cached);
+                return shared(cached);
+            }
+            misses.increment();
+            ExecuteResult result = executor.get();
+            if (isCacheable(result, settings)) {
+                store(key, result, ttlMs, settings.getMaxEntries());
+            }
+            pending.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            pending.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, pending);
+        }
+    }
+
+    public CommandCacheStats getStats() {
+        ShellExecutorConfig.ResultCache settings = config.getResultCache();
+        CommandCacheStats stats = new CommandCacheStats();
+        stats.setEnabled(settings.isEnabled());
+        synchronized (entries) {
+            stats.setSize(entries.size());
+        }
+        stats.setMaxEntries(settings.getMaxEntries());
+        stats.setHits(hits.sum());
+        stats.setMisses(misses.sum());
+        stats.setCoalesced(coalesced.sum());
+        stats.setEvictions(evictions.sum());
+        stats.setExpirations(expirations.sum());
+        return stats;
+    }
+
+    /**
+     * 清空缓存的结果，不影响正在执行的命令
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * 去掉首尾空白，引号外的连续空白合并为一个空格
+     */
+    static String normalize(String command) {
+        String trimmed = command.trim();
+        StringBuilder normalized = new StringBuilder(trimmed.length());
+        char quote = 0;
+        boolean blank = false;
+        for (int i = 0; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if (quote == 0 && Character.isWhitespace(c) && c != '\n') {
+                blank = true;
+                continue;
+            }
+            if (blank) {
+                normalized.append(' ');
+                blank = false;
+            }
+            normalized.append(c);
+            if (c == '\\' && quote != '\'' && i + 1 < trimmed.length()) {
+                normalized.append(trimmed.charAt(++i));
+            } else if (quote == 0 && (c == '\'' || c == '"')) {
+                quote = c;
+            } else if (c == quote) {
+                quote = 0;
+            }
+        }
+        return normalized.toString();
+    }
+
+    private ExecuteResult lookup(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt - System.nanoTime() <= 0) {
+                entries.remove(key);
+                expirations.increment();
+                return null;
+            }
+            return entry.result;
+        }
+    }
+
+    private void store(String key, ExecuteResult result, long ttlMs, int maxEntries) {
+        Entry entry = new Entry(result, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMs));
+        synchronized (entries) {
+            entries.put(key, entry);
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (entries.size() > maxEntries && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private static boolean isCacheable(ExecuteResult result, ShellExecutorConfig.ResultCache settings) {
+        if (!result.isSuccess() || result.isTruncated()) {
+            return false;
+        }
+        long chars = (result.getOutput() == null ? 0 : result.getOutput().length())
+            + (result.getError() == null ? 0 : result.getError().length());
+        return chars <= settings.getMaxResultChars();
+    }
+
+    /**
+     * 调用方可能修改返回的结果，缓存和共享的结果每次返回副本
+     */
+    private static ExecuteResult shared(ExecuteResult source) {
+        ExecuteResult result = new ExecuteResult();
+        result.setExitCode(source.getExitCode());
+        result.setOutput(source.getOutput());
+        result.setError(source.getError());
+        result.setTruncated(source.isTruncated());
+        result.setCached(true);
+        return result;
+    }
+
+    /**
+     * 规则首次使用时编译，配置重新绑定(替换规则列表)后重新编译
+     */
+    private Rules rules(ShellExecutorConfig.ResultCache settings) {
+        Rules current = rules;
+        if (current == null || current.source != settings.getRules()) {
+            current = new Rules(settings.getRules());
+            rules = current;
+        }
+        return current;
+    }
+
+    private static final class Entry {
+        private final ExecuteResult result;
+        private final long expiresAt;
+
+        Entry(ExecuteResult result, long expiresAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class Rules {
+        private final List<ShellExecutorConfig.CacheRule> source;
+        private final List<Pattern> patterns = new ArrayList<>();
+        private final List<Long> ttls = new ArrayList<>();
+
+        Rules(List<ShellExecutorConfig.CacheRule> source) {
+            this.source = source;
+            for (ShellExecutorConfig.CacheRule rule : source) {
+                if (rule.getPattern() == null || rule.getPattern().isEmpty()) {
+                    continue;
+                }
+                try {
+                    patterns.add(Pattern.compile(rule.getPattern()));
+                    ttls.add(rule.getTtlMs());
+                } catch (PatternSyntaxException e) {
+                    log.warn("结果缓存规则无效，已忽略: {} - {}", rule.getPattern(), e.getDescription());
+                }
+            }
+        }
+
+        /**
+         * @return 第一个匹配规则的有效期，没有匹配的规则时返回0
+         */
+        long ttlMs(String command) {
+            for (int i = 0; i < patterns.size(); i++) {
+                if (patterns.get(i).matcher(command).matches()) {
+                    return ttls.get(i);
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.shellexecutor.service;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.model.ExecutorPoolStats;
+import com.example.shellexecutor.util.VirtualThreads;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 命令执行引擎
+ * 使用独立的有界线程池执行阻塞任务，避免占用JVM公共ForkJoinPool；
+ * shell.executor.threading=virtual且运行在Java 21上时改为每个任务一个虚拟线程
+ */
+@Slf4j
+@Component
+public class ExecutionEngine {
+
+    @Autowired
+    private ShellExecutorConfig config;
+
+    private ExecutorService waiterExecutor;
+    private ExecutorService ioExecutor;
+    // 异步等待的超时定时器，只负责唤醒等待者，不执行阻塞任务
+    private ScheduledExecutorService timer;
+    private boolean virtual;
+    private final CountingAbortPolicy waiterRejectionPolicy = new CountingAbortPolicy("shell-waiter");
+    private final CountingAbortPolicy ioRejectionPolicy = new CountingAbortPolicy("shell-io");
+    private final TaskCounter waiterCounter = new TaskCounter();
+    private final TaskCounter ioCounter = new TaskCounter();
+
+    @PostConstruct
+    public void init() {
+        timer = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("shell-timer"));
+        if (config.isVirtualThreading()) {
+            if (VirtualThreads.isSupported()) {
+                virtual = true;
+                waiterExecutor = VirtualThreads.newThreadPerTaskExecutor("shell-waiter");
+                ioExecutor = VirtualThreads.newThreadPerTaskExecutor("shell-io");
+                log.info("执行引擎已启动, 使用虚拟线程");
+                return;
+            }
+            log.warn("当前JVM({})不支持虚拟线程, 使用平台线程池", System.getProperty("java.version"));
+        }
+        ShellExecutorConfig.Engine engine = config.getEngine();
+        waiterExecutor = newPool("shell-waiter", engine.getWaiterCorePoolSize(), engine.getWaiterMaxPoolSize(),
+            engine.getWaiterQueueCapacity(), engine.getKeepAliveMs(), waiterRejectionPolicy);
+        ioExecutor = newPool("shell-io", engine.getIoCorePoolSize(), engine.getIoMaxPoolSize(),
+            engine.getIoQueueCapacity(), engine.getKeepAliveMs(), ioRejectionPolicy);
+        log.info("执行引擎已启动, 等待线程池: {}-{}/{}, IO线程池: {}-{}/{}",
+            engine.getWaiterCorePoolSize(), engine.getWaiterMaxPoolSize(), engine.getWaiterQueueCapacity(),
+            engine.getIoCorePoolSize(), engine.getIoMaxPoolSize(), engine.getIoQueueCapacity());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        waiterExecutor.shutdownNow();
+        ioExecutor.shutdownNow();
+    }
+
+    /**
+     * 提交等待任务(启动进程并等待结束)
+     * @throws RejectedExecutionException 线程池和队列均已满
+     */
+    public void submitWaiter(Runnable task) {
+        waiterExecutor.execute(virtual ? waiterCounter.wrap(task) : task);
+    }
+
+    /**
+     * 提交IO任务(读取进程输出)
+     * @throws RejectedExecutionException 线程池和队列均已满
+     */
+    public CompletableFuture<Void> runIo(Runnable task) {
+        return CompletableFuture.runAsync(virtual ? ioCounter.wrap(task) : task, ioExecutor);
+    }
+
+    /**
+     * 延迟执行任务，在定时器线程上运行，任务不能阻塞
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        return timer.schedule(task, delay, unit);
+    }
+
+    /**
+     * 是否运行在虚拟线程上
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * 等待线程池的线程数上限，虚拟线程时不限制
+     */
+    public int getWaiterMaxThreads() {
+        return virtual ? Integer.MAX_VALUE : ((ThreadPoolExecutor) waiterExecutor).getMaximumPoolSize();
+    }
+
+    /**
+     * 等待线程池中排队的任务数，虚拟线程没有队列时为0
+     */
+    public int getQueueDepth() {
+        return virtual ? 0 : ((ThreadPoolExecutor) waiterExecutor).getQueue().size();
+    }
+
+    public List<ExecutorPoolStats> getStats() {
+        if (virtual) {
+            return Arrays.asList(waiterCounter.toStats("shell-waiter-virtual"), ioCounter.toStats("shell-io-virtual"));
+        }
+        return Arrays.asList(
+            toStats("shell-waiter", waiterExecutor, config.getEngine().getWaiterQueueCapacity(), waiterRejectionPolicy),
+            toStats("shell-io", ioExecutor, config.getEngine().getIoQueueCapacity(), ioRejectionPolicy));
+    }
+
+    private static ExecutorPoolStats toStats(String name, ExecutorService executorService, int queueCapacity,
+                                             CountingAbortPolicy rejectionPolicy) {
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) executorService;
+        ExecutorPoolStats stats = new ExecutorPoolStats();
+        stats.setName(name);
+        stats.setPoolSize(executor.getPoolSize());
+        stats.setCorePoolSize(executor.getCorePoolSize());
+        stats.setMaxPoolSize(executor.getMaximumPoolSize());
+        stats.setActiveCount(executor.getActiveCount());
+        stats.setQueueSize(executor.getQueue().size());
+        stats.setQueueCapacity(Math.max(queueCapacity, 0));
+        stats.setCompletedTaskCount(executor.getCompletedTaskCount());
+        stats.setRejectedCount(rejectionPolicy.getRejectedCount());
+        return stats;
+    }
+
+    /**
+     * ThreadPoolExecutor只在队列已满时才创建超过核心线程数的线程，有界队列时核心线程数取最大线程数，
+     * 线程先增长到上限再排队，空闲超过存活时间的线程(包括核心线程)回收；队列容量为0时直接移交，保留核心线程
+     */
+    private static ThreadPoolExecutor newPool(String name, int coreSize, int maxSize, int queueCapacity,
+                                              long keepAliveMs, RejectedExecutionHandler rejectionPolicy) {
+        int maxThreads = Math.max(coreSize, maxSize);
+        if (queueCapacity <= 0) {
+            return new ThreadPoolExecutor(coreSize, maxThreads, keepAliveMs, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<>(), new NamedThreadFactory(name), rejectionPolicy);
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, keepAliveMs,
+            TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(queueCapacity), new NamedThreadFactory(name),
+            rejectionPolicy);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 拒绝策略：记录拒绝次数并抛出异常，由调用方将执行标记为REJECTED
+     */
+    private static class CountingAbortPolicy implements RejectedExecutionHandler {
+        private final String poolName;
+        private final LongAdder rejectedCount = new LongAdder();
+
+        CountingAbortPolicy(String poolName) {
+            this.poolName = poolName;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            rejectedCount.increment();
+            throw new RejectedExecutionException(poolName + " 线程池已满, 活动线程: "
+                + executor.getActiveCount() + ", 队列长度: " + executor.getQueue().size());
+        }
+
+        long getRejectedCount() {
+            return rejectedCount.sum();
+        }
+    }
+
+    /**
+     * 虚拟线程没有线程池，单独统计运行中和已完成的任务数
+     */
+    private static class TaskCounter {
+        private final AtomicInteger active = new AtomicInteger();
+        private final LongAdder completed = new LongAdder();
+
+        Runnable wrap(Runnable task) {
+            return () -> {
+                active.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    active.decrementAndGet();
+                    completed.increment();
+                }
+            };
+        }
+
+        ExecutorPoolStats toStats(String name) {
+            ExecutorPoolStats stats = new ExecutorPoolStats();
+            stats.setName(name);
+            stats.setPoolSize(active.get());
+            stats.setActiveCount(active.get());
+            stats.setCompletedTaskCount(completed.sum());
+            return stats;
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
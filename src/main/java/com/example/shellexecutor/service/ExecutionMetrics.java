@@ -0,0 +1,279 @@
+package com.example.shellexecutor.service;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.util.OutputSink;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * 执行链路指标
+ * 记录进程启动耗时、首字节耗时、执行耗时、每个输出流的字节数和行数、调度排队耗时、
+ * 被禁止和超时的命令数以及跨节点调用耗时，由Actuator以/actuator/metrics和/actuator/prometheus暴露。
+ * 关闭时不读取时钟，输出接收器也不包装
+ */
+@Slf4j
+@Component
+public class ExecutionMetrics {
+
+    public static final String MODE_SYNC = "sync";
+    public static final String MODE_POOLED = "pooled";
+    public static final String MODE_ASYNC = "async";
+    public static final String STREAM_STDOUT = "stdout";
+    public static final String STREAM_STDERR = "stderr";
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_FAILED = "failed";
+    public static final String OUTCOME_TIMEOUT = "timeout";
+    public static final String OUTCOME_CANCELLED = "cancelled";
+    public static final String OUTCOME_REJECTED = "rejected";
+    public static final String OUTCOME_ERROR = "error";
+    // 未指定节点且尚无负载信息时由注册中心选择节点
+    public static final String NODE_REGISTRY = "registry";
+
+    // 常驻工作进程执行的命令不启动进程，禁止执行的命令在选择执行方式前返回
+    private static final String[] SPAWN_MODES = {MODE_SYNC, MODE_ASYNC};
+
+    @Autowired
+    private ShellExecutorConfig config;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private boolean enabled;
+    private boolean histogram;
+    private final Map<String, Timer> spawnTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> firstByteTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> blockedCounters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> timeoutCounters = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> byteSummaries = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> lineSummaries = new ConcurrentHashMap<>();
+    // 按标签组合缓存，避免每次记录都构建并查找指标
+    private final Map<String, Timer> durationTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> queueWaitTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> routeTimers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        enabled = config.getMetrics().isEnabled();
+        histogram = config.getMetrics().isHistogram();
+        if (!enabled) {
+            // 没有下级注册表的组合注册表不记录任何数据，注册的仪表也不再读取
+            registry = new CompositeMeterRegistry();
+            log.info("执行指标已关闭");
+            return;
+        }
+        for (String mode : SPAWN_MODES) {
+            spawnTimers.put(mode, timer("shell.process.spawn", "启动进程(ProcessBuilder.start)的耗时")
+                .tag("mode", mode).register(registry));
+            firstByteTimers.put(mode, timer("shell.output.first.byte", "从开始启动进程到读到第一个输出字节的耗时")
+                .tag("mode", mode).register(registry));
+            blockedCounters.put(mode, Counter.builder("shell.commands.blocked")
+                .description("被命令策略禁止执行的命令数").tag("mode", mode).register(registry));
+        }
+        for (String mode : new String[]{MODE_SYNC, MODE_POOLED, MODE_ASYNC}) {
+            timeoutCounters.put(mode, Counter.builder("shell.commands.timeout")
+                .description("执行超时被结束的命令数").tag("mode", mode).register(registry));
+        }
+        for (String stream : new String[]{STREAM_STDOUT, STREAM_STDERR}) {
+            byteSummaries.put(stream, DistributionSummary.builder("shell.output.bytes")
+                .description("每个执行一个输出流读取的字节数").baseUnit("bytes").tag("stream", stream)
+                .register(registry));
+            lineSummaries.put(stream, DistributionSummary.builder("shell.output.lines")
+                .description("每个执行一个输出流读取的行数").tag("stream", stream).register(registry));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 注册读取当前值的仪表，关闭时不注册
+     */
+    public void gauge(String name, String description, Supplier<Number> value) {
+        if (enabled) {
+            Gauge.builder(name, value).description(description).strongReference(true).register(registry);
+        }
+    }
+
+    /**
+     * 开始一次命令执行，在启动进程前调用
+     */
+    public Probe start(String mode) {
+        return enabled ? new Probe(this, mode, System.nanoTime()) : Probe.NOOP;
+    }
+
+    public void commandBlocked(String mode) {
+        if (enabled) {
+            blockedCounters.get(mode).increment();
+        }
+    }
+
+    public void commandTimedOut(String mode) {
+        if (enabled) {
+            timeoutCounters.get(mode).increment();
+        }
+    }
+
+    /**
+     * 记录异步命令从入队到出队的耗时
+     */
+    public void recordQueueWait(String priority, long nanos) {
+        if (enabled) {
+            queueWaitTimers.computeIfAbsent(priority, key -> timer("shell.queue.wait", "异步命令在调度队列中的等待耗时")
+                .tag("priority", key).register(registry)).record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 记录一次跨节点调用的耗时
+     * @param node 目标节点(host:port)
+     * @param method 调用的接口方法
+     */
+    public void recordRoute(String node, String method, boolean success, long nanos) {
+        if (enabled) {
+            String outcome = success ? OUTCOME_SUCCESS : OUTCOME_ERROR;
+            routeTimers.computeIfAbsent(node + '|' + method + '|' + outcome, key -> timer("shell.route.call",
+                "通过Dubbo调用目标节点的耗时").tag("node", node).tag("method", method).tag("outcome", outcome)
+                .register(registry)).record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 计时一次同步的跨节点调用
+     */
+    public <T> T timeRoute(String node, String method, Supplier<T> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = call.get();
+            success = true;
+            return result;
+        } finally {
+            recordRoute(node, method, success, System.nanoTime() - start);
+        }
+    }
+
+    private Timer.Builder timer(String name, String description) {
+        Timer.Builder builder = Timer.builder(name).description(description);
+        return histogram ? builder.publishPercentileHistogram() : builder;
+    }
+
+    private Timer durationTimer(String mode, String outcome) {
+        return durationTimers.computeIfAbsent(mode + '|' + outcome, key -> timer("shell.execution.duration",
+            "命令从开始启动进程到结束的耗时").tag("mode", mode).tag("outcome", outcome).register(registry));
+    }
+
+    /**
+     * 一次命令执行的计时，关闭指标时为不记录任何数据的{@link #NOOP}
+     */
+    public static final class Probe {
+
+        static final Probe NOOP = new Probe(null, null, 0);
+
+        private final ExecutionMetrics metrics;
+        private final String mode;
+        private final long startNanos;
+        private final AtomicBoolean firstByte = new AtomicBoolean();
+
+        private Probe(ExecutionMetrics metrics, String mode, long startNanos) {
+            this.metrics = metrics;
+            this.mode = mode;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * 进程已启动
+         */
+        public void spawned() {
+            if (metrics != null) {
+                metrics.spawnTimers.get(mode).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        /**
+         * 包装输出接收器，统计输出流的字节数和行数，两个输出流中先到的第一个字节记为首字节耗时
+         */
+        public OutputSink wrap(String stream, OutputSink sink) {
+            return metrics == null ? sink : new CountingSink(this, stream, sink);
+        }
+
+        /**
+         * 命令已结束
+         */
+        public void finish(String outcome) {
+            if (metrics != null) {
+                metrics.durationTimer(mode, outcome).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void onFirstByte() {
+            if (!firstByte.get() && firstByte.compareAndSet(false, true)) {
+                metrics.firstByteTimers.get(mode).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * 统计一个输出流的接收器，回调由同一线程依次调用，计数无需同步
+     */
+    private static final class CountingSink implements OutputSink {
+        private final Probe probe;
+        private final String stream;
+        private final OutputSink delegate;
+        private long bytes;
+        private long lines;
+        private byte last = '\n';
+
+        CountingSink(Probe probe, String stream, OutputSink delegate) {
+            this.probe = probe;
+            this.stream = stream;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onData(byte[] buffer, int offset, int length) {
+            if (length <= 0) {
+                return;
+            }
+            if (bytes == 0) {
+                probe.onFirstByte();
+            }
+            bytes += length;
+            for (int i = offset, end = offset + length; i < end; i++) {
+                if (buffer[i] == '\n') {
+                    lines++;
+                }
+            }
+            last = buffer[offset + length - 1];
+            delegate.onData(buffer, offset, length);
+        }
+
+        @Override
+        public void onEof() {
+            try {
+                delegate.onEof();
+            } finally {
+                // 没有以换行符结尾的最后一行也计为一行
+                probe.metrics.byteSummaries.get(stream).record(bytes);
+                probe.metrics.lineSummaries.get(stream).record(last == '\n' ? lines : lines + 1);
+            }
+        }
+    }
+}
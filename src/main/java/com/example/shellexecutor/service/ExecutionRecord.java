@@ -0,0 +1,115 @@
+package com.example.shellexecutor.service;
+
+import com.example.shellexecutor.store.LineStore;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 异步执行记录
+ * 保存执行状态和输出存储，对外返回时转换为ShellExecutionOutput或ShellOutputChunk快照
+ */
+@Data
+class ExecutionRecord {
+    private final String executionId;
+    private final String command;
+    private final LineStore stdout;
+    private final LineStore stderr;
+    private final LocalDateTime submitTime = LocalDateTime.now();
+    // 开始执行的时间，排队的执行在出队时更新
+    private volatile LocalDateTime startTime = submitTime;
+    private final AtomicReference<ExecutionState> state = new AtomicReference<>(ExecutionState.RUNNING);
+    
+    ExecutionState getCurrentState() {
+        return state.get();
+    }
+    
+    boolean isFinished() {
+        return state.get().isFinished();
+    }
+    
+    /**
+     * 排队等待调度，只能在开始执行前调用
+     */
+    boolean queue() {
+        return state.compareAndSet(ExecutionState.RUNNING, ExecutionState.QUEUED);
+    }
+    
+    /**
+     * 排队的执行开始运行，记录排队时间
+     * @return 执行已结束(如排队期间被拒绝)时返回false
+     */
+    boolean start() {
+        ExecutionState current = state.get();
+        if (current.isFinished()) {
+            return false;
+        }
+        if (current != ExecutionState.QUEUED) {
+            return true;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        ExecutionState running = new ExecutionState("RUNNING", false, null, null, null, null,
+            ChronoUnit.MILLIS.between(submitTime, now));
+        startTime = now;
+        return state.compareAndSet(current, running) || !state.get().isFinished();
+    }
+    
+    /**
+     * 排队时间(毫秒)，仍在排队时为已等待的时间，未经排队的执行为null
+     */
+    Long getQueueWaitMs() {
+        ExecutionState current = state.get();
+        if (current == ExecutionState.QUEUED) {
+            return ChronoUnit.MILLIS.between(submitTime, LocalDateTime.now());
+        }
+        return current.getQueueWaitMs();
+    }
+    
+    /**
+     * 结束执行，只有第一次调用生效
+     * @return 状态已被其他调用结束时返回false
+     */
+    boolean complete(String status, int exitCode, String errorMessage) {
+        LocalDateTime endTime = LocalDateTime.now();
+        ExecutionState current;
+        ExecutionState completed;
+        do {
+            current = state.get();
+            if (current.isFinished()) {
+                return false;
+            }
+            // 排队期间结束的执行没有运行时间
+            boolean queued = current == ExecutionState.QUEUED;
+            completed = new ExecutionState(status, true, exitCode, endTime,
+                queued ? 0L : ChronoUnit.MILLIS.between(startTime, endTime), errorMessage,
+                queued ? Long.valueOf(ChronoUnit.MILLIS.between(submitTime, endTime)) : current.getQueueWaitMs());
+        } while (!state.compareAndSet(current, completed));
+        return true;
+    }
+    
+    boolean isTruncated() {
+        return stdout.isTruncated() || stderr.isTruncated();
+    }
+    
+    boolean isSpilled() {
+        return stdout.isSpilled() || stderr.isSpilled();
+    }
+    
+    /**
+     * 输出结束，写出转存缓冲区并释放多余内存
+     */
+    void sealOutput() {
+        stdout.seal();
+        stderr.seal();
+    }
+    
+    /**
+     * 释放输出占用的内存和转存文件
+     */
+    void release() {
+        stdout.close();
+        stderr.close();
+    }
+}
@@ -0,0 +1,340 @@
+package com.example.shellexecutor.service;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.model.SchedulerStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * 异步执行调度器
+ * 异步命令先按优先级和调用方入队，同时运行的命令数不超过全局上限(不超过等待线程池的线程数，
+ * 出队的命令不会再在线程池队列中等待)：
+ * 高优先级先于普通和低优先级出队，并保留一部分运行名额只给高优先级使用；
+ * 同一优先级内按调用方轮流出队，每个调用方还可以限制同时运行的命令数，
+ * 大量提交的调用方不会让其他调用方的命令排在其全部命令之后
+ */
+@Slf4j
+@Component
+public class ExecutionScheduler {
+
+    public static final String PRIORITY_HIGH = "high";
+    public static final String PRIORITY_NORMAL = "normal";
+    public static final String PRIORITY_LOW = "low";
+    private static final String[] PRIORITIES = {PRIORITY_HIGH, PRIORITY_NORMAL, PRIORITY_LOW};
+    private static final String DEFAULT_CALLER = "default";
+
+    @Autowired
+    private ShellExecutorConfig config;
+
+    @Autowired
+    private ExecutionEngine executionEngine;
+
+    @Autowired
+    private ShellExecutionManager executionManager;
+
+    @Autowired
+    private ExecutionMetrics metrics;
+
+    // 按优先级从高到低，以下字段均由this保护
+    private final FairQueue[] queues = {new FairQueue(), new FairQueue(), new FairQueue()};
+    private final Map<String, Integer> runningByCaller = new HashMap<>();
+    private int running;
+    private int queued;
+    private long dispatched;
+    private long rejected;
+    private long totalQueueWaitMs;
+    private long maxQueueWaitMs;
+
+    /**
+     * 提交异步执行，执行状态在出队前为QUEUED
+     * @param task 在等待线程中运行，开始运行前执行状态已变为RUNNING
+     */
+    public void submit(String executionId, String caller, String priority, Runnable task) {
+        submit(executionId, caller, priority, 0, task);
+    }
+
+    /**
+     * 提交异步执行，并限制同一调用方同时运行的命令数(如批量执行的并行度)
+     * @param maxRunning 与全局的单个调用方上限取较小值，0表示只使用全局上限
+     */
+    public void submit(String executionId, String caller, String priority, int maxRunning, Runnable task) {
+        ShellExecutorConfig.Scheduler settings = config.getScheduler();
+        Task queuedTask = new Task(executionId, caller == null || caller.isEmpty() ? DEFAULT_CALLER : caller,
+            level(priority), maxRunning, task);
+        // 入队前标记，出队时才能从QUEUED变为RUNNING
+        executionManager.setQueued(executionId);
+        synchronized (this) {
+            if (queued >= settings.getMaxQueued()) {
+                rejected++;
+                queuedTask = null;
+            } else {
+                queues[queuedTask.level].add(queuedTask);
+                queued++;
+            }
+        }
+        if (queuedTask == null) {
+            log.warn("执行队列已满({})，异步命令被拒绝: {}", settings.getMaxQueued(), executionId);
+            executionManager.setRejected(executionId, "执行队列已满，命令被拒绝");
+            return;
+        }
+        dispatch();
+    }
+
+    /**
+     * 从队列中移除尚未启动的执行，执行状态由调用方变更
+     * @return 执行仍在排队时返回true
+     */
+    public synchronized boolean remove(String executionId) {
+        for (FairQueue queue : queues) {
+            if (queue.remove(executionId)) {
+                queued--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 排队等待调度的命令数
+     */
+    public synchronized int getQueued() {
+        return queued;
+    }
+
+    public SchedulerStats getStats() {
+        ShellExecutorConfig.Scheduler settings = config.getScheduler();
+        SchedulerStats stats = new SchedulerStats();
+        stats.setMaxConcurrent(maxConcurrent());
+        stats.setMaxQueued(settings.getMaxQueued());
+        synchronized (this) {
+            stats.setRunning(running);
+            stats.setQueued(queued);
+            Map<String, Integer> queuedByPriority = new LinkedHashMap<>();
+            int callers = 0;
+            for (int i = 0; i < queues.length; i++) {
+                queuedByPriority.put(PRIORITIES[i], queues[i].size);
+                callers += queues[i].byCaller.size();
+            }
+            stats.setQueuedByPriority(queuedByPriority);
+            stats.setQueuedCallers(callers);
+            stats.setDispatched(dispatched);
+            stats.setRejected(rejected);
+            stats.setAverageQueueWaitMs(dispatched == 0 ? 0 : totalQueueWaitMs / dispatched);
+            stats.setMaxQueueWaitMs(maxQueueWaitMs);
+        }
+        return stats;
+    }
+
+    /**
+     * 在有空闲名额时依次启动排队的命令
+     */
+    private void dispatch() {
+        while (true) {
+            List<Task> ready = new ArrayList<>();
+            synchronized (this) {
+                Task task;
+                while ((task = next()) != null) {
+                    ready.add(task);
+                }
+            }
+            if (ready.isEmpty()) {
+                return;
+            }
+            boolean released = false;
+            for (Task task : ready) {
+                if (!start(task)) {
+                    release(task);
+                    released = true;
+                }
+            }
+            if (!released) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 同时运行的命令数上限：配置的上限和等待线程池线程数中较小的一个
+     */
+    private int maxConcurrent() {
+        return Math.max(1, Math.min(config.getScheduler().getMaxConcurrent(), executionEngine.getWaiterMaxThreads()));
+    }
+
+    /**
+     * 取出下一个可以启动的命令并占用名额，调用方持有锁
+     */
+    private Task next() {
+        ShellExecutorConfig.Scheduler settings = config.getScheduler();
+        int maxConcurrent = maxConcurrent();
+        if (running >= maxConcurrent) {
+            return null;
+        }
+        int perCaller = settings.getMaxRunningPerCaller();
+        // 至少保留一个名额给普通和低优先级命令，等待线程池较小时不会让它们永远无法出队
+        int reserved = Math.max(0, Math.min(settings.getHighPriorityReserved(), maxConcurrent - 1));
+        for (int level = 0; level < queues.length; level++) {
+            if (level > 0 && running >= maxConcurrent - reserved) {
+                return null;
+            }
+            Task task = queues[level].poll(head -> {
+                int callerRunning = runningByCaller.getOrDefault(head.caller, 0);
+                return (perCaller <= 0 || callerRunning < perCaller)
+                    && (head.maxRunning <= 0 || callerRunning < head.maxRunning);
+            });
+            if (task != null) {
+                queued--;
+                running++;
+                runningByCaller.merge(task.caller, 1, Integer::sum);
+                long waitNanos = System.nanoTime() - task.enqueueNanos;
+                long waitMs = TimeUnit.NANOSECONDS.toMillis(waitNanos);
+                metrics.recordQueueWait(PRIORITIES[level], waitNanos);
+                dispatched++;
+                totalQueueWaitMs += waitMs;
+                maxQueueWaitMs = Math.max(maxQueueWaitMs, waitMs);
+                return task;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return 未能启动(执行已结束或线程池已满)时返回false，名额由调用方释放
+     */
+    private boolean start(Task task) {
+        if (!executionManager.setStarted(task.executionId)) {
+            log.debug("执行已结束，不再启动: {}", task.executionId);
+            return false;
+        }
+        try {
+            executionEngine.submitWaiter(() -> {
+                try {
+                    task.runnable.run();
+                } finally {
+                    release(task);
+                    dispatch();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.warn("等待线程池已满，异步命令被拒绝: {} - {}", task.executionId, e.getMessage());
+            synchronized (this) {
+                rejected++;
+            }
+            executionManager.setRejected(task.executionId, "执行引擎繁忙，命令被拒绝");
+            return false;
+        }
+    }
+
+    private synchronized void release(Task task) {
+        running--;
+        runningByCaller.computeIfPresent(task.caller, (caller, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * 检查优先级是否有效，为空表示普通优先级
+     * @throws IllegalArgumentException 不支持的优先级
+     */
+    public static void checkPriority(String priority) {
+        level(priority);
+    }
+
+    private static int level(String priority) {
+        if (priority == null || priority.isEmpty()) {
+            return 1;
+        }
+        for (int i = 0; i < PRIORITIES.length; i++) {
+            if (PRIORITIES[i].equalsIgnoreCase(priority)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("不支持的优先级: " + priority);
+    }
+
+    private static final class Task {
+        private final String executionId;
+        private final String caller;
+        private final int level;
+        private final int maxRunning;
+        private final Runnable runnable;
+        private final long enqueueNanos = System.nanoTime();
+
+        Task(String executionId, String caller, int level, int maxRunning, Runnable runnable) {
+            this.executionId = executionId;
+            this.caller = caller;
+            this.level = level;
+            this.maxRunning = maxRunning;
+            this.runnable = runnable;
+        }
+    }
+
+    /**
+     * 同一优先级的排队命令，每个调用方一个先进先出队列，出队时按调用方轮流
+     */
+    private static final class FairQueue {
+        private final Map<String, ArrayDeque<Task>> byCaller = new HashMap<>();
+        // 有排队命令的调用方，队首为下一个出队的调用方
+        private final ArrayDeque<String> rotation = new ArrayDeque<>();
+        private int size;
+
+        void add(Task task) {
+            ArrayDeque<Task> tasks = byCaller.get(task.caller);
+            if (tasks == null) {
+                tasks = new ArrayDeque<>();
+                byCaller.put(task.caller, tasks);
+                rotation.addLast(task.caller);
+            }
+            tasks.addLast(task);
+            size++;
+        }
+
+        /**
+         * 按轮转顺序取出第一个可以运行的调用方的命令
+         * @param runnable 按调用方的队首命令判断该调用方是否可以再启动命令
+         */
+        Task poll(Predicate<Task> runnable) {
+            for (int i = rotation.size(); i > 0; i--) {
+                String caller = rotation.pollFirst();
+                ArrayDeque<Task> tasks = byCaller.get(caller);
+                if (!runnable.test(tasks.peekFirst())) {
+                    rotation.addLast(caller);
+                    continue;
+                }
+                Task task = tasks.pollFirst();
+                if (tasks.isEmpty()) {
+                    byCaller.remove(caller);
+                } else {
+                    rotation.addLast(caller);
+                }
+                size--;
+                return task;
+            }
+            return null;
+        }
+
+        boolean remove(String executionId) {
+            for (Map.Entry<String, ArrayDeque<Task>> entry : byCaller.entrySet()) {
+                ArrayDeque<Task> tasks = entry.getValue();
+                if (tasks.removeIf(task -> task.executionId.equals(executionId))) {
+                    if (tasks.isEmpty()) {
+                        byCaller.remove(entry.getKey());
+                        rotation.remove(entry.getKey());
+                    }
+                    size--;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.shellexecutor.service;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * 执行状态快照
+ * 不可变对象，状态变更时整体替换，读取方一次读取即可得到一致的状态、退出码和结束时间
+ */
+@Value
+class ExecutionState {
+    static final ExecutionState RUNNING = new ExecutionState("RUNNING", false, null, null, null, null, null);
+    static final ExecutionState QUEUED = new ExecutionState("QUEUED", false, null, null, null, null, null);
+    
+    String status;
+    boolean finished;
+    Integer exitCode;
+    LocalDateTime endTime;
+    Long executionTimeMs;
+    String errorMessage;
+    Long queueWaitMs;
+}
@@ -0,0 +1,273 @@
+package com.example.shellexecutor.service;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.model.ExecuteResult;
+import com.example.shellexecutor.model.FanOutNodeResult;
+import com.example.shellexecutor.model.FanOutRequest;
+import com.example.shellexecutor.model.FanOutResult;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.dubbo.common.constants.CommonConstants;
+import org.apache.dubbo.rpc.RpcContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 多节点扇出执行
+ * 通过Dubbo异步调用同时在多个节点上执行同一命令，调用不占用等待线程；
+ * 同时执行的节点数受并发上限限制，一个节点结束后再调用下一个节点，每个节点单独计算超时
+ */
+@Slf4j
+@Service
+public class FanOutService {
+
+    public static final String EVENT_NODE = "node";
+    public static final String EVENT_SUMMARY = "summary";
+
+    @Autowired
+    private ShellExecutorConfig config;
+
+    @Autowired
+    private ShellReferences references;
+
+    @Autowired
+    private NodeRegistry nodeRegistry;
+
+    @Autowired
+    private ExecutionMetrics metrics;
+
+    // 节点超时计时和结果回调都在这个线程上执行，回调因此串行，无需同步
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "shell-fanout");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 执行并等待所有节点返回
+     */
+    public FanOutResult execute(FanOutRequest request) {
+        return start(request, result -> { }).join();
+    }
+
+    /**
+     * 执行并通过SSE推送结果：每个节点返回后发送一个node事件，全部返回后发送summary事件
+     */
+    public SseEmitter stream(FanOutRequest request) {
+        List<String> targets = resolveTargets(request);
+        int concurrency = concurrency(request, targets.size());
+        int waves = (targets.size() + concurrency - 1) / concurrency;
+        SseEmitter emitter = new SseEmitter((waves + 1) * timeoutMs(request));
+        start(request, targets, result -> {
+            try {
+                emitter.send(SseEmitter.event().name(EVENT_NODE).data(result, MediaType.APPLICATION_JSON));
+            } catch (Exception e) {
+                // 客户端断开后其余节点继续执行，只是不再推送
+                log.debug("扇出结果推送失败: {}", e.getMessage());
+            }
+        }).whenComplete((summary, error) -> {
+            try {
+                if (error != null) {
+                    emitter.completeWithError(error);
+                    return;
+                }
+                emitter.send(SseEmitter.event().name(EVENT_SUMMARY).data(summary, MediaType.APPLICATION_JSON));
+                emitter.complete();
+            } catch (Exception e) {
+                log.debug("扇出汇总推送失败: {}", e.getMessage());
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
+    }
+
+    /**
+     * 开始扇出执行
+     * @param listener 每个节点返回后调用，在扇出回调线程上串行执行
+     * @return 所有节点返回后完成
+     */
+    public CompletableFuture<FanOutResult> start(FanOutRequest request, Consumer<FanOutNodeResult> listener) {
+        return start(request, resolveTargets(request), listener);
+    }
+
+    private CompletableFuture<FanOutResult> start(FanOutRequest request, List<String> targets,
+                                                  Consumer<FanOutNodeResult> listener) {
+        if (request.getCommand() == null || request.getCommand().trim().isEmpty()) {
+            throw new IllegalArgumentException("命令不能为空");
+        }
+        int concurrency = concurrency(request, targets.size());
+        log.info("开始扇出执行，节点数 {}，并发 {}: {}", targets.size(), concurrency, request.getCommand());
+        FanOut fanOut = new FanOut(request.getCommand(), targets, timeoutMs(request), listener);
+        if (targets.isEmpty()) {
+            fanOut.done.complete(fanOut.summary());
+        }
+        for (int i = 0; i < concurrency; i++) {
+            fanOut.launchNext();
+        }
+        return fanOut.done;
+    }
+
+    /**
+     * 目标节点：请求中指定的节点去重后按原顺序，未指定时为注册中心中的所有节点
+     */
+    private List<String> resolveTargets(FanOutRequest request) {
+        List<String> targets = request.getTargets() == null || request.getTargets().isEmpty()
+            ? nodeRegistry.getNodes() : new ArrayList<>(new LinkedHashSet<>(request.getTargets()));
+        for (String target : targets) {
+            int separator = target.lastIndexOf(':');
+            if (separator <= 0 || separator == target.length() - 1) {
+                throw new IllegalArgumentException("目标节点格式应为host:port: " + target);
+            }
+        }
+        return targets;
+    }
+
+    private int concurrency(FanOutRequest request, int targetCount) {
+        int concurrency = config.getFanOutMaxConcurrency();
+        if (request.getConcurrency() != null && request.getConcurrency() > 0) {
+            concurrency = Math.min(concurrency, request.getConcurrency());
+        }
+        return Math.max(1, Math.min(concurrency, targetCount));
+    }
+
+    private long timeoutMs(FanOutRequest request) {
+        return request.getTimeoutMs() != null && request.getTimeoutMs() > 0
+            ? request.getTimeoutMs() : config.getFanOutNodeTimeoutMs();
+    }
+
+    private CompletableFuture<ExecuteResult> invoke(String target, String command, long timeoutMs) {
+        try {
+            int separator = target.lastIndexOf(':');
+            String host = target.substring(0, separator);
+            int port = Integer.parseInt(target.substring(separator + 1));
+            // 本次调用的Dubbo超时与节点超时一致，超时后释放调用占用的资源
+            RpcContext.getClientAttachment().setAttachment(CommonConstants.TIMEOUT_KEY, String.valueOf(timeoutMs));
+            return references.get(host, port).executeCommandFuture(command);
+        } catch (RuntimeException e) {
+            CompletableFuture<ExecuteResult> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    /**
+     * 一次扇出执行的状态
+     */
+    private class FanOut {
+        private final String command;
+        private final List<String> targets;
+        private final long timeoutMs;
+        private final Consumer<FanOutNodeResult> listener;
+        private final FanOutNodeResult[] results;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger remaining;
+        private final long startTime = System.currentTimeMillis();
+        private final CompletableFuture<FanOutResult> done = new CompletableFuture<>();
+
+        FanOut(String command, List<String> targets, long timeoutMs, Consumer<FanOutNodeResult> listener) {
+            this.command = command;
+            this.targets = targets;
+            this.timeoutMs = timeoutMs;
+            this.listener = listener;
+            this.results = new FanOutNodeResult[targets.size()];
+            this.remaining = new AtomicInteger(targets.size());
+        }
+
+        void launchNext() {
+            int index = next.getAndIncrement();
+            if (index >= targets.size()) {
+                return;
+            }
+            String target = targets.get(index);
+            long start = System.nanoTime();
+            // 调用返回和超时先到者生效
+            CompletableFuture<FanOutNodeResult> node = new CompletableFuture<>();
+            ScheduledFuture<?> timeout = scheduler.schedule(() -> node.complete(
+                nodeResult(target, FanOutNodeResult.STATUS_TIMEOUT, null, "节点执行超时", start)),
+                timeoutMs, TimeUnit.MILLISECONDS);
+            invoke(target, command, timeoutMs).whenComplete((result, error) -> {
+                timeout.cancel(false);
+                metrics.recordRoute(target, "executeCommandFuture", error == null, System.nanoTime() - start);
+                if (error != null) {
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    node.complete(nodeResult(target, FanOutNodeResult.STATUS_ERROR, null, cause.getMessage(), start));
+                } else {
+                    node.complete(nodeResult(target, result.isSuccess()
+                        ? FanOutNodeResult.STATUS_SUCCESS : FanOutNodeResult.STATUS_FAILED, result, null, start));
+                }
+            });
+            // 在扇出线程上处理结果，调用同步失败时也不会在当前线程递归调用下一个节点
+            node.thenAcceptAsync(result -> finish(index, result), scheduler);
+        }
+
+        private void finish(int index, FanOutNodeResult result) {
+            results[index] = result;
+            try {
+                listener.accept(result);
+            } catch (RuntimeException e) {
+                log.warn("处理扇出结果失败 {}: {}", result.getNode(), e.getMessage());
+            }
+            launchNext();
+            if (remaining.decrementAndGet() == 0) {
+                FanOutResult summary = summary();
+                log.info("扇出执行完成，成功 {}，失败 {}，超时 {}，耗时 {}ms: {}", summary.getSucceeded(),
+                    summary.getFailed(), summary.getTimedOut(), summary.getExecutionTimeMs(), command);
+                done.complete(summary);
+            }
+        }
+
+        FanOutResult summary() {
+            FanOutResult summary = new FanOutResult();
+            summary.setCommand(command);
+            summary.setTotal(targets.size());
+            for (FanOutNodeResult result : results) {
+                if (FanOutNodeResult.STATUS_SUCCESS.equals(result.getStatus())) {
+                    summary.setSucceeded(summary.getSucceeded() + 1);
+                } else if (FanOutNodeResult.STATUS_TIMEOUT.equals(result.getStatus())) {
+                    summary.setTimedOut(summary.getTimedOut() + 1);
+                } else {
+                    summary.setFailed(summary.getFailed() + 1);
+                }
+            }
+            summary.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+            summary.setResults(Arrays.asList(results));
+            return summary;
+        }
+    }
+
+    private static FanOutNodeResult nodeResult(String target, String status, ExecuteResult result,
+                                               String errorMessage, long startNanos) {
+        FanOutNodeResult nodeResult = new FanOutNodeResult();
+        nodeResult.setNode(target);
+        nodeResult.setStatus(status);
+        nodeResult.setResult(result);
+        nodeResult.setErrorMessage(errorMessage);
+        nodeResult.setElapsedMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        return nodeResult;
+    }
+}
@@ -0,0 +1,354 @@
+package com.example.shellexecutor.service;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.model.FileChunk;
+import com.example.shellexecutor.model.FileTransferResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/**
+ * 本节点的文件传输：在文件通道和连接之间直接复制(transferTo/transferFrom)，不经过行解码和字符串，
+ * 内存占用与文件大小无关；跨节点传输通过{@link #readChunk}和{@link #writeChunk}按数据块读写
+ */
+@Slf4j
+@Service
+public class FileTransferService {
+
+    public static final String CRC32 = "CRC32";
+
+    // 单次transferTo/transferFrom的字节数上限，每次返回后检查进度
+    private static final long TRANSFER_BYTES = 8L * 1024 * 1024;
+
+    // 计算校验值时的读取缓冲区大小
+    private static final int CHECKSUM_BUFFER_BYTES = 64 * 1024;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    @Autowired
+    private ShellExecutorConfig config;
+
+    /**
+     * 解析要读取的文件，必须是允许目录下已存在的普通文件
+     */
+    public Path resolveExisting(String path) {
+        Path real;
+        try {
+            real = checkedPath(path).toRealPath();
+        } catch (NoSuchFileException e) {
+            throw new IllegalArgumentException("文件不存在: " + path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        checkAllowed(real, path);
+        if (!Files.isRegularFile(real)) {
+            throw new IllegalArgumentException("不是普通文件: " + path);
+        }
+        return real;
+    }
+
+    /**
+     * 解析要写入的文件，所在目录必须存在且位于允许目录下，文件已存在时不能是符号链接或目录
+     */
+    private Path resolveWritable(String path) {
+        Path file = checkedPath(path);
+        Path parent = file.getParent();
+        if (parent == null) {
+            throw new IllegalArgumentException("不是普通文件: " + path);
+        }
+        Path real;
+        try {
+            real = parent.toRealPath().resolve(file.getFileName());
+        } catch (NoSuchFileException e) {
+            throw new IllegalArgumentException("目录不存在: " + parent);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        checkAllowed(real, path);
+        if (Files.isSymbolicLink(real) || Files.isDirectory(real, LinkOption.NOFOLLOW_LINKS)) {
+            throw new IllegalArgumentException("不是普通文件: " + path);
+        }
+        return real;
+    }
+
+    private Path checkedPath(String path) {
+        if (config.getFileTransfer().getRoots().isEmpty()) {
+            throw new IllegalArgumentException("未配置允许传输的目录，文件传输已禁用");
+        }
+        if (path == null || path.trim().isEmpty()) {
+            throw new IllegalArgumentException("文件路径不能为空");
+        }
+        Path file = Paths.get(path);
+        if (!file.isAbsolute()) {
+            throw new IllegalArgumentException("文件路径必须是绝对路径: " + path);
+        }
+        return file.normalize();
+    }
+
+    /**
+     * 解析符号链接后的路径必须位于某个允许目录下，防止通过..或链接访问目录外的文件
+     */
+    private void checkAllowed(Path real, String path) {
+        for (String root : config.getFileTransfer().getRoots()) {
+            Path rootPath = Paths.get(root).toAbsolutePath().normalize();
+            try {
+                rootPath = rootPath.toRealPath();
+            } catch (IOException e) {
+                // 不存在的允许目录下没有文件，按配置的路径比较
+            }
+            if (real.startsWith(rootPath) && !real.equals(rootPath)) {
+                return;
+            }
+        }
+        throw new IllegalArgumentException("文件不在允许传输的目录下: " + path);
+    }
+
+    /**
+     * 读取已解析文件的大小和修改时间，不读取数据
+     */
+    public FileChunk stat(Path file) {
+        FileChunk chunk = new FileChunk();
+        chunk.setPath(file.toString());
+        chunk.setData(new byte[0]);
+        try {
+            chunk.setFileSize(Files.size(file));
+            chunk.setLastModified(Files.getLastModifiedTime(file).toMillis());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return chunk;
+    }
+
+    /**
+     * 将文件[offset, offset + length)范围的内容写入目标通道
+     * 目标是套接字通道时由内核直接复制，其他通道由JDK以固定大小的缓冲区复制
+     * @return 写入的字节数，文件在传输过程中变短时少于length
+     */
+    public long transferTo(Path file, long offset, long length, WritableByteChannel target) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = offset;
+            long end = offset + length;
+            while (position < end) {
+                long transferred = channel.transferTo(position, Math.min(end - position, TRANSFER_BYTES), target);
+                if (transferred <= 0) {
+                    // 已到达文件末尾
+                    break;
+                }
+                position += transferred;
+            }
+            return position - offset;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 从源通道读取到结束，写入文件的offset位置，文件截断到写入的末尾
+     * offset为0时覆盖整个文件，大于0时保留offset之前的内容(续传)，不能超过当前文件大小；
+     * 写入前先截断到offset，上传中断时文件大小即为已写入的末尾，可以从该位置续传
+     * @param algorithm 校验算法，不为null时返回写入范围的校验值
+     */
+    public FileTransferResult upload(String path, long offset, ReadableByteChannel source, String algorithm) {
+        Path file = resolveWritable(path);
+        MessageDigest digest = algorithm == null ? null : digest(algorithm);
+        long written;
+        try (FileChannel channel = openForWrite(file, offset)) {
+            channel.truncate(offset);
+            long position = offset;
+            while (true) {
+                long transferred = channel.transferFrom(source, position, TRANSFER_BYTES);
+                if (transferred <= 0) {
+                    // 源通道已结束
+                    break;
+                }
+                position += transferred;
+            }
+            written = position - offset;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("文件上传完成: {}, 起始位置: {}, 写入字节数: {}", file, offset, written);
+        return result(path, file, offset, written, algorithm, digest);
+    }
+
+    /**
+     * 读取文件offset位置开始的一个数据块，用于跨节点下载
+     * @param length 读取的字节数，超过数据块上限时按上限读取，0时只返回文件信息
+     */
+    public FileChunk readChunk(String path, long offset, int length) {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("offset和length不能为负数");
+        }
+        Path file = resolveExisting(path);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int count = (int) Math.max(0, Math.min(Math.min(length, config.getFileTransfer().getChunkBytes()),
+                size - offset));
+            ByteBuffer buffer = ByteBuffer.allocate(count);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            FileChunk chunk = new FileChunk();
+            chunk.setPath(path);
+            chunk.setOffset(offset);
+            chunk.setData(buffer.position() == count ? buffer.array()
+                : Arrays.copyOf(buffer.array(), buffer.position()));
+            chunk.setFileSize(size);
+            chunk.setLastModified(Files.getLastModifiedTime(file).toMillis());
+            return chunk;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 将数据块写入文件的offset位置，文件截断到写入的末尾，用于跨节点上传
+     * offset的限制与{@link #upload}相同，依次写入各数据块即得到完整文件
+     */
+    public FileTransferResult writeChunk(String path, long offset, byte[] data) {
+        Path file = resolveWritable(path);
+        if (data == null) {
+            data = new byte[0];
+        }
+        try (FileChannel channel = openForWrite(file, offset)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, offset + buffer.position());
+            }
+            channel.truncate(offset + data.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result(path, file, offset, data.length, null, null);
+    }
+
+    /**
+     * 计算文件[offset, offset + length)范围的校验值
+     * @param length 小于0时到文件末尾
+     */
+    public FileTransferResult checksum(String path, String algorithm, long offset, long length) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset不能为负数");
+        }
+        Path file = resolveExisting(path);
+        MessageDigest digest = digest(algorithm);
+        long size;
+        try {
+            size = Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long end = length < 0 ? size : Math.min(size, offset + length);
+        return result(path, file, offset, Math.max(0, end - offset), algorithm, digest);
+    }
+
+    private FileTransferResult result(String path, Path file, long offset, long length, String algorithm,
+                                      MessageDigest digest) {
+        FileTransferResult result = new FileTransferResult();
+        result.setPath(path);
+        result.setOffset(offset);
+        result.setLength(length);
+        try {
+            result.setFileSize(Files.size(file));
+            result.setLastModified(Files.getLastModifiedTime(file).toMillis());
+            if (algorithm != null) {
+                result.setAlgorithm(algorithm.toUpperCase(Locale.ROOT));
+                result.setChecksum(checksum(file, offset, length, digest));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result;
+    }
+
+    /**
+     * 以固定大小的直接缓冲区读取并计算校验值，刚写入的数据通常仍在页缓存中
+     * @param digest 为null时计算CRC32
+     */
+    private static String checksum(Path file, long offset, long length, MessageDigest digest) throws IOException {
+        CRC32 crc = digest == null ? new CRC32() : null;
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) Math.min(CHECKSUM_BUFFER_BYTES, Math.max(length, 1)));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = offset;
+            long end = offset + length;
+            while (position < end) {
+                buffer.clear();
+                if (end - position < buffer.capacity()) {
+                    buffer.limit((int) (end - position));
+                }
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+                buffer.flip();
+                if (crc != null) {
+                    crc.update(buffer);
+                } else {
+                    digest.update(buffer);
+                }
+                position += read;
+            }
+        }
+        if (crc != null) {
+            return String.format("%08x", crc.getValue());
+        }
+        byte[] bytes = digest.digest();
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * 校验算法: CRC32或JDK支持的摘要算法(MD5、SHA-1、SHA-256等)，CRC32时返回null
+     */
+    private static MessageDigest digest(String algorithm) {
+        if (algorithm == null || algorithm.trim().isEmpty()) {
+            throw new IllegalArgumentException("校验算法不能为空");
+        }
+        if (CRC32.equalsIgnoreCase(algorithm)) {
+            return null;
+        }
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("不支持的校验算法: " + algorithm);
+        }
+    }
+
+    /**
+     * 打开要写入的文件，offset不能超过当前文件大小，避免在文件中留下空洞
+     */
+    private static FileChannel openForWrite(Path file, long offset) throws IOException {
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset不能为负数");
+        }
+        long size = Files.exists(file) ? Files.size(file) : 0;
+        if (offset > size) {
+            throw new IllegalArgumentException("offset超过文件大小: " + offset + " > " + size);
+        }
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.shellexecutor.service;
+
+import com.alibaba.nacos.api.PropertyKeyConst;
+import com.alibaba.nacos.api.exception.NacosException;
+import com.alibaba.nacos.api.naming.NamingFactory;
+import com.alibaba.nacos.api.naming.NamingService;
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.example.shellexecutor.api.ShellExecutorService;
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.model.NodeLoad;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.dubbo.common.constants.CommonConstants;
+import org.apache.dubbo.rpc.RpcContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 执行器节点列表和节点负载
+ * 从Nacos查询ShellExecutorService的Dubbo提供者，注册中心不是Nacos时节点列表为空。
+ * 节点列表和每个节点的负载由后台线程定期刷新并缓存在本地，查询节点和选择节点时不发起远程调用
+ */
+@Slf4j
+@Component
+public class NodeRegistry {
+
+    private static final String NACOS_PREFIX = "nacos://";
+    // Dubbo接口级注册在Nacos中的服务名
+    private static final String PROVIDER_SERVICE = "providers:" + ShellExecutorService.class.getName() + ":1.0.0:";
+
+    @Value("${dubbo.registry.address:}")
+    private String registryAddress;
+
+    @Value("${dubbo.registry.parameters.namespace:public}")
+    private String namespace;
+
+    @Value("${dubbo.registry.parameters.group:DEFAULT_GROUP}")
+    private String group;
+
+    @Autowired
+    private ShellExecutorConfig config;
+
+    @Autowired
+    private ShellReferences references;
+
+    private NamingService namingService;
+    private ScheduledExecutorService scheduler;
+
+    // 最近一次刷新的结果，每次刷新整体替换
+    private volatile List<String> nodes = Collections.emptyList();
+    private volatile Map<String, NodeState> states = Collections.emptyMap();
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "shell-nodes");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refresh, 0, config.getRoute().getNodeRefreshMs(),
+            TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 健康的执行器节点
+     * @return 节点地址"host:port"，按地址排序
+     */
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * 各节点最近一次查询到的负载，顺序与节点列表一致
+     */
+    public List<NodeLoad> getLoads() {
+        List<NodeLoad> loads = new ArrayList<>();
+        for (NodeState state : states.values()) {
+            loads.add(state.load);
+        }
+        return loads;
+    }
+
+    /**
+     * 选择负载最低的节点
+     * 按(运行中命令数 + 排队任务数 + 本地已分配数) / CPU核数比较，相同时比较每核系统负载；
+     * 本地已分配数为上次刷新后选择该节点的次数，避免两次刷新之间的请求全部落到同一节点
+     * @return 节点地址"host:port"，没有可用节点时为null
+     */
+    public String selectLeastLoaded() {
+        NodeState selected = null;
+        double selectedScore = 0;
+        for (NodeState state : states.values()) {
+            if (!state.load.isAvailable()) {
+                continue;
+            }
+            double score = state.score();
+            if (selected == null || score < selectedScore
+                || score == selectedScore && state.systemLoadPerCpu() < selected.systemLoadPerCpu()) {
+                selected = state;
+                selectedScore = score;
+            }
+        }
+        if (selected == null) {
+            return null;
+        }
+        selected.assigned.incrementAndGet();
+        return selected.load.getNode();
+    }
+
+    private void refresh() {
+        try {
+            List<String> current = queryNodes();
+            if (current != null) {
+                nodes = current;
+            }
+            refreshLoads(nodes);
+        } catch (RuntimeException e) {
+            log.warn("刷新执行器节点失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 并发查询所有节点的负载，全部返回或超时后替换缓存
+     * 查询前固定节点的引用，节点数超过引用缓存上限时也不会在每次刷新时互相淘汰并重新连接
+     */
+    void refreshLoads(List<String> targets) {
+        references.pin(targets);
+        long timeoutMs = config.getRoute().getLoadTimeoutMs();
+        List<CompletableFuture<NodeLoad>> futures = new ArrayList<>();
+        for (String target : targets) {
+            futures.add(queryLoad(target, timeoutMs));
+        }
+        Map<String, NodeState> refreshed = new LinkedHashMap<>();
+        for (int i = 0; i < targets.size(); i++) {
+            NodeLoad load;
+            try {
+                load = futures.get(i).get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                log.debug("查询节点负载失败 {}: {}", targets.get(i), e.getMessage());
+                load = new NodeLoad();
+                load.setAvailable(false);
+                load.setUpdateTime(System.currentTimeMillis());
+            }
+            load.setNode(targets.get(i));
+            refreshed.put(targets.get(i), new NodeState(load));
+        }
+        states = refreshed;
+    }
+
+    private CompletableFuture<NodeLoad> queryLoad(String target, long timeoutMs) {
+        try {
+            int separator = target.lastIndexOf(':');
+            ShellExecutorService node = references.get(target.substring(0, separator),
+                Integer.parseInt(target.substring(separator + 1)));
+            RpcContext.getClientAttachment().setAttachment(CommonConstants.TIMEOUT_KEY, String.valueOf(timeoutMs));
+            return RpcContext.getServiceContext().asyncCall(node::getLoad);
+        } catch (RuntimeException e) {
+            CompletableFuture<NodeLoad> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    /**
+     * 从Nacos查询健康的节点
+     * @return 节点地址，按地址排序；查询失败时为null，保留上次的节点列表
+     */
+    private List<String> queryNodes() {
+        NamingService naming = namingService();
+        if (naming == null) {
+            return Collections.emptyList();
+        }
+        try {
+            List<String> current = new ArrayList<>();
+            for (Instance instance : naming.selectInstances(PROVIDER_SERVICE, group, true)) {
+                current.add(instance.getIp() + ":" + instance.getPort());
+            }
+            Collections.sort(current);
+            return current;
+        } catch (NacosException e) {
+            log.warn("从Nacos查询执行器节点失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private synchronized NamingService namingService() {
+        if (namingService != null || registryAddress == null || !registryAddress.startsWith(NACOS_PREFIX)) {
+            return namingService;
+        }
+        String serverAddr = registryAddress.substring(NACOS_PREFIX.length());
+        int query = serverAddr.indexOf('?');
+        if (query >= 0) {
+            serverAddr = serverAddr.substring(0, query);
+        }
+        Properties properties = new Properties();
+        properties.setProperty(PropertyKeyConst.SERVER_ADDR, serverAddr);
+        properties.setProperty(PropertyKeyConst.NAMESPACE, namespace);
+        try {
+            namingService = NamingFactory.createNamingService(properties);
+        } catch (NacosException e) {
+            log.warn("连接Nacos失败 {}: {}", serverAddr, e.getMessage());
+        }
+        return namingService;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() throws NacosException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (namingService != null) {
+            namingService.shutDown();
+        }
+    }
+
+    private static class NodeState {
+        private final NodeLoad load;
+        private final AtomicInteger assigned = new AtomicInteger();
+
+        NodeState(NodeLoad load) {
+            this.load = load;
+        }
+
+        double score() {
+            return (double) (load.getRunningCommands() + load.getQueueDepth() + assigned.get())
+                / Math.max(1, load.getAvailableProcessors());
+        }
+
+        double systemLoadPerCpu() {
+            return Math.max(0, load.getSystemLoad()) / Math.max(1, load.getAvailableProcessors());
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.shellexecutor.service;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.util.OutputSink;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 进程输出泵
+ * 由少量固定线程轮询所有子进程的输出管道，替代每个输出流独占一个阻塞读取线程。
+ * 进程管道在JDK中不是SelectableChannel，因此通过available()判断可读字节后再读取，
+ * 读取时不会阻塞；所有管道都没有数据时线程逐步退避休眠。
+ */
+@Slf4j
+@Component
+public class OutputPump {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final int SPIN_ROUNDS = 64;
+
+    @Autowired
+    private ShellExecutorConfig config;
+
+    private PumpWorker[] workers;
+    private final AtomicInteger nextWorker = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        ShellExecutorConfig.Engine engine = config.getEngine();
+        long maxParkNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, engine.getPumpMaxParkMs()));
+        workers = new PumpWorker[Math.max(1, engine.getPumpThreads())];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new PumpWorker("shell-output-pump-" + (i + 1), maxParkNanos);
+            workers[i].start();
+        }
+        log.info("输出泵已启动, 线程数: {}", workers.length);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (PumpWorker worker : workers) {
+            worker.running = false;
+            LockSupport.unpark(worker);
+        }
+    }
+
+    /**
+     * 注册一个进程输出流
+     * @param process 输出流所属进程，进程退出且管道已读空时视为输出结束
+     * @param inputStream 进程的标准输出或错误输出
+     * @param sink 输出接收器，始终在同一个泵线程中回调
+     * @return 输出流读取结束时完成
+     */
+    public CompletableFuture<Void> register(Process process, InputStream inputStream, OutputSink sink) {
+        PumpChannel channel = new PumpChannel(process, inputStream, sink);
+        PumpWorker worker = workers[Math.floorMod(nextWorker.getAndIncrement(), workers.length)];
+        worker.registrations.offer(channel);
+        LockSupport.unpark(worker);
+        return channel.completion;
+    }
+
+    /**
+     * 当前正在读取的输出流数量
+     */
+    public int getActiveChannels() {
+        int count = 0;
+        for (PumpWorker worker : workers) {
+            count += worker.activeCount;
+        }
+        return count;
+    }
+
+    private static class PumpChannel {
+        private final Process process;
+        private final InputStream inputStream;
+        private final OutputSink sink;
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+        PumpChannel(Process process, InputStream inputStream, OutputSink sink) {
+            this.process = process;
+            this.inputStream = inputStream;
+            this.sink = sink;
+        }
+
+        /**
+         * 读取当前可用的数据，不会阻塞
+         * @return 读取到的字节数，-1表示输出已结束
+         */
+        int poll(byte[] buffer) throws IOException {
+            // 必须先判断进程是否存活：进程退出后其输出已全部写入管道，此时可读字节为0即表示读完
+            boolean exited = !process.isAlive();
+            int available = inputStream.available();
+            if (available <= 0) {
+                return exited ? -1 : 0;
+            }
+            int read = inputStream.read(buffer, 0, Math.min(available, buffer.length));
+            if (read > 0) {
+                sink.onData(buffer, 0, read);
+            }
+            return read;
+        }
+
+        void close(Throwable error) {
+            try {
+                inputStream.close();
+            } catch (IOException ignored) {
+                // 关闭失败不影响结果
+            }
+            try {
+                sink.onEof();
+            } catch (RuntimeException e) {
+                log.warn("输出接收器处理结束事件失败: {}", e.getMessage(), e);
+            }
+            if (error == null) {
+                completion.complete(null);
+            } else {
+                completion.completeExceptionally(error);
+            }
+        }
+    }
+
+    private static class PumpWorker extends Thread {
+        private final Queue<PumpChannel> registrations = new ConcurrentLinkedQueue<>();
+        private final List<PumpChannel> channels = new ArrayList<>();
+        private final byte[] buffer = new byte[READ_BUFFER_SIZE];
+        private final long maxParkNanos;
+        private volatile boolean running = true;
+        private volatile int activeCount;
+
+        PumpWorker(String name, long maxParkNanos) {
+            super(name);
+            this.maxParkNanos = maxParkNanos;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long parkNanos = MIN_PARK_NANOS;
+            int idleRounds = 0;
+            while (running) {
+                PumpChannel registered;
+                while ((registered = registrations.poll()) != null) {
+                    channels.add(registered);
+                }
+                boolean progressed = false;
+                Iterator<PumpChannel> iterator = channels.iterator();
+                while (iterator.hasNext()) {
+                    PumpChannel channel = iterator.next();
+                    try {
+                        int read = channel.poll(buffer);
+                        if (read < 0) {
+                            iterator.remove();
+                            channel.close(null);
+                        } else if (read > 0) {
+                            progressed = true;
+                        }
+                    } catch (IOException e) {
+                        // 输出流被关闭(例如进程被强制终止)
+                        iterator.remove();
+                        channel.close(null);
+                    } catch (RuntimeException e) {
+                        log.error("处理进程输出失败: {}", e.getMessage(), e);
+                        iterator.remove();
+                        channel.close(e);
+                    }
+                }
+                activeCount = channels.size();
+                if (progressed) {
+                    parkNanos = MIN_PARK_NANOS;
+                    idleRounds = 0;
+                } else if (!channels.isEmpty() && ++idleRounds < SPIN_ROUNDS) {
+                    // 刚有数据的管道通常很快会再次可读，先让出CPU再进入休眠
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(this, channels.isEmpty() ? maxParkNanos * 100 : parkNanos);
+                    parkNanos = Math.min(parkNanos << 1, maxParkNanos);
+                }
+            }
+            for (PumpChannel channel : channels) {
+                channel.close(null);
+            }
+        }
+    }
+}
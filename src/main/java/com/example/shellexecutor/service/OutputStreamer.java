@@ -0,0 +1,164 @@
+package com.example.shellexecutor.service;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.model.ShellOutputChunk;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 命令输出推送
+ * 通过Server-Sent Events推送新增输出：stdout/stderr事件的每个data行对应一行输出，
+ * 执行结束后发送exit事件。等待新输出期间不占用线程，收到输出后在IO线程池上发送，
+ * 每次发送都会阻塞到写入客户端后才等待下一批输出，慢客户端不会导致服务端缓存输出。
+ */
+@Slf4j
+@Service
+public class OutputStreamer {
+
+    public static final String EVENT_STDOUT = "stdout";
+    public static final String EVENT_STDERR = "stderr";
+    public static final String EVENT_EXIT = "exit";
+    public static final String EVENT_ERROR = "error";
+
+    private static final MediaType TEXT_PLAIN_UTF8 = new MediaType("text", "plain", StandardCharsets.UTF_8);
+
+    @Autowired
+    private ShellExecutorConfig config;
+
+    @Autowired
+    private ExecutionEngine executionEngine;
+
+    /**
+     * 输出来源：等待偏移量之后的新输出，超时返回不含新行的结果，执行不存在时结果为null
+     */
+    public interface ChunkSource {
+        CompletableFuture<ShellOutputChunk> next(long stdoutOffset, long stderrOffset, long waitMs);
+    }
+
+    /**
+     * 打开SSE推送
+     * @param lastEventId 客户端断线重连时的Last-Event-ID，格式为"标准输出偏移量:错误输出偏移量"，优先于偏移量参数
+     */
+    public SseEmitter openSse(ChunkSource source, long stdoutOffset, long stderrOffset, String lastEventId) {
+        long[] offsets = parseEventId(lastEventId);
+        long startStdout = offsets != null ? offsets[0] : stdoutOffset;
+        long startStderr = offsets != null ? offsets[1] : stderrOffset;
+
+        SseEmitter emitter = new SseEmitter(config.getCommandTimeoutMs() + config.getStreamHeartbeatMs());
+        pump(source, startStdout, startStderr, emitter);
+        return emitter;
+    }
+
+    /**
+     * 等待下一批输出，完成后在IO线程上发送
+     */
+    private void pump(ChunkSource source, long stdoutOffset, long stderrOffset, SseEmitter emitter) {
+        CompletableFuture<ShellOutputChunk> next;
+        try {
+            next = source.next(stdoutOffset, stderrOffset, config.getStreamHeartbeatMs());
+        } catch (RuntimeException e) {
+            log.debug("输出推送结束: {}", e.getMessage());
+            emitter.completeWithError(e);
+            return;
+        }
+        next.whenComplete((chunk, error) -> {
+            try {
+                executionEngine.runIo(() -> send(source, chunk, error, emitter));
+            } catch (RejectedExecutionException e) {
+                log.warn("IO线程池已满，无法推送输出: {}", e.getMessage());
+                emitter.completeWithError(e);
+            }
+        });
+    }
+
+    private void send(ChunkSource source, ShellOutputChunk chunk, Throwable error, SseEmitter emitter) {
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            log.debug("输出推送结束: {}", cause.getMessage());
+            emitter.completeWithError(cause);
+            return;
+        }
+        try {
+            if (chunk == null) {
+                emitter.send(SseEmitter.event().name(EVENT_ERROR).data("执行不存在或已过期", TEXT_PLAIN_UTF8));
+                emitter.complete();
+                return;
+            }
+            long stdoutOffset = chunk.getNextStdoutOffset();
+            long stderrOffset = chunk.getNextStderrOffset();
+            String eventId = stdoutOffset + ":" + stderrOffset;
+            boolean sent = sendLines(emitter, EVENT_STDOUT, chunk.getOutputLines(), eventId);
+            sent |= sendLines(emitter, EVENT_STDERR, chunk.getErrorLines(), eventId);
+            if (Boolean.TRUE.equals(chunk.getFinished()) && !chunk.isHasMore()) {
+                Map<String, Object> exit = new HashMap<>();
+                exit.put("exitCode", chunk.getExitCode());
+                exit.put("status", chunk.getStatus());
+                exit.put("errorMessage", chunk.getErrorMessage());
+                emitter.send(SseEmitter.event().name(EVENT_EXIT).id(eventId).data(exit, MediaType.APPLICATION_JSON));
+                emitter.complete();
+                return;
+            }
+            if (!sent) {
+                // 心跳，同时用于发现已断开的客户端
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+            }
+            pump(source, stdoutOffset, stderrOffset, emitter);
+        } catch (Exception e) {
+            // 客户端断开时发送失败属于正常情况
+            log.debug("输出推送结束: {}", e.getMessage());
+            emitter.completeWithError(e);
+        }
+    }
+
+    /**
+     * 一批输出作为一个事件发送，每行对应一个data字段
+     * 行间直接拼接"\ndata:"，避免逐行调用data()导致每行单独写出和刷新
+     */
+    private static boolean sendLines(SseEmitter emitter, String eventName, List<String> lines, String eventId)
+            throws IOException {
+        if (lines == null || lines.isEmpty()) {
+            return false;
+        }
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (i > 0) {
+                data.append("\ndata:");
+            }
+            // SSE中\r也是行结束符
+            data.append(line.indexOf('\r') >= 0 ? line.replace('\r', ' ') : line);
+        }
+        emitter.send(SseEmitter.event().name(eventName).id(eventId).data(data.toString(), TEXT_PLAIN_UTF8));
+        return true;
+    }
+
+    private static long[] parseEventId(String eventId) {
+        if (eventId == null) {
+            return null;
+        }
+        int separator = eventId.indexOf(':');
+        if (separator <= 0) {
+            return null;
+        }
+        try {
+            return new long[]{
+                Long.parseLong(eventId.substring(0, separator)),
+                Long.parseLong(eventId.substring(separator + 1))
+            };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -2,96 +2,508 @@ package com.example.shellexecutor.service;
 
 import com.example.shellexecutor.config.ShellExecutorConfig;
 import com.example.shellexecutor.model.ShellExecutionOutput;
+import com.example.shellexecutor.model.ShellOutputChunk;
+import com.example.shellexecutor.store.ExecutionJournal;
+import com.example.shellexecutor.store.OutputBudget;
+import com.example.shellexecutor.store.OutputQuota;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+
+import javax.annotation.PreDestroy;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
+@Slf4j
 @Service
 public class ShellExecutionManager {
-    private final Map<String, ShellExecutionOutput> executionOutputs = new ConcurrentHashMap<>();
+    private final Map<String, ExecutionRecord> executionOutputs = new ConcurrentHashMap<>();
+    private final Map<String, OutputSignal> outputSignals = new ConcurrentHashMap<>();
+    // 已结束的执行，按结束顺序排列，过期清理只检查队首；被提前淘汰的执行留在队列中，出队时跳过
+    private final Queue<FinishedExecution> expiryQueue = new ConcurrentLinkedQueue<>();
+    // 已结束的执行，按访问顺序排列，超出内存上限时从最久未访问的开始淘汰，由自身加锁保护
+    private final LinkedHashMap<String, ExecutionRecord> finishedExecutions = new LinkedHashMap<>(16, 0.75f, true);
     
     @Autowired
     private ShellExecutorConfig config;
     
+    @Autowired
+    private OutputBudget outputBudget;
+    
+    @Autowired
+    private ExecutionJournal journal;
+    
+    @Autowired
+    private ExecutionEngine executionEngine;
+    
     public String createExecution(String command) {
         String executionId = UUID.randomUUID().toString();
-        ShellExecutionOutput output = new ShellExecutionOutput();
-        output.setExecutionId(executionId);
-        output.setCommand(command);
-        output.setOutputLines(new ArrayList<>());
-        output.setErrorLines(new ArrayList<>());
-        output.setFinished(false);
-        output.setStartTime(LocalDateTime.now());
-        output.setStatus("RUNNING");
+        OutputQuota quota = outputBudget.newQuota(executionId);
+        ExecutionRecord output = new ExecutionRecord(executionId, command,
+            quota.newStore("stdout"), quota.newStore("stderr"));
+        outputSignals.put(executionId, new OutputSignal());
         executionOutputs.put(executionId, output);
         return executionId;
     }
     
     public void appendOutput(String executionId, String line) {
-        ShellExecutionOutput output = executionOutputs.get(executionId);
+        ExecutionRecord output = executionOutputs.get(executionId);
         if (output != null) {
-            output.getOutputLines().add(line);
+            byte[] bytes = line.getBytes(ShellService.CHARSET);
+            output.getStdout().append(bytes, 0, bytes.length);
+            signal(executionId);
         }
     }
     
-    public void appendError(String executionId, String line) {
-        ShellExecutionOutput output = executionOutputs.get(executionId);
+    /**
+     * 追加一行标准输出，按{@link ShellService#CHARSET}编码的原始字节
+     */
+    public void appendOutput(String executionId, byte[] line, int offset, int length) {
+        ExecutionRecord output = executionOutputs.get(executionId);
         if (output != null) {
-            output.getErrorLines().add(line);
+            output.getStdout().append(line, offset, length);
+            signal(executionId);
         }
     }
     
-    public void setFinished(String executionId, int exitCode) {
-        ShellExecutionOutput output = executionOutputs.get(executionId);
+    public void appendError(String executionId, String line) {
+        ExecutionRecord output = executionOutputs.get(executionId);
         if (output != null) {
-            output.setFinished(true);
-            output.setExitCode(exitCode);
-            output.setEndTime(LocalDateTime.now());
-            output.setExecutionTimeMs(ChronoUnit.MILLIS.between(output.getStartTime(), output.getEndTime()));
-            output.setStatus(exitCode == 0 ? "COMPLETED" : "FAILED");
+            byte[] bytes = line.getBytes(ShellService.CHARSET);
+            output.getStderr().append(bytes, 0, bytes.length);
+            signal(executionId);
         }
     }
     
-    public void setError(String executionId, String errorMessage) {
-        ShellExecutionOutput output = executionOutputs.get(executionId);
+    /**
+     * 追加一行错误输出，按{@link ShellService#CHARSET}编码的原始字节
+     */
+    public void appendError(String executionId, byte[] line, int offset, int length) {
+        ExecutionRecord output = executionOutputs.get(executionId);
         if (output != null) {
-            output.setFinished(true);
-            output.setExitCode(1);
-            output.setEndTime(LocalDateTime.now());
-            output.setExecutionTimeMs(ChronoUnit.MILLIS.between(output.getStartTime(), output.getEndTime()));
-            output.setStatus("FAILED");
-            output.setErrorMessage(errorMessage);
+            output.getStderr().append(line, offset, length);
+            signal(executionId);
+        }
+    }
+    
+    /**
+     * 标记执行为排队状态(QUEUED)，由调度器在命令入队时调用
+     */
+    public void setQueued(String executionId) {
+        ExecutionRecord output = executionOutputs.get(executionId);
+        if (output != null && output.queue()) {
+            signal(executionId);
         }
     }
     
+    /**
+     * 排队的执行开始运行(RUNNING)
+     * @return 执行已结束(如排队期间被拒绝)时返回false，调用方不应再启动进程
+     */
+    public boolean setStarted(String executionId) {
+        ExecutionRecord output = executionOutputs.get(executionId);
+        if (output == null) {
+            return true;
+        }
+        if (!output.start()) {
+            return false;
+        }
+        signal(executionId);
+        return true;
+    }
+    
+    /**
+     * 执行是否已结束，执行不存在时返回false
+     */
+    public boolean isFinished(String executionId) {
+        ExecutionRecord output = executionOutputs.get(executionId);
+        return output != null && output.isFinished();
+    }
+    
+    /**
+     * 内存中保留的执行数(包括运行中和尚未过期的执行)
+     */
+    public int getRetainedCount() {
+        return executionOutputs.size();
+    }
+    
+    public void setFinished(String executionId, int exitCode) {
+        complete(executionId, exitCode == 0 ? "COMPLETED" : "FAILED", exitCode, null);
+    }
+    
+    public void setError(String executionId, String errorMessage) {
+        complete(executionId, "FAILED", 1, errorMessage);
+    }
+    
     public void setTimeout(String executionId) {
-        ShellExecutionOutput output = executionOutputs.get(executionId);
-        if (output != null) {
-            output.setFinished(true);
-            output.setExitCode(-1);
-            output.setEndTime(LocalDateTime.now());
-            output.setExecutionTimeMs(ChronoUnit.MILLIS.between(output.getStartTime(), output.getEndTime()));
-            output.setStatus("TIMEOUT");
-            output.setErrorMessage("Command execution timed out");
+        complete(executionId, "TIMEOUT", -1, "Command execution timed out");
+    }
+    
+    public void setRejected(String executionId, String errorMessage) {
+        complete(executionId, "REJECTED", -1, errorMessage);
+    }
+    
+    public void setSkipped(String executionId, String errorMessage) {
+        complete(executionId, "SKIPPED", -1, errorMessage);
+    }
+    
+    /**
+     * 标记执行为已取消(CANCELLED)，之后的完成、超时等状态变更不再生效
+     * @return 执行存在且尚未结束时返回true
+     */
+    public boolean setCancelled(String executionId) {
+        return complete(executionId, "CANCELLED", -1, "Command execution cancelled");
+    }
+    
+    /**
+     * 结束执行
+     * 状态只能从QUEUED或RUNNING变为结束状态一次，并发的超时、完成、失败等调用只有第一个生效
+     */
+    private boolean complete(String executionId, String status, int exitCode, String errorMessage) {
+        ExecutionRecord output = executionOutputs.get(executionId);
+        if (output == null) {
+            return false;
+        }
+        output.sealOutput();
+        if (output.complete(status, exitCode, errorMessage)) {
+            signal(executionId);
+            if (journal.isEnabled()) {
+                journal.append(toOutput(output, config.getJournal().getMaxOutputLines()));
+            }
+            expiryQueue.add(new FinishedExecution(executionId, output, System.nanoTime()));
+            if (isMemoryLimited()) {
+                synchronized (finishedExecutions) {
+                    finishedExecutions.put(executionId, output);
+                }
+                evictOverMemoryLimit();
+            }
+            return true;
         }
+        log.debug("执行已结束，忽略状态变更 {}: {}", executionId, status);
+        return false;
     }
     
+    /**
+     * 获取执行状态和全部输出
+     * 输出已转存到磁盘时每个输出流只返回前outputFetchMaxLines行，其余通过增量接口获取
+     * @return 执行不存在时返回null
+     */
     public ShellExecutionOutput getOutput(String executionId) {
-        return executionOutputs.get(executionId);
+        ExecutionRecord record = executionOutputs.get(executionId);
+        if (record == null) {
+            return journal.get(executionId);
+        }
+        touch(executionId, record);
+        return toOutput(record, record.isSpilled() ? config.getOutputFetchMaxLines() : Integer.MAX_VALUE);
     }
     
-    @Scheduled(fixedDelayString = "${shell.executor.cleanupIntervalMs}")
-    public void cleanupExpiredOutputs() {
-        LocalDateTime expirationTime = LocalDateTime.now().minus(config.getOutputExpirationMs(), ChronoUnit.MILLIS);
-        executionOutputs.entrySet().removeIf(entry -> {
-            ShellExecutionOutput output = entry.getValue();
-            return Boolean.TRUE.equals(output.getFinished()) && output.getEndTime() != null && output.getEndTime().isBefore(expirationTime);
+    /**
+     * @param limit 每个输出流返回的行数上限
+     */
+    private ShellExecutionOutput toOutput(ExecutionRecord record, int limit) {
+        ExecutionState state = record.getCurrentState();
+        ShellExecutionOutput output = new ShellExecutionOutput();
+        output.setExecutionId(record.getExecutionId());
+        output.setCommand(record.getCommand());
+        output.setFinished(state.isFinished());
+        output.setExitCode(state.getExitCode());
+        output.setStartTime(record.getStartTime());
+        output.setEndTime(state.getEndTime());
+        output.setStatus(state.getStatus());
+        output.setExecutionTimeMs(state.getExecutionTimeMs());
+        output.setErrorMessage(state.getErrorMessage());
+        output.setQueueWaitMs(record.getQueueWaitMs());
+        
+        output.setOutputLines(record.getStdout().read(0, limit, ShellService.CHARSET));
+        output.setErrorLines(record.getStderr().read(0, limit, ShellService.CHARSET));
+        output.setOutputLineCount(record.getStdout().getLineCount());
+        output.setErrorLineCount(record.getStderr().getLineCount());
+        output.setTruncated(record.isTruncated());
+        output.setSpilled(record.isSpilled());
+        return output;
+    }
+    
+    /**
+     * 增量获取输出，只返回偏移量之后的新增行
+     * @param stdoutOffset 标准输出起始行号
+     * @param stderrOffset 错误输出起始行号
+     * @param maxLines 每个输出流最多返回的行数，小于等于0或超过配置上限时使用配置上限
+     * @return 执行不存在时返回null
+     */
+    public ShellOutputChunk getOutput(String executionId, long stdoutOffset, long stderrOffset, int maxLines) {
+        ExecutionRecord output = executionOutputs.get(executionId);
+        int limit = maxLines <= 0 ? config.getOutputFetchMaxLines() : Math.min(maxLines, config.getOutputFetchMaxLines());
+        if (output == null) {
+            ShellExecutionOutput history = journal.get(executionId);
+            return history == null ? null : toChunk(history, stdoutOffset, stderrOffset, limit);
+        }
+        
+        // 先读取状态再读取输出，保证返回finished=true时输出已完整
+        ExecutionState state = output.getCurrentState();
+        touch(executionId, output);
+        ShellOutputChunk chunk = new ShellOutputChunk();
+        chunk.setExecutionId(executionId);
+        chunk.setFinished(state.isFinished());
+        chunk.setExitCode(state.getExitCode());
+        chunk.setStatus(state.getStatus());
+        chunk.setErrorMessage(state.getErrorMessage());
+        chunk.setQueueWaitMs(output.getQueueWaitMs());
+        
+        List<String> outputLines = output.getStdout().read(stdoutOffset, limit, ShellService.CHARSET);
+        List<String> errorLines = output.getStderr().read(stderrOffset, limit, ShellService.CHARSET);
+        chunk.setOutputLines(outputLines);
+        chunk.setErrorLines(errorLines);
+        chunk.setStdoutOffset(stdoutOffset);
+        chunk.setStderrOffset(stderrOffset);
+        chunk.setNextStdoutOffset(stdoutOffset + outputLines.size());
+        chunk.setNextStderrOffset(stderrOffset + errorLines.size());
+        chunk.setHasMore(chunk.getNextStdoutOffset() < output.getStdout().getLineCount()
+            || chunk.getNextStderrOffset() < output.getStderr().getLineCount());
+        chunk.setTruncated(output.isTruncated());
+        chunk.setSpilled(output.isSpilled());
+        return chunk;
+    }
+    
+    /**
+     * 等待新输出后增量获取，偏移量之后已有输出或执行已结束时立即返回
+     * 等待期间不占用线程：收到新输出通知或超时后在IO线程池上重新检查
+     * @param waitMs 没有新输出时最长等待时间(毫秒)，超时返回不含新行的结果
+     * @return 执行不存在时结果为null；IO线程池已满时异常完成
+     */
+    public CompletableFuture<ShellOutputChunk> awaitOutput(String executionId, long stdoutOffset, long stderrOffset,
+                                                           int maxLines, long waitMs) {
+        CompletableFuture<ShellOutputChunk> result = new CompletableFuture<>();
+        awaitOutput(executionId, stdoutOffset, stderrOffset, maxLines,
+            System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMs), result);
+        return result;
+    }
+    
+    private void awaitOutput(String executionId, long stdoutOffset, long stderrOffset, int maxLines,
+                             long deadline, CompletableFuture<ShellOutputChunk> result) {
+        OutputSignal signal = outputSignals.get(executionId);
+        // 先登记等待再检查输出，避免检查之后、登记之前追加的输出丢失通知
+        CompletableFuture<Void> wakeup = signal == null ? null : signal.register();
+        ShellOutputChunk chunk;
+        try {
+            chunk = getOutput(executionId, stdoutOffset, stderrOffset, maxLines);
+        } catch (RuntimeException e) {
+            if (wakeup != null) {
+                signal.unregister(wakeup);
+            }
+            result.completeExceptionally(e);
+            return;
+        }
+        long remainingNanos = deadline - System.nanoTime();
+        if (wakeup == null || chunk == null || Boolean.TRUE.equals(chunk.getFinished())
+                || !chunk.getOutputLines().isEmpty() || !chunk.getErrorLines().isEmpty() || remainingNanos <= 0) {
+            if (wakeup != null) {
+                signal.unregister(wakeup);
+            }
+            result.complete(chunk);
+            return;
+        }
+        ScheduledFuture<?> timeout = executionEngine.schedule(() -> wakeup.complete(null), remainingNanos,
+            TimeUnit.NANOSECONDS);
+        wakeup.whenComplete((ignored, error) -> {
+            timeout.cancel(false);
+            signal.unregister(wakeup);
+            try {
+                executionEngine.runIo(() -> awaitOutput(executionId, stdoutOffset, stderrOffset, maxLines,
+                    deadline, result));
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(e);
+            }
         });
     }
+    
+    /**
+     * 从执行历史中的记录截取偏移量之后的行
+     */
+    private static ShellOutputChunk toChunk(ShellExecutionOutput history, long stdoutOffset, long stderrOffset,
+                                            int limit) {
+        ShellOutputChunk chunk = new ShellOutputChunk();
+        chunk.setExecutionId(history.getExecutionId());
+        chunk.setFinished(true);
+        chunk.setExitCode(history.getExitCode());
+        chunk.setStatus(history.getStatus());
+        chunk.setErrorMessage(history.getErrorMessage());
+        chunk.setQueueWaitMs(history.getQueueWaitMs());
+        List<String> outputLines = slice(history.getOutputLines(), stdoutOffset, limit);
+        List<String> errorLines = slice(history.getErrorLines(), stderrOffset, limit);
+        chunk.setOutputLines(outputLines);
+        chunk.setErrorLines(errorLines);
+        chunk.setStdoutOffset(stdoutOffset);
+        chunk.setStderrOffset(stderrOffset);
+        chunk.setNextStdoutOffset(stdoutOffset + outputLines.size());
+        chunk.setNextStderrOffset(stderrOffset + errorLines.size());
+        chunk.setHasMore(chunk.getNextStdoutOffset() < history.getOutputLines().size()
+            || chunk.getNextStderrOffset() < history.getErrorLines().size());
+        chunk.setTruncated(history.getTruncated());
+        chunk.setSpilled(history.getSpilled());
+        return chunk;
+    }
+    
+    private static List<String> slice(List<String> lines, long offset, int limit) {
+        if (offset >= lines.size()) {
+            return new ArrayList<>();
+        }
+        int from = (int) Math.max(offset, 0);
+        return new ArrayList<>(lines.subList(from, (int) Math.min(lines.size(), (long) from + limit)));
+    }
+    
+    /**
+     * 按状态和开始时间查询执行历史，结果不包含输出行，输出通过执行ID查询
+     * @param status 为空时查询所有状态
+     * @return 按开始时间从新到旧排列；未开启执行历史时返回空列表
+     */
+    public List<ShellExecutionOutput> queryHistory(String status, long from, long to, int limit) {
+        return journal.query(status == null || status.isEmpty() ? null : status.toUpperCase(), from, to,
+            Math.min(limit, config.getOutputFetchMaxLines()));
+    }
+    
+    private void signal(String executionId) {
+        OutputSignal signal = outputSignals.get(executionId);
+        if (signal != null) {
+            signal.signal();
+        }
+    }
+    
+    /**
+     * 删除过期的执行
+     * 过期时间对所有执行相同，结束顺序即过期顺序，只需从队首取出已过期的执行，耗时与过期的执行数成正比
+     */
+    @Scheduled(fixedDelayString = "${shell.executor.cleanup-interval-ms:60000}")
+    public void cleanupExpiredOutputs() {
+        long expirationNanos = TimeUnit.MILLISECONDS.toNanos(config.getOutputExpirationMs());
+        long now = System.nanoTime();
+        synchronized (expiryQueue) {
+            FinishedExecution head;
+            while ((head = expiryQueue.peek()) != null && now - head.finishNanos >= expirationNanos) {
+                expiryQueue.poll();
+                remove(head.executionId, head.record);
+            }
+        }
+        evictOverMemoryLimit();
+        journal.purgeExpired();
+    }
+    
+    /**
+     * 所有执行的输出占用堆内存超过上限时，从最久未访问的已结束执行开始淘汰，直到低于上限或没有已结束的执行
+     */
+    private void evictOverMemoryLimit() {
+        long limit = config.getStorage().getRetainedMemoryBytes();
+        if (limit <= 0) {
+            return;
+        }
+        while (outputBudget.getMemoryUsed() > limit) {
+            Map.Entry<String, ExecutionRecord> eldest;
+            synchronized (finishedExecutions) {
+                Iterator<Map.Entry<String, ExecutionRecord>> iterator = finishedExecutions.entrySet().iterator();
+                if (!iterator.hasNext()) {
+                    return;
+                }
+                eldest = iterator.next();
+                iterator.remove();
+            }
+            log.debug("输出占用内存超过上限，淘汰已结束的执行: {}", eldest.getKey());
+            remove(eldest.getKey(), eldest.getValue());
+        }
+    }
+    
+    /**
+     * 是否按内存上限淘汰已结束的执行，未开启时不记录访问顺序，查询输出不加锁
+     */
+    private boolean isMemoryLimited() {
+        return config.getStorage().getRetainedMemoryBytes() > 0;
+    }
+    
+    /**
+     * 查询已结束的执行时更新其访问顺序
+     */
+    private void touch(String executionId, ExecutionRecord record) {
+        if (isMemoryLimited() && record.isFinished()) {
+            synchronized (finishedExecutions) {
+                finishedExecutions.get(executionId);
+            }
+        }
+    }
+    
+    /**
+     * 删除执行并释放输出，执行已被删除或替换时不处理
+     */
+    private void remove(String executionId, ExecutionRecord record) {
+        if (executionOutputs.remove(executionId, record)) {
+            // 唤醒仍在等待的长轮询，由其从执行历史中读取或返回执行不存在
+            OutputSignal signal = outputSignals.remove(executionId);
+            if (signal != null) {
+                signal.signal();
+            }
+            record.release();
+        }
+        synchronized (finishedExecutions) {
+            finishedExecutions.remove(executionId, record);
+        }
+    }
+    
+    /**
+     * 停止时删除全部转存文件
+     */
+    @PreDestroy
+    public void shutdown() {
+        executionOutputs.values().forEach(ExecutionRecord::release);
+    }
+    
+    private static final class FinishedExecution {
+        private final String executionId;
+        private final ExecutionRecord record;
+        private final long finishNanos;
+        
+        FinishedExecution(String executionId, ExecutionRecord record, long finishNanos) {
+            this.executionId = executionId;
+            this.record = record;
+            this.finishNanos = finishNanos;
+        }
+    }
+    
+    /**
+     * 新输出通知
+     * 每个等待者登记一个future，追加输出时完成并移除所有已登记的future；没有等待者时追加输出不需要遍历
+     */
+    private static class OutputSignal {
+        private final Set<CompletableFuture<Void>> waiters = ConcurrentHashMap.newKeySet();
+        
+        void signal() {
+            if (!waiters.isEmpty()) {
+                Iterator<CompletableFuture<Void>> iterator = waiters.iterator();
+                while (iterator.hasNext()) {
+                    CompletableFuture<Void> waiter = iterator.next();
+                    iterator.remove();
+                    waiter.complete(null);
+                }
+            }
+        }
+        
+        CompletableFuture<Void> register() {
+            CompletableFuture<Void> waiter = new CompletableFuture<>();
+            waiters.add(waiter);
+            return waiter;
+        }
+        
+        void unregister(CompletableFuture<Void> waiter) {
+            waiters.remove(waiter);
+        }
+    }
 } 
\ No newline at end of file
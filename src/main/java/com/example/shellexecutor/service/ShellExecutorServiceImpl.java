@@ -1,12 +1,27 @@
 package com.example.shellexecutor.service;
 
 import com.example.shellexecutor.api.ShellExecutorService;
+import com.example.shellexecutor.config.ShellExecutorConfig;
 import com.example.shellexecutor.model.ExecuteResult;
+import com.example.shellexecutor.model.FileChunk;
+import com.example.shellexecutor.model.FileTransferResult;
+import com.example.shellexecutor.model.NodeLoad;
+import com.example.shellexecutor.model.ShellBatchRequest;
+import com.example.shellexecutor.model.ShellBatchResult;
 import com.example.shellexecutor.model.ShellExecutionOutput;
 import com.example.shellexecutor.model.ShellExecutionRequest;
+import com.example.shellexecutor.model.ShellOutputChunk;
+import com.example.shellexecutor.util.ExecutionIds;
 import org.apache.dubbo.config.annotation.DubboService;
+import org.apache.dubbo.rpc.RpcContext;
+import org.apache.dubbo.rpc.RpcServiceContext;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
 @DubboService(version = "1.0.0")
 public class ShellExecutorServiceImpl implements ShellExecutorService {
     
@@ -16,18 +31,113 @@ public class ShellExecutorServiceImpl implements ShellExecutorService {
     @Autowired
     private ShellExecutionManager executionManager;
     
+    @Autowired
+    private ShellExecutorConfig config;
+    
+    @Autowired
+    private ExecutionEngine executionEngine;
+    
+    @Autowired
+    private FileTransferService fileTransferService;
+    
     @Override
     public ExecuteResult executeCommand(String command) {
         return shellService.executeCommand(command);
     }
     
+    @Override
+    public CompletableFuture<ExecuteResult> executeCommandFuture(String command) {
+        CompletableFuture<ExecuteResult> future = new CompletableFuture<>();
+        try {
+            executionEngine.submitWaiter(() -> future.complete(shellService.executeCommand(command)));
+        } catch (RejectedExecutionException e) {
+            ExecuteResult result = new ExecuteResult();
+            result.setExitCode(-1);
+            result.setError("执行引擎繁忙，命令被拒绝");
+            future.complete(result);
+        }
+        return future;
+    }
+    
+    /**
+     * 返回的执行ID带本节点的Dubbo地址，调用方不指定节点即可查询输出
+     */
     @Override
     public String executeCommandAsync(ShellExecutionRequest request) {
-        return shellService.executeCommandAsync(request);
+        String node = localNode();
+        String executionId = shellService.executeCommandAsync(request);
+        return node == null ? executionId : ExecutionIds.route(node, executionId);
+    }
+    
+    @Override
+    public ShellBatchResult executeBatch(ShellBatchRequest request) {
+        return shellService.executeBatch(request);
+    }
+    
+    @Override
+    public List<String> executeBatchAsync(ShellBatchRequest request) {
+        String node = localNode();
+        List<String> executionIds = shellService.executeBatchAsync(request);
+        if (node == null) {
+            return executionIds;
+        }
+        List<String> routed = new ArrayList<>(executionIds.size());
+        for (String executionId : executionIds) {
+            routed.add(ExecutionIds.route(node, executionId));
+        }
+        return routed;
     }
     
     @Override
     public ShellExecutionOutput getOutput(String executionId) {
-        return executionManager.getOutput(executionId);
+        return executionManager.getOutput(ExecutionIds.local(executionId));
+    }
+    
+    @Override
+    public ShellOutputChunk getOutput(String executionId, long stdoutOffset, long stderrOffset, int maxLines) {
+        return executionManager.getOutput(ExecutionIds.local(executionId), stdoutOffset, stderrOffset, maxLines);
+    }
+    
+    @Override
+    public CompletableFuture<ShellOutputChunk> awaitOutput(String executionId, long stdoutOffset, long stderrOffset,
+                                                           int maxLines, long waitMs) {
+        return executionManager.awaitOutput(ExecutionIds.local(executionId), stdoutOffset, stderrOffset, maxLines,
+            Math.min(Math.max(waitMs, 0), config.getStreamHeartbeatMs()));
+    }
+    
+    @Override
+    public boolean cancel(String executionId) {
+        return shellService.cancel(ExecutionIds.local(executionId));
+    }
+    
+    @Override
+    public NodeLoad getLoad() {
+        return shellService.getLoad();
+    }
+    
+    @Override
+    public FileChunk readFile(String path, long offset, int length) {
+        return fileTransferService.readChunk(path, offset, length);
+    }
+    
+    @Override
+    public FileTransferResult writeFile(String path, long offset, byte[] data) {
+        return fileTransferService.writeChunk(path, offset, data);
+    }
+    
+    @Override
+    public FileTransferResult checksumFile(String path, String algorithm, long offset, long length) {
+        return fileTransferService.checksum(path, algorithm, offset, length);
+    }
+    
+    /**
+     * 当前Dubbo调用的本节点地址(提供者导出的地址)，不是通过Dubbo调用时为null
+     */
+    private static String localNode() {
+        RpcServiceContext context = RpcContext.getServiceContext();
+        if (context.getLocalHost() == null || context.getLocalPort() <= 0) {
+            return null;
+        }
+        return context.getLocalAddressString();
     }
-} 
\ No newline at end of file
+}
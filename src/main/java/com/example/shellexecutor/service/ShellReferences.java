@@ -0,0 +1,228 @@
+package com.example.shellexecutor.service;
+
+import com.example.shellexecutor.api.ShellExecutorService;
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.dubbo.config.ReferenceConfig;
+import org.apache.dubbo.rpc.service.EchoService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按目标节点缓存的点对点Dubbo引用
+ * 直连指定节点，不经过注册中心和负载均衡，同一节点的调用复用同一个引用和连接。
+ * 缓存按最近使用顺序淘汰，超过上限或空闲超时的引用被销毁并关闭连接；
+ * 注册中心中的节点(由节点列表定期刷新时固定)不计入上限，也不会因其他节点的调用被淘汰；
+ * 开启健康检查时定期通过回声调用检查缓存中的节点，不可用的节点被移出缓存，下次调用时重新连接
+ */
+@Slf4j
+@Component
+public class ShellReferences {
+
+    private static final String ECHO = "OK";
+
+    @Autowired
+    private ShellExecutorConfig config;
+
+    // 按访问顺序排列，最久未使用的在最前面
+    private final LinkedHashMap<String, Entry> references = new LinkedHashMap<>(16, 0.75f, true);
+    // 固定的节点，由references保护
+    private Set<String> pinned = Collections.emptySet();
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        ShellExecutorConfig.Route route = config.getRoute();
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "shell-references");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long sweepMs = Math.max(1000, Math.min(route.getReferenceIdleMs(), 60000));
+        scheduler.scheduleWithFixedDelay(this::evictIdle, sweepMs, sweepMs, TimeUnit.MILLISECONDS);
+        if (route.isHealthCheckEnabled()) {
+            scheduler.scheduleWithFixedDelay(this::checkHealth, route.getHealthCheckIntervalMs(),
+                route.getHealthCheckIntervalMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        List<Entry> entries;
+        synchronized (references) {
+            entries = new ArrayList<>(references.values());
+            references.clear();
+        }
+        entries.forEach(Entry::destroy);
+    }
+
+    public ShellExecutorService get(String host, int port) {
+        String target = host + ":" + port;
+        List<Entry> evicted = null;
+        Entry entry;
+        synchronized (references) {
+            entry = references.get(target);
+            if (entry == null) {
+                entry = new Entry(target, newReference(target));
+                references.put(target, entry);
+                evicted = evictOverflow();
+            }
+        }
+        if (evicted != null) {
+            evicted.forEach(Entry::destroy);
+        }
+        entry.lastUsed = System.currentTimeMillis();
+        return entry.proxy();
+    }
+
+    /**
+     * 替换固定的节点，不再固定的节点重新计入上限
+     * @param targets 节点地址"host:port"
+     */
+    public void pin(Collection<String> targets) {
+        List<Entry> evicted;
+        synchronized (references) {
+            pinned = new HashSet<>(targets);
+            evicted = evictOverflow();
+        }
+        if (evicted != null) {
+            evicted.forEach(Entry::destroy);
+        }
+    }
+
+    /**
+     * 缓存中的节点数
+     */
+    public int size() {
+        synchronized (references) {
+            return references.size();
+        }
+    }
+
+    ReferenceConfig<ShellExecutorService> newReference(String target) {
+        ShellExecutorConfig.Route route = config.getRoute();
+        ReferenceConfig<ShellExecutorService> reference = new ReferenceConfig<>();
+        reference.setInterface(ShellExecutorService.class);
+        reference.setUrl("dubbo://" + target);
+        reference.setVersion("1.0.0");
+        reference.setTimeout((int) Math.min(Integer.MAX_VALUE, route.getTimeoutMs()));
+        reference.setRetries(0);
+        reference.setConnections(route.getConnections());
+        reference.setCheck(false);
+        return reference;
+    }
+
+    /**
+     * 未固定的引用超过上限时移出其中最久未使用的，调用方持有锁并在锁外销毁
+     */
+    private List<Entry> evictOverflow() {
+        int overflow = -config.getRoute().getMaxReferences();
+        for (String target : references.keySet()) {
+            if (!pinned.contains(target)) {
+                overflow++;
+            }
+        }
+        List<Entry> evicted = null;
+        Iterator<Entry> iterator = references.values().iterator();
+        while (overflow > 0 && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (pinned.contains(entry.target)) {
+                continue;
+            }
+            if (evicted == null) {
+                evicted = new ArrayList<>();
+            }
+            evicted.add(entry);
+            iterator.remove();
+            overflow--;
+        }
+        return evicted;
+    }
+
+    private void evictIdle() {
+        long expiration = System.currentTimeMillis() - config.getRoute().getReferenceIdleMs();
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (references) {
+            references.values().removeIf(entry -> {
+                if (entry.lastUsed < expiration) {
+                    evicted.add(entry);
+                    return true;
+                }
+                return false;
+            });
+        }
+        for (Entry entry : evicted) {
+            log.debug("节点引用空闲超时，关闭连接: {}", entry.target);
+            entry.destroy();
+        }
+    }
+
+    private void checkHealth() {
+        List<Entry> entries;
+        synchronized (references) {
+            entries = new ArrayList<>(references.values());
+        }
+        for (Entry entry : entries) {
+            try {
+                Object echo = ((EchoService) entry.proxy()).$echo(ECHO);
+                if (ECHO.equals(echo)) {
+                    continue;
+                }
+            } catch (RuntimeException e) {
+                log.warn("节点健康检查失败，移出缓存 {}: {}", entry.target, e.getMessage());
+            }
+            synchronized (references) {
+                references.remove(entry.target, entry);
+            }
+            entry.destroy();
+        }
+    }
+
+    private static class Entry {
+        private final String target;
+        private final ReferenceConfig<ShellExecutorService> reference;
+        private volatile ShellExecutorService proxy;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        Entry(String target, ReferenceConfig<ShellExecutorService> reference) {
+            this.target = target;
+            this.reference = reference;
+        }
+
+        /**
+         * 首次获取时建立连接，在缓存锁之外进行，避免阻塞其他节点
+         */
+        ShellExecutorService proxy() {
+            ShellExecutorService current = proxy;
+            if (current == null) {
+                current = reference.get();
+                proxy = current;
+            }
+            return current;
+        }
+
+        void destroy() {
+            try {
+                reference.destroy();
+            } catch (RuntimeException e) {
+                log.debug("销毁节点引用失败 {}: {}", target, e.getMessage());
+            }
+        }
+    }
+}
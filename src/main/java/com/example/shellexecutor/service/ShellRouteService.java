@@ -1,68 +1,285 @@
 package com.example.shellexecutor.service;
 
 import com.example.shellexecutor.api.ShellExecutorService;
+import com.example.shellexecutor.config.ShellExecutorConfig;
 import com.example.shellexecutor.model.ExecuteResult;
+import com.example.shellexecutor.model.FileChunk;
+import com.example.shellexecutor.model.FileTransferResult;
+import com.example.shellexecutor.model.NodeLoad;
+import com.example.shellexecutor.model.ShellBatchRequest;
+import com.example.shellexecutor.model.ShellBatchResult;
 import com.example.shellexecutor.model.ShellExecutionOutput;
 import com.example.shellexecutor.model.ShellExecutionRequest;
-import org.apache.dubbo.common.URL;
+import com.example.shellexecutor.model.ShellOutputChunk;
+import com.example.shellexecutor.util.ExecutionIds;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.dubbo.config.annotation.DubboReference;
-import org.apache.dubbo.rpc.RpcContext;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
+@Slf4j
 @Service
 public class ShellRouteService {
     
     @DubboReference(version = "1.0.0", check = false)
     private ShellExecutorService shellExecutorService;
     
+    @Autowired
+    private NodeRegistry nodeRegistry;
+    
+    @Autowired
+    private ShellReferences references;
+    
+    @Autowired
+    private ExecutionMetrics metrics;
+    
+    @Autowired
+    private ShellExecutorConfig config;
+    
     /**
-     * 构建Dubbo URL
+     * 指定的目标节点(host:port)
      */
-    private URL buildDubboUrl(String targetHost, Integer targetPort) {
-        return URL.valueOf("dubbo://" + targetHost + ":" + targetPort + "/" + ShellExecutorService.class.getName())
-            .addParameter("version", "1.0.0")
-            .addParameter("timeout", "60000")
-            .addParameter("retries", "0")
-            .addParameter("connections", "1")
-            .addParameter("check", "false");
+    private String target(String targetHost, Integer targetPort) {
+        if (targetHost == null || targetPort == null) {
+            throw new IllegalArgumentException("targetHost和targetPort不能为空");
+        }
+        return targetHost + ":" + targetPort;
     }
     
     /**
-     * 在指定机器上执行命令
+     * 执行命令的节点：指定了节点时使用指定节点，未指定时选择负载最低的节点，
+     * 尚无节点负载信息时返回null，由注册中心的负载均衡选择节点
+     */
+    private String route(String targetHost, Integer targetPort) {
+        if (targetHost != null || targetPort != null) {
+            return target(targetHost, targetPort);
+        }
+        String node = nodeRegistry.selectLeastLoaded();
+        if (node != null) {
+            log.debug("选择负载最低的节点: {}", node);
+        }
+        return node;
+    }
+    
+    /**
+     * 执行所在的节点：指定了节点时使用指定节点，否则使用执行ID中的节点，不发起额外查询
+     */
+    private String owner(String executionId, String targetHost, Integer targetPort) {
+        if (targetHost != null || targetPort != null) {
+            return target(targetHost, targetPort);
+        }
+        String node = ExecutionIds.node(executionId);
+        if (node == null) {
+            throw new IllegalArgumentException("执行ID不包含节点信息，需指定targetHost和targetPort: " + executionId);
+        }
+        return node;
+    }
+    
+    /**
+     * 调用节点并按节点和方法记录调用耗时，同一节点复用缓存的引用和连接
+     * @param node 为null时通过注册中心调用
+     */
+    private <T> T call(String node, String method, Function<ShellExecutorService, T> invocation) {
+        if (node == null) {
+            return metrics.timeRoute(ExecutionMetrics.NODE_REGISTRY, method,
+                () -> invocation.apply(shellExecutorService));
+        }
+        ShellExecutorService service = reference(node);
+        return metrics.timeRoute(node, method, () -> invocation.apply(service));
+    }
+    
+    /**
+     * 异步调用节点，返回结果完成时记录调用耗时
+     */
+    private <T> CompletableFuture<T> callAsync(String node, String method,
+                                               Function<ShellExecutorService, CompletableFuture<T>> invocation) {
+        ShellExecutorService service = reference(node);
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = invocation.apply(service);
+        } catch (RuntimeException e) {
+            metrics.recordRoute(node, method, false, System.nanoTime() - start);
+            throw e;
+        }
+        return future.whenComplete((result, error) ->
+            metrics.recordRoute(node, method, error == null, System.nanoTime() - start));
+    }
+    
+    private ShellExecutorService reference(String node) {
+        int separator = node.lastIndexOf(':');
+        return references.get(node.substring(0, separator), Integer.parseInt(node.substring(separator + 1)));
+    }
+    
+    /**
+     * 在指定机器上执行命令，未指定机器时在负载最低的节点上执行
      */
     public ExecuteResult executeCommand(String command, String targetHost, Integer targetPort) {
-        RpcContext.getContext().setUrl(buildDubboUrl(targetHost, targetPort));
-        return shellExecutorService.executeCommand(command);
+        return call(route(targetHost, targetPort), "executeCommand", service -> service.executeCommand(command));
     }
     
     /**
-     * 在指定机器上异步执行命令
+     * 在指定机器上异步执行命令，未指定机器时在负载最低的节点上执行
      */
     public String executeCommandAsync(ShellExecutionRequest request) {
-        if (request.getTargetHost() != null && request.getTargetPort() != null) {
-            RpcContext.getContext().setUrl(buildDubboUrl(request.getTargetHost(), request.getTargetPort()));
-        }
-        return shellExecutorService.executeCommandAsync(request);
+        return call(route(request.getTargetHost(), request.getTargetPort()), "executeCommandAsync",
+            service -> service.executeCommandAsync(request));
+    }
+    
+    /**
+     * 在指定机器上批量执行命令，所有命令通过一次RPC提交，未指定机器时在负载最低的节点上执行
+     */
+    public ShellBatchResult executeBatch(ShellBatchRequest request) {
+        return call(route(request.getTargetHost(), request.getTargetPort()), "executeBatch",
+            service -> service.executeBatch(request));
+    }
+    
+    /**
+     * 在指定机器上批量异步执行命令，未指定机器时在负载最低的节点上执行
+     */
+    public List<String> executeBatchAsync(ShellBatchRequest request) {
+        return call(route(request.getTargetHost(), request.getTargetPort()), "executeBatchAsync",
+            service -> service.executeBatchAsync(request));
     }
     
     /**
-     * 从指定机器获取执行输出
+     * 从执行所在的机器获取执行输出
      */
     public ShellExecutionOutput getOutput(String executionId, String targetHost, Integer targetPort) {
-        RpcContext.getContext().setUrl(buildDubboUrl(targetHost, targetPort));
-        return shellExecutorService.getOutput(executionId);
+        return call(owner(executionId, targetHost, targetPort), "getOutput",
+            service -> service.getOutput(executionId));
+    }
+    
+    /**
+     * 从执行所在的机器增量获取执行输出
+     */
+    public ShellOutputChunk getOutput(String executionId, long stdoutOffset, long stderrOffset, int maxLines,
+                                      String targetHost, Integer targetPort) {
+        return call(owner(executionId, targetHost, targetPort), "getOutputChunk",
+            service -> service.getOutput(executionId, stdoutOffset, stderrOffset, maxLines));
     }
     
     /**
-     * 获取所有可用的shell执行器节点
+     * 在执行所在的机器上等待新输出后增量获取(长轮询)
+     */
+    public CompletableFuture<ShellOutputChunk> awaitOutput(String executionId, long stdoutOffset, long stderrOffset,
+                                                           int maxLines, long waitMs, String targetHost,
+                                                           Integer targetPort) {
+        return callAsync(owner(executionId, targetHost, targetPort), "awaitOutput",
+            service -> service.awaitOutput(executionId, stdoutOffset, stderrOffset, maxLines, waitMs));
+    }
+    
+    /**
+     * 在执行所在的机器上取消执行
+     */
+    public boolean cancel(String executionId, String targetHost, Integer targetPort) {
+        return call(owner(executionId, targetHost, targetPort), "cancel", service -> service.cancel(executionId));
+    }
+    
+    /**
+     * 获取指定机器上文件的大小和修改时间
+     */
+    public FileChunk statFile(String path, String targetHost, Integer targetPort) {
+        return call(target(targetHost, targetPort), "readFile", service -> service.readFile(path, 0, 0));
+    }
+    
+    /**
+     * 从指定机器按数据块下载文件的[offset, offset + length)范围，每读取一块立即写出，只占用一个数据块的内存
+     * @param expected 开始下载前获取的文件信息，下载过程中文件大小或修改时间变化时中止
+     * @return 写出的字节数
+     */
+    public long downloadFile(String path, long offset, long length, FileChunk expected, OutputStream out,
+                             String targetHost, Integer targetPort) throws IOException {
+        String node = target(targetHost, targetPort);
+        int chunkBytes = config.getFileTransfer().getChunkBytes();
+        long position = offset;
+        long end = offset + length;
+        while (position < end) {
+            long from = position;
+            int count = (int) Math.min(end - position, chunkBytes);
+            FileChunk chunk = call(node, "readFile", service -> service.readFile(path, from, count));
+            if (chunk.getFileSize() != expected.getFileSize() || chunk.getLastModified() != expected.getLastModified()) {
+                throw new IllegalStateException("文件在下载过程中被修改: " + path);
+            }
+            if (chunk.getData().length == 0) {
+                break;
+            }
+            out.write(chunk.getData());
+            position += chunk.getData().length;
+        }
+        return position - offset;
+    }
+    
+    /**
+     * 读取输入流到结束，按数据块依次写入指定机器上文件的offset位置，只占用一个数据块的内存
+     * @param algorithm 校验算法，不为null时上传后由目标节点计算写入范围的校验值
+     */
+    public FileTransferResult uploadFile(String path, long offset, InputStream in, String algorithm,
+                                         String targetHost, Integer targetPort) throws IOException {
+        String node = target(targetHost, targetPort);
+        byte[] buffer = new byte[config.getFileTransfer().getChunkBytes()];
+        long position = offset;
+        FileTransferResult result;
+        int filled;
+        do {
+            filled = 0;
+            int read;
+            while (filled < buffer.length && (read = in.read(buffer, filled, buffer.length - filled)) > 0) {
+                filled += read;
+            }
+            long from = position;
+            byte[] data = filled == buffer.length ? buffer : Arrays.copyOf(buffer, filled);
+            result = call(node, "writeFile", service -> service.writeFile(path, from, data));
+            position += filled;
+        } while (filled == buffer.length);
+        long written = position - offset;
+        if (algorithm != null) {
+            return checksumFile(path, algorithm, offset, written, targetHost, targetPort);
+        }
+        result.setOffset(offset);
+        result.setLength(written);
+        return result;
+    }
+    
+    /**
+     * 在指定机器上计算文件指定范围的校验值，不传输文件内容
+     */
+    public FileTransferResult checksumFile(String path, String algorithm, long offset, long length,
+                                           String targetHost, Integer targetPort) {
+        return call(target(targetHost, targetPort), "checksumFile",
+            service -> service.checksumFile(path, algorithm, offset, length));
+    }
+    
+    /**
+     * 获取所有shell执行器节点及其状态，最近一次负载查询失败的节点为DOWN
      */
     public Map<String, String> getAvailableNodes() {
-        Map<String, String> nodes = new HashMap<>();
-        // 这里需要通过Dubbo的元数据服务获取提供者信息
-        // TODO: 实现获取提供者列表的逻辑
+        Map<String, String> nodes = new LinkedHashMap<>();
+        for (String node : nodeRegistry.getNodes()) {
+            nodes.put(node, "UP");
+        }
+        for (NodeLoad load : nodeRegistry.getLoads()) {
+            if (!load.isAvailable()) {
+                nodes.put(load.getNode(), "DOWN");
+            }
+        }
         return nodes;
     }
+    
+    /**
+     * 获取各节点最近一次查询到的负载(本地缓存)
+     */
+    public List<NodeLoad> getNodeLoads() {
+        return nodeRegistry.getLoads();
+    }
 } 
\ No newline at end of file
@@ -2,14 +2,30 @@ package com.example.shellexecutor.service;
 
 import com.example.shellexecutor.config.ShellExecutorConfig;
 import com.example.shellexecutor.model.ExecuteResult;
+import com.example.shellexecutor.model.NodeLoad;
+import com.example.shellexecutor.model.ShellBatchRequest;
+import com.example.shellexecutor.model.ShellBatchResult;
 import com.example.shellexecutor.model.ShellExecutionRequest;
+import com.example.shellexecutor.util.BoundedOutputBuffer;
+import com.example.shellexecutor.util.LineSplitter;
+import com.example.shellexecutor.util.OutputSink;
+import com.example.shellexecutor.util.ProcessUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import lombok.extern.slf4j.Slf4j;
+import javax.annotation.PostConstruct;
 import java.io.*;
+import java.lang.management.ManagementFactory;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
 
 @Slf4j
 @Service
@@ -21,8 +37,45 @@ public class ShellService {
     @Autowired
     private ShellExecutorConfig config;
     
+    @Autowired
+    private ExecutionEngine executionEngine;
+    
+    @Autowired
+    private OutputPump outputPump;
+    
+    @Autowired
+    private CommandResultCache resultCache;
+    
+    @Autowired
+    private ShellWorkerPool workerPool;
+    
+    @Autowired
+    private ExecutionScheduler executionScheduler;
+    
+    @Autowired
+    private ExecutionMetrics metrics;
+    
     private static final boolean IS_WINDOWS = System.getProperty("os.name").toLowerCase().contains("win");
-    private static final Charset CHARSET = IS_WINDOWS ? Charset.forName("GBK") : Charset.forName("UTF-8");
+    public static final Charset CHARSET = IS_WINDOWS ? Charset.forName("GBK") : Charset.forName("UTF-8");
+    private static final int DRAIN_CHUNK_SIZE = 8192;
+    private static final long OUTPUT_DRAIN_TIMEOUT_MS = 1000;
+    private static final String SKIPPED_MESSAGE = "前序命令执行失败，已跳过";
+    private static final String BATCH_CALLER_PREFIX = "batch:";
+    static final String TIMEOUT_MESSAGE = "命令执行超时";
+    
+    // 正在运行的命令数，进程启动前加一，结束后减一
+    private final AtomicInteger runningCommands = new AtomicInteger();
+    
+    // 正在运行的异步命令进程，按执行ID登记，供取消时结束进程树
+    private final Map<String, Process> runningProcesses = new ConcurrentHashMap<>();
+    
+    @PostConstruct
+    public void init() {
+        metrics.gauge("shell.processes.running", "正在运行的命令数", runningCommands::get);
+        metrics.gauge("shell.processes.async", "正在运行的异步命令进程数", runningProcesses::size);
+        metrics.gauge("shell.executions.retained", "内存中保留的执行数", executionManager::getRetainedCount);
+        metrics.gauge("shell.scheduler.queued", "调度队列中等待的异步命令数", executionScheduler::getQueued);
+    }
     
     private String[] buildCommand(String command) {
         if (IS_WINDOWS) {
@@ -32,18 +85,42 @@ public class ShellService {
         }
     }
 
-    private String readInputStream(InputStream inputStream) throws IOException {
-        if (inputStream == null) {
-            return "";
+    /**
+     * 在进程运行期间持续读取输出流，避免输出超过管道缓冲区时子进程阻塞
+     * 默认由输出泵统一读取，关闭输出泵时每个输出流占用一个IO线程(或虚拟线程)阻塞读取
+     */
+    private CompletableFuture<Void> startStreamReader(Process process, InputStream inputStream, OutputSink sink) {
+        if (config.getEngine().isPumpEnabled()) {
+            return outputPump.register(process, inputStream, sink);
         }
-        StringBuilder sb = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, CHARSET))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                sb.append(line).append(System.lineSeparator());
+        return executionEngine.runIo(() -> {
+            byte[] chunk = new byte[DRAIN_CHUNK_SIZE];
+            try (InputStream in = inputStream) {
+                int read;
+                while ((read = in.read(chunk)) != -1) {
+                    sink.onData(chunk, 0, read);
+                }
+            } catch (IOException e) {
+                log.debug("读取命令输出流结束: {}", e.getMessage());
+            } finally {
+                sink.onEof();
             }
+        });
+    }
+
+    /**
+     * 进程退出后等待输出读取完成；若后台子进程仍持有管道则不再等待
+     */
+    private void awaitDrained(CompletableFuture<?> drainer) {
+        try {
+            drainer.get(OUTPUT_DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("进程已退出但输出流未关闭，可能仍有后台子进程持有管道");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warn("读取命令输出失败: {}", e.getMessage());
         }
-        return sb.toString();
     }
     
     public ExecuteResult executeCommand(String command) {
@@ -55,29 +132,80 @@ public class ShellService {
         
         if (config.isCommandBlocked(command)) {
             log.warn("命令被禁止执行: {}", command);
+            metrics.commandBlocked(ExecutionMetrics.MODE_SYNC);
             result.setExitCode(-1);
             result.setError("命令被禁止执行");
             return result;
         }
         
+        return resultCache.execute(command, () -> runCommand(command, cmdArray));
+    }
+    
+    private ExecuteResult runCommand(String command, String[] cmdArray) {
+        ExecuteResult result = new ExecuteResult();
+        runningCommands.incrementAndGet();
+        ExecutionMetrics.Probe probe = metrics.start(ExecutionMetrics.MODE_POOLED);
+        String outcome = ExecutionMetrics.OUTCOME_ERROR;
         try {
+            ExecuteResult pooled = workerPool.execute(command);
+            if (pooled != null) {
+                log.info("命令执行完成，退出码 {}: {}", pooled.getExitCode(), command);
+                if (TIMEOUT_MESSAGE.equals(pooled.getError())) {
+                    metrics.commandTimedOut(ExecutionMetrics.MODE_POOLED);
+                    outcome = ExecutionMetrics.OUTCOME_TIMEOUT;
+                } else {
+                    outcome = pooled.isSuccess() ? ExecutionMetrics.OUTCOME_SUCCESS : ExecutionMetrics.OUTCOME_FAILED;
+                }
+                return pooled;
+            }
+            // 没有可用的工作进程时单独启动进程，从此处开始计时
+            probe = metrics.start(ExecutionMetrics.MODE_SYNC);
             ProcessBuilder processBuilder = new ProcessBuilder(cmdArray);
             Process process = processBuilder.start();
-            boolean completed = process.waitFor(config.getCommandTimeoutMs(), TimeUnit.MILLISECONDS);
+            probe.spawned();
+            
+            // 进程运行期间同时读取标准输出和错误输出
+            BoundedOutputBuffer stdout = new BoundedOutputBuffer(config.getMaxOutputBytes());
+            BoundedOutputBuffer stderr = new BoundedOutputBuffer(config.getMaxOutputBytes());
+            CompletableFuture<Void> drainers;
+            try {
+                drainers = CompletableFuture.allOf(
+                    startStreamReader(process, process.getInputStream(),
+                        probe.wrap(ExecutionMetrics.STREAM_STDOUT, stdout)),
+                    startStreamReader(process, process.getErrorStream(),
+                        probe.wrap(ExecutionMetrics.STREAM_STDERR, stderr)));
+            } catch (RejectedExecutionException e) {
+                log.warn("IO线程池已满，命令被拒绝: {} - {}", command, e.getMessage());
+                ProcessUtils.destroyTree(process);
+                outcome = ExecutionMetrics.OUTCOME_REJECTED;
+                result.setExitCode(-1);
+                result.setError("执行引擎繁忙，命令被拒绝");
+                return result;
+            }
+            
+            boolean completed = ProcessUtils.waitFor(process, config.getCommandTimeoutMs(), executionEngine.isVirtual());
             
             if (!completed) {
                 log.warn("命令执行超时 {} 毫秒: {}", config.getCommandTimeoutMs(), command);
-                process.destroyForcibly();
+                ProcessUtils.destroyTree(process);
+                metrics.commandTimedOut(ExecutionMetrics.MODE_SYNC);
+                outcome = ExecutionMetrics.OUTCOME_TIMEOUT;
                 result.setExitCode(-1);
-                result.setError("命令执行超时");
+                result.setError(TIMEOUT_MESSAGE);
                 return result;
             }
             
+            awaitDrained(drainers);
             result.setExitCode(process.exitValue());
-            result.setOutput(readInputStream(process.getInputStream()));
-            result.setError(readInputStream(process.getErrorStream()));
+            result.setOutput(stdout.toString(CHARSET));
+            result.setError(stderr.toString(CHARSET));
+            result.setTruncated(stdout.isTruncated() || stderr.isTruncated());
+            outcome = result.isSuccess() ? ExecutionMetrics.OUTCOME_SUCCESS : ExecutionMetrics.OUTCOME_FAILED;
             
             log.info("命令执行完成，退出码 {}: {}", result.getExitCode(), command);
+            if (result.isTruncated()) {
+                log.warn("命令输出超过 {} 字节，已截断: {}", config.getMaxOutputBytes(), command);
+            }
             if (!result.getError().isEmpty()) {
                 log.warn("命令执行出现错误输出: {}", result.getError());
             }
@@ -85,18 +213,39 @@ public class ShellService {
             log.error("命令执行失败: {} - {}", command, e.getMessage(), e);
             result.setExitCode(1);
             result.setError(e.getMessage());
+        } finally {
+            probe.finish(outcome);
+            runningCommands.decrementAndGet();
         }
         return result;
     }
     
+    /**
+     * 本节点的负载，供调用方选择负载最低的节点
+     */
+    public NodeLoad getLoad() {
+        NodeLoad load = new NodeLoad();
+        load.setRunningCommands(runningCommands.get());
+        load.setQueueDepth(executionEngine.getQueueDepth() + executionScheduler.getQueued());
+        load.setSystemLoad(ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage());
+        load.setAvailableProcessors(Runtime.getRuntime().availableProcessors());
+        load.setUpdateTime(System.currentTimeMillis());
+        return load;
+    }
+    
+    /**
+     * 异步执行，命令按请求的优先级和调用方排队，由调度器在有空闲名额时启动
+     */
     public String executeCommandAsync(ShellExecutionRequest request) {
         String command = request.getCommand();
+        ExecutionScheduler.checkPriority(request.getPriority());
         log.info("开始异步执行命令: {}", command);
         String[] cmdArray = buildCommand(command);
         log.info("实际执行的异步命令数组: {}", Arrays.toString(cmdArray));
         
         if (config.isCommandBlocked(command)) {
             log.warn("异步命令被禁止执行: {}", command);
+            metrics.commandBlocked(ExecutionMetrics.MODE_ASYNC);
             String executionId = executionManager.createExecution(command);
             executionManager.setError(executionId, "命令被禁止执行");
             return executionId;
@@ -108,55 +257,282 @@ public class ShellService {
         }
         
         final String finalExecutionId = executionId;
-        log.info("异步命令开始执行，执行ID {}: {}", executionId, command);
+        log.info("异步命令进入调度队列，执行ID {}，调用方 {}，优先级 {}: {}", executionId,
+            request.getCaller(), request.getPriority(), command);
+        executionScheduler.submit(executionId, request.getCaller(), request.getPriority(),
+            () -> runAsyncExecution(finalExecutionId, command, cmdArray));
         
-        CompletableFuture.runAsync(() -> {
-            try {
-                ProcessBuilder processBuilder = new ProcessBuilder(cmdArray);
-                Process process = processBuilder.start();
-                
-                // 启动输出流读取线程
-                startOutputReader(process.getInputStream(), finalExecutionId, false);
-                startOutputReader(process.getErrorStream(), finalExecutionId, true);
-                
-                // 等待进程完成或超时
-                boolean completed = process.waitFor(config.getCommandTimeoutMs(), TimeUnit.MILLISECONDS);
-                
-                if (!completed) {
-                    log.warn("异步命令执行超时 {} 毫秒: {}", config.getCommandTimeoutMs(), command);
-                    process.destroyForcibly();
-                    executionManager.setTimeout(finalExecutionId);
-                } else {
-                    int exitCode = process.exitValue();
-                    log.info("异步命令执行完成，退出码 {}: {}", exitCode, command);
-                    executionManager.setFinished(finalExecutionId, exitCode);
-                }
-                
-            } catch (Exception e) {
-                log.error("异步命令执行失败: {} - {}", command, e.getMessage(), e);
-                executionManager.setError(finalExecutionId, e.getMessage());
+        return executionId;
+    }
+    
+    /**
+     * 批量同步执行
+     * 调用线程和最多parallelism-1个等待线程依次领取命令执行，等待线程池已满时由调用线程执行其余命令
+     */
+    public ShellBatchResult executeBatch(ShellBatchRequest batch) {
+        List<ShellExecutionRequest> requests = checkBatch(batch);
+        long startTime = System.currentTimeMillis();
+        ExecuteResult[] results = new ExecuteResult[requests.size()];
+        AtomicBoolean failed = new AtomicBoolean();
+        Runnable worker = batchWorker(requests.size(), index -> {
+            if (batch.isStopOnFailure() && failed.get()) {
+                results[index] = skippedResult();
+                return;
+            }
+            ExecuteResult result = executeCommand(requests.get(index).getCommand());
+            results[index] = result;
+            if (!result.isSuccess()) {
+                failed.set(true);
             }
         });
+        List<CompletableFuture<Void>> workers = startBatchWorkers(batchParallelism(batch, requests.size()) - 1, worker);
+        worker.run();
+        CompletableFuture.allOf(workers.toArray(new CompletableFuture[0])).join();
         
-        return executionId;
+        ShellBatchResult batchResult = new ShellBatchResult();
+        batchResult.setResults(Arrays.asList(results));
+        for (ExecuteResult result : results) {
+            if (result.isSkipped()) {
+                batchResult.setSkipped(batchResult.getSkipped() + 1);
+            } else if (result.isSuccess()) {
+                batchResult.setSucceeded(batchResult.getSucceeded() + 1);
+            } else {
+                batchResult.setFailed(batchResult.getFailed() + 1);
+            }
+        }
+        batchResult.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+        log.info("批量执行完成，成功 {}，失败 {}，跳过 {}", batchResult.getSucceeded(), batchResult.getFailed(),
+            batchResult.getSkipped());
+        return batchResult;
+    }
+    
+    /**
+     * 批量异步执行
+     * 立即为所有命令创建执行记录并返回执行ID，命令按各自的优先级进入调度队列；
+     * 同一批次作为一个调用方排队，同时运行的命令数不超过parallelism，
+     * stopOnFailure时按顺序逐个执行(均使用第一个命令的优先级)，某个命令失败后其余命令标记为SKIPPED
+     */
+    public List<String> executeBatchAsync(ShellBatchRequest batch) {
+        List<ShellExecutionRequest> requests = checkBatch(batch);
+        for (ShellExecutionRequest request : requests) {
+            ExecutionScheduler.checkPriority(request.getPriority());
+        }
+        List<String> executionIds = new ArrayList<>(requests.size());
+        boolean[] blocked = new boolean[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            String command = requests.get(i).getCommand();
+            String executionId = executionManager.createExecution(command);
+            if (config.isCommandBlocked(command)) {
+                log.warn("异步命令被禁止执行: {}", command);
+                metrics.commandBlocked(ExecutionMetrics.MODE_ASYNC);
+                executionManager.setError(executionId, "命令被禁止执行");
+                blocked[i] = true;
+            }
+            executionIds.add(executionId);
+        }
+        if (requests.isEmpty()) {
+            return executionIds;
+        }
+        
+        String caller = BATCH_CALLER_PREFIX + executionIds.get(0);
+        int parallelism = batchParallelism(batch, requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            if (blocked[i]) {
+                if (batch.isStopOnFailure()) {
+                    skipRemaining(executionIds, i);
+                    break;
+                }
+                continue;
+            }
+            final int index = i;
+            String executionId = executionIds.get(i);
+            String command = requests.get(i).getCommand();
+            String[] cmdArray = buildCommand(command);
+            String priority = requests.get(batch.isStopOnFailure() ? 0 : i).getPriority();
+            executionScheduler.submit(executionId, caller, priority, parallelism, () -> {
+                if (!runAsyncExecution(executionId, command, cmdArray) && batch.isStopOnFailure()) {
+                    skipRemaining(executionIds, index);
+                }
+            });
+        }
+        log.info("批量异步命令进入调度队列，调用方 {}，共 {} 个", caller, requests.size());
+        return executionIds;
+    }
+    
+    /**
+     * 按顺序执行的批量中某个命令失败后，其后的命令移出调度队列并标记为SKIPPED
+     * 失败的命令仍占用批次唯一的运行名额，其后的命令不会在此期间启动
+     */
+    private void skipRemaining(List<String> executionIds, int failedIndex) {
+        for (int i = failedIndex + 1; i < executionIds.size(); i++) {
+            executionScheduler.remove(executionIds.get(i));
+            executionManager.setSkipped(executionIds.get(i), SKIPPED_MESSAGE);
+        }
     }
     
-    private void startOutputReader(InputStream inputStream, String executionId, boolean isError) {
-        CompletableFuture.runAsync(() -> {
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, CHARSET))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    if (isError) {
-                        log.debug("命令错误输出 [执行ID:{}]: {}", executionId, line);
-                        executionManager.appendError(executionId, line);
-                    } else {
-                        log.debug("命令标准输出 [执行ID:{}]: {}", executionId, line);
-                        executionManager.appendOutput(executionId, line);
+    private List<ShellExecutionRequest> checkBatch(ShellBatchRequest batch) {
+        List<ShellExecutionRequest> requests = batch.getRequests() == null
+            ? Collections.<ShellExecutionRequest>emptyList() : batch.getRequests();
+        if (requests.size() > config.getBatchMaxCommands()) {
+            throw new IllegalArgumentException(
+                "批量执行命令数 " + requests.size() + " 超过上限 " + config.getBatchMaxCommands());
+        }
+        log.info("开始批量执行 {} 个命令，并行度 {}，失败即停止: {}", requests.size(),
+            batchParallelism(batch, requests.size()), batch.isStopOnFailure());
+        return requests;
+    }
+    
+    /**
+     * 批量执行的并行度：stopOnFailure时按顺序执行，否则取请求值和节点上限中的较小值
+     */
+    private int batchParallelism(ShellBatchRequest batch, int size) {
+        if (batch.isStopOnFailure()) {
+            return 1;
+        }
+        int parallelism = config.getBatchMaxParallelism();
+        if (batch.getParallelism() != null && batch.getParallelism() > 0) {
+            parallelism = Math.min(parallelism, batch.getParallelism());
+        }
+        return Math.max(1, Math.min(parallelism, size));
+    }
+    
+    /**
+     * 工作任务：依次领取下一个命令执行，直到所有命令都已领取
+     */
+    private Runnable batchWorker(int size, IntConsumer task) {
+        AtomicInteger next = new AtomicInteger();
+        return () -> {
+            int index;
+            while ((index = next.getAndIncrement()) < size) {
+                task.accept(index);
+            }
+        };
+    }
+    
+    /**
+     * 在等待线程池上启动工作任务
+     * @return 已启动的工作任务，线程池已满时只启动其中一部分
+     */
+    private List<CompletableFuture<Void>> startBatchWorkers(int count, Runnable worker) {
+        List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            try {
+                executionEngine.submitWaiter(() -> {
+                    try {
+                        worker.run();
+                        future.complete(null);
+                    } catch (Throwable e) {
+                        future.completeExceptionally(e);
                     }
+                });
+            } catch (RejectedExecutionException e) {
+                log.warn("等待线程池已满，批量执行只启动 {} 个工作任务: {}", workers.size(), e.getMessage());
+                break;
+            }
+            workers.add(future);
+        }
+        return workers;
+    }
+    
+    private ExecuteResult skippedResult() {
+        ExecuteResult result = new ExecuteResult();
+        result.setExitCode(-1);
+        result.setError(SKIPPED_MESSAGE);
+        result.setSkipped(true);
+        return result;
+    }
+    
+    /**
+     * 取消异步执行：排队中的执行从调度队列移除；正在运行的执行结束整个进程树，
+     * 输出读取随管道关闭立即结束，已收集的输出仍可查询
+     * @return 执行存在且尚未结束时返回true
+     */
+    public boolean cancel(String executionId) {
+        if (!executionManager.setCancelled(executionId)) {
+            log.info("执行不存在或已结束，无法取消: {}", executionId);
+            return false;
+        }
+        executionScheduler.remove(executionId);
+        Process process = runningProcesses.remove(executionId);
+        if (process != null) {
+            ProcessUtils.destroyTree(process);
+        }
+        log.info("异步执行已取消: {}", executionId);
+        return true;
+    }
+    
+    /**
+     * @return 命令正常结束且退出码为0
+     */
+    private boolean runAsyncExecution(String executionId, String command, String[] cmdArray) {
+        // 出队后到运行前执行可能已被取消
+        if (!executionManager.setStarted(executionId)) {
+            return false;
+        }
+        Process process = null;
+        runningCommands.incrementAndGet();
+        ExecutionMetrics.Probe probe = metrics.start(ExecutionMetrics.MODE_ASYNC);
+        String outcome = ExecutionMetrics.OUTCOME_ERROR;
+        try {
+            ProcessBuilder processBuilder = new ProcessBuilder(cmdArray);
+            process = processBuilder.start();
+            probe.spawned();
+            runningProcesses.put(executionId, process);
+            if (executionManager.isFinished(executionId)) {
+                // 登记前已被取消，由本线程结束进程
+                log.info("异步执行在启动期间被取消: {}", executionId);
+                ProcessUtils.destroyTree(process);
+            }
+            
+            // 按行收集输出
+            CompletableFuture<Void> drainers = CompletableFuture.allOf(
+                startStreamReader(process, process.getInputStream(), probe.wrap(ExecutionMetrics.STREAM_STDOUT,
+                    new LineSplitter((line, offset, length) ->
+                        executionManager.appendOutput(executionId, line, offset, length)))),
+                startStreamReader(process, process.getErrorStream(), probe.wrap(ExecutionMetrics.STREAM_STDERR,
+                    new LineSplitter((line, offset, length) ->
+                        executionManager.appendError(executionId, line, offset, length)))));
+            
+            // 等待进程完成或超时
+            boolean completed = ProcessUtils.waitFor(process, config.getCommandTimeoutMs(), executionEngine.isVirtual());
+            
+            if (!completed) {
+                log.warn("异步命令执行超时 {} 毫秒: {}", config.getCommandTimeoutMs(), command);
+                ProcessUtils.destroyTree(process);
+                metrics.commandTimedOut(ExecutionMetrics.MODE_ASYNC);
+                outcome = ExecutionMetrics.OUTCOME_TIMEOUT;
+                executionManager.setTimeout(executionId);
+                return false;
+            } else {
+                // 输出读取完成后再标记结束，保证结束状态下输出已完整
+                awaitDrained(drainers);
+                int exitCode = process.exitValue();
+                log.info("异步命令执行完成，退出码 {}: {}", exitCode, command);
+                if (executionManager.isFinished(executionId)) {
+                    outcome = ExecutionMetrics.OUTCOME_CANCELLED;
+                } else {
+                    outcome = exitCode == 0 ? ExecutionMetrics.OUTCOME_SUCCESS : ExecutionMetrics.OUTCOME_FAILED;
                 }
-            } catch (IOException e) {
-                log.error("读取命令输出失败: {}", e.getMessage(), e);
+                executionManager.setFinished(executionId, exitCode);
+                return exitCode == 0;
             }
-        });
+            
+        } catch (RejectedExecutionException e) {
+            log.warn("IO线程池已满，异步命令被拒绝: {} - {}", command, e.getMessage());
+            ProcessUtils.destroyTree(process);
+            outcome = ExecutionMetrics.OUTCOME_REJECTED;
+            executionManager.setRejected(executionId, "执行引擎繁忙，命令被拒绝");
+        } catch (Exception e) {
+            log.error("异步命令执行失败: {} - {}", command, e.getMessage(), e);
+            executionManager.setError(executionId, e.getMessage());
+        } finally {
+            probe.finish(outcome);
+            if (process != null) {
+                runningProcesses.remove(executionId, process);
+            }
+            runningCommands.decrementAndGet();
+        }
+        return false;
     }
-} 
\ No newline at end of file
+}
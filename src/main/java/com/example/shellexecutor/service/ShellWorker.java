@@ -0,0 +1,303 @@
+package com.example.shellexecutor.service;
+
+import com.example.shellexecutor.model.ExecuteResult;
+import com.example.shellexecutor.util.BoundedOutputBuffer;
+import com.example.shellexecutor.util.ProcessUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 常驻的bash工作进程
+ * 从标准输入读取命令并在子shell中执行，命令之间不共享工作目录、变量等状态。
+ * 每条命令以唯一的分隔行包围写入，执行前在两个输出中写入分隔行，执行后在标准输出写入"分隔行 退出码"、
+ * 在错误输出写入分隔行，读取线程据此切分每条命令的输出，开始分隔行之前的输出丢弃。
+ * 命令在独立的进程组中运行(需要作业控制，dash等在没有终端时不支持)，结束后整个进程组被结束，
+ * 命令启动的后台进程不会把输出写入后续命令；分隔行每条命令随机生成，命令中不可见。命令的标准输入为/dev/null
+ */
+@Slf4j
+class ShellWorker {
+
+    private static final String SHELL = findShell();
+    private static final String SENTINEL_PREFIX = "__shell_worker_";
+
+    // 只使用shell内置命令读取命令文本，执行命令不需要启动新的shell；
+    // 工作进程自身的错误输出(如作业结束通知)丢弃，命令的错误输出和分隔行写入原错误输出(fd 3)
+    private static final String SCRIPT =
+        "exec 3>&2 2>/dev/null\n"
+            + "set -m\n"
+            + "while IFS= read -r __sw_id; do\n"
+            + "  __sw_cmd=\n"
+            + "  while IFS= read -r __sw_line && [ \"$__sw_line\" != \"$__sw_id\" ]; do\n"
+            + "    __sw_cmd=\"$__sw_cmd$__sw_line\n\"\n"
+            + "  done\n"
+            + "  printf '\\n%s\\n' \"$__sw_id\"\n"
+            + "  printf '\\n%s\\n' \"$__sw_id\" >&3\n"
+            + "  ( eval \"unset __sw_id __sw_cmd __sw_line __sw_rc __sw_pid; $__sw_cmd\" ) </dev/null 2>&3 3>&- &\n"
+            + "  __sw_pid=$!\n"
+            + "  wait \"$__sw_pid\"\n"
+            + "  __sw_rc=$?\n"
+            + "  kill -KILL -- \"-$__sw_pid\"\n"
+            + "  printf '\\n%s %s\\n' \"$__sw_id\" \"$__sw_rc\"\n"
+            + "  printf '\\n%s\\n' \"$__sw_id\" >&3\n"
+            + "done\n";
+
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private final String name;
+    private final Process process;
+    private final OutputStream stdin;
+    private final SentinelReader stdoutReader;
+    private final SentinelReader stderrReader;
+    private final long startTime = System.currentTimeMillis();
+    private long executedCommands;
+    private volatile boolean broken;
+
+    private ShellWorker(String name, Process process) {
+        this.name = name;
+        this.process = process;
+        this.stdin = process.getOutputStream();
+        this.stdoutReader = new SentinelReader(name + "-out", process.getInputStream(), true);
+        this.stderrReader = new SentinelReader(name + "-err", process.getErrorStream(), false);
+        stdoutReader.start();
+        stderrReader.start();
+    }
+
+    private static String findShell() {
+        for (String path : new String[]{"/bin/bash", "/usr/bin/bash"}) {
+            if (new File(path).canExecute()) {
+                return path;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 是否有支持作业控制的shell，没有时不使用工作进程
+     */
+    static boolean isSupported() {
+        return SHELL != null;
+    }
+
+    static ShellWorker start(String name) throws IOException {
+        if (SHELL == null) {
+            throw new IOException("没有可用的bash");
+        }
+        return new ShellWorker(name, new ProcessBuilder(SHELL, "-c", SCRIPT).start());
+    }
+
+    /**
+     * 执行一条命令
+     * 超时或工作进程异常退出时返回失败结果，工作进程不再可用
+     * @throws IOException 写入命令失败(工作进程已退出)，命令未执行
+     */
+    ExecuteResult execute(String command, byte[] commandBytes, long timeoutMs, long maxOutputBytes)
+        throws IOException, InterruptedException {
+        // 每条命令随机生成，已知的分隔行不能用于推测后续命令的分隔行
+        String sentinel = SENTINEL_PREFIX + UUID.randomUUID().toString().replace("-", "");
+        executedCommands++;
+        Frame frame = new Frame(sentinel, maxOutputBytes);
+        stdoutReader.frame = frame;
+        stderrReader.frame = frame;
+        byte[] sentinelLine = (sentinel + "\n").getBytes(StandardCharsets.US_ASCII);
+        try {
+            stdin.write(sentinelLine);
+            stdin.write(commandBytes);
+            stdin.write('\n');
+            stdin.write(sentinelLine);
+            stdin.flush();
+        } catch (IOException e) {
+            broken = true;
+            throw e;
+        }
+
+        ExecuteResult result = new ExecuteResult();
+        if (!frame.done.await(timeoutMs, TimeUnit.MILLISECONDS)) {
+            log.warn("命令执行超时 {} 毫秒，结束工作进程 {}: {}", timeoutMs, name, command);
+            broken = true;
+            destroy();
+            result.setExitCode(-1);
+            result.setError(ShellService.TIMEOUT_MESSAGE);
+            return result;
+        }
+        if (frame.exitCode == null) {
+            log.warn("工作进程 {} 异常退出: {}", name, command);
+            broken = true;
+            destroy();
+            result.setExitCode(-1);
+            result.setError("工作进程异常退出");
+            return result;
+        }
+        result.setExitCode(frame.exitCode);
+        result.setOutput(frame.stdout.toString(ShellService.CHARSET));
+        result.setError(frame.stderr.toString(ShellService.CHARSET));
+        result.setTruncated(frame.stdout.isTruncated() || frame.stderr.isTruncated());
+        return result;
+    }
+
+    long getExecutedCommands() {
+        return executedCommands;
+    }
+
+    long getStartTime() {
+        return startTime;
+    }
+
+    boolean isUsable() {
+        return !broken && process.isAlive();
+    }
+
+    void destroy() {
+        broken = true;
+        try {
+            stdin.close();
+        } catch (IOException e) {
+            log.debug("关闭工作进程输入流失败 {}: {}", name, e.getMessage());
+        }
+        ProcessUtils.destroyTree(process);
+    }
+
+    /**
+     * 一条命令的输出，标准输出和错误输出都读到结束分隔行后完成
+     */
+    private static final class Frame {
+        private final byte[] startSentinel;
+        private final byte[] stdoutSentinel;
+        private final byte[] stderrSentinel;
+        private final BoundedOutputBuffer stdout;
+        private final BoundedOutputBuffer stderr;
+        private final CountDownLatch done = new CountDownLatch(2);
+        private volatile Integer exitCode;
+
+        Frame(String sentinel, long maxOutputBytes) {
+            this.startSentinel = ("\n" + sentinel + "\n").getBytes(StandardCharsets.US_ASCII);
+            this.stdoutSentinel = ("\n" + sentinel + " ").getBytes(StandardCharsets.US_ASCII);
+            this.stderrSentinel = ("\n" + sentinel + "\n").getBytes(StandardCharsets.US_ASCII);
+            this.stdout = new BoundedOutputBuffer(maxOutputBytes);
+            this.stderr = new BoundedOutputBuffer(maxOutputBytes);
+        }
+    }
+
+    /**
+     * 读取工作进程的一个输出流，将开始分隔行和结束分隔行之间的输出写入当前命令
+     * 使用独立的阻塞读取线程而不是输出泵：输出泵空闲时退避休眠，会给短命令增加毫秒级延迟。
+     * 分隔行只在开头包含换行符，未匹配完整时暂存的前缀就是分隔行的前缀，不需要额外缓冲
+     */
+    private static final class SentinelReader extends Thread {
+        private final InputStream input;
+        private final boolean stdout;
+        private volatile Frame frame;
+
+        SentinelReader(String name, InputStream input, boolean stdout) {
+            super(name);
+            this.input = input;
+            this.stdout = stdout;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            byte[] chunk = new byte[READ_BUFFER_SIZE];
+            byte[] output = new byte[READ_BUFFER_SIZE];
+            // 正在匹配分隔行的命令，命令切换时重新开始匹配
+            Frame matching = null;
+            boolean started = false;
+            int matched = 0;
+            boolean readingExitCode = false;
+            int exitCode = 0;
+            boolean negative = false;
+            try (InputStream in = input) {
+                int read;
+                while ((read = in.read(chunk)) != -1) {
+                    Frame current = frame;
+                    if (current == null) {
+                        // 没有正在执行的命令
+                        continue;
+                    }
+                    if (current != matching) {
+                        matching = current;
+                        started = false;
+                        matched = 0;
+                        readingExitCode = false;
+                    }
+                    BoundedOutputBuffer sink = stdout ? current.stdout : current.stderr;
+                    int length = 0;
+                    for (int i = 0; i < read && current != null; i++) {
+                        byte b = chunk[i];
+                        if (readingExitCode) {
+                            if (b == '-') {
+                                negative = true;
+                            } else if (b >= '0' && b <= '9') {
+                                exitCode = exitCode * 10 + (b - '0');
+                            } else if (b == '\n') {
+                                readingExitCode = false;
+                                current.exitCode = negative ? -exitCode : exitCode;
+                                current = complete(current, sink, output, length);
+                                length = 0;
+                            }
+                            continue;
+                        }
+                        // 开始分隔行之前的输出来自之前命令遗留的进程，丢弃
+                        byte[] sentinel = !started ? current.startSentinel
+                            : stdout ? current.stdoutSentinel : current.stderrSentinel;
+                        if (b == sentinel[matched]) {
+                            if (++matched == sentinel.length) {
+                                matched = 0;
+                                if (!started) {
+                                    started = true;
+                                } else if (stdout) {
+                                    readingExitCode = true;
+                                    exitCode = 0;
+                                    negative = false;
+                                } else {
+                                    current = complete(current, sink, output, length);
+                                    length = 0;
+                                }
+                            }
+                            continue;
+                        }
+                        if (matched > 0) {
+                            // 暂存的分隔行前缀不是分隔行，作为普通输出
+                            if (started) {
+                                sink.write(output, 0, length);
+                                sink.write(sentinel, 0, matched);
+                                length = 0;
+                            }
+                            matched = b == '\n' ? 1 : 0;
+                            if (matched == 1) {
+                                continue;
+                            }
+                        }
+                        if (started) {
+                            output[length++] = b;
+                        }
+                    }
+                    if (current != null && length > 0) {
+                        sink.write(output, 0, length);
+                    }
+                }
+            } catch (IOException e) {
+                log.debug("工作进程输出流结束 {}: {}", getName(), e.getMessage());
+            }
+            Frame current = frame;
+            frame = null;
+            if (current != null) {
+                current.done.countDown();
+            }
+        }
+
+        private Frame complete(Frame current, BoundedOutputBuffer sink, byte[] output, int length) {
+            sink.write(output, 0, length);
+            frame = null;
+            current.done.countDown();
+            return null;
+        }
+    }
+}
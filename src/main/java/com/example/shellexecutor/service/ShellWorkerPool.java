@@ -0,0 +1,151 @@
+package com.example.shellexecutor.service;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.model.ExecuteResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 常驻shell工作进程池
+ * 同步命令交给预先启动的bash工作进程执行，避免每条命令启动一个新的shell进程。
+ * 工作进程执行指定数量的命令或存活超过指定时间后回收，超时或异常退出的工作进程立即销毁；
+ * 所有工作进程都在忙时返回null，由调用方按原方式启动进程执行
+ */
+@Slf4j
+@Component
+public class ShellWorkerPool {
+
+    private static final boolean IS_WINDOWS = System.getProperty("os.name").toLowerCase().contains("win");
+
+    @Autowired
+    private ShellExecutorConfig config;
+
+    // 空闲的工作进程，后进先出，使空闲过多的工作进程自然到期
+    private final LinkedBlockingDeque<ShellWorker> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger workers = new AtomicInteger();
+    private final AtomicInteger nextWorkerId = new AtomicInteger();
+    private volatile boolean closed;
+
+    @PostConstruct
+    public void init() {
+        if (config.getWorkers().isEnabled() && !IS_WINDOWS && !ShellWorker.isSupported()) {
+            log.warn("没有可用的bash，不使用工作进程，同步命令按原方式启动进程执行");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        ShellWorker worker;
+        while ((worker = idle.poll()) != null) {
+            retire(worker);
+        }
+    }
+
+    /**
+     * 工作进程池是否启用，Windows下和没有bash时不使用
+     */
+    public boolean isEnabled() {
+        return config.getWorkers().isEnabled() && !IS_WINDOWS && ShellWorker.isSupported() && !closed;
+    }
+
+    /**
+     * 在工作进程中执行命令
+     * @return 执行结果；未启用、所有工作进程都在忙或工作进程无法启动时返回null，命令未执行
+     */
+    public ExecuteResult execute(String command) {
+        if (!isEnabled()) {
+            return null;
+        }
+        byte[] commandBytes = command.getBytes(ShellService.CHARSET);
+        // 空闲的工作进程可能已意外退出，写入失败时换一个工作进程
+        for (int attempt = 0; attempt < 2; attempt++) {
+            ShellWorker worker = acquire();
+            if (worker == null) {
+                return null;
+            }
+            try {
+                ExecuteResult result = worker.execute(command, commandBytes, config.getCommandTimeoutMs(),
+                    config.getMaxOutputBytes());
+                log.debug("工作进程执行完成，退出码 {}: {}", result.getExitCode(), command);
+                release(worker);
+                return result;
+            } catch (IOException e) {
+                log.debug("向工作进程写入命令失败: {}", e.getMessage());
+                retire(worker);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                retire(worker);
+                ExecuteResult result = new ExecuteResult();
+                result.setExitCode(-1);
+                result.setError("命令执行被中断");
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 当前工作进程数(包括正在执行命令的)
+     */
+    public int size() {
+        return workers.get();
+    }
+
+    private ShellWorker acquire() {
+        ShellWorker worker;
+        while ((worker = idle.pollFirst()) != null) {
+            if (isReusable(worker)) {
+                return worker;
+            }
+            retire(worker);
+        }
+        int size = config.getWorkers().getSize();
+        if (workers.incrementAndGet() > size) {
+            workers.decrementAndGet();
+            return null;
+        }
+        String name = "shell-worker-" + nextWorkerId.incrementAndGet();
+        try {
+            worker = ShellWorker.start(name);
+            log.debug("工作进程已启动: {}", name);
+            return worker;
+        } catch (IOException e) {
+            workers.decrementAndGet();
+            log.warn("启动工作进程失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void release(ShellWorker worker) {
+        if (closed || !isReusable(worker)) {
+            retire(worker);
+            return;
+        }
+        idle.offerFirst(worker);
+        // 排在最后的工作进程最久未使用，到期后在这里回收
+        ShellWorker oldest = idle.peekLast();
+        if (oldest != null && oldest != worker && !isReusable(oldest) && idle.removeLastOccurrence(oldest)) {
+            retire(oldest);
+        }
+    }
+
+    private boolean isReusable(ShellWorker worker) {
+        ShellExecutorConfig.Workers settings = config.getWorkers();
+        return worker.isUsable()
+            && worker.getExecutedCommands() < settings.getMaxCommandsPerWorker()
+            && System.currentTimeMillis() - worker.getStartTime() < settings.getMaxWorkerAgeMs();
+    }
+
+    private void retire(ShellWorker worker) {
+        worker.destroy();
+        workers.decrementAndGet();
+    }
+}
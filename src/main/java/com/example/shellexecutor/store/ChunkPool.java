@@ -0,0 +1,55 @@
+package com.example.shellexecutor.store;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 固定大小数据块池
+ * 复用输出存储释放的数据块，减少大量短命令反复分配大数组的开销；池中保留的空闲块数量有上限
+ */
+public class ChunkPool {
+
+    private final int chunkSize;
+    private final int maxPooledChunks;
+    private final ConcurrentLinkedQueue<byte[]> freeChunks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledChunks = new AtomicInteger();
+
+    public ChunkPool(int chunkSize, long maxPooledBytes) {
+        this.chunkSize = chunkSize;
+        this.maxPooledChunks = (int) Math.min(Integer.MAX_VALUE, maxPooledBytes / chunkSize);
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * 获取数据块，内容未清零
+     */
+    public byte[] acquire() {
+        byte[] chunk = freeChunks.poll();
+        if (chunk != null) {
+            pooledChunks.decrementAndGet();
+            return chunk;
+        }
+        return new byte[chunkSize];
+    }
+
+    /**
+     * 归还数据块，池已满或大小不符时丢弃
+     */
+    public void release(byte[] chunk) {
+        if (chunk.length != chunkSize) {
+            return;
+        }
+        if (pooledChunks.incrementAndGet() > maxPooledChunks) {
+            pooledChunks.decrementAndGet();
+            return;
+        }
+        freeChunks.offer(chunk);
+    }
+
+    public int getPooledChunks() {
+        return pooledChunks.get();
+    }
+}
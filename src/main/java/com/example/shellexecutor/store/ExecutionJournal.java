@@ -0,0 +1,364 @@
+package com.example.shellexecutor.store;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.model.ShellExecutionOutput;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 执行历史日志
+ * 结束的执行以二进制记录顺序追加到分段文件，分段写满后写入新的分段，超出保留时间或分段数的分段整体删除。
+ * 内存中只保存按执行ID、开始时间和状态的索引，记录内容通过内存映射按需读取；
+ * 启动时顺序扫描保留的分段重建索引，写入时进程退出留下的不完整记录通过长度和CRC校验识别并忽略
+ */
+@Slf4j
+@Component
+public class ExecutionJournal {
+
+    // 记录格式版本，格式变更时递增
+    private static final byte FORMAT_VERSION = 1;
+    private static final long NONE = -1;
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    @Autowired
+    private ShellExecutorConfig config;
+
+    // 以下字段由this保护
+    private final TreeMap<Integer, JournalSegment> segments = new TreeMap<>();
+    private final JournalIndex index = new JournalIndex();
+    private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(4096);
+    private JournalSegment active;
+    private Path dir;
+    private volatile boolean enabled;
+
+    @PostConstruct
+    public synchronized void init() {
+        ShellExecutorConfig.Journal settings = config.getJournal();
+        if (!settings.isEnabled()) {
+            return;
+        }
+        dir = Paths.get(settings.getDir());
+        try {
+            Files.createDirectories(dir);
+            recover();
+            active = JournalSegment.create(dir, segments.isEmpty() ? 1 : segments.lastKey() + 1);
+            segments.put(active.getId(), active);
+            enabled = true;
+            log.info("执行历史日志目录: {}，已恢复 {} 条记录", dir.toAbsolutePath(), index.size());
+        } catch (IOException e) {
+            log.warn("无法打开执行历史日志目录 {}，不记录执行历史: {}", dir, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        enabled = false;
+        segments.values().forEach(JournalSegment::close);
+        segments.clear();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 追加一个已结束的执行，输出只记录传入的行
+     */
+    public void append(ShellExecutionOutput output) {
+        ShellExecutorConfig.Journal settings = config.getJournal();
+        synchronized (this) {
+            if (!enabled) {
+                return;
+            }
+            try {
+                recordBuffer.reset();
+                encode(output, new DataOutputStream(recordBuffer));
+                if (active.size() > 0 && active.size() + recordBuffer.size() > segmentBytes(settings)) {
+                    roll(settings);
+                }
+                long offset = active.append(recordBuffer.toByteArray(), recordBuffer.size(), settings.isFsync());
+                index.add(output.getExecutionId(), output.getStatus(), epochMillis(output.getStartTime()),
+                    JournalIndex.position(active.getId(), offset));
+            } catch (IOException e) {
+                log.warn("写入执行历史失败 {}: {}", output.getExecutionId(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 按执行ID读取记录
+     * @return 记录不存在或已删除时返回null
+     */
+    public ShellExecutionOutput get(String executionId) {
+        JournalSegment segment;
+        long position;
+        synchronized (this) {
+            Long found = enabled ? index.get(executionId) : null;
+            if (found == null) {
+                return null;
+            }
+            position = found;
+            segment = segments.get(JournalIndex.segmentId(position));
+        }
+        return read(segment, position, true);
+    }
+
+    /**
+     * 按状态和开始时间查询，只读取匹配的记录，结果不包含输出行
+     * @param status 为null时查询所有状态
+     * @param from 开始时间下限(毫秒时间戳，包含)
+     * @param to 开始时间上限(毫秒时间戳，包含)
+     * @return 按开始时间从新到旧排列
+     */
+    public List<ShellExecutionOutput> query(String status, long from, long to, int limit) {
+        List<Long> positions;
+        List<JournalSegment> owners = new ArrayList<>();
+        synchronized (this) {
+            if (!enabled || limit <= 0) {
+                return Collections.emptyList();
+            }
+            positions = index.query(status, from, to, limit);
+            for (Long position : positions) {
+                owners.add(segments.get(JournalIndex.segmentId(position)));
+            }
+        }
+        List<ShellExecutionOutput> results = new ArrayList<>(positions.size());
+        for (int i = 0; i < positions.size(); i++) {
+            ShellExecutionOutput output = read(owners.get(i), positions.get(i), false);
+            if (output != null) {
+                results.add(output);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 日志中的记录数
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * 删除超出保留时间的分段，正在写入的分段不删除
+     */
+    public synchronized void purgeExpired() {
+        if (enabled) {
+            purge(config.getJournal());
+        }
+    }
+
+    private void recover() throws IOException {
+        TreeMap<Integer, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + JournalSegment.SUFFIX)) {
+            for (Path path : stream) {
+                int id = JournalSegment.parseId(path);
+                if (id > 0) {
+                    files.put(id, path);
+                }
+            }
+        }
+        for (Map.Entry<Integer, Path> entry : files.entrySet()) {
+            JournalSegment segment = JournalSegment.open(entry.getValue(), entry.getKey());
+            segments.put(segment.getId(), segment);
+        }
+        purge(config.getJournal());
+        for (JournalSegment segment : segments.values()) {
+            segment.scan((offset, record) -> {
+                if (record.get() != FORMAT_VERSION) {
+                    return;
+                }
+                String executionId = readString(record);
+                String status = readString(record);
+                index.add(executionId, status, record.getLong(), JournalIndex.position(segment.getId(), offset));
+            });
+        }
+    }
+
+    private void roll(ShellExecutorConfig.Journal settings) throws IOException {
+        JournalSegment next = JournalSegment.create(dir, active.getId() + 1);
+        segments.put(next.getId(), next);
+        active = next;
+        purge(settings);
+    }
+
+    private void purge(ShellExecutorConfig.Journal settings) {
+        long expiration = System.currentTimeMillis() - settings.getRetentionMs();
+        Integer firstKept = null;
+        while (!segments.isEmpty()) {
+            JournalSegment oldest = segments.firstEntry().getValue();
+            if (oldest == active) {
+                break;
+            }
+            try {
+                if (segments.size() <= settings.getMaxSegments() && oldest.lastModified() >= expiration) {
+                    break;
+                }
+                oldest.delete();
+                log.info("删除执行历史分段: {}", JournalSegment.fileName(oldest.getId()));
+            } catch (IOException e) {
+                log.warn("删除执行历史分段失败 {}: {}", JournalSegment.fileName(oldest.getId()), e.getMessage());
+                break;
+            }
+            segments.remove(oldest.getId());
+            firstKept = segments.isEmpty() ? oldest.getId() + 1 : segments.firstKey();
+        }
+        if (firstKept != null) {
+            index.removeSegmentsBefore(firstKept);
+        }
+    }
+
+    private static long segmentBytes(ShellExecutorConfig.Journal settings) {
+        // 分段内偏移按32位保存，映射读取按int寻址
+        return Math.min(settings.getSegmentBytes(), Integer.MAX_VALUE);
+    }
+
+    private ShellExecutionOutput read(JournalSegment segment, long position, boolean withLines) {
+        if (segment == null) {
+            return null;
+        }
+        try {
+            ByteBuffer record = segment.read(JournalIndex.offset(position));
+            return record == null ? null : decode(record, withLines);
+        } catch (IOException e) {
+            log.warn("读取执行历史失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 索引字段(执行ID、状态、开始时间)在记录开头，恢复时只解析这几个字段
+     */
+    private static void encode(ShellExecutionOutput output, DataOutputStream out) throws IOException {
+        out.writeByte(FORMAT_VERSION);
+        writeString(out, output.getExecutionId());
+        writeString(out, output.getStatus());
+        out.writeLong(epochMillis(output.getStartTime()));
+        writeString(out, output.getCommand());
+        out.writeLong(epochMillis(output.getEndTime()));
+        out.writeBoolean(output.getExitCode() != null);
+        out.writeInt(output.getExitCode() == null ? 0 : output.getExitCode());
+        out.writeLong(output.getExecutionTimeMs() == null ? NONE : output.getExecutionTimeMs());
+        out.writeLong(output.getQueueWaitMs() == null ? NONE : output.getQueueWaitMs());
+        writeString(out, output.getErrorMessage());
+        // 只记录了前若干行时同样标记为截断
+        out.writeBoolean(Boolean.TRUE.equals(output.getTruncated())
+            || size(output.getOutputLines()) < count(output.getOutputLineCount())
+            || size(output.getErrorLines()) < count(output.getErrorLineCount()));
+        out.writeBoolean(Boolean.TRUE.equals(output.getSpilled()));
+        writeLines(out, output.getOutputLines());
+        writeLines(out, output.getErrorLines());
+        out.flush();
+    }
+
+    private static ShellExecutionOutput decode(ByteBuffer record, boolean withLines) {
+        if (record.get() != FORMAT_VERSION) {
+            return null;
+        }
+        ShellExecutionOutput output = new ShellExecutionOutput();
+        output.setExecutionId(readString(record));
+        output.setStatus(readString(record));
+        output.setStartTime(toDateTime(record.getLong()));
+        output.setCommand(readString(record));
+        output.setEndTime(toDateTime(record.getLong()));
+        output.setFinished(true);
+        boolean hasExitCode = record.get() != 0;
+        int exitCode = record.getInt();
+        output.setExitCode(hasExitCode ? exitCode : null);
+        output.setExecutionTimeMs(optional(record.getLong()));
+        output.setQueueWaitMs(optional(record.getLong()));
+        output.setErrorMessage(readString(record));
+        output.setTruncated(record.get() != 0);
+        output.setSpilled(record.get() != 0);
+        List<String> outputLines = readLines(record);
+        List<String> errorLines = readLines(record);
+        output.setOutputLineCount((long) outputLines.size());
+        output.setErrorLineCount((long) errorLines.size());
+        if (withLines) {
+            output.setOutputLines(outputLines);
+            output.setErrorLines(errorLines);
+        }
+        return output;
+    }
+
+    private static void writeLines(DataOutputStream out, List<String> lines) throws IOException {
+        List<String> values = lines == null ? Collections.<String>emptyList() : lines;
+        out.writeInt(values.size());
+        for (String line : values) {
+            writeString(out, line);
+        }
+    }
+
+    private static List<String> readLines(ByteBuffer record) {
+        int count = record.getInt();
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            lines.add(readString(record));
+        }
+        return lines;
+    }
+
+    /**
+     * 字符串保存为"长度(4字节)+UTF-8字节"，null的长度为-1
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer record) {
+        int length = record.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int size(List<String> lines) {
+        return lines == null ? 0 : lines.size();
+    }
+
+    private static long count(Long lineCount) {
+        return lineCount == null ? 0 : lineCount;
+    }
+
+    private static Long optional(long value) {
+        return value == NONE ? null : value;
+    }
+
+    private static long epochMillis(LocalDateTime time) {
+        return time == null ? NONE : time.atZone(ZONE).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime toDateTime(long millis) {
+        return millis == NONE ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZONE);
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.shellexecutor.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 执行历史日志的内存索引，不是线程安全的，由{@link ExecutionJournal}加锁访问
+ * 记录位置为"分段号(高32位)+分段内偏移(低32位)"。按执行ID的索引为哈希表；
+ * 按状态的索引为每个状态一组按开始时间排序的数组，时间范围查询通过二分查找定位，不扫描其他记录。
+ * 执行大致按开始时间的顺序结束，插入位置通常在数组末尾附近
+ */
+class JournalIndex {
+
+    private final Map<String, Long> byId = new HashMap<>();
+    private final Map<String, TimeIndex> byStatus = new HashMap<>();
+
+    static long position(int segmentId, long offset) {
+        return ((long) segmentId << 32) | offset;
+    }
+
+    static int segmentId(long position) {
+        return (int) (position >>> 32);
+    }
+
+    static long offset(long position) {
+        return position & 0xFFFFFFFFL;
+    }
+
+    void add(String executionId, String status, long startTime, long position) {
+        Long previous = byId.put(executionId, position);
+        if (previous != null) {
+            // 同一执行只保留最后写入的记录
+            for (TimeIndex index : byStatus.values()) {
+                index.remove(previous);
+            }
+        }
+        byStatus.computeIfAbsent(status, key -> new TimeIndex()).add(startTime, position);
+    }
+
+    Long get(String executionId) {
+        return byId.get(executionId);
+    }
+
+    int size() {
+        return byId.size();
+    }
+
+    /**
+     * 查找开始时间在[from, to]范围内的记录，按开始时间从新到旧排列
+     * @param status 为null时查找所有状态
+     */
+    List<Long> query(String status, long from, long to, int limit) {
+        List<long[]> hits = new ArrayList<>();
+        if (status != null) {
+            TimeIndex index = byStatus.get(status);
+            if (index != null) {
+                index.collect(from, to, limit, hits);
+            }
+        } else {
+            for (TimeIndex index : byStatus.values()) {
+                index.collect(from, to, limit, hits);
+            }
+            hits.sort((a, b) -> Long.compare(b[0], a[0]));
+        }
+        List<Long> positions = new ArrayList<>(Math.min(limit, hits.size()));
+        for (int i = 0; i < hits.size() && i < limit; i++) {
+            positions.add(hits.get(i)[1]);
+        }
+        return positions;
+    }
+
+    /**
+     * 删除分段号小于minSegmentId的分段中的记录
+     */
+    void removeSegmentsBefore(int minSegmentId) {
+        byId.values().removeIf(position -> segmentId(position) < minSegmentId);
+        byStatus.values().removeIf(index -> index.retain(minSegmentId) == 0);
+    }
+
+    /**
+     * 一个状态的记录，按开始时间升序排列
+     */
+    private static final class TimeIndex {
+        private long[] times = new long[64];
+        private long[] positions = new long[64];
+        private int size;
+
+        void add(long time, long position) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            int index = upperBound(time);
+            if (index < size) {
+                System.arraycopy(times, index, times, index + 1, size - index);
+                System.arraycopy(positions, index, positions, index + 1, size - index);
+            }
+            times[index] = time;
+            positions[index] = position;
+            size++;
+        }
+
+        void remove(long position) {
+            for (int i = size - 1; i >= 0; i--) {
+                if (positions[i] == position) {
+                    System.arraycopy(times, i + 1, times, i, size - i - 1);
+                    System.arraycopy(positions, i + 1, positions, i, size - i - 1);
+                    size--;
+                    return;
+                }
+            }
+        }
+
+        void collect(long from, long to, int limit, List<long[]> hits) {
+            int low = lowerBound(from);
+            for (int i = upperBound(to) - 1, count = 0; i >= low && count < limit; i--, count++) {
+                hits.add(new long[]{times[i], positions[i]});
+            }
+        }
+
+        int retain(int minSegmentId) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (segmentId(positions[i]) >= minSegmentId) {
+                    times[kept] = times[i];
+                    positions[kept] = positions[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            return size;
+        }
+
+        /**
+         * 第一个开始时间不小于time的位置
+         */
+        private int lowerBound(long time) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (times[mid] < time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * 第一个开始时间大于time的位置
+         */
+        private int upperBound(long time) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (times[mid] <= time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
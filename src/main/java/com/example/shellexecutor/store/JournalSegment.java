@@ -0,0 +1,198 @@
+package com.example.shellexecutor.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * 执行历史日志的一个分段文件
+ * 记录格式为"长度(4字节)+CRC32(4字节)+内容"，只在文件末尾顺序追加；
+ * 读取时将文件映射到内存，追加的数据超出已映射的范围时重新映射
+ */
+class JournalSegment {
+
+    static final String SUFFIX = ".journal";
+    static final int HEADER_BYTES = 8;
+
+    private final int id;
+    private final Path path;
+    private final FileChannel channel;
+    private volatile long size;
+    private MappedByteBuffer mapped;
+
+    private JournalSegment(int id, Path path, FileChannel channel, long size) {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.size = size;
+    }
+
+    /**
+     * 创建用于追加的新分段
+     */
+    static JournalSegment create(Path dir, int id) throws IOException {
+        Path path = dir.resolve(fileName(id));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        return new JournalSegment(id, path, channel, 0);
+    }
+
+    /**
+     * 打开已有的只读分段
+     */
+    static JournalSegment open(Path path, int id) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        return new JournalSegment(id, path, channel, channel.size());
+    }
+
+    static String fileName(int id) {
+        return String.format("%010d%s", id, SUFFIX);
+    }
+
+    /**
+     * 从文件名解析分段号，不是分段文件时返回-1
+     */
+    static int parseId(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    int getId() {
+        return id;
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * 追加一条记录，由调用方保证只有一个写入线程
+     * @return 记录在分段中的起始位置
+     */
+    long append(byte[] payload, int length, boolean fsync) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, length);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + length);
+        buffer.putInt(length).putInt((int) crc.getValue()).put(payload, 0, length);
+        buffer.flip();
+        long position = size;
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+        if (fsync) {
+            channel.force(false);
+        }
+        size = offset;
+        return position;
+    }
+
+    /**
+     * 读取一条记录的内容
+     * @return 内容的只读视图；位置无效或校验失败时返回null
+     */
+    ByteBuffer read(long position) throws IOException {
+        ByteBuffer buffer = map(position + HEADER_BYTES);
+        if (buffer == null) {
+            return null;
+        }
+        int length = buffer.getInt((int) position);
+        if (length < 0) {
+            return null;
+        }
+        if (position + HEADER_BYTES + length > buffer.capacity()) {
+            buffer = map(position + HEADER_BYTES + length);
+            if (buffer == null) {
+                return null;
+            }
+        }
+        ByteBuffer record = buffer.duplicate();
+        record.position((int) position + HEADER_BYTES).limit((int) position + HEADER_BYTES + length);
+        record = record.slice();
+        if (crc(record) != buffer.getInt((int) position + 4)) {
+            return null;
+        }
+        return record;
+    }
+
+    /**
+     * 依次读取分段中的记录，遇到不完整或校验失败的记录(写入时进程退出)时停止
+     */
+    void scan(RecordVisitor visitor) throws IOException {
+        ByteBuffer buffer = map(0);
+        if (buffer == null) {
+            return;
+        }
+        long position = 0;
+        while (position + HEADER_BYTES <= buffer.capacity()) {
+            ByteBuffer record = read(position);
+            if (record == null) {
+                break;
+            }
+            visitor.visit(position, record);
+            position += HEADER_BYTES + record.capacity();
+        }
+    }
+
+    /**
+     * 映射到内存的文件内容，已映射的范围不足minSize时重新映射到当前文件大小
+     */
+    private synchronized ByteBuffer map(long minSize) throws IOException {
+        long current = size;
+        if (current < minSize || current == 0) {
+            return null;
+        }
+        if (mapped == null || mapped.capacity() < minSize) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, current);
+        }
+        return mapped.asReadOnlyBuffer();
+    }
+
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // 关闭失败不影响已映射的内容
+        }
+    }
+
+    /**
+     * 关闭并删除分段文件，已映射的内容在不再引用后由GC释放
+     */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    long lastModified() throws IOException {
+        return Files.getLastModifiedTime(path).toMillis();
+    }
+
+    private static int crc(ByteBuffer record) {
+        CRC32 crc = new CRC32();
+        if (record.hasArray()) {
+            crc.update(record.array(), record.arrayOffset() + record.position(), record.remaining());
+        } else {
+            byte[] bytes = new byte[record.remaining()];
+            record.duplicate().get(bytes);
+            crc.update(bytes, 0, bytes.length);
+        }
+        return (int) crc.getValue();
+    }
+
+    interface RecordVisitor {
+        void visit(long position, ByteBuffer record);
+    }
+}
@@ -0,0 +1,579 @@
+package com.example.shellexecutor.store;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单个输出流的行存储
+ * 每行以"变长整数长度+原始字节"的记录追加到连续的逻辑字节序列中，只在读取时按请求的行范围创建String。
+ * 堆内数据保存在从{@link ChunkPool}获取的固定大小数据块中，扩容不复制已有数据；
+ * 超出执行的内存配额或全局内存预算时整体转存到追加写入的磁盘文件，超出磁盘配额后丢弃后续行并标记截断。
+ * 行号索引是稀疏的：每隔indexInterval行记录一次字节位置，索引写满后间隔翻倍，因此索引占用的内存有上限。
+ *
+ * <p>单写多读：追加在锁内进行(每个输出流只有一个读取线程写入，锁没有竞争)，写入数据后再发布volatile的
+ * 长度和行数，读取方先读行数再读数据，无需加锁即可看到一致的快照。索引扩容或压缩时整体替换，已发布的检查点不再修改。
+ * 数据块归还给数据块池前检查读取计数，有读取方可能仍在使用时交给GC回收，避免读到被其他执行复用的数据块。
+ */
+@Slf4j
+public class LineStore {
+
+    private static final int MAX_HEADER_BYTES = 5;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_CHECKPOINTS = 4096;
+
+    private final OutputQuota quota;
+    private final ChunkPool chunkPool;
+    private final int chunkSize;
+    private final String streamName;
+    private final byte[] header = new byte[MAX_HEADER_BYTES];
+    private final AtomicInteger readers = new AtomicInteger();
+
+    // 堆内数据块，转存后为null；seal后最后一个数据块会裁剪为实际长度
+    private volatile byte[][] chunks = new byte[4][];
+    private int chunkCount;
+    private boolean tailTrimmed;
+    private long memoryReserved;
+
+    // 转存文件，文件中保存[0, fileSize)共fileLineCount行，其余数据在写缓冲区中
+    private volatile FileChannel channel;
+    private volatile long fileSize;
+    private volatile long fileLineCount;
+    private Path spillPath;
+    private long diskReserved;
+    private byte[] writeBuffer;
+    private int writeBufferLength;
+    private int writeBufferLines;
+
+    private volatile long size;
+    private volatile long lineCount;
+    private volatile Index index = new Index(new long[16], 16);
+    private int checkpointCount;
+    private volatile boolean truncated;
+    private volatile boolean spilled;
+    private volatile boolean closed;
+
+    LineStore(OutputQuota quota, String streamName) {
+        this.quota = quota;
+        this.chunkPool = quota.getChunkPool();
+        this.chunkSize = chunkPool.getChunkSize();
+        this.streamName = streamName;
+    }
+
+    /**
+     * 追加一行，超出配额时丢弃
+     */
+    public synchronized void append(byte[] line, int offset, int length) {
+        if (closed || truncated) {
+            return;
+        }
+        int headerLength = writeVarint(header, length);
+        int recordLength = headerLength + length;
+        if (channel == null && !ensureMemory(recordLength) && !spill()) {
+            truncated = true;
+            return;
+        }
+        if (channel != null) {
+            if (!quota.tryReserveDisk(recordLength)) {
+                truncated = true;
+                return;
+            }
+            diskReserved += recordLength;
+        }
+        long position = size;
+        addCheckpoint(position);
+        if (channel == null) {
+            writeMemory(position, header, 0, headerLength);
+            writeMemory(position + headerLength, line, offset, length);
+        } else {
+            try {
+                writeRecord(headerLength, line, offset, length);
+            } catch (IOException e) {
+                log.warn("写入输出转存文件失败 {}: {}", spillPath, e.getMessage());
+                truncated = true;
+                return;
+            }
+        }
+        // 先发布长度再发布行数，读取方读到行数时对应的数据和长度均已可见
+        size = position + recordLength;
+        lineCount = lineCount + 1;
+    }
+
+    /**
+     * 读取从fromLine开始的最多maxLines行
+     * 堆内数据和已写入转存文件的数据无需加锁；只有请求的行仍在转存写缓冲区中时才加锁写出
+     */
+    public List<String> read(long fromLine, int maxLines, Charset charset) {
+        if (fromLine < 0 || maxLines <= 0) {
+            return new ArrayList<>();
+        }
+        long position;
+        long skip;
+        long count;
+        readers.incrementAndGet();
+        try {
+            long lines = lineCount;
+            if (closed || fromLine >= lines) {
+                return new ArrayList<>();
+            }
+            long end = size;
+            Index current = index;
+            byte[][] data = chunks;
+            int checkpoint = (int) (fromLine / current.interval);
+            position = current.checkpoints[checkpoint];
+            skip = fromLine - checkpoint * current.interval;
+            count = Math.min(maxLines, lines - fromLine);
+            if (data != null) {
+                return new RecordReader(data, chunkSize, end).read(position, skip, count, charset);
+            }
+        } finally {
+            readers.decrementAndGet();
+        }
+
+        // 已转存：先读行数再读文件长度，写出时按相反顺序更新
+        long flushedLines = fileLineCount;
+        long flushedSize = fileSize;
+        if (fromLine + count > flushedLines) {
+            synchronized (this) {
+                try {
+                    if (!closed) {
+                        flush();
+                    }
+                } catch (IOException e) {
+                    log.warn("写入输出转存文件失败 {}: {}", spillPath, e.getMessage());
+                    truncated = true;
+                }
+                flushedSize = fileSize;
+            }
+        }
+        FileChannel fileChannel = channel;
+        if (fileChannel == null) {
+            // 读取期间已关闭
+            return new ArrayList<>();
+        }
+        return new RecordReader(fileChannel, flushedSize).read(position, skip, count, charset);
+    }
+
+    /**
+     * 输出结束：写出缓冲区，并将最后一个数据块裁剪为实际长度后归还数据块池
+     */
+    public synchronized void seal() {
+        if (closed) {
+            return;
+        }
+        if (channel != null) {
+            try {
+                flush();
+            } catch (IOException e) {
+                log.warn("写入输出转存文件失败 {}: {}", spillPath, e.getMessage());
+                truncated = true;
+            }
+            writeBuffer = null;
+        } else if (chunkCount > 0 && !tailTrimmed) {
+            int used = (int) (size - (long) (chunkCount - 1) * chunkSize);
+            if (used < chunkSize) {
+                byte[][] current = chunks;
+                byte[] tail = current[chunkCount - 1];
+                byte[][] trimmed = Arrays.copyOf(current, chunkCount);
+                trimmed[chunkCount - 1] = Arrays.copyOf(tail, used);
+                chunks = trimmed;
+                recycle(tail);
+                quota.releaseMemory(chunkSize - used);
+                memoryReserved -= chunkSize - used;
+                tailTrimmed = true;
+            }
+        }
+    }
+
+    /**
+     * 释放内存配额并删除转存文件
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        releaseChunks();
+        FileChannel fileChannel = channel;
+        if (fileChannel != null) {
+            try {
+                fileChannel.close();
+                Files.deleteIfExists(spillPath);
+            } catch (IOException e) {
+                log.warn("删除输出转存文件失败 {}: {}", spillPath, e.getMessage());
+            }
+            quota.releaseDisk(diskReserved);
+            writeBuffer = null;
+        }
+    }
+
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public boolean isSpilled() {
+        return spilled;
+    }
+
+    private boolean ensureMemory(int recordLength) {
+        long required = size + recordLength;
+        byte[][] current = chunks;
+        if (tailTrimmed) {
+            // seal之后仍有输出，恢复完整的最后一个数据块
+            byte[] tail = current[chunkCount - 1];
+            if (!quota.tryReserveMemory(chunkSize - tail.length)) {
+                return false;
+            }
+            memoryReserved += chunkSize - tail.length;
+            byte[] chunk = chunkPool.acquire();
+            System.arraycopy(tail, 0, chunk, 0, tail.length);
+            current = Arrays.copyOf(current, current.length);
+            current[chunkCount - 1] = chunk;
+            chunks = current;
+            tailTrimmed = false;
+        }
+        int needed = (int) ((required + chunkSize - 1) / chunkSize) - chunkCount;
+        if (needed <= 0) {
+            return true;
+        }
+        // 一次预留全部所需数据块，失败时不留下超出数据末尾的数据块
+        if (!quota.tryReserveMemory((long) needed * chunkSize)) {
+            return false;
+        }
+        memoryReserved += (long) needed * chunkSize;
+        if (chunkCount + needed > current.length) {
+            current = Arrays.copyOf(current, Math.max(current.length * 2, chunkCount + needed));
+        }
+        for (int i = 0; i < needed; i++) {
+            current[chunkCount++] = chunkPool.acquire();
+        }
+        chunks = current;
+        return true;
+    }
+
+    private void writeMemory(long position, byte[] data, int offset, int length) {
+        byte[][] current = chunks;
+        while (length > 0) {
+            int chunkIndex = (int) (position / chunkSize);
+            int chunkOffset = (int) (position % chunkSize);
+            int n = Math.min(length, chunkSize - chunkOffset);
+            System.arraycopy(data, offset, current[chunkIndex], chunkOffset, n);
+            position += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    private void releaseChunks() {
+        byte[][] released = chunks;
+        if (released == null) {
+            return;
+        }
+        chunks = null;
+        for (int i = 0; i < chunkCount; i++) {
+            recycle(released[i]);
+        }
+        chunkCount = 0;
+        quota.releaseMemory(memoryReserved);
+        memoryReserved = 0;
+    }
+
+    /**
+     * 归还不再引用的数据块
+     * 调用前已通过volatile写替换数据块引用，之后开始的读取只能看到新引用；
+     * 读取计数为0说明没有读取方持有旧引用，否则交给GC回收
+     */
+    private void recycle(byte[] chunk) {
+        if (readers.get() == 0) {
+            chunkPool.release(chunk);
+        }
+    }
+
+    private boolean spill() {
+        if (!quota.isSpillEnabled() || !quota.tryReserveDisk(size)) {
+            return false;
+        }
+        Path path = quota.spillFile(streamName);
+        FileChannel fileChannel = null;
+        byte[][] current = chunks;
+        try {
+            fileChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+            for (int i = 0; i < chunkCount; i++) {
+                long chunkStart = (long) i * chunkSize;
+                int length = (int) Math.min(current[i].length, size - chunkStart);
+                writeFully(fileChannel, current[i], 0, length, chunkStart);
+            }
+        } catch (IOException e) {
+            log.warn("输出转存失败 {}: {}", path, e.getMessage());
+            if (fileChannel != null) {
+                try {
+                    fileChannel.close();
+                    Files.deleteIfExists(path);
+                } catch (IOException ignored) {
+                    // 已记录转存失败
+                }
+            }
+            quota.releaseDisk(size);
+            return false;
+        }
+        spillPath = path;
+        diskReserved = size;
+        fileSize = size;
+        fileLineCount = lineCount;
+        // 读取方看到数据块为null时，转存文件已经可读
+        channel = fileChannel;
+        spilled = true;
+        releaseChunks();
+        log.debug("输出超出内存上限，已转存到 {}", path);
+        return true;
+    }
+
+    private void writeRecord(int headerLength, byte[] line, int offset, int length) throws IOException {
+        if (writeBuffer == null) {
+            writeBuffer = new byte[WRITE_BUFFER_SIZE];
+        }
+        int recordLength = headerLength + length;
+        if (writeBufferLength + recordLength > writeBuffer.length) {
+            flush();
+        }
+        if (recordLength > writeBuffer.length) {
+            long position = fileSize;
+            writeFully(channel, header, 0, headerLength, position);
+            writeFully(channel, line, offset, length, position + headerLength);
+            fileSize = position + recordLength;
+            fileLineCount = fileLineCount + 1;
+            return;
+        }
+        System.arraycopy(header, 0, writeBuffer, writeBufferLength, headerLength);
+        System.arraycopy(line, offset, writeBuffer, writeBufferLength + headerLength, length);
+        writeBufferLength += recordLength;
+        writeBufferLines++;
+    }
+
+    private void flush() throws IOException {
+        if (writeBufferLength > 0) {
+            int length = writeBufferLength;
+            int lines = writeBufferLines;
+            writeBufferLength = 0;
+            writeBufferLines = 0;
+            long position = fileSize;
+            writeFully(channel, writeBuffer, 0, length, position);
+            fileSize = position + length;
+            fileLineCount = fileLineCount + lines;
+        }
+    }
+
+    private void addCheckpoint(long position) {
+        long line = lineCount;
+        Index current = index;
+        if (line % current.interval != 0 || line / current.interval != checkpointCount) {
+            return;
+        }
+        if (checkpointCount == current.checkpoints.length) {
+            if (current.checkpoints.length < MAX_CHECKPOINTS) {
+                current = new Index(Arrays.copyOf(current.checkpoints, current.checkpoints.length * 2),
+                    current.interval);
+            } else {
+                // 间隔翻倍，保留偶数位置的检查点
+                long[] compacted = new long[current.checkpoints.length];
+                for (int i = 0; i < checkpointCount / 2; i++) {
+                    compacted[i] = current.checkpoints[i * 2];
+                }
+                checkpointCount /= 2;
+                current = new Index(compacted, current.interval * 2);
+            }
+            index = current;
+        }
+        current.checkpoints[checkpointCount++] = position;
+    }
+
+    /**
+     * 写入无符号变长整数(每字节7位，高位为继续标志)，短行的长度只占1字节
+     * @return 写入的字节数
+     */
+    private static int writeVarint(byte[] buffer, int value) {
+        int position = 0;
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private static void writeFully(FileChannel channel, byte[] data, int offset, int length, long position)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * 稀疏行号索引，第i个检查点为第i*interval行的字节位置
+     * 扩容或压缩时替换为新对象，已发布的检查点不再修改
+     */
+    private static final class Index {
+        final long[] checkpoints;
+        final long interval;
+
+        Index(long[] checkpoints, long interval) {
+            this.checkpoints = checkpoints;
+            this.interval = interval;
+        }
+    }
+
+    /**
+     * 顺序解析记录
+     * 堆内数据直接在数据块上解析，跨数据块的记录复制到临时缓冲区；转存文件按窗口分块读取
+     */
+    private static class RecordReader {
+        private final byte[][] chunks;
+        private final int chunkSize;
+        private final FileChannel channel;
+        private final long end;
+        private byte[] window;
+        private long windowStart;
+        private int windowLength;
+        private byte[] buffer;
+        private int headerLength;
+
+        RecordReader(byte[][] chunks, int chunkSize, long end) {
+            this.chunks = chunks;
+            this.chunkSize = chunkSize;
+            this.channel = null;
+            this.end = end;
+        }
+
+        RecordReader(FileChannel channel, long end) {
+            this.chunks = null;
+            this.chunkSize = 0;
+            this.channel = channel;
+            this.end = end;
+        }
+
+        List<String> read(long position, long skip, long count, Charset charset) {
+            List<String> lines = new ArrayList<>((int) Math.min(count, 1024));
+            try {
+                for (long i = 0; i < skip; i++) {
+                    int length = readLength(position);
+                    if (length < 0) {
+                        return lines;
+                    }
+                    position += headerLength + length;
+                }
+                for (long i = 0; i < count; i++) {
+                    int length = readLength(position);
+                    if (length < 0) {
+                        break;
+                    }
+                    position += headerLength;
+                    if (length == 0) {
+                        lines.add("");
+                        continue;
+                    }
+                    if (!ensure(position, length)) {
+                        break;
+                    }
+                    lines.add(new String(window, (int) (position - windowStart), length, charset));
+                    position += length;
+                }
+            } catch (IOException e) {
+                // 执行过期清理时文件可能已关闭
+                log.debug("读取输出转存文件结束: {}", e.getMessage());
+            }
+            return lines;
+        }
+
+        /**
+         * 读取记录长度，长度头的字节数保存在headerLength
+         * @return 没有完整的长度头时返回-1
+         */
+        private int readLength(long position) throws IOException {
+            if (position >= end || !ensure(position, (int) Math.min(MAX_HEADER_BYTES, end - position))) {
+                return -1;
+            }
+            int offset = (int) (position - windowStart);
+            int limit = (int) Math.min(windowLength, offset + MAX_HEADER_BYTES);
+            int value = 0;
+            for (int i = offset, shift = 0; i < limit; i++, shift += 7) {
+                byte b = window[i];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    headerLength = i - offset + 1;
+                    return value;
+                }
+            }
+            return -1;
+        }
+
+        private boolean ensure(long position, int length) throws IOException {
+            if (position + length > end) {
+                return false;
+            }
+            if (window != null && position >= windowStart && position + length <= windowStart + windowLength) {
+                return true;
+            }
+            if (chunks != null) {
+                int chunkIndex = (int) (position / chunkSize);
+                int chunkOffset = (int) (position % chunkSize);
+                long chunkStart = position - chunkOffset;
+                int chunkLength = (int) Math.min(chunks[chunkIndex].length, end - chunkStart);
+                if (chunkOffset + length <= chunkLength) {
+                    window = chunks[chunkIndex];
+                    windowStart = chunkStart;
+                    windowLength = chunkLength;
+                    return true;
+                }
+                // 记录跨越数据块，复制到临时缓冲区
+                byte[] copy = buffer(length);
+                for (int copied = 0; copied < length; ) {
+                    chunkIndex = (int) ((position + copied) / chunkSize);
+                    chunkOffset = (int) ((position + copied) % chunkSize);
+                    int n = Math.min(length - copied, chunkSize - chunkOffset);
+                    System.arraycopy(chunks[chunkIndex], chunkOffset, copy, copied, n);
+                    copied += n;
+                }
+                window = copy;
+                windowStart = position;
+                windowLength = length;
+                return true;
+            }
+            int toRead = (int) Math.min(Math.max(length, READ_BUFFER_SIZE), end - position);
+            byte[] data = buffer(toRead);
+            ByteBuffer byteBuffer = ByteBuffer.wrap(data, 0, toRead);
+            while (byteBuffer.hasRemaining()) {
+                if (channel.read(byteBuffer, position + byteBuffer.position()) < 0) {
+                    return false;
+                }
+            }
+            window = data;
+            windowStart = position;
+            windowLength = toRead;
+            return true;
+        }
+
+        private byte[] buffer(int length) {
+            if (buffer == null || buffer.length < length) {
+                buffer = new byte[Math.max(length, chunks != null ? 0 : READ_BUFFER_SIZE)];
+            }
+            return buffer;
+        }
+    }
+}
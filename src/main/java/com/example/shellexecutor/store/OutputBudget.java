@@ -0,0 +1,111 @@
+package com.example.shellexecutor.store;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 输出存储的全局预算
+ * 统计所有执行的输出占用的堆内存和转存文件大小，为每个执行分配{@link OutputQuota}，
+ * 并持有所有执行共用的数据块池
+ */
+@Slf4j
+@Component
+public class OutputBudget {
+
+    static final String SPILL_SUFFIX = ".spill";
+
+    @Autowired
+    private ShellExecutorConfig config;
+
+    private final AtomicLong memoryUsed = new AtomicLong();
+    private final AtomicLong diskUsed = new AtomicLong();
+    private ChunkPool chunkPool;
+    private Path spillDir;
+    private boolean spillEnabled;
+
+    @PostConstruct
+    public void init() {
+        ShellExecutorConfig.Storage storage = config.getStorage();
+        chunkPool = new ChunkPool(storage.getChunkBytes(), storage.getChunkPoolBytes());
+        spillEnabled = storage.isSpillEnabled();
+        if (!spillEnabled) {
+            return;
+        }
+        spillDir = Paths.get(storage.getSpillDir());
+        try {
+            Files.createDirectories(spillDir);
+            purgeSpillFiles();
+            log.info("输出转存目录: {}", spillDir.toAbsolutePath());
+        } catch (IOException e) {
+            spillEnabled = false;
+            log.warn("无法创建输出转存目录 {}, 超出内存上限的输出将被截断: {}", spillDir, e.getMessage());
+        }
+    }
+
+    /**
+     * 为一个执行分配存储配额
+     */
+    public OutputQuota newQuota(String executionId) {
+        ShellExecutorConfig.Storage storage = config.getStorage();
+        return new OutputQuota(this, executionId, storage.getMemoryBytesPerExecution(),
+            spillEnabled ? storage.getSpillBytesPerExecution() : 0);
+    }
+
+    public long getMemoryUsed() {
+        return memoryUsed.get();
+    }
+
+    public long getDiskUsed() {
+        return diskUsed.get();
+    }
+
+    public ChunkPool getChunkPool() {
+        return chunkPool;
+    }
+
+    boolean tryReserveMemory(long bytes) {
+        long limit = config.getStorage().getMemoryBudgetBytes();
+        while (true) {
+            long used = memoryUsed.get();
+            if (used + bytes > limit) {
+                return false;
+            }
+            if (memoryUsed.compareAndSet(used, used + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    void releaseMemory(long bytes) {
+        memoryUsed.addAndGet(-bytes);
+    }
+
+    void addDisk(long bytes) {
+        diskUsed.addAndGet(bytes);
+    }
+
+    Path spillFile(String name) {
+        return spillDir.resolve(name + SPILL_SUFFIX);
+    }
+
+    /**
+     * 清理上次运行遗留的转存文件，重启后这些执行已不存在
+     */
+    private void purgeSpillFiles() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spillDir, "*" + SPILL_SUFFIX)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
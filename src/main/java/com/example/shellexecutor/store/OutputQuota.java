@@ -0,0 +1,71 @@
+package com.example.shellexecutor.store;
+
+import java.nio.file.Path;
+
+/**
+ * 单个执行的输出存储配额
+ * 标准输出和错误输出共享同一配额，堆内存同时受全局预算限制
+ */
+public class OutputQuota {
+
+    private final OutputBudget budget;
+    private final String executionId;
+    private final long memoryLimit;
+    private final long diskLimit;
+    private long memoryUsed;
+    private long diskUsed;
+
+    OutputQuota(OutputBudget budget, String executionId, long memoryLimit, long diskLimit) {
+        this.budget = budget;
+        this.executionId = executionId;
+        this.memoryLimit = memoryLimit;
+        this.diskLimit = diskLimit;
+    }
+
+    /**
+     * 创建该执行的一个输出流存储
+     * @param streamName 输出流名称，用于转存文件名
+     */
+    public LineStore newStore(String streamName) {
+        return new LineStore(this, streamName);
+    }
+
+    synchronized boolean tryReserveMemory(long bytes) {
+        if (memoryUsed + bytes > memoryLimit || !budget.tryReserveMemory(bytes)) {
+            return false;
+        }
+        memoryUsed += bytes;
+        return true;
+    }
+
+    synchronized void releaseMemory(long bytes) {
+        memoryUsed -= bytes;
+        budget.releaseMemory(bytes);
+    }
+
+    ChunkPool getChunkPool() {
+        return budget.getChunkPool();
+    }
+
+    boolean isSpillEnabled() {
+        return diskLimit > 0;
+    }
+
+    synchronized boolean tryReserveDisk(long bytes) {
+        if (diskUsed + bytes > diskLimit) {
+            return false;
+        }
+        diskUsed += bytes;
+        budget.addDisk(bytes);
+        return true;
+    }
+
+    synchronized void releaseDisk(long bytes) {
+        diskUsed -= bytes;
+        budget.addDisk(-bytes);
+    }
+
+    Path spillFile(String streamName) {
+        return budget.spillFile(executionId + "-" + streamName);
+    }
+}
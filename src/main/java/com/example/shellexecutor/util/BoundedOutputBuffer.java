@@ -0,0 +1,63 @@
+package com.example.shellexecutor.util;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * 有上限的字节缓冲区
+ * 超出上限的数据会被丢弃并标记为截断，但调用方仍需继续读取，避免子进程因管道写满而阻塞
+ */
+public class BoundedOutputBuffer implements OutputSink {
+
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private final long maxBytes;
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int size;
+    private boolean truncated;
+
+    /**
+     * @param maxBytes 最多保留的字节数，小于等于0表示不限制
+     */
+    public BoundedOutputBuffer(long maxBytes) {
+        this.maxBytes = maxBytes <= 0 ? Integer.MAX_VALUE - 8 : Math.min(maxBytes, Integer.MAX_VALUE - 8);
+    }
+
+    @Override
+    public void onData(byte[] buffer, int offset, int length) {
+        write(buffer, offset, length);
+    }
+
+    public synchronized void write(byte[] data, int offset, int length) {
+        int writable = (int) Math.min(length, maxBytes - size);
+        if (writable < length) {
+            truncated = true;
+        }
+        if (writable <= 0) {
+            return;
+        }
+        ensureCapacity(size + writable);
+        System.arraycopy(data, offset, buffer, size, writable);
+        size += writable;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized boolean isTruncated() {
+        return truncated;
+    }
+
+    public synchronized String toString(Charset charset) {
+        return new String(buffer, 0, size, charset);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= buffer.length) {
+            return;
+        }
+        long newCapacity = Math.max((long) buffer.length << 1, required);
+        buffer = Arrays.copyOf(buffer, (int) Math.min(newCapacity, maxBytes));
+    }
+}
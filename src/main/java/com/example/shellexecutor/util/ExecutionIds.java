@@ -0,0 +1,63 @@
+package com.example.shellexecutor.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 带节点信息的执行ID
+ * 通过Dubbo创建的执行ID格式为"节点~本地ID"，节点为提供者地址"host:port"的Base64(URL安全，无填充)编码，
+ * 调用方据此直接定位执行所在的节点，不需要自行记录节点，也不需要额外查询。
+ * 本地ID即执行管理器中的ID，各节点上的查询接口同时接受两种格式
+ */
+public final class ExecutionIds {
+
+    private static final char SEPARATOR = '~';
+
+    private ExecutionIds() {
+    }
+
+    /**
+     * 在本地ID前加上节点
+     * @param node 节点地址"host:port"
+     */
+    public static String route(String node, String localId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(node.getBytes(StandardCharsets.UTF_8))
+            + SEPARATOR + localId;
+    }
+
+    /**
+     * 执行ID中的节点
+     * @return 节点地址"host:port"，不带节点信息时为null
+     */
+    public static String node(String executionId) {
+        int separator = executionId == null ? -1 : executionId.indexOf(SEPARATOR);
+        if (separator <= 0) {
+            return null;
+        }
+        String node;
+        try {
+            node = new String(Base64.getUrlDecoder().decode(executionId.substring(0, separator)),
+                StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        int portSeparator = node.lastIndexOf(':');
+        if (portSeparator <= 0 || portSeparator == node.length() - 1) {
+            return null;
+        }
+        for (int i = portSeparator + 1; i < node.length(); i++) {
+            if (!Character.isDigit(node.charAt(i))) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * 去掉节点信息后的本地ID
+     */
+    public static String local(String executionId) {
+        int separator = executionId == null ? -1 : executionId.indexOf(SEPARATOR);
+        return separator < 0 ? executionId : executionId.substring(separator + 1);
+    }
+}
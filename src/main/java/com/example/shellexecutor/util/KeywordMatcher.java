@@ -0,0 +1,165 @@
+package com.example.shellexecutor.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 多关键字子串匹配(Aho-Corasick自动机)
+ * 构建时把所有关键字编译为一个自动机，匹配时对文本只扫描一遍，耗时与关键字数量无关，且不分配内存。
+ * 关键字和文本逐字符转为小写后比较(不受默认Locale影响)
+ */
+public final class KeywordMatcher {
+
+    private static final int ROOT = 0;
+    private static final int ASCII = 128;
+
+    // 状态s的转移为labels/targets[offsets[s], offsets[s + 1])，按字符排序
+    private final int[] offsets;
+    private final char[] labels;
+    private final int[] targets;
+    // 失配时回退的状态
+    private final int[] failures;
+    // 到达该状态时已匹配某个关键字(包括失配链上的状态)
+    private final boolean[] matches;
+    // 初始状态读入ASCII字符后的状态，不命中的文本大部分时间停留在初始状态，直接查表
+    private final int[] rootTransitions = new int[ASCII];
+
+    private KeywordMatcher(int[] offsets, char[] labels, int[] targets, int[] failures, boolean[] matches) {
+        this.offsets = offsets;
+        this.labels = labels;
+        this.targets = targets;
+        this.failures = failures;
+        this.matches = matches;
+        for (int i = offsets[ROOT]; i < offsets[ROOT + 1] && labels[i] < ASCII; i++) {
+            rootTransitions[labels[i]] = targets[i];
+        }
+    }
+
+    public static KeywordMatcher compile(Collection<String> keywords) {
+        // 构建字典树
+        List<TreeMap<Character, Integer>> children = new ArrayList<>();
+        List<Boolean> terminal = new ArrayList<>();
+        children.add(new TreeMap<>());
+        terminal.add(false);
+        for (String keyword : keywords) {
+            if (keyword == null) {
+                continue;
+            }
+            int state = ROOT;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = Character.toLowerCase(keyword.charAt(i));
+                Integer next = children.get(state).get(c);
+                if (next == null) {
+                    next = children.size();
+                    children.add(new TreeMap<>());
+                    terminal.add(false);
+                    children.get(state).put(c, next);
+                }
+                state = next;
+            }
+            terminal.set(state, true);
+        }
+
+        // 展开为数组
+        int stateCount = children.size();
+        int[] offsets = new int[stateCount + 1];
+        for (int state = 0; state < stateCount; state++) {
+            offsets[state + 1] = offsets[state] + children.get(state).size();
+        }
+        char[] labels = new char[offsets[stateCount]];
+        int[] targets = new int[offsets[stateCount]];
+        boolean[] matches = new boolean[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            int index = offsets[state];
+            for (Map.Entry<Character, Integer> child : children.get(state).entrySet()) {
+                labels[index] = child.getKey();
+                targets[index] = child.getValue();
+                index++;
+            }
+            matches[state] = terminal.get(state);
+        }
+
+        // 按层次计算失配状态，父状态的失配状态先于子状态确定
+        int[] failures = new int[stateCount];
+        KeywordMatcher matcher = new KeywordMatcher(offsets, labels, targets, failures, matches);
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int i = offsets[ROOT]; i < offsets[ROOT + 1]; i++) {
+            queue.add(targets[i]);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int i = offsets[state]; i < offsets[state + 1]; i++) {
+                int child = targets[i];
+                failures[child] = matcher.next(failures[state], labels[i]);
+                matches[child] |= matches[failures[child]];
+                queue.add(child);
+            }
+        }
+        return matcher;
+    }
+
+    /**
+     * 文本[start, end)中是否包含任一关键字
+     */
+    public boolean matches(CharSequence text, int start, int end) {
+        if (matches[ROOT]) {
+            return true;
+        }
+        int state = ROOT;
+        for (int i = start; i < end; i++) {
+            state = next(state, Character.toLowerCase(text.charAt(i)));
+            if (matches[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 从state读入字符c后的状态，没有转移时沿失配状态回退
+     */
+    private int next(int state, char c) {
+        while (true) {
+            if (state == ROOT && c < ASCII) {
+                return rootTransitions[c];
+            }
+            int transition = transition(state, c);
+            if (transition >= 0) {
+                return transition;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = failures[state];
+        }
+    }
+
+    private int transition(int state, char c) {
+        int low = offsets[state];
+        int high = offsets[state + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char label = labels[mid];
+            if (label < c) {
+                low = mid + 1;
+            } else if (label > c) {
+                high = mid - 1;
+            } else {
+                return targets[mid];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 自动机的状态数
+     */
+    public int size() {
+        return failures.length;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.shellexecutor.util;
+
+import java.util.Arrays;
+
+/**
+ * 按行切分原始字节输出
+ * 未结束的行保存在可复用的字节缓冲区中，不为每次读取创建字符串
+ */
+public class LineSplitter implements OutputSink {
+
+    /**
+     * 单行最大字节数，超过后强制切分，避免无换行的输出无限占用内存
+     */
+    public static final int MAX_LINE_BYTES = 1024 * 1024;
+
+    private final LineHandler handler;
+    private byte[] pending = new byte[256];
+    private int pendingLength;
+
+    public LineSplitter(LineHandler handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public void onData(byte[] buffer, int offset, int length) {
+        int end = offset + length;
+        int lineStart = offset;
+        for (int i = offset; i < end; i++) {
+            if (buffer[i] != '\n') {
+                continue;
+            }
+            if (pendingLength == 0) {
+                emit(buffer, lineStart, i - lineStart);
+            } else {
+                append(buffer, lineStart, i - lineStart);
+                emit(pending, 0, pendingLength);
+                pendingLength = 0;
+            }
+            lineStart = i + 1;
+        }
+        if (lineStart < end) {
+            append(buffer, lineStart, end - lineStart);
+        }
+    }
+
+    @Override
+    public void onEof() {
+        if (pendingLength > 0) {
+            emit(pending, 0, pendingLength);
+            pendingLength = 0;
+        }
+    }
+
+    private void append(byte[] buffer, int offset, int length) {
+        while (pendingLength + length > MAX_LINE_BYTES) {
+            int writable = MAX_LINE_BYTES - pendingLength;
+            append(buffer, offset, writable);
+            handler.onLine(pending, 0, pendingLength);
+            pendingLength = 0;
+            offset += writable;
+            length -= writable;
+        }
+        if (pendingLength + length > pending.length) {
+            pending = Arrays.copyOf(pending, Math.min(MAX_LINE_BYTES, Math.max(pending.length << 1, pendingLength + length)));
+        }
+        System.arraycopy(buffer, offset, pending, pendingLength, length);
+        pendingLength += length;
+    }
+
+    /**
+     * 去掉Windows换行符中的\r后回调
+     */
+    private void emit(byte[] buffer, int offset, int length) {
+        if (length > 0 && buffer[offset + length - 1] == '\r') {
+            length--;
+        }
+        handler.onLine(buffer, offset, length);
+    }
+
+    /**
+     * 行回调，传入的缓冲区在回调返回后会被复用
+     */
+    public interface LineHandler {
+        void onLine(byte[] buffer, int offset, int length);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.shellexecutor.util;
+
+/**
+ * 进程输出接收器
+ * 同一输出流的回调始终由同一线程依次调用，传入的缓冲区在回调返回后会被复用
+ */
+public interface OutputSink {
+
+    /**
+     * 收到一段原始字节
+     */
+    void onData(byte[] buffer, int offset, int length);
+
+    /**
+     * 输出流结束
+     */
+    default void onEof() {
+    }
+}
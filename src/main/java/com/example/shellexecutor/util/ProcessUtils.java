@@ -0,0 +1,211 @@
+package com.example.shellexecutor.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 进程工具
+ * Java 9+的进程API通过反射调用，以保持Java 8兼容
+ */
+public final class ProcessUtils {
+
+    private static final Method ON_EXIT;
+    private static final Method TO_HANDLE;
+    private static final Method DESCENDANTS;
+    private static final Method DESTROY_HANDLE;
+    private static final File PROC = new File("/proc");
+    private static final long KILL_TIMEOUT_MS = 1000;
+
+    static {
+        Method onExit;
+        Method toHandle;
+        Method descendants;
+        Method destroyHandle;
+        try {
+            onExit = Process.class.getMethod("onExit");
+        } catch (NoSuchMethodException e) {
+            onExit = null;
+        }
+        try {
+            Class<?> handleClass = Class.forName("java.lang.ProcessHandle");
+            toHandle = Process.class.getMethod("toHandle");
+            descendants = handleClass.getMethod("descendants");
+            destroyHandle = handleClass.getMethod("destroyForcibly");
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            toHandle = null;
+            descendants = null;
+            destroyHandle = null;
+        }
+        ON_EXIT = onExit;
+        TO_HANDLE = toHandle;
+        DESCENDANTS = descendants;
+        DESTROY_HANDLE = destroyHandle;
+    }
+
+    private ProcessUtils() {
+    }
+
+    /**
+     * 等待进程结束
+     * @param parkOnly 为true且JVM支持Process.onExit时通过CompletableFuture等待。
+     *                 Process.waitFor内部使用Object.wait，在虚拟线程上会占住载体线程，onExit则只会挂起虚拟线程
+     * @return 进程在超时前结束返回true
+     */
+    public static boolean waitFor(Process process, long timeoutMs, boolean parkOnly) throws InterruptedException {
+        if (!parkOnly || ON_EXIT == null) {
+            return process.waitFor(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        try {
+            onExit(process).get(timeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            return process.waitFor(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 强制结束进程及其所有子孙进程
+     * /bin/sh -c启动的命令通常在子进程中运行，只结束shell进程时子进程会被init收养并继续运行，
+     * 且仍持有输出管道。子孙进程在结束shell进程之前查找，避免其被收养后无法找到：
+     * Java 9+使用ProcessHandle.descendants；Java 8下在Linux上读取/proc查找，再用kill结束
+     */
+    public static void destroyTree(Process process) {
+        if (DESCENDANTS != null) {
+            List<?> descendants = descendants(process);
+            process.destroyForcibly();
+            for (Object handle : descendants) {
+                destroyHandle(handle);
+            }
+            return;
+        }
+        List<Long> descendants = descendantPids(process);
+        process.destroyForcibly();
+        kill(descendants);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CompletableFuture<Process> onExit(Process process) {
+        try {
+            return (CompletableFuture<Process>) ON_EXIT.invoke(process);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("调用Process.onExit失败", e);
+        }
+    }
+
+    private static List<?> descendants(Process process) {
+        try {
+            Object handle = TO_HANDLE.invoke(process);
+            try (Stream<?> stream = (Stream<?>) DESCENDANTS.invoke(handle)) {
+                return stream.collect(Collectors.toList());
+            }
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    private static void destroyHandle(Object handle) {
+        try {
+            DESTROY_HANDLE.invoke(handle);
+        } catch (ReflectiveOperationException e) {
+            // 进程已退出或无权限结束时忽略
+        }
+    }
+
+    /**
+     * Java 8下通过/proc/[pid]/stat中的父进程号查找子孙进程，不是Linux或无法获取进程号时返回空列表
+     */
+    private static List<Long> descendantPids(Process process) {
+        long pid = pid(process);
+        File[] entries = PROC.listFiles();
+        if (pid <= 0 || entries == null) {
+            return Collections.emptyList();
+        }
+        Map<Long, List<Long>> children = new HashMap<>();
+        for (File entry : entries) {
+            String name = entry.getName();
+            if (name.isEmpty() || !Character.isDigit(name.charAt(0))) {
+                continue;
+            }
+            long parent = parentPid(new File(entry, "stat"));
+            if (parent > 0) {
+                children.computeIfAbsent(parent, key -> new ArrayList<>()).add(Long.parseLong(name));
+            }
+        }
+        List<Long> descendants = new ArrayList<>();
+        ArrayDeque<Long> pending = new ArrayDeque<>();
+        pending.add(pid);
+        while (!pending.isEmpty()) {
+            for (Long child : children.getOrDefault(pending.poll(), Collections.<Long>emptyList())) {
+                descendants.add(child);
+                pending.add(child);
+            }
+        }
+        return descendants;
+    }
+
+    /**
+     * stat格式为"pid (comm) state ppid ..."，comm中可能有空格和括号，从最后一个右括号之后解析
+     */
+    private static long parentPid(File stat) {
+        try {
+            String content = new String(Files.readAllBytes(stat.toPath()), StandardCharsets.UTF_8);
+            String[] fields = content.substring(content.lastIndexOf(')') + 2).split(" ");
+            return Long.parseLong(fields[1]);
+        } catch (IOException | RuntimeException e) {
+            // 进程在读取期间已退出
+            return -1;
+        }
+    }
+
+    /**
+     * Java 8的UNIXProcess在私有字段pid中保存进程号
+     */
+    private static long pid(Process process) {
+        try {
+            Field field = process.getClass().getDeclaredField("pid");
+            field.setAccessible(true);
+            return field.getLong(process);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static void kill(List<Long> pids) {
+        if (pids.isEmpty()) {
+            return;
+        }
+        List<String> command = new ArrayList<>(pids.size() + 2);
+        command.add("kill");
+        command.add("-9");
+        for (Long pid : pids) {
+            command.add(String.valueOf(pid));
+        }
+        try {
+            Process kill = new ProcessBuilder(command).redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(new File("/dev/null"))).start();
+            kill.waitFor(KILL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (IOException e) {
+            // 没有kill命令时只能结束shell进程
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,509 @@
+package com.example.shellexecutor.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * /bin/sh -c命令行的词法解析
+ * 按管道、;、&&、||、&、换行和子shell切分为简单命令，去掉引号和转义后得到每个单词；
+ * 命令替换($(...)、`...`)和进程替换(&lt;(...)、&gt;(...))中的命令同样会被执行，解析后作为独立的简单命令返回。
+ * 变量展开(${...})和算术展开($((...)))中的命令替换同样解析，反引号中转义的反引号按嵌套的命令替换解析。
+ * 只做词法解析，不展开变量，包含变量或命令替换的单词标记为动态单词
+ */
+public final class ShellCommandParser {
+
+    // 子shell、命令替换和展开的最大嵌套层数，正常命令远小于此值，过深的嵌套会耗尽解析线程的栈
+    static final int MAX_NESTING = 32;
+
+    private ShellCommandParser() {
+    }
+
+    /**
+     * @return 命令行中的所有简单命令，按出现顺序(命令替换中的命令在所在命令之前)
+     * @throws IllegalArgumentException 引号、括号或命令替换未闭合，或嵌套层数超过{@link #MAX_NESTING}
+     */
+    public static List<SimpleCommand> parse(String commandLine) {
+        Parser parser = new Parser(commandLine);
+        parser.parseList((char) 0);
+        return parser.commands;
+    }
+
+    /**
+     * 简单命令：一个可执行程序及其参数
+     */
+    public static final class SimpleCommand {
+        private final List<String> words;
+        private final List<Boolean> dynamic;
+        private final String text;
+
+        SimpleCommand(List<String> words, List<Boolean> dynamic, String text) {
+            this.words = Collections.unmodifiableList(words);
+            this.dynamic = dynamic;
+            this.text = text;
+        }
+
+        /**
+         * 去掉引号和转义后的单词，不含重定向
+         */
+        public List<String> getWords() {
+            return words;
+        }
+
+        /**
+         * 第index个单词是否包含变量或命令替换，执行前无法确定其值
+         */
+        public boolean isDynamic(int index) {
+            return dynamic.get(index);
+        }
+
+        /**
+         * 规范化的命令文本：单词之间以一个空格分隔，去掉引号和转义，不含重定向(如2&gt;/dev/null)
+         */
+        public String getText() {
+            return text;
+        }
+    }
+
+    private static final class Parser {
+        private final String input;
+        private int pos;
+        private final List<SimpleCommand> commands;
+        private int nesting;
+
+        Parser(String input) {
+            this(input, new ArrayList<>(), 0);
+        }
+
+        /**
+         * 解析反引号命令替换的内容，其中的命令加入外层的命令列表，嵌套层数从外层继续计算
+         */
+        Parser(String input, List<SimpleCommand> commands, int nesting) {
+            this.input = input;
+            this.commands = commands;
+            this.nesting = nesting;
+        }
+
+        /**
+         * 进入一层嵌套，解析失败时不再恢复层数
+         */
+        private void enter() {
+            if (++nesting > MAX_NESTING) {
+                throw new IllegalArgumentException("嵌套层数超过" + MAX_NESTING);
+            }
+        }
+
+        /**
+         * 解析命令列表直到closing字符(不含)或输入结束，closing为0时解析到输入结束
+         */
+        void parseList(char closing) {
+            enter();
+            parseCommands(closing);
+            nesting--;
+        }
+
+        private void parseCommands(char closing) {
+            CommandBuilder command = new CommandBuilder();
+            while (pos < input.length()) {
+                char c = input.charAt(pos);
+                if (closing != 0 && c == closing) {
+                    pos++;
+                    command.finish();
+                    return;
+                }
+                switch (c) {
+                    case ' ':
+                    case '\t':
+                    case '\r':
+                        command.endWord();
+                        pos++;
+                        break;
+                    case '\n':
+                    case ';':
+                    case '|':
+                        command.finish();
+                        command = new CommandBuilder();
+                        pos++;
+                        break;
+                    case '&':
+                        if (pos + 1 < input.length() && input.charAt(pos + 1) == '>') {
+                            // &>file 同时重定向标准输出和错误输出
+                            pos++;
+                            redirection(command);
+                        } else {
+                            command.finish();
+                            command = new CommandBuilder();
+                            pos++;
+                        }
+                        break;
+                    case '(':
+                        // 子shell，其中的命令独立解析
+                        command.finish();
+                        command = new CommandBuilder();
+                        pos++;
+                        parseList(')');
+                        break;
+                    case ')':
+                        command.finish();
+                        command = new CommandBuilder();
+                        pos++;
+                        break;
+                    case '{':
+                    case '}':
+                        // 命令组的{后跟空白，}在命令开头；其余情况(如{a,b})为普通字符
+                        boolean group = c == '{'
+                            ? command.atWordStart() && (pos + 1 == input.length() || isBlank(input.charAt(pos + 1)))
+                            : command.atCommandStart();
+                        if (group) {
+                            command.finish();
+                            command = new CommandBuilder();
+                        } else {
+                            command.append(c);
+                        }
+                        pos++;
+                        break;
+                    case '<':
+                    case '>':
+                        command.dropFileDescriptor();
+                        redirection(command);
+                        break;
+                    case '\'':
+                        command.append(singleQuoted());
+                        break;
+                    case '"':
+                        doubleQuoted(command);
+                        break;
+                    case '\\':
+                        if (pos + 1 < input.length()) {
+                            char escaped = input.charAt(pos + 1);
+                            if (escaped != '\n') {
+                                command.append(escaped);
+                            }
+                            pos += 2;
+                        } else {
+                            pos++;
+                        }
+                        break;
+                    case '`':
+                        backquoted(command, false);
+                        break;
+                    case '$':
+                        dollar(command);
+                        break;
+                    case '#':
+                        if (command.atWordStart()) {
+                            while (pos < input.length() && input.charAt(pos) != '\n') {
+                                pos++;
+                            }
+                        } else {
+                            command.append(c);
+                            pos++;
+                        }
+                        break;
+                    default:
+                        command.append(c);
+                        pos++;
+                }
+            }
+            if (closing != 0) {
+                throw new IllegalArgumentException("缺少" + closing);
+            }
+            command.finish();
+        }
+
+        private static boolean isBlank(char c) {
+            return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+        }
+
+        /**
+         * 重定向操作符，下一个单词为重定向目标；&lt;(...)和&gt;(...)为进程替换
+         */
+        private void redirection(CommandBuilder command) {
+            command.endWord();
+            pos++;
+            if (pos < input.length() && input.charAt(pos) == '(') {
+                pos++;
+                parseList(')');
+                command.redirect();
+                command.append("(...)");
+                command.markDynamic();
+                return;
+            }
+            while (pos < input.length() && "<>&|".indexOf(input.charAt(pos)) >= 0) {
+                pos++;
+            }
+            command.redirect();
+        }
+
+        private String singleQuoted() {
+            int end = input.indexOf('\'', pos + 1);
+            if (end < 0) {
+                throw new IllegalArgumentException("单引号未闭合");
+            }
+            String quoted = input.substring(pos + 1, end);
+            pos = end + 1;
+            return quoted;
+        }
+
+        private void doubleQuoted(CommandBuilder command) {
+            pos++;
+            command.quoted();
+            while (pos < input.length()) {
+                char c = input.charAt(pos);
+                if (c == '"') {
+                    pos++;
+                    return;
+                }
+                if (c == '\\' && pos + 1 < input.length() && "\\\"$`\n".indexOf(input.charAt(pos + 1)) >= 0) {
+                    if (input.charAt(pos + 1) != '\n') {
+                        command.append(input.charAt(pos + 1));
+                    }
+                    pos += 2;
+                } else if (c == '`') {
+                    backquoted(command, true);
+                } else if (c == '$') {
+                    dollar(command);
+                } else {
+                    command.append(c);
+                    pos++;
+                }
+            }
+            throw new IllegalArgumentException("双引号未闭合");
+        }
+
+        /**
+         * $开头的展开：$(...)命令替换，$((...))算术展开，${...}和$NAME变量
+         */
+        private void dollar(CommandBuilder command) {
+            char next = pos + 1 < input.length() ? input.charAt(pos + 1) : 0;
+            if (next == '(' && pos + 2 < input.length() && input.charAt(pos + 2) == '(') {
+                int start = pos;
+                pos += 3;
+                expansion(")", "算术展开未闭合");
+                command.append(input, start, pos);
+                command.markDynamic();
+            } else if (next == '(') {
+                pos += 2;
+                int start = pos;
+                parseList(')');
+                command.append("$(");
+                command.append(input, start, pos - 1);
+                command.append(")");
+                command.markDynamic();
+            } else if (next == '{') {
+                int start = pos;
+                pos += 2;
+                expansion("}", "变量展开未闭合");
+                command.append(input, start, pos);
+                command.markDynamic();
+            } else if (next == '\'') {
+                // $'...'按单引号处理
+                pos++;
+                command.append(singleQuoted());
+            } else if (Character.isLetterOrDigit(next) || next == '_' || "@*#?$!-".indexOf(next) >= 0) {
+                int end = pos + 2;
+                if (Character.isLetter(next) || next == '_') {
+                    while (end < input.length()
+                        && (Character.isLetterOrDigit(input.charAt(end)) || input.charAt(end) == '_')) {
+                        end++;
+                    }
+                }
+                command.append(input, pos, end);
+                command.markDynamic();
+                pos = end;
+            } else {
+                command.append('$');
+                pos++;
+            }
+        }
+
+        /**
+         * 变量展开或算术展开的内容，解析到匹配的closing(不在嵌套的括号和展开中)为止；
+         * 其中的命令替换和嵌套展开按同样方式解析，命令作为独立的简单命令。
+         * 转义的命令替换和单引号中的命令替换是否执行取决于所在上下文和shell实现，视为解析失败(禁止执行)
+         */
+        private void expansion(String closing, String unclosed) {
+            enter();
+            expansionBody(closing, unclosed);
+            nesting--;
+        }
+
+        private void expansionBody(String closing, String unclosed) {
+            CommandBuilder ignored = new CommandBuilder();
+            int depth = 0;
+            while (pos < input.length()) {
+                char c = input.charAt(pos);
+                if (depth == 0 && input.startsWith(closing, pos)) {
+                    pos += closing.length();
+                    return;
+                }
+                switch (c) {
+                    case '\\':
+                        if (pos + 1 < input.length() && "`$".indexOf(input.charAt(pos + 1)) >= 0) {
+                            throw new IllegalArgumentException("展开中包含转义的命令替换");
+                        }
+                        pos += 2;
+                        break;
+                    case '\'':
+                        // 单引号在双引号中的展开里不起引用作用，其中不能出现命令替换
+                        String quoted = singleQuoted();
+                        if (quoted.indexOf('`') >= 0 || quoted.contains("$(")) {
+                            throw new IllegalArgumentException("展开中的单引号包含命令替换");
+                        }
+                        break;
+                    case '"':
+                        doubleQuoted(ignored);
+                        break;
+                    case '`':
+                        backquoted(ignored, false);
+                        break;
+                    case '$':
+                        dollar(ignored);
+                        break;
+                    case '(':
+                        depth++;
+                        pos++;
+                        break;
+                    case ')':
+                        depth--;
+                        pos++;
+                        break;
+                    default:
+                        pos++;
+                }
+            }
+            throw new IllegalArgumentException(unclosed);
+        }
+
+        /**
+         * 反引号命令替换：先去掉内容中\`、\$和\\(双引号中还有\")的转义，再将内容作为命令列表解析，
+         * 转义的反引号因此成为嵌套的命令替换；所在单词标记为动态单词
+         */
+        private void backquoted(CommandBuilder command, boolean inDoubleQuotes) {
+            int start = ++pos;
+            StringBuilder body = new StringBuilder();
+            while (pos < input.length()) {
+                char c = input.charAt(pos);
+                if (c == '`') {
+                    pos++;
+                    new Parser(body.toString(), commands, nesting).parseList((char) 0);
+                    command.append('`');
+                    command.append(input, start, pos);
+                    command.markDynamic();
+                    return;
+                }
+                if (c == '\\' && pos + 1 < input.length()) {
+                    char escaped = input.charAt(pos + 1);
+                    if (escaped != '`' && escaped != '$' && escaped != '\\' && !(inDoubleQuotes && escaped == '"')) {
+                        body.append(c);
+                    }
+                    body.append(escaped);
+                    pos += 2;
+                } else {
+                    body.append(c);
+                    pos++;
+                }
+            }
+            throw new IllegalArgumentException("缺少`");
+        }
+
+        /**
+         * 正在解析的简单命令
+         */
+        private final class CommandBuilder {
+            private final List<String> words = new ArrayList<>();
+            private final List<Boolean> dynamic = new ArrayList<>();
+            private final StringBuilder text = new StringBuilder();
+            private final StringBuilder word = new StringBuilder();
+            private boolean wordStarted;
+            private boolean wordDynamic;
+            private boolean redirectTarget;
+
+            boolean atWordStart() {
+                return !wordStarted;
+            }
+
+            boolean atCommandStart() {
+                return !wordStarted && text.length() == 0;
+            }
+
+            void append(char c) {
+                word.append(c);
+                wordStarted = true;
+            }
+
+            void append(CharSequence value) {
+                word.append(value);
+                wordStarted = true;
+            }
+
+            void append(CharSequence value, int start, int end) {
+                word.append(value, start, end);
+                wordStarted = true;
+            }
+
+            void quoted() {
+                wordStarted = true;
+            }
+
+            void markDynamic() {
+                wordDynamic = true;
+                wordStarted = true;
+            }
+
+            /**
+             * 紧接在重定向操作符前的数字为文件描述符(如2&gt;)，不作为单词
+             */
+            void dropFileDescriptor() {
+                if (!wordStarted || wordDynamic || word.length() == 0) {
+                    return;
+                }
+                for (int i = 0; i < word.length(); i++) {
+                    if (!Character.isDigit(word.charAt(i))) {
+                        return;
+                    }
+                }
+                word.setLength(0);
+                wordStarted = false;
+            }
+
+            /**
+             * 下一个单词为重定向目标，不作为单词也不计入命令文本
+             */
+            void redirect() {
+                redirectTarget = true;
+            }
+
+            void endWord() {
+                if (!wordStarted) {
+                    return;
+                }
+                String value = word.toString();
+                if (redirectTarget) {
+                    redirectTarget = false;
+                } else {
+                    appendText(value);
+                    words.add(value);
+                    dynamic.add(wordDynamic);
+                }
+                word.setLength(0);
+                wordStarted = false;
+                wordDynamic = false;
+            }
+
+            private void appendText(String value) {
+                if (text.length() > 0) {
+                    text.append(' ');
+                }
+                text.append(value);
+            }
+
+            void finish() {
+                endWord();
+                if (text.length() > 0) {
+                    commands.add(new SimpleCommand(words, dynamic, text.toString()));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.shellexecutor.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShellExecutorConfigTest {
+
+    /**
+     * 原实现：逐个比较黑名单和危险关键字
+     */
+    private static boolean isBlockedByScan(ShellExecutorConfig config, String command) {
+        if (command == null || command.trim().isEmpty()) {
+            return true;
+        }
+        String normalizedCommand = command.toLowerCase().trim();
+        for (String blockedCmd : config.getBlockedCommands()) {
+            if (normalizedCommand.equals(blockedCmd.toLowerCase())) {
+                return true;
+            }
+        }
+        for (String keyword : config.getDangerousKeywords()) {
+            if (normalizedCommand.contains(keyword.toLowerCase())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    void testCompiledKeywordsMatchScan() {
+        ShellExecutorConfig config = new ShellExecutorConfig();
+        List<String> keywords = new ArrayList<>(config.getDangerousKeywords());
+        // 互为前缀、后缀和重叠的关键字，覆盖失配回退
+        keywords.addAll(Arrays.asList("abcd", "bcx", "cd", "aab", "ababc"));
+        config.setDangerousKeywords(keywords);
+        config.setBlockedCommands(Arrays.asList("Shutdown -h now", "halt"));
+        config.setDeniedCommands(new ArrayList<>());
+
+        List<String> commands = new ArrayList<>(Arrays.asList(null, "", "   ", "ls -la", "RM -RF /tmp/x",
+            "  HALT  ", "halt now", "shutdown -H NOW", "echo aabcx", "echo abababc", "echo abcx", "mv /* x",
+            "mv /*", "cat > /etc/passwd", "echo 中文 && ls"));
+        Random random = new Random(42);
+        String alphabet = "abcdx /-*>:|&";
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder command = new StringBuilder();
+            int length = random.nextInt(16);
+            for (int j = 0; j < length; j++) {
+                char c = alphabet.charAt(random.nextInt(alphabet.length()));
+                command.append(random.nextBoolean() ? c : Character.toUpperCase(c));
+            }
+            commands.add(command.toString());
+        }
+        for (String command : commands) {
+            assertEquals(isBlockedByScan(config, command), config.isCommandBlocked(command), "command: " + command);
+        }
+    }
+
+    @Test
+    void testTokenizedCommandLine() {
+        ShellExecutorConfig config = new ShellExecutorConfig();
+        // 多余空白、引号、转义和路径不能绕过危险关键字和禁止的程序
+        assertTrue(config.isCommandBlocked("rm   -rf /tmp/data"));
+        assertTrue(config.isCommandBlocked("r\"m\" -rf /tmp/data"));
+        assertTrue(config.isCommandBlocked("'rm' '-rf' /tmp/data"));
+        assertTrue(config.isCommandBlocked("/sbin/shutdown -h now"));
+        assertTrue(config.isCommandBlocked("echo ok && sudo -u root /sbin/halt"));
+        assertTrue(config.isCommandBlocked("ls | xargs -n 1 mkfs.ext4"));
+        assertTrue(config.isCommandBlocked("echo $(poweroff)"));
+        assertTrue(config.isCommandBlocked("echo `reboot`"));
+        assertTrue(config.isCommandBlocked("sh -c 'halt'"));
+        assertTrue(config.isCommandBlocked("find /tmp -exec halt \\;"));
+        assertTrue(config.isCommandBlocked("echo 'unterminated"));
+        // 作为参数出现的程序名不禁止
+        assertFalse(config.isCommandBlocked("echo 'halt' \"poweroff\" && ls -la | grep halt"));
+        assertFalse(config.isCommandBlocked("for f in a b; do echo $f; done"));
+        // 重定向到/dev/null不是设备写入
+        assertFalse(config.isCommandBlocked("ls 2>/dev/null"));
+        assertFalse(config.isCommandBlocked("find / -name x 2>/dev/null"));
+        assertFalse(config.isCommandBlocked("cmd >/dev/null 2>&1"));
+        assertTrue(config.isCommandBlocked("echo x > /dev/sda"));
+
+        config.setAllowedCommands(Arrays.asList("ls", "grep", "echo", "timeout"));
+        assertFalse(config.isCommandBlocked("ls -la /var/log | grep -i 'error' > /tmp/out 2>&1"));
+        assertFalse(config.isCommandBlocked("timeout -s KILL 10 ls"));
+        assertTrue(config.isCommandBlocked("ls; curl example.com"));
+        assertTrue(config.isCommandBlocked("ls $(cat /etc/hosts)"));
+        assertTrue(config.isCommandBlocked("timeout 10 curl example.com"));
+        assertTrue(config.isCommandBlocked("$CMD -la"));
+        assertTrue(config.isCommandBlocked("ls <(cat /etc/hosts)"));
+        assertTrue(config.isCommandBlocked("FOO=1 cat file"));
+    }
+
+    @Test
+    void testSubstitutionInsideExpansionsAndNestedBackquotes() {
+        ShellExecutorConfig config = new ShellExecutorConfig();
+        config.setAllowedCommands(Arrays.asList("echo", "ls", "cat"));
+        // 变量展开、算术展开中的命令替换和反引号中转义的反引号都会被sh执行
+        assertTrue(config.isCommandBlocked("echo ${x:-$(rm x)}"));
+        assertTrue(config.isCommandBlocked("echo \"${x:-\\`rm x\\`}\""));
+        assertTrue(config.isCommandBlocked("echo `echo \\`rm x\\``"));
+        assertTrue(config.isCommandBlocked("echo ${x:-${y:-`rm x`}}"));
+        assertTrue(config.isCommandBlocked("echo $(( $(rm x) + 1 ))"));
+        assertTrue(config.isCommandBlocked("echo \"`echo \\`rm x\\``\""));
+        // 展开中只有允许的程序时照常执行
+        assertFalse(config.isCommandBlocked("echo ${x:-$(ls)} \"${HOME}\" $((1 + (2 * 3)))"));
+        assertFalse(config.isCommandBlocked("echo `echo \\`ls\\``"));
+        assertFalse(config.isCommandBlocked("echo ${x:-}} ${y:-\"a b\"}"));
+    }
+
+    private static String nested(String open, String inner, String close, int depth) {
+        StringBuilder command = new StringBuilder("echo ");
+        for (int i = 0; i < depth; i++) {
+            command.append(open);
+        }
+        command.append(inner);
+        for (int i = 0; i < depth; i++) {
+            command.append(close);
+        }
+        return command.toString();
+    }
+
+    @Test
+    void testDeepNestingBlocked() {
+        ShellExecutorConfig config = new ShellExecutorConfig();
+        // 过深的嵌套不能耗尽解析线程的栈，按解析失败禁止执行
+        long start = System.currentTimeMillis();
+        assertTrue(config.isCommandBlocked(nested("${x:-", "a", "}", 2000)));
+        assertTrue(config.isCommandBlocked(nested("$(", "echo a", ")", 20000)));
+        assertTrue(config.isCommandBlocked(nested("(", "echo a", ")", 20000)));
+        assertTrue(config.isCommandBlocked(nested("\"$(echo ", "a", ")\"", 20000)));
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        // 上限以内的嵌套照常解析
+        assertFalse(config.isCommandBlocked(nested("$(echo ", "a", ")", 10)));
+        assertFalse(config.isCommandBlocked(nested("${x:-", "a", "}", 10)));
+    }
+
+    @Test
+    void testDecisionCache() {
+        ShellExecutorConfig config = new ShellExecutorConfig();
+        config.setCommandPolicyCacheSize(2);
+        config.isCommandBlocked("ls -la");
+        config.isCommandBlocked("ls -la");
+        config.isCommandBlocked("pwd");
+        config.isCommandBlocked("uptime");
+        CommandPolicy policy = (CommandPolicy) ReflectionTestUtils.getField(config, "commandPolicy");
+        assertEquals(2, policy.cachedCommands());
+        // 修改配置后重新编译，缓存随之清空
+        config.setDeniedCommands(new ArrayList<>(Collections.singletonList("uptime")));
+        assertTrue(config.isCommandBlocked("uptime"));
+        assertNotSame(policy, ReflectionTestUtils.getField(config, "commandPolicy"));
+    }
+
+    @Test
+    void testPolicyReloadsWhenListsReplaced() {
+        ShellExecutorConfig config = new ShellExecutorConfig();
+        config.setDangerousKeywords(new ArrayList<>(Collections.singletonList("reboot")));
+        assertFalse(config.isCommandBlocked("curl example.com"));
+
+        // 配置重新绑定时替换列表
+        config.setDangerousKeywords(new ArrayList<>(Arrays.asList("reboot", "curl")));
+        assertTrue(config.isCommandBlocked("curl example.com"));
+
+        // 原地修改列表后需要显式重新编译
+        config.getDangerousKeywords().add("wget");
+        config.reloadCommandPolicy();
+        assertTrue(config.isCommandBlocked("WGET example.com"));
+    }
+}
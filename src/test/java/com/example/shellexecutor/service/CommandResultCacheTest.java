@@ -0,0 +1,136 @@
+package com.example.shellexecutor.service;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.model.CommandCacheStats;
+import com.example.shellexecutor.model.ExecuteResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CommandResultCacheTest {
+
+    private ShellExecutorConfig config;
+    private CommandResultCache cache;
+    private final AtomicInteger spawned = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        config = new ShellExecutorConfig();
+        config.getResultCache().setEnabled(true);
+        config.getResultCache().setRules(Arrays.asList(rule("df( .*)?", 60000), rule("nproc", 60000)));
+        cache = new CommandResultCache();
+        ReflectionTestUtils.setField(cache, "config", config);
+    }
+
+    private static ShellExecutorConfig.CacheRule rule(String pattern, long ttlMs) {
+        ShellExecutorConfig.CacheRule rule = new ShellExecutorConfig.CacheRule();
+        rule.setPattern(pattern);
+        rule.setTtlMs(ttlMs);
+        return rule;
+    }
+
+    private Supplier<ExecuteResult> process(int exitCode) {
+        return () -> {
+            spawned.incrementAndGet();
+            ExecuteResult result = new ExecuteResult();
+            result.setExitCode(exitCode);
+            result.setOutput("output");
+            result.setError("");
+            return result;
+        };
+    }
+
+    @Test
+    void testCachesMatchingCommands() {
+        assertFalse(cache.execute("df -h", process(0)).isCached());
+        ExecuteResult cached = cache.execute("  df   -h ", process(0));
+        assertTrue(cached.isCached());
+        assertEquals("output", cached.getOutput());
+        assertEquals(1, spawned.get());
+
+        // 未匹配规则和执行失败的命令不缓存
+        cache.execute("uptime", process(0));
+        cache.execute("uptime", process(0));
+        cache.execute("nproc", process(1));
+        cache.execute("nproc", process(1));
+        assertEquals(5, spawned.get());
+
+        // 引号内的空白不合并
+        cache.execute("df '/a  b'", process(0));
+        cache.execute("df '/a b'", process(0));
+        assertEquals(7, spawned.get());
+
+        CommandCacheStats stats = cache.getStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(5, stats.getMisses());
+        assertEquals(3, stats.getSize());
+    }
+
+    @Test
+    void testExpirationAndEviction() throws InterruptedException {
+        config.getResultCache().setMaxEntries(2);
+        config.getResultCache().setRules(Arrays.asList(rule("nproc", 1), rule("df.*", 60000)));
+        cache.execute("nproc", process(0));
+        Thread.sleep(5);
+        assertFalse(cache.execute("nproc", process(0)).isCached());
+        assertEquals(1, cache.getStats().getExpirations());
+
+        cache.execute("df /a", process(0));
+        cache.execute("df /b", process(0));
+        assertEquals(1, cache.getStats().getEvictions());
+        assertTrue(cache.execute("df /b", process(0)).isCached());
+        assertTrue(cache.execute("df /a", process(0)).isCached());
+        assertEquals(2, cache.getStats().getSize());
+    }
+
+    @Test
+    void testCoalescesConcurrentCalls() throws Exception {
+        int callers = 8;
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<ExecuteResult> slow = () -> {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return process(0).get();
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<ExecuteResult>> results = new ArrayList<>();
+            results.add(executor.submit(() -> cache.execute("df -h", slow)));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            for (int i = 1; i < callers; i++) {
+                results.add(executor.submit(() -> cache.execute("df  -h", slow)));
+            }
+            // 等待其余调用进入等待状态
+            long deadline = System.currentTimeMillis() + 10000;
+            while (cache.getStats().getCoalesced() < callers - 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+            for (Future<ExecuteResult> result : results) {
+                assertEquals("output", result.get(10, TimeUnit.SECONDS).getOutput());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, spawned.get());
+        assertEquals(callers - 1, cache.getStats().getCoalesced());
+    }
+}
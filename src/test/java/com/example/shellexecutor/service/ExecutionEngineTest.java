@@ -0,0 +1,59 @@
+package com.example.shellexecutor.service;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.model.ExecutorPoolStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExecutionEngineTest {
+
+    private ExecutionEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        ShellExecutorConfig config = new ShellExecutorConfig();
+        config.getEngine().setWaiterCorePoolSize(2);
+        config.getEngine().setWaiterMaxPoolSize(8);
+        config.getEngine().setWaiterQueueCapacity(100);
+        engine = new ExecutionEngine();
+        ReflectionTestUtils.setField(engine, "config", config);
+        engine.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void testWaiterPoolGrowsToMaxBeforeQueueing() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(8);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // 有界队列未满时，超过核心线程数的任务也立即运行，不在队列中等待
+            for (int i = 0; i < 9; i++) {
+                engine.submitWaiter(() -> {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            ExecutorPoolStats waiter = engine.getStats().get(0);
+            assertEquals(8, waiter.getActiveCount());
+            assertEquals(1, waiter.getQueueSize());
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.shellexecutor.service;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.util.BoundedOutputBuffer;
+import com.example.shellexecutor.util.OutputSink;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExecutionMetricsTest {
+
+    private ShellExecutorConfig config;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        config = new ShellExecutorConfig();
+        registry = new SimpleMeterRegistry();
+    }
+
+    private ExecutionMetrics metrics() {
+        ExecutionMetrics metrics = new ExecutionMetrics();
+        ReflectionTestUtils.setField(metrics, "config", config);
+        ReflectionTestUtils.setField(metrics, "registry", registry);
+        metrics.init();
+        return metrics;
+    }
+
+    private static void write(OutputSink sink, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        sink.onData(bytes, 0, bytes.length);
+    }
+
+    @Test
+    void testCountsBytesAndLinesPerStream() {
+        ExecutionMetrics metrics = metrics();
+        ExecutionMetrics.Probe probe = metrics.start(ExecutionMetrics.MODE_ASYNC);
+        probe.spawned();
+        BoundedOutputBuffer stdout = new BoundedOutputBuffer(1024);
+        OutputSink sink = probe.wrap(ExecutionMetrics.STREAM_STDOUT, stdout);
+        write(sink, "a\nb");
+        write(sink, "c\nlast");
+        sink.onEof();
+        OutputSink stderr = probe.wrap(ExecutionMetrics.STREAM_STDERR, new BoundedOutputBuffer(1024));
+        write(stderr, "e\n");
+        stderr.onEof();
+        probe.finish(ExecutionMetrics.OUTCOME_FAILED);
+
+        assertEquals("a\nbc\nlast", stdout.toString(StandardCharsets.UTF_8));
+        // 没有以换行符结尾的最后一行也计为一行
+        assertEquals(3, registry.get("shell.output.lines").tag("stream", "stdout").summary().totalAmount());
+        assertEquals(9, registry.get("shell.output.bytes").tag("stream", "stdout").summary().totalAmount());
+        assertEquals(1, registry.get("shell.output.lines").tag("stream", "stderr").summary().totalAmount());
+        // 两个输出流只记录一次首字节耗时
+        assertEquals(1, registry.get("shell.output.first.byte").tag("mode", "async").timer().count());
+        assertEquals(1, registry.get("shell.execution.duration").tag("mode", "async").tag("outcome", "failed")
+            .timer().count());
+        assertEquals("success", metrics.timeRoute("node-1:20880", "executeCommand", () -> "success"));
+        assertEquals(1, registry.get("shell.route.call").tag("node", "node-1:20880").timer().count());
+    }
+
+    @Test
+    void testDisabledRecordsNothing() {
+        config.getMetrics().setEnabled(false);
+        ExecutionMetrics metrics = metrics();
+        ExecutionMetrics.Probe probe = metrics.start(ExecutionMetrics.MODE_SYNC);
+        OutputSink sink = new BoundedOutputBuffer(1024);
+        assertSame(sink, probe.wrap(ExecutionMetrics.STREAM_STDOUT, sink));
+        probe.spawned();
+        probe.finish(ExecutionMetrics.OUTCOME_SUCCESS);
+        metrics.commandBlocked(ExecutionMetrics.MODE_SYNC);
+        metrics.recordQueueWait(ExecutionScheduler.PRIORITY_HIGH, 1000);
+        metrics.gauge("shell.test", "测试", () -> 1);
+        assertTrue(registry.getMeters().isEmpty());
+    }
+}
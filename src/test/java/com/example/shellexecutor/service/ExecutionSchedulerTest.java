@@ -0,0 +1,228 @@
+package com.example.shellexecutor.service;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.model.ShellExecutionOutput;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * 调度顺序测试：启动的执行提交到等待线程池后不立即运行，由测试逐个结束以释放名额
+ */
+public class ExecutionSchedulerTest {
+
+    @TempDir
+    Path spillDir;
+
+    private ShellExecutorConfig config;
+    private ShellExecutionManager executionManager;
+    private ExecutionScheduler scheduler;
+    private ExecutionEngine executionEngine;
+    private SimpleMeterRegistry registry;
+    private final Map<String, String> executionIds = new HashMap<>();
+    private final Map<String, String> names = new HashMap<>();
+    // 正在运行的执行，按启动顺序
+    private final LinkedHashMap<String, Runnable> running = new LinkedHashMap<>();
+    private String lastStarted;
+
+    @BeforeEach
+    void setUp() {
+        config = new ShellExecutorConfig();
+        config.getStorage().setSpillDir(spillDir.toString());
+        config.getScheduler().setMaxConcurrent(2);
+        config.getScheduler().setHighPriorityReserved(0);
+        executionManager = spy(TestExecutionManagers.create(config));
+        doAnswer(invocation -> {
+            lastStarted = names.get(invocation.<String>getArgument(0));
+            return invocation.callRealMethod();
+        }).when(executionManager).setStarted(anyString());
+
+        executionEngine = mock(ExecutionEngine.class);
+        when(executionEngine.getWaiterMaxThreads()).thenReturn(Integer.MAX_VALUE);
+        doAnswer(invocation -> running.put(lastStarted, invocation.getArgument(0)))
+            .when(executionEngine).submitWaiter(any());
+        registry = new SimpleMeterRegistry();
+        scheduler = TestExecutionManagers.scheduler(config, executionEngine, executionManager,
+            TestExecutionManagers.metrics(config, registry));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executionManager.shutdown();
+    }
+
+    private void submit(String name, String caller, String priority) {
+        submit(name, caller, priority, 0);
+    }
+
+    private void submit(String name, String caller, String priority, int maxRunning) {
+        String executionId = executionManager.createExecution(name);
+        executionIds.put(name, executionId);
+        names.put(executionId, name);
+        scheduler.submit(executionId, caller, priority, maxRunning, () -> executionManager.setFinished(executionId, 0));
+    }
+
+    /**
+     * 结束最早启动的执行，释放名额后启动下一个
+     */
+    private void finishFirst() {
+        String name = running.keySet().iterator().next();
+        running.remove(name).run();
+    }
+
+    private ShellExecutionOutput output(String name) {
+        return executionManager.getOutput(executionIds.get(name));
+    }
+
+    @Test
+    void testFairShareAndPriority() {
+        for (int i = 1; i <= 4; i++) {
+            submit("a" + i, "tenant-a", "low");
+        }
+        submit("b1", "tenant-b", "low");
+        submit("i1", "ops", "high");
+        assertEquals(Arrays.asList("a1", "a2"), new ArrayList<>(running.keySet()));
+        assertEquals("RUNNING", output("a1").getStatus());
+        assertEquals("QUEUED", output("b1").getStatus());
+        assertFalse(output("b1").getFinished());
+        assertNotNull(output("b1").getQueueWaitMs());
+        assertNull(executionManager.getOutput(executionManager.createExecution("direct")).getQueueWaitMs());
+
+        // 高优先级先出队，同一优先级内按调用方轮流
+        finishFirst();
+        assertEquals(Arrays.asList("a2", "i1"), new ArrayList<>(running.keySet()));
+        finishFirst();
+        assertEquals(Arrays.asList("i1", "a3"), new ArrayList<>(running.keySet()));
+        finishFirst();
+        assertEquals(Arrays.asList("a3", "b1"), new ArrayList<>(running.keySet()));
+        finishFirst();
+        finishFirst();
+        assertEquals(Arrays.asList("a4"), new ArrayList<>(running.keySet()));
+        finishFirst();
+
+        assertEquals("COMPLETED", output("b1").getStatus());
+        assertTrue(output("b1").getQueueWaitMs() >= 0);
+        assertEquals(6, scheduler.getStats().getDispatched());
+        assertEquals(5, registry.get("shell.queue.wait").tag("priority", "low").timer().count());
+        assertEquals(1, registry.get("shell.queue.wait").tag("priority", "high").timer().count());
+        assertEquals(0, scheduler.getStats().getRunning());
+        assertEquals(0, scheduler.getQueued());
+    }
+
+    @Test
+    void testReservedSlotsAndLimits() {
+        config.getScheduler().setHighPriorityReserved(1);
+        submit("a1", "tenant-a", null);
+        submit("b1", "tenant-b", null);
+        // 普通优先级只能使用一个名额，另一个保留给高优先级
+        assertEquals(Arrays.asList("a1"), new ArrayList<>(running.keySet()));
+        submit("i1", "ops", "high");
+        assertEquals(Arrays.asList("a1", "i1"), new ArrayList<>(running.keySet()));
+        finishFirst();
+        assertEquals(Arrays.asList("i1"), new ArrayList<>(running.keySet()));
+        finishFirst();
+        assertEquals(Arrays.asList("b1"), new ArrayList<>(running.keySet()));
+
+        // 每个调用方同时只运行一个命令，c1运行期间先启动d1
+        config.getScheduler().setHighPriorityReserved(0);
+        config.getScheduler().setMaxRunningPerCaller(1);
+        submit("c1", "tenant-c", null);
+        submit("c2", "tenant-c", null);
+        submit("d1", "tenant-d", null);
+        finishFirst();
+        assertEquals(Arrays.asList("c1", "d1"), new ArrayList<>(running.keySet()));
+
+        config.getScheduler().setMaxQueued(1);
+        submit("e1", "tenant-e", null);
+        assertEquals("REJECTED", output("e1").getStatus());
+        assertEquals("QUEUED", output("c2").getStatus());
+        assertEquals(1, scheduler.getStats().getRejected());
+        assertThrows(IllegalArgumentException.class, () -> ExecutionScheduler.checkPriority("urgent"));
+    }
+
+    @Test
+    void testPerSubmissionRunningLimit() {
+        config.getScheduler().setMaxConcurrent(3);
+        // 批量执行的命令作为一个调用方排队，同时只运行parallelism个，其余名额留给其他调用方
+        for (int i = 1; i <= 3; i++) {
+            submit("b" + i, "batch:1", null, 1);
+        }
+        submit("o1", "ops", null);
+        submit("o2", "ops", null);
+        assertEquals(Arrays.asList("b1", "o1", "o2"), new ArrayList<>(running.keySet()));
+        assertEquals("QUEUED", output("b2").getStatus());
+
+        finishFirst();
+        assertEquals(Arrays.asList("o1", "o2", "b2"), new ArrayList<>(running.keySet()));
+        finishFirst();
+        finishFirst();
+        assertEquals(Arrays.asList("b2"), new ArrayList<>(running.keySet()));
+        finishFirst();
+        assertEquals(Arrays.asList("b3"), new ArrayList<>(running.keySet()));
+
+        // 全局的单个调用方上限较小时取全局上限
+        config.getScheduler().setMaxRunningPerCaller(1);
+        submit("c1", "batch:2", null, 2);
+        submit("c2", "batch:2", null, 2);
+        assertEquals(Arrays.asList("b3", "c1"), new ArrayList<>(running.keySet()));
+        assertEquals("QUEUED", output("c2").getStatus());
+    }
+
+    @Test
+    void testReservationCappedBelowSmallWaiterPool() {
+        // 等待线程池不超过保留名额时，普通和低优先级命令仍有一个名额
+        when(executionEngine.getWaiterMaxThreads()).thenReturn(3);
+        config.getScheduler().setMaxConcurrent(64);
+        config.getScheduler().setHighPriorityReserved(4);
+        submit("a1", "tenant-a", null);
+        submit("b1", "tenant-b", "low");
+        submit("i1", "ops", "high");
+        submit("i2", "ops", "high");
+        assertEquals(Arrays.asList("a1", "i1", "i2"), new ArrayList<>(running.keySet()));
+        assertEquals("QUEUED", output("b1").getStatus());
+        finishFirst();
+        finishFirst();
+        assertEquals(Arrays.asList("i2"), new ArrayList<>(running.keySet()));
+        finishFirst();
+        assertEquals(Arrays.asList("b1"), new ArrayList<>(running.keySet()));
+        finishFirst();
+
+        // 等待线程池只有一个线程时不保留名额
+        when(executionEngine.getWaiterMaxThreads()).thenReturn(1);
+        submit("a2", "tenant-a", null);
+        assertEquals(Arrays.asList("a2"), new ArrayList<>(running.keySet()));
+    }
+
+    @Test
+    void testCappedByWaiterPoolAndCountsPoolRejections() {
+        // 等待线程池只有一个线程时，出队的命令不超过线程数
+        when(executionEngine.getWaiterMaxThreads()).thenReturn(1);
+        submit("a1", "tenant-a", null);
+        submit("a2", "tenant-a", null);
+        assertEquals(Arrays.asList("a1"), new ArrayList<>(running.keySet()));
+        assertEquals(1, scheduler.getStats().getMaxConcurrent());
+        assertEquals("QUEUED", output("a2").getStatus());
+
+        // 等待线程池拒绝时计入rejected
+        doThrow(new RejectedExecutionException("full")).when(executionEngine).submitWaiter(any());
+        finishFirst();
+        assertEquals("REJECTED", output("a2").getStatus());
+        assertEquals(1, scheduler.getStats().getRejected());
+        assertEquals(0, scheduler.getStats().getRunning());
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.shellexecutor.service;
+
+import com.example.shellexecutor.api.ShellExecutorService;
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.model.ExecuteResult;
+import com.example.shellexecutor.model.FanOutNodeResult;
+import com.example.shellexecutor.model.FanOutRequest;
+import com.example.shellexecutor.model.FanOutResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class FanOutServiceTest {
+
+    private final ScheduledExecutorService timer = Executors.newScheduledThreadPool(4);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private ShellExecutorConfig config;
+    private SimpleMeterRegistry registry;
+    private FanOutService fanOutService;
+
+    @BeforeEach
+    void setUp() {
+        config = new ShellExecutorConfig();
+        config.setFanOutMaxConcurrency(3);
+        ShellReferences references = mock(ShellReferences.class);
+        when(references.get(anyString(), anyInt())).thenAnswer(invocation -> node(invocation.getArgument(0)));
+        NodeRegistry nodeRegistry = mock(NodeRegistry.class);
+        when(nodeRegistry.getNodes()).thenReturn(Collections.emptyList());
+
+        registry = new SimpleMeterRegistry();
+        ExecutionMetrics metrics = new ExecutionMetrics();
+        ReflectionTestUtils.setField(metrics, "config", config);
+        ReflectionTestUtils.setField(metrics, "registry", registry);
+        metrics.init();
+
+        fanOutService = new FanOutService();
+        ReflectionTestUtils.setField(fanOutService, "config", config);
+        ReflectionTestUtils.setField(fanOutService, "references", references);
+        ReflectionTestUtils.setField(fanOutService, "nodeRegistry", nodeRegistry);
+        ReflectionTestUtils.setField(fanOutService, "metrics", metrics);
+        fanOutService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        fanOutService.shutdown();
+        timer.shutdownNow();
+    }
+
+    /**
+     * 替身节点，按主机名决定行为：ok成功，fail退出码1，hang不返回，down调用失败
+     */
+    private ShellExecutorService node(String host) {
+        ShellExecutorService node = mock(ShellExecutorService.class);
+        if (host.startsWith("down")) {
+            when(node.executeCommandFuture(anyString())).thenThrow(new IllegalStateException("connection refused"));
+            return node;
+        }
+        when(node.executeCommandFuture(anyString())).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            CompletableFuture<ExecuteResult> future = new CompletableFuture<>();
+            if (host.startsWith("hang")) {
+                return future;
+            }
+            timer.schedule(() -> {
+                inFlight.decrementAndGet();
+                ExecuteResult result = new ExecuteResult();
+                result.setExitCode(host.startsWith("fail") ? 1 : 0);
+                future.complete(result);
+            }, 20, TimeUnit.MILLISECONDS);
+            return future;
+        });
+        return node;
+    }
+
+    @Test
+    void testFanOutSummary() {
+        FanOutRequest request = new FanOutRequest();
+        request.setCommand("uptime");
+        request.setTimeoutMs(300L);
+        request.setTargets(Arrays.asList("ok-1:20880", "ok-2:20880", "fail-1:20880", "hang-1:20880",
+            "down-1:20880", "ok-1:20880"));
+
+        List<String> streamed = Collections.synchronizedList(new ArrayList<>());
+        FanOutResult result = fanOutService.start(request, node -> streamed.add(node.getNode())).join();
+
+        // 重复的节点只执行一次
+        assertEquals(5, result.getTotal());
+        assertEquals(2, result.getSucceeded());
+        assertEquals(2, result.getFailed());
+        assertEquals(1, result.getTimedOut());
+        assertEquals(5, streamed.size());
+        // 结果按目标顺序排列，推送按返回顺序，超时的节点最后返回
+        assertEquals("hang-1:20880", streamed.get(4));
+        assertEquals(FanOutNodeResult.STATUS_FAILED, result.getResults().get(2).getStatus());
+        assertEquals(FanOutNodeResult.STATUS_TIMEOUT, result.getResults().get(3).getStatus());
+        assertEquals(FanOutNodeResult.STATUS_ERROR, result.getResults().get(4).getStatus());
+        assertEquals("connection refused", result.getResults().get(4).getErrorMessage());
+    }
+
+    @Test
+    void testRouteCallMetrics() {
+        FanOutRequest request = new FanOutRequest();
+        request.setCommand("uptime");
+        request.setTimeoutMs(300L);
+        request.setTargets(Arrays.asList("ok-1:20880", "fail-1:20880", "hang-1:20880", "down-1:20880"));
+        fanOutService.execute(request);
+
+        // 调用耗时按节点记录，执行失败的调用也算调用成功，超时的节点尚未返回
+        assertEquals(1, registry.get("shell.route.call").tag("node", "ok-1:20880").tag("outcome", "success")
+            .timer().count());
+        assertEquals(1, registry.get("shell.route.call").tag("node", "fail-1:20880").tag("outcome", "success")
+            .timer().count());
+        assertEquals(1, registry.get("shell.route.call").tag("node", "down-1:20880").tag("outcome", "error")
+            .timer().count());
+        assertNull(registry.find("shell.route.call").tag("node", "hang-1:20880").timer());
+    }
+
+    @Test
+    void testConcurrencyCap() {
+        List<String> targets = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            targets.add("ok-" + i + ":20880");
+        }
+        FanOutRequest request = new FanOutRequest();
+        request.setCommand("uptime");
+        request.setTargets(targets);
+        request.setConcurrency(10);
+
+        FanOutResult result = fanOutService.execute(request);
+
+        assertEquals(30, result.getSucceeded());
+        // 请求的并发超过配置上限时按配置上限执行
+        assertTrue(maxInFlight.get() <= config.getFanOutMaxConcurrency(), "max in flight " + maxInFlight.get());
+    }
+
+    @Test
+    void testInvalidTarget() {
+        FanOutRequest request = new FanOutRequest();
+        request.setCommand("uptime");
+        request.setTargets(Collections.singletonList("no-port"));
+        assertThrows(IllegalArgumentException.class, () -> fanOutService.execute(request));
+
+        request.setTargets(Collections.emptyList());
+        assertEquals(0, fanOutService.execute(request).getTotal());
+    }
+}
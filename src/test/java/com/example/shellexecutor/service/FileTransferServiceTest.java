@@ -0,0 +1,193 @@
+package com.example.shellexecutor.service;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.model.FileChunk;
+import com.example.shellexecutor.model.FileTransferResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileTransferServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private Path root;
+    private ShellExecutorConfig config;
+    private FileTransferService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        root = Files.createDirectory(dir.resolve("files"));
+        config = new ShellExecutorConfig();
+        config.getFileTransfer().setRoots(Collections.singletonList(root.toString()));
+        config.getFileTransfer().setChunkBytes(1000);
+        service = new FileTransferService();
+        ReflectionTestUtils.setField(service, "config", config);
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private FileTransferResult upload(String path, long offset, byte[] data, String algorithm) {
+        return service.upload(path, offset, Channels.newChannel(new ByteArrayInputStream(data)), algorithm);
+    }
+
+    @Test
+    void testUploadAndDownloadRange() throws IOException {
+        byte[] data = randomBytes(3 * 1024 * 1024 + 17);
+        String path = root.resolve("data.bin").toString();
+
+        FileTransferResult result = upload(path, 0, data, null);
+        assertEquals(data.length, result.getLength());
+        assertEquals(data.length, result.getFileSize());
+        assertNull(result.getChecksum());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Path file = service.resolveExisting(path);
+        assertEquals(data.length, service.transferTo(file, 0, data.length, Channels.newChannel(out)));
+        assertArrayEquals(data, out.toByteArray());
+
+        out.reset();
+        assertEquals(100, service.transferTo(file, 1000, 100, Channels.newChannel(out)));
+        assertArrayEquals(Arrays.copyOfRange(data, 1000, 1100), out.toByteArray());
+
+        // 超出文件末尾的部分不发送
+        out.reset();
+        assertEquals(17, service.transferTo(file, data.length - 17, 100, Channels.newChannel(out)));
+    }
+
+    @Test
+    void testResumeUploadTruncatesAfterWrittenRange() throws IOException {
+        String path = root.resolve("resume.bin").toString();
+        byte[] data = randomBytes(5000);
+        upload(path, 0, Arrays.copyOf(data, 3000), null);
+        // 上次写入的末尾已损坏，从2000处续传
+        FileTransferResult result = upload(path, 2000, Arrays.copyOfRange(data, 2000, 5000), null);
+        assertEquals(2000, result.getOffset());
+        assertEquals(3000, result.getLength());
+        assertArrayEquals(data, Files.readAllBytes(root.resolve("resume.bin")));
+
+        // 重新从0上传较短的内容时覆盖整个文件
+        upload(path, 0, Arrays.copyOf(data, 10), null);
+        assertEquals(10, Files.size(root.resolve("resume.bin")));
+
+        // 不能在文件中留下空洞
+        assertThrows(IllegalArgumentException.class, () -> upload(path, 11, new byte[1], null));
+    }
+
+    @Test
+    void testAbortedOverwriteKeepsOnlyWrittenPrefix() throws IOException {
+        String path = root.resolve("overwrite.bin").toString();
+        upload(path, 0, randomBytes(5000), null);
+        byte[] data = randomBytes(3000);
+        // 客户端在写入1000字节后断开
+        ReadableByteChannel aborted = new ReadableByteChannel() {
+            private final ReadableByteChannel delegate = Channels.newChannel(
+                new ByteArrayInputStream(Arrays.copyOf(data, 1000)));
+
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                int read = delegate.read(dst);
+                if (read < 0) {
+                    throw new IOException("连接已断开");
+                }
+                return read;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        assertThrows(UncheckedIOException.class, () -> service.upload(path, 0, aborted, null));
+
+        // 文件中不能残留旧内容的末尾，从文件大小处续传得到完整的新文件
+        long size = Files.size(root.resolve("overwrite.bin"));
+        assertTrue(size <= 1000, "size " + size);
+        assertArrayEquals(Arrays.copyOf(data, (int) size), Files.readAllBytes(root.resolve("overwrite.bin")));
+        upload(path, size, Arrays.copyOfRange(data, (int) size, data.length), null);
+        assertArrayEquals(data, Files.readAllBytes(root.resolve("overwrite.bin")));
+    }
+
+    @Test
+    void testChecksum() throws IOException {
+        String path = root.resolve("hello.txt").toString();
+        byte[] hello = "hello world\n".getBytes("UTF-8");
+        FileTransferResult uploaded = upload(path, 0, hello, "sha-256");
+        assertEquals("SHA-256", uploaded.getAlgorithm());
+        assertEquals("a948904f2f0f479b8f8197694b30184b0d2ed1c1cd2a1ec0fb85d299a192a447", uploaded.getChecksum());
+
+        assertEquals("5eb63bbbe01eeed093cb22bb8f5acdc3", service.checksum(path, "MD5", 0, 11).getChecksum());
+        assertEquals("0d4a1185", service.checksum(path, "CRC32", 0, 11).getChecksum());
+        FileTransferResult tail = service.checksum(path, "CRC32", 6, -1);
+        assertEquals(6, tail.getLength());
+        assertEquals(service.checksum(path, "CRC32", 6, 100).getChecksum(), tail.getChecksum());
+
+        assertThrows(IllegalArgumentException.class, () -> service.checksum(path, "NO-SUCH", 0, -1));
+    }
+
+    @Test
+    void testChunksReassembleFile() throws IOException {
+        byte[] data = randomBytes(2500);
+        String source = root.resolve("source.bin").toString();
+        String copy = root.resolve("copy.bin").toString();
+        upload(source, 0, data, null);
+
+        // 按数据块上限(1000字节)读取，依次写入得到相同的文件
+        long offset = 0;
+        FileChunk chunk;
+        do {
+            chunk = service.readChunk(source, offset, Integer.MAX_VALUE);
+            assertEquals(data.length, chunk.getFileSize());
+            assertTrue(chunk.getData().length <= 1000);
+            service.writeChunk(copy, offset, chunk.getData());
+            offset += chunk.getData().length;
+        } while (chunk.getData().length > 0);
+        assertArrayEquals(data, Files.readAllBytes(root.resolve("copy.bin")));
+        assertEquals(0, service.readChunk(source, 0, 0).getData().length);
+    }
+
+    @Test
+    void testPathsOutsideRootsRejected() throws IOException {
+        Path outside = Files.write(dir.resolve("secret.txt"), "secret".getBytes("UTF-8"));
+        assertThrows(IllegalArgumentException.class, () -> service.resolveExisting(outside.toString()));
+        assertThrows(IllegalArgumentException.class,
+            () -> service.resolveExisting(root.resolve("../secret.txt").toString()));
+        assertThrows(IllegalArgumentException.class, () -> service.resolveExisting("files/secret.txt"));
+        assertThrows(IllegalArgumentException.class, () -> service.resolveExisting(root.toString()));
+
+        // 允许目录中指向目录外文件的符号链接
+        Path link = Files.createSymbolicLink(root.resolve("link.txt"), outside);
+        assertThrows(IllegalArgumentException.class, () -> service.resolveExisting(link.toString()));
+        assertThrows(IllegalArgumentException.class, () -> upload(link.toString(), 0, new byte[1], null));
+        assertArrayEquals("secret".getBytes("UTF-8"), Files.readAllBytes(outside));
+
+        config.getFileTransfer().setRoots(Collections.emptyList());
+        assertThrows(IllegalArgumentException.class,
+            () -> upload(root.resolve("a.txt").toString(), 0, new byte[1], null));
+    }
+}
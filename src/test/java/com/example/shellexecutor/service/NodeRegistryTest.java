@@ -0,0 +1,76 @@
+package com.example.shellexecutor.service;
+
+import com.example.shellexecutor.api.ShellExecutorService;
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.model.NodeLoad;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class NodeRegistryTest {
+
+    private NodeRegistry nodeRegistry;
+    private ShellReferences references;
+
+    @BeforeEach
+    void setUp() {
+        references = mock(ShellReferences.class);
+        when(references.get(anyString(), anyInt())).thenAnswer(invocation -> node(invocation.getArgument(0)));
+        nodeRegistry = new NodeRegistry();
+        ReflectionTestUtils.setField(nodeRegistry, "config", new ShellExecutorConfig());
+        ReflectionTestUtils.setField(nodeRegistry, "references", references);
+    }
+
+    /**
+     * 替身节点，按主机名决定负载：busy运行8个命令，idle运行1个命令，down查询失败；均为4核
+     */
+    private ShellExecutorService node(String host) {
+        ShellExecutorService node = mock(ShellExecutorService.class);
+        if (host.startsWith("down")) {
+            when(node.getLoad()).thenThrow(new IllegalStateException("connection refused"));
+            return node;
+        }
+        NodeLoad load = new NodeLoad();
+        load.setRunningCommands(host.startsWith("busy") ? 8 : 1);
+        load.setAvailableProcessors(4);
+        when(node.getLoad()).thenReturn(load);
+        return node;
+    }
+
+    @Test
+    void testSelectLeastLoaded() {
+        assertNull(nodeRegistry.selectLeastLoaded());
+
+        nodeRegistry.refreshLoads(Arrays.asList("busy-1:20880", "idle-1:20880", "idle-2:20880", "down-1:20880"));
+        List<NodeLoad> loads = nodeRegistry.getLoads();
+        assertEquals(4, loads.size());
+        assertFalse(loads.get(3).isAvailable());
+        assertEquals("down-1:20880", loads.get(3).getNode());
+
+        // 两次刷新之间按本地分配数分摊到空闲节点，空闲节点分配到与繁忙节点持平后才选择繁忙节点
+        Map<String, Integer> selected = new HashMap<>();
+        for (int i = 0; i < 16; i++) {
+            selected.merge(nodeRegistry.selectLeastLoaded(), 1, Integer::sum);
+        }
+        assertEquals(8, selected.get("idle-1:20880").intValue());
+        assertEquals(7, selected.get("idle-2:20880").intValue());
+        assertEquals(1, selected.get("busy-1:20880").intValue());
+        assertFalse(selected.containsKey("down-1:20880"));
+        // 查询负载的节点在引用缓存中固定，不会被淘汰
+        verify(references).pin(Arrays.asList("busy-1:20880", "idle-1:20880", "idle-2:20880", "down-1:20880"));
+
+        // 刷新后本地分配数清零
+        nodeRegistry.refreshLoads(Arrays.asList("busy-1:20880", "idle-1:20880"));
+        assertEquals("idle-1:20880", nodeRegistry.selectLeastLoaded());
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.shellexecutor.service;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.model.ShellOutputChunk;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * SSE推送测试：事件格式、断线重连偏移量和心跳
+ */
+public class OutputStreamerTest {
+
+    private ShellExecutorConfig config;
+    private ExecutionEngine executionEngine;
+    private MockMvc mockMvc;
+    // 依次返回的输出，为null时表示执行不存在
+    private final Queue<CompletableFuture<ShellOutputChunk>> chunks = new ConcurrentLinkedQueue<>();
+    private final List<String> requestedOffsets = new CopyOnWriteArrayList<>();
+
+    @RestController
+    public static class StreamController {
+        private final OutputStreamer outputStreamer;
+        private final OutputStreamer.ChunkSource source;
+
+        StreamController(OutputStreamer outputStreamer, OutputStreamer.ChunkSource source) {
+            this.outputStreamer = outputStreamer;
+            this.source = source;
+        }
+
+        @GetMapping("/stream")
+        public SseEmitter stream(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+            return outputStreamer.openSse(source, 0, 0, lastEventId);
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        config = new ShellExecutorConfig();
+        executionEngine = new ExecutionEngine();
+        ReflectionTestUtils.setField(executionEngine, "config", config);
+        executionEngine.init();
+        OutputStreamer outputStreamer = new OutputStreamer();
+        ReflectionTestUtils.setField(outputStreamer, "config", config);
+        ReflectionTestUtils.setField(outputStreamer, "executionEngine", executionEngine);
+        OutputStreamer.ChunkSource source = (stdoutOffset, stderrOffset, waitMs) -> {
+            requestedOffsets.add(stdoutOffset + ":" + stderrOffset);
+            return chunks.remove();
+        };
+        // 与Spring Boot的默认配置一致，文本按UTF-8写出
+        mockMvc = MockMvcBuilders.standaloneSetup(new StreamController(outputStreamer, source))
+            .setMessageConverters(new StringHttpMessageConverter(StandardCharsets.UTF_8),
+                new MappingJackson2HttpMessageConverter())
+            .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executionEngine.shutdown();
+    }
+
+    private static ShellOutputChunk chunk(List<String> outputLines, List<String> errorLines, long nextStdoutOffset,
+                                          long nextStderrOffset, boolean finished) {
+        ShellOutputChunk chunk = new ShellOutputChunk();
+        chunk.setOutputLines(outputLines);
+        chunk.setErrorLines(errorLines);
+        chunk.setNextStdoutOffset(nextStdoutOffset);
+        chunk.setNextStderrOffset(nextStderrOffset);
+        chunk.setFinished(finished);
+        if (finished) {
+            chunk.setExitCode(0);
+            chunk.setStatus("COMPLETED");
+        }
+        return chunk;
+    }
+
+    private String stream(String lastEventId) throws Exception {
+        MvcResult result = mockMvc.perform(lastEventId == null ? get("/stream")
+                : get("/stream").header("Last-Event-ID", lastEventId))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        result.getAsyncResult(5000);
+        return result.getResponse().getContentAsString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testEventFraming() throws Exception {
+        chunks.add(CompletableFuture.completedFuture(
+            chunk(Arrays.asList("line1", "a\rb"), Collections.singletonList("error1"), 2, 1, false)));
+        chunks.add(CompletableFuture.completedFuture(
+            chunk(new ArrayList<>(), new ArrayList<>(), 2, 1, true)));
+
+        // 每行对应一个data字段，行内的\r替换为空格；exit事件后连接关闭
+        assertEquals("event:stdout\nid:2:1\ndata:line1\ndata:a b\n\n"
+            + "event:stderr\nid:2:1\ndata:error1\n\n"
+            + "event:exit\nid:2:1\ndata:{\"errorMessage\":null,\"exitCode\":0,\"status\":\"COMPLETED\"}\n\n",
+            stream(null));
+        assertEquals(Arrays.asList("0:0", "2:1"), requestedOffsets);
+    }
+
+    @Test
+    void testResumeFromLastEventIdWithHeartbeat() throws Exception {
+        CompletableFuture<ShellOutputChunk> idle = new CompletableFuture<>();
+        chunks.add(idle);
+        chunks.add(CompletableFuture.completedFuture(null));
+
+        // 等待中的输出在其他线程完成
+        new Thread(() -> idle.complete(chunk(new ArrayList<>(), new ArrayList<>(), 5, 3, false))).start();
+        assertEquals(":heartbeat\n\nevent:error\ndata:执行不存在或已过期\n\n", stream("5:3"));
+        assertEquals(Arrays.asList("5:3", "5:3"), requestedOffsets);
+    }
+}
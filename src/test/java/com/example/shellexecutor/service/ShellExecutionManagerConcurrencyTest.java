@@ -0,0 +1,256 @@
+package com.example.shellexecutor.service;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.model.ShellExecutionOutput;
+import com.example.shellexecutor.model.ShellOutputChunk;
+import com.example.shellexecutor.store.OutputBudget;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 输出存储并发测试：每个输出流单线程写入，多个线程同时增量读取
+ */
+public class ShellExecutionManagerConcurrencyTest {
+
+    private static final int READERS = 4;
+
+    @TempDir
+    Path spillDir;
+
+    private ShellExecutorConfig config;
+    private OutputBudget outputBudget;
+    private ShellExecutionManager executionManager;
+    private ExecutionEngine executionEngine;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        config = new ShellExecutorConfig();
+        config.setOutputFetchMaxLines(500);
+        // 数据块和单个执行的内存上限都很小，写入过程中会转存到磁盘
+        config.getStorage().setChunkBytes(1024);
+        config.getStorage().setChunkPoolBytes(64 * 1024);
+        config.getStorage().setMemoryBytesPerExecution(32 * 1024);
+        config.getStorage().setSpillDir(spillDir.toString());
+
+        executionEngine = TestExecutionManagers.engine(config);
+        executionManager = TestExecutionManagers.create(config, executionEngine);
+        outputBudget = TestExecutionManagers.outputBudget(executionManager);
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        executionManager.shutdown();
+        executionEngine.shutdown();
+    }
+
+    @Test
+    void testAwaitOutputCompletesOnAppendWithoutBlocking() throws Exception {
+        String executionId = executionManager.createExecution("await");
+        executionManager.setStarted(executionId);
+
+        // 等待中的长轮询只登记通知，不占用线程
+        List<CompletableFuture<ShellOutputChunk>> waiting = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            waiting.add(executionManager.awaitOutput(executionId, 0, 0, 0, 30000));
+        }
+        assertTrue(waiting.stream().noneMatch(CompletableFuture::isDone));
+        assertEquals(0, executionEngine.getStats().get(1).getActiveCount());
+
+        executionManager.appendOutput(executionId, "hello");
+        for (CompletableFuture<ShellOutputChunk> future : waiting) {
+            ShellOutputChunk chunk = future.get(5, TimeUnit.SECONDS);
+            assertEquals(Collections.singletonList("hello"), chunk.getOutputLines());
+            assertEquals(1, chunk.getNextStdoutOffset());
+            assertFalse(chunk.getFinished());
+        }
+
+        // 没有新输出时超时返回不含新行的结果
+        ShellOutputChunk idle = executionManager.awaitOutput(executionId, 1, 0, 0, 50).get(5, TimeUnit.SECONDS);
+        assertTrue(idle.getOutputLines().isEmpty());
+        assertTrue(idle.getErrorLines().isEmpty());
+
+        // 执行结束时唤醒等待者
+        CompletableFuture<ShellOutputChunk> pending = executionManager.awaitOutput(executionId, 1, 0, 0, 30000);
+        assertFalse(pending.isDone());
+        executionManager.setFinished(executionId, 0);
+        assertTrue(pending.get(5, TimeUnit.SECONDS).getFinished());
+        assertTrue(executionManager.awaitOutput(executionId, 1, 0, 0, 30000).isDone());
+
+        assertNull(executionManager.awaitOutput("missing", 0, 0, 0, 30000).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testIncrementalReadsWhileWriting() throws Exception {
+        int lineCount = 20000;
+        String executionId = executionManager.createExecution("stress");
+
+        List<Future<Long>> readers = new ArrayList<>();
+        for (int i = 0; i < READERS; i++) {
+            readers.add(executor.submit(() -> readUntilFinished(executionId)));
+        }
+        Future<?> stdoutWriter = executor.submit(() -> {
+            for (int i = 0; i < lineCount; i++) {
+                executionManager.appendOutput(executionId, "line-" + i);
+            }
+        });
+        Future<?> stderrWriter = executor.submit(() -> {
+            for (int i = 0; i < lineCount / 10; i++) {
+                executionManager.appendError(executionId, "error-" + i);
+            }
+        });
+        stdoutWriter.get(30, TimeUnit.SECONDS);
+        stderrWriter.get(30, TimeUnit.SECONDS);
+        executionManager.setFinished(executionId, 0);
+
+        for (Future<Long> reader : readers) {
+            assertEquals(lineCount, reader.get(30, TimeUnit.SECONDS).longValue());
+        }
+        ShellExecutionOutput output = executionManager.getOutput(executionId);
+        assertTrue(output.getSpilled());
+        assertFalse(output.getTruncated());
+        assertEquals(lineCount, output.getOutputLineCount().longValue());
+        assertEquals(lineCount / 10, output.getErrorLineCount().longValue());
+    }
+
+    /**
+     * 增量读取直到执行结束，校验每一行都与行号一致
+     * @return 读取到的标准输出行数
+     */
+    private long readUntilFinished(String executionId) {
+        long stdoutOffset = 0;
+        long stderrOffset = 0;
+        while (true) {
+            ShellOutputChunk chunk = executionManager.getOutput(executionId, stdoutOffset, stderrOffset, 0);
+            List<String> outputLines = chunk.getOutputLines();
+            for (int i = 0; i < outputLines.size(); i++) {
+                assertEquals("line-" + (stdoutOffset + i), outputLines.get(i));
+            }
+            List<String> errorLines = chunk.getErrorLines();
+            for (int i = 0; i < errorLines.size(); i++) {
+                assertEquals("error-" + (stderrOffset + i), errorLines.get(i));
+            }
+            stdoutOffset = chunk.getNextStdoutOffset();
+            stderrOffset = chunk.getNextStderrOffset();
+            // 状态先于输出读取，已结束时本次返回的输出是完整的
+            if (Boolean.TRUE.equals(chunk.getFinished()) && !chunk.isHasMore()) {
+                return stdoutOffset;
+            }
+        }
+    }
+
+    @Test
+    void testConcurrentCompletionFirstWins() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            String executionId = executionManager.createExecution("race");
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> {
+                start.await();
+                executionManager.setFinished(executionId, 0);
+                return null;
+            }));
+            futures.add(executor.submit(() -> {
+                start.await();
+                executionManager.setTimeout(executionId);
+                return null;
+            }));
+            futures.add(executor.submit(() -> {
+                start.await();
+                executionManager.setError(executionId, "boom");
+                return null;
+            }));
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+
+            ShellExecutionOutput output = executionManager.getOutput(executionId);
+            assertTrue(output.getFinished());
+            assertNotNull(output.getEndTime());
+            // 状态、退出码和错误信息必须来自同一次结束调用
+            switch (output.getStatus()) {
+                case "COMPLETED":
+                    assertEquals(0, output.getExitCode());
+                    assertNull(output.getErrorMessage());
+                    break;
+                case "TIMEOUT":
+                    assertEquals(-1, output.getExitCode());
+                    assertEquals("Command execution timed out", output.getErrorMessage());
+                    break;
+                case "FAILED":
+                    assertEquals(1, output.getExitCode());
+                    assertEquals("boom", output.getErrorMessage());
+                    break;
+                default:
+                    fail("unexpected status " + output.getStatus());
+            }
+            // 已结束的执行不再变更状态
+            String status = output.getStatus();
+            executionManager.setRejected(executionId, "late");
+            assertEquals(status, executionManager.getOutput(executionId).getStatus());
+        }
+    }
+
+    @Test
+    void testReadsDuringCleanupNeverSeeRecycledChunks() throws Exception {
+        // 结束的执行立即过期，清理时数据块归还数据块池并被下一个执行复用
+        config.setOutputExpirationMs(-60000);
+        config.getStorage().setMemoryBytesPerExecution(64 * 1024);
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        List<String> executionIds = new ArrayList<>();
+        for (int round = 0; round < 200; round++) {
+            executionIds.add(executionManager.createExecution("round-" + round));
+        }
+        List<Future<?>> readers = new ArrayList<>();
+        for (int i = 0; i < READERS; i++) {
+            readers.add(executor.submit(() -> {
+                while (running.get()) {
+                    for (int round = 0; round < executionIds.size(); round++) {
+                        ShellOutputChunk chunk = executionManager.getOutput(executionIds.get(round), 0, 0, 0);
+                        if (chunk == null) {
+                            continue;
+                        }
+                        List<String> lines = chunk.getOutputLines();
+                        for (int line = 0; line < lines.size(); line++) {
+                            assertEquals("round-" + round + "-line-" + line, lines.get(line));
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        for (int round = 0; round < executionIds.size(); round++) {
+            String executionId = executionIds.get(round);
+            for (int line = 0; line < 500; line++) {
+                executionManager.appendOutput(executionId, "round-" + round + "-line-" + line);
+            }
+            executionManager.setFinished(executionId, 0);
+            executionManager.cleanupExpiredOutputs();
+        }
+        running.set(false);
+        for (Future<?> reader : readers) {
+            reader.get(30, TimeUnit.SECONDS);
+        }
+        assertEquals(0, outputBudget.getMemoryUsed());
+    }
+}
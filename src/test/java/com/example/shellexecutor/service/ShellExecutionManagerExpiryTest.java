@@ -0,0 +1,99 @@
+package com.example.shellexecutor.service;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.store.OutputBudget;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShellExecutionManagerExpiryTest {
+
+    @TempDir
+    Path spillDir;
+
+    private ShellExecutorConfig config;
+    private OutputBudget outputBudget;
+    private ShellExecutionManager executionManager;
+
+    @BeforeEach
+    void setUp() {
+        config = new ShellExecutorConfig();
+        config.getStorage().setSpillDir(spillDir.toString());
+        config.getStorage().setChunkBytes(1024);
+        executionManager = TestExecutionManagers.create(config);
+        outputBudget = TestExecutionManagers.outputBudget(executionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executionManager.shutdown();
+    }
+
+    /**
+     * 每行输出占用100字节(含换行符)
+     */
+    private static String line(String command) {
+        StringBuilder line = new StringBuilder(command);
+        while (line.length() < 99) {
+            line.append('.');
+        }
+        return line.toString();
+    }
+
+    private String finished(String command) {
+        String executionId = executionManager.createExecution(command);
+        executionManager.appendOutput(executionId, line(command));
+        executionManager.setFinished(executionId, 0);
+        return executionId;
+    }
+
+    @Test
+    void testExpiresInFinishOrder() throws InterruptedException {
+        config.setOutputExpirationMs(200);
+        String first = finished("first");
+        Thread.sleep(120);
+        String second = finished("second");
+        String running = executionManager.createExecution("running");
+
+        executionManager.cleanupExpiredOutputs();
+        assertNotNull(executionManager.getOutput(first));
+        Thread.sleep(120);
+        executionManager.cleanupExpiredOutputs();
+        assertNull(executionManager.getOutput(first));
+        assertNotNull(executionManager.getOutput(second));
+        Thread.sleep(120);
+        executionManager.cleanupExpiredOutputs();
+        assertNull(executionManager.getOutput(second));
+        // 运行中的执行不过期
+        assertNotNull(executionManager.getOutput(running));
+    }
+
+    @Test
+    void testEvictsLeastRecentlyReadOverMemoryLimit() {
+        config.getStorage().setRetainedMemoryBytes(200);
+        String first = finished("first");
+        String second = finished("second");
+        assertEquals(200, outputBudget.getMemoryUsed());
+        executionManager.getOutput(first);
+
+        String third = finished("third");
+        assertNull(executionManager.getOutput(second));
+        assertNotNull(executionManager.getOutput(first));
+        assertNotNull(executionManager.getOutput(third));
+        assertEquals(200, outputBudget.getMemoryUsed());
+
+        // 运行中的执行占用整个数据块且不会被淘汰，超出上限时淘汰所有已结束的执行
+        String running = executionManager.createExecution("running");
+        executionManager.appendOutput(running, line("running"));
+        executionManager.cleanupExpiredOutputs();
+        assertNotNull(executionManager.getOutput(running));
+        assertNull(executionManager.getOutput(first));
+        assertNull(executionManager.getOutput(third));
+        assertEquals(1024, outputBudget.getMemoryUsed());
+    }
+}
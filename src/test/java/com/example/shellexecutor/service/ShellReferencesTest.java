@@ -0,0 +1,73 @@
+package com.example.shellexecutor.service;
+
+import com.example.shellexecutor.api.ShellExecutorService;
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import org.apache.dubbo.config.ReferenceConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class ShellReferencesTest {
+
+    private ShellReferences references;
+    // 按节点地址记录创建的引用
+    private final Map<String, ReferenceConfig<ShellExecutorService>> created = new HashMap<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ShellExecutorConfig config = new ShellExecutorConfig();
+        config.getRoute().setMaxReferences(2);
+        references = spy(new ShellReferences());
+        ReflectionTestUtils.setField(references, "config", config);
+        doAnswer(invocation -> {
+            ReferenceConfig<ShellExecutorService> reference = mock(ReferenceConfig.class);
+            when(reference.get()).thenReturn(mock(ShellExecutorService.class));
+            created.put(invocation.getArgument(0), reference);
+            return reference;
+        }).when(references).newReference(anyString());
+        references.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        references.shutdown();
+    }
+
+    @Test
+    void testPinnedNodesNotEvicted() {
+        references.pin(Arrays.asList("node-1:20880", "node-2:20880", "node-3:20880"));
+        ShellExecutorService pinned = references.get("node-1", 20880);
+        references.get("node-2", 20880);
+        references.get("node-3", 20880);
+        references.get("other-1", 20880);
+        references.get("other-2", 20880);
+        // 固定的节点不计入上限
+        assertEquals(5, references.size());
+
+        // 其他节点超过上限时只淘汰未固定的引用中最久未使用的
+        references.get("other-3", 20880);
+        assertEquals(5, references.size());
+        verify(created.get("other-1:20880")).destroy();
+        verify(created.get("node-1:20880"), never()).destroy();
+        assertSame(pinned, references.get("node-1", 20880));
+
+        // 不再固定的节点重新计入上限
+        references.pin(Collections.singletonList("node-1:20880"));
+        assertEquals(3, references.size());
+        verify(created.get("node-2:20880")).destroy();
+        verify(created.get("node-3:20880")).destroy();
+        verify(created.get("other-2:20880"), never()).destroy();
+        assertSame(pinned, references.get("node-1", 20880));
+    }
+}
@@ -2,20 +2,32 @@ package com.example.shellexecutor.service;
 
 import com.example.shellexecutor.config.ShellExecutorConfig;
 import com.example.shellexecutor.model.ExecuteResult;
+import com.example.shellexecutor.model.ShellBatchRequest;
+import com.example.shellexecutor.model.ShellBatchResult;
 import com.example.shellexecutor.model.ShellExecutionOutput;
 import com.example.shellexecutor.model.ShellExecutionRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
 import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.List;
 import java.time.LocalDateTime;
 import lombok.extern.slf4j.Slf4j;
 import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
 import static org.mockito.Mockito.*;
 
 @Slf4j
@@ -31,6 +43,8 @@ public class ShellServiceTest {
     private ShellService shellService;
 
     private static final boolean IS_WINDOWS = System.getProperty("os.name").toLowerCase().contains("win");
+    private static final long MAX_OUTPUT_BYTES = 16 * 1024 * 1024;
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
 
     @BeforeEach
     void setUp() {
@@ -41,6 +55,27 @@ public class ShellServiceTest {
             "shutdown"
         ));
         when(config.getCommandTimeoutMs()).thenReturn(5000L);
+        when(config.getMaxOutputBytes()).thenReturn(MAX_OUTPUT_BYTES);
+        when(config.getEngine()).thenReturn(new ShellExecutorConfig.Engine());
+        
+        ExecutionEngine executionEngine = TestExecutionManagers.engine(config);
+        ReflectionTestUtils.setField(shellService, "executionEngine", executionEngine);
+        
+        OutputPump outputPump = new OutputPump();
+        ReflectionTestUtils.setField(outputPump, "config", config);
+        outputPump.init();
+        ReflectionTestUtils.setField(shellService, "outputPump", outputPump);
+        CommandResultCache resultCache = new CommandResultCache();
+        ReflectionTestUtils.setField(resultCache, "config", new ShellExecutorConfig());
+        ReflectionTestUtils.setField(shellService, "resultCache", resultCache);
+        ShellWorkerPool workerPool = new ShellWorkerPool();
+        ReflectionTestUtils.setField(workerPool, "config", new ShellExecutorConfig());
+        ReflectionTestUtils.setField(shellService, "workerPool", workerPool);
+        when(executionManager.setStarted(anyString())).thenReturn(true);
+        ExecutionMetrics metrics = TestExecutionManagers.metrics(new ShellExecutorConfig(), registry);
+        ReflectionTestUtils.setField(shellService, "executionScheduler",
+            TestExecutionManagers.scheduler(new ShellExecutorConfig(), executionEngine, executionManager, metrics));
+        ReflectionTestUtils.setField(shellService, "metrics", metrics);
         log.info("操作系统类型: {}", IS_WINDOWS ? "Windows" : "Linux/Unix");
     }
 
@@ -75,6 +110,25 @@ public class ShellServiceTest {
         verify(config).isCommandBlocked("echo hello");
     }
 
+    @Test
+    void testExecuteCommand_Metrics() {
+        when(config.isCommandBlocked("rm -rf /")).thenReturn(true);
+        shellService.executeCommand("rm -rf /");
+        assertEquals(1.0, registry.get("shell.commands.blocked").tag("mode", "sync").counter().count());
+        
+        ExecuteResult result = shellService.executeCommand("echo hello");
+        assertEquals(0, result.getExitCode());
+        // 输出流读取结束后才返回结果，统计已记录
+        assertEquals(1, registry.get("shell.process.spawn").tag("mode", "sync").timer().count());
+        assertEquals(1, registry.get("shell.output.first.byte").tag("mode", "sync").timer().count());
+        assertEquals(1, registry.get("shell.execution.duration").tag("mode", "sync").tag("outcome", "success")
+            .timer().count());
+        assertEquals(IS_WINDOWS ? 7 : 6, registry.get("shell.output.bytes").tag("stream", "stdout").summary()
+            .totalAmount());
+        assertEquals(1, registry.get("shell.output.lines").tag("stream", "stdout").summary().totalAmount());
+        assertEquals(0, registry.get("shell.output.lines").tag("stream", "stderr").summary().totalAmount());
+    }
+
     @Test
     void testExecuteCommand_Error() {
         when(config.isCommandBlocked(anyString())).thenReturn(false);
@@ -224,4 +278,159 @@ public class ShellServiceTest {
         assertEquals(0, result.getExitCode());
         assertFalse(result.getOutput().isEmpty());
     }
-} 
\ No newline at end of file
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 100})
+    void testExecuteCommand_LargeOutput(int megabytes) {
+        assumeFalse(IS_WINDOWS);
+        when(config.isCommandBlocked(anyString())).thenReturn(false);
+        
+        // 先写满标准输出再写错误输出，超过管道缓冲区时不能阻塞到超时
+        long bytes = megabytes * 1024L * 1024L;
+        String command = String.format(
+            "head -c %d /dev/zero | tr '\\0' a; head -c %d /dev/zero | tr '\\0' b >&2", bytes, bytes);
+        log.info("测试大输出命令: {}MB", megabytes);
+        
+        long start = System.currentTimeMillis();
+        ExecuteResult result = shellService.executeCommand(command);
+        long elapsed = System.currentTimeMillis() - start;
+        
+        log.info("大输出命令执行耗时: {}ms, 截断: {}", elapsed, result.isTruncated());
+        assertEquals(0, result.getExitCode());
+        assertTrue(elapsed < config.getCommandTimeoutMs(), "命令不应等待到超时");
+        long expected = Math.min(bytes, MAX_OUTPUT_BYTES);
+        assertEquals(expected, result.getOutput().length());
+        assertEquals(expected, result.getError().length());
+        assertEquals(bytes > MAX_OUTPUT_BYTES, result.isTruncated());
+    }
+
+    @Test
+    void testExecuteBatch_Parallel() {
+        when(config.isCommandBlocked(anyString())).thenReturn(false);
+        when(config.getBatchMaxCommands()).thenReturn(100);
+        when(config.getBatchMaxParallelism()).thenReturn(4);
+        
+        ShellBatchRequest batch = new ShellBatchRequest();
+        for (int i = 0; i < 10; i++) {
+            batch.getRequests().add(request(i == 5 ? "exit 3" : "echo batch-" + i));
+        }
+        log.info("测试批量并行执行 {} 个命令", batch.getRequests().size());
+        ShellBatchResult result = shellService.executeBatch(batch);
+        
+        assertEquals(10, result.getResults().size());
+        assertEquals(9, result.getSucceeded());
+        assertEquals(1, result.getFailed());
+        assertEquals(0, result.getSkipped());
+        assertEquals(3, result.getResults().get(5).getExitCode());
+        // 结果顺序与请求一致
+        assertTrue(result.getResults().get(9).getOutput().contains("batch-9"));
+    }
+
+    @Test
+    void testExecuteBatch_StopOnFailure() {
+        when(config.isCommandBlocked(anyString())).thenReturn(false);
+        when(config.getBatchMaxCommands()).thenReturn(100);
+        when(config.getBatchMaxParallelism()).thenReturn(4);
+        
+        ShellBatchRequest batch = new ShellBatchRequest();
+        batch.setStopOnFailure(true);
+        batch.getRequests().add(request("echo first"));
+        batch.getRequests().add(request("exit 1"));
+        batch.getRequests().add(request("echo third"));
+        ShellBatchResult result = shellService.executeBatch(batch);
+        
+        assertEquals(1, result.getSucceeded());
+        assertEquals(1, result.getFailed());
+        assertEquals(1, result.getSkipped());
+        assertTrue(result.getResults().get(2).isSkipped());
+        
+        batch.getRequests().add(request("echo fifth"));
+        when(config.getBatchMaxCommands()).thenReturn(3);
+        assertThrows(IllegalArgumentException.class, () -> shellService.executeBatch(batch));
+    }
+
+    @Test
+    void testExecuteBatchAsync_StopOnFailure() {
+        when(config.isCommandBlocked(anyString())).thenReturn(false);
+        when(config.getBatchMaxCommands()).thenReturn(100);
+        when(config.getBatchMaxParallelism()).thenReturn(4);
+        when(executionManager.createExecution(anyString())).thenReturn("id-1", "id-2", "id-3");
+        
+        ShellBatchRequest batch = new ShellBatchRequest();
+        batch.setStopOnFailure(true);
+        batch.getRequests().add(request("echo first"));
+        batch.getRequests().add(request("exit 1"));
+        batch.getRequests().add(request("echo third"));
+        List<String> executionIds = shellService.executeBatchAsync(batch);
+        
+        assertEquals(Arrays.asList("id-1", "id-2", "id-3"), executionIds);
+        verify(executionManager, timeout(5000)).setSkipped(eq("id-3"), anyString());
+        verify(executionManager).setFinished("id-1", 0);
+        verify(executionManager).setFinished("id-2", 1);
+        // 所有命令都经过调度队列，失败后未执行的命令已移出队列
+        verify(executionManager).setQueued("id-3");
+        ExecutionScheduler scheduler = (ExecutionScheduler) ReflectionTestUtils.getField(shellService,
+            "executionScheduler");
+        assertEquals(0, scheduler.getQueued());
+        assertEquals(2, scheduler.getStats().getDispatched());
+    }
+
+    @Test
+    void testCancelAsync_KillsProcessTree() throws Exception {
+        assumeFalse(IS_WINDOWS, "通过/proc检查子进程是否已结束");
+        when(config.isCommandBlocked(anyString())).thenReturn(false);
+        when(executionManager.createExecution(anyString())).thenReturn("cancel-id");
+        when(executionManager.setCancelled("cancel-id")).thenReturn(true);
+        Path pidFile = Files.createTempFile("shell-cancel", ".pid");
+        try {
+            // 后台子进程不会随/bin/sh一起结束，取消时需要结束整个进程树
+            ShellExecutionRequest request = new ShellExecutionRequest();
+            request.setCommand("sleep 30 & echo $! > " + pidFile + "; wait");
+            String executionId = shellService.executeCommandAsync(request);
+            long pid = awaitPid(pidFile);
+            assertTrue(isAlive(pid));
+            
+            assertTrue(shellService.cancel(executionId));
+            verify(executionManager).setCancelled("cancel-id");
+            long deadline = System.currentTimeMillis() + 3000;
+            while (isAlive(pid) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertFalse(isAlive(pid), "取消后子进程应已结束");
+            assertFalse(shellService.cancel("unknown-id"));
+        } finally {
+            Files.deleteIfExists(pidFile);
+        }
+    }
+
+    private static long awaitPid(Path pidFile) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            String content = new String(Files.readAllBytes(pidFile), StandardCharsets.UTF_8).trim();
+            if (!content.isEmpty()) {
+                return Long.parseLong(content);
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("未读取到子进程号");
+    }
+
+    /**
+     * 已结束但未被回收的进程状态为Z
+     */
+    private static boolean isAlive(long pid) {
+        try {
+            String stat = new String(Files.readAllBytes(Paths.get("/proc", String.valueOf(pid), "stat")),
+                StandardCharsets.UTF_8);
+            return stat.charAt(stat.lastIndexOf(')') + 2) != 'Z';
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static ShellExecutionRequest request(String command) {
+        ShellExecutionRequest request = new ShellExecutionRequest();
+        request.setCommand(command);
+        return request;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.shellexecutor.service;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.model.ExecuteResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+public class ShellWorkerPoolTest {
+
+    private static final boolean IS_WINDOWS = System.getProperty("os.name").toLowerCase().contains("win");
+
+    private ShellExecutorConfig config;
+    private ShellWorkerPool workerPool;
+
+    @BeforeEach
+    void setUp() {
+        assumeFalse(IS_WINDOWS, "工作进程池只在类Unix系统上使用");
+        config = new ShellExecutorConfig();
+        config.getWorkers().setEnabled(true);
+        config.getWorkers().setSize(1);
+        workerPool = new ShellWorkerPool();
+        ReflectionTestUtils.setField(workerPool, "config", config);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (workerPool != null) {
+            workerPool.shutdown();
+        }
+    }
+
+    @Test
+    void testFramesOutputAndExitCode() {
+        ExecuteResult result = workerPool.execute("printf 'a\\nb'; echo err >&2; exit 3");
+        assertEquals(3, result.getExitCode());
+        assertEquals("a\nb", result.getOutput());
+        assertEquals("err\n", result.getError());
+
+        // 与分隔行前缀相同的输出、空输出和多行命令
+        result = workerPool.execute("printf '\\n__shell_worker_\\n\\n'");
+        assertEquals("\n__shell_worker_\n\n", result.getOutput());
+        result = workerPool.execute("true");
+        assertEquals("", result.getOutput());
+        assertTrue(result.isSuccess());
+        result = workerPool.execute("for i in 1 2; do\n  echo $i\ndone");
+        assertEquals("1\n2\n", result.getOutput());
+        assertEquals(1, workerPool.size());
+    }
+
+    @Test
+    void testCommandsDoNotShareState() {
+        workerPool.execute("cd /tmp; X=1; export Y=2");
+        assertEquals("\n\n", workerPool.execute("echo \"$X\"; echo \"$Y\"").getOutput());
+        assertNotEquals("/tmp\n", workerPool.execute("pwd").getOutput());
+
+        // 语法错误和exit只影响当前命令
+        ExecuteResult result = workerPool.execute("echo 'unclosed");
+        assertFalse(result.isSuccess());
+        workerPool.execute("exit 0");
+        assertEquals("ok\n", workerPool.execute("echo ok").getOutput());
+        assertEquals(1, workerPool.size());
+    }
+
+    @Test
+    void testBackgroundOutputAndSentinelIsolated() throws InterruptedException {
+        // 命令结束时结束其进程组，后台进程的输出不会出现在下一条命令的结果中
+        ExecuteResult result = workerPool.execute("(sleep 0.2; echo LEAKED_FROM_FIRST) & echo first");
+        assertEquals("first\n", result.getOutput());
+        result = workerPool.execute("sleep 0.4; echo second");
+        assertEquals("second\n", result.getOutput());
+        assertEquals("", result.getError());
+
+        // 分隔行和工作进程的变量在命令中不可见，不能伪造命令结束和退出码
+        result = workerPool.execute("echo \"[$__sw_id][$__sw_cmd][$__sw_line]\"; "
+            + "printf '\\n%s 0\\n' \"$__sw_id\"; exit 7");
+        assertEquals(7, result.getExitCode());
+        assertEquals("[][][]\n\n 0\n", result.getOutput());
+
+        // 结束进程组只影响当前命令
+        result = workerPool.execute("echo before; kill 0; echo after");
+        assertEquals("before\n", result.getOutput());
+        assertEquals("ok\n", workerPool.execute("echo ok").getOutput());
+
+        // 脱离进程组的进程在两条命令之间的输出被丢弃
+        workerPool.execute("command -v setsid >/dev/null && setsid sh -c 'sleep 0.2; echo STRAY' &");
+        Thread.sleep(400);
+        assertEquals("ok\n", workerPool.execute("echo ok").getOutput());
+        assertEquals(1, workerPool.size());
+    }
+
+    @Test
+    void testRecyclesWorkers() {
+        config.getWorkers().setMaxCommandsPerWorker(2);
+        String first = workerPool.execute("echo $$").getOutput();
+        assertEquals(first, workerPool.execute("echo $$").getOutput());
+        assertNotEquals(first, workerPool.execute("echo $$").getOutput());
+
+        config.setCommandTimeoutMs(200);
+        ExecuteResult result = workerPool.execute("sleep 5");
+        assertEquals(-1, result.getExitCode());
+        assertEquals("命令执行超时", result.getError());
+        assertEquals(0, workerPool.size());
+        config.setCommandTimeoutMs(10000);
+        assertEquals("ok\n", workerPool.execute("echo ok").getOutput());
+
+        // 所有工作进程都在忙或池已关闭时由调用方启动进程执行
+        workerPool.shutdown();
+        assertNull(workerPool.execute("echo ok"));
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.shellexecutor.service;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.store.ExecutionJournal;
+import com.example.shellexecutor.store.OutputBudget;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 测试中手动装配执行组件，依赖与Spring注入的一致
+ */
+public final class TestExecutionManagers {
+
+    private TestExecutionManagers() {
+    }
+
+    /**
+     * 执行管理器及其输出存储和执行历史，不等待输出的测试不需要执行引擎
+     */
+    public static ShellExecutionManager create(ShellExecutorConfig config) {
+        return create(config, null);
+    }
+
+    public static ShellExecutionManager create(ShellExecutorConfig config, ExecutionEngine executionEngine) {
+        OutputBudget outputBudget = new OutputBudget();
+        ReflectionTestUtils.setField(outputBudget, "config", config);
+        outputBudget.init();
+        ExecutionJournal journal = new ExecutionJournal();
+        ReflectionTestUtils.setField(journal, "config", config);
+        journal.init();
+        ShellExecutionManager executionManager = new ShellExecutionManager();
+        ReflectionTestUtils.setField(executionManager, "config", config);
+        ReflectionTestUtils.setField(executionManager, "outputBudget", outputBudget);
+        ReflectionTestUtils.setField(executionManager, "journal", journal);
+        ReflectionTestUtils.setField(executionManager, "executionEngine", executionEngine);
+        return executionManager;
+    }
+
+    /**
+     * 执行管理器使用的输出存储预算，用于检查内存和磁盘占用
+     */
+    public static OutputBudget outputBudget(ShellExecutionManager executionManager) {
+        return (OutputBudget) ReflectionTestUtils.getField(executionManager, "outputBudget");
+    }
+
+    /**
+     * 已启动的执行引擎，测试结束时需要调用shutdown()
+     */
+    public static ExecutionEngine engine(ShellExecutorConfig config) {
+        ExecutionEngine executionEngine = new ExecutionEngine();
+        ReflectionTestUtils.setField(executionEngine, "config", config);
+        executionEngine.init();
+        return executionEngine;
+    }
+
+    public static ExecutionMetrics metrics(ShellExecutorConfig config, MeterRegistry registry) {
+        ExecutionMetrics metrics = new ExecutionMetrics();
+        ReflectionTestUtils.setField(metrics, "config", config);
+        ReflectionTestUtils.setField(metrics, "registry", registry);
+        metrics.init();
+        return metrics;
+    }
+
+    public static ExecutionScheduler scheduler(ShellExecutorConfig config, ExecutionEngine executionEngine,
+                                               ShellExecutionManager executionManager, ExecutionMetrics metrics) {
+        ExecutionScheduler scheduler = new ExecutionScheduler();
+        ReflectionTestUtils.setField(scheduler, "config", config);
+        ReflectionTestUtils.setField(scheduler, "executionEngine", executionEngine);
+        ReflectionTestUtils.setField(scheduler, "executionManager", executionManager);
+        ReflectionTestUtils.setField(scheduler, "metrics", metrics);
+        return scheduler;
+    }
+}
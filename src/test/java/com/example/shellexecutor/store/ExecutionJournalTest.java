@@ -0,0 +1,183 @@
+package com.example.shellexecutor.store;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.model.ShellExecutionOutput;
+import com.example.shellexecutor.model.ShellOutputChunk;
+import com.example.shellexecutor.service.ShellExecutionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExecutionJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private ShellExecutorConfig config;
+    private ExecutionJournal journal;
+
+    @BeforeEach
+    void setUp() {
+        config = new ShellExecutorConfig();
+        config.getJournal().setEnabled(true);
+        config.getJournal().setDir(dir.resolve("journal").toString());
+        config.getStorage().setSpillDir(dir.resolve("spill").toString());
+        journal = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        journal.close();
+    }
+
+    private ExecutionJournal open() {
+        ExecutionJournal opened = new ExecutionJournal();
+        ReflectionTestUtils.setField(opened, "config", config);
+        opened.init();
+        return opened;
+    }
+
+    private ExecutionJournal restart() {
+        journal.close();
+        journal = open();
+        return journal;
+    }
+
+    private static ShellExecutionOutput execution(String executionId, String status, LocalDateTime startTime) {
+        ShellExecutionOutput output = new ShellExecutionOutput();
+        output.setExecutionId(executionId);
+        output.setCommand("echo " + executionId);
+        output.setStatus(status);
+        output.setFinished(true);
+        output.setExitCode("COMPLETED".equals(status) ? 0 : -1);
+        output.setStartTime(startTime);
+        output.setEndTime(startTime.plusSeconds(1));
+        output.setExecutionTimeMs(1000L);
+        output.setOutputLines(Arrays.asList(executionId, "第二行"));
+        output.setErrorLines(Collections.<String>emptyList());
+        output.setOutputLineCount(2L);
+        output.setErrorLineCount(0L);
+        return output;
+    }
+
+    private static long millis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static List<String> ids(List<ShellExecutionOutput> outputs) {
+        return outputs.stream().map(ShellExecutionOutput::getExecutionId).collect(Collectors.toList());
+    }
+
+    @Test
+    void testRecoversAndQueriesByStatusAndTime() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        journal.append(execution("old-failed", "FAILED", now.minusHours(3)));
+        journal.append(execution("ok", "COMPLETED", now.minusMinutes(30)));
+        journal.append(execution("failed-2", "FAILED", now.minusMinutes(10)));
+        // 结束顺序与开始顺序不同
+        journal.append(execution("failed-1", "FAILED", now.minusMinutes(20)));
+
+        restart();
+        assertEquals(4, journal.size());
+        ShellExecutionOutput output = journal.get("ok");
+        assertEquals("COMPLETED", output.getStatus());
+        assertEquals(now.minusMinutes(30), output.getStartTime());
+        assertEquals(Integer.valueOf(0), output.getExitCode());
+        assertEquals(Arrays.asList("ok", "第二行"), output.getOutputLines());
+        assertFalse(output.getTruncated());
+        assertEquals(Integer.valueOf(-1), journal.get("failed-1").getExitCode());
+        assertNull(journal.get("unknown"));
+
+        // 最近一小时失败的执行，从新到旧
+        long hourAgo = millis(now.minusHours(1));
+        List<ShellExecutionOutput> failed = journal.query("FAILED", hourAgo, Long.MAX_VALUE, 10);
+        assertEquals(Arrays.asList("failed-2", "failed-1"), ids(failed));
+        assertNull(failed.get(0).getOutputLines());
+        assertEquals(Arrays.asList("failed-2", "failed-1", "ok"),
+            ids(journal.query(null, hourAgo, Long.MAX_VALUE, 10)));
+        assertEquals(Collections.singletonList("failed-2"), ids(journal.query(null, 0, Long.MAX_VALUE, 1)));
+
+        // 恢复后追加到新的分段
+        journal.append(execution("after-restart", "TIMEOUT", now));
+        assertEquals("after-restart", restart().get("after-restart").getExecutionId());
+    }
+
+    @Test
+    void testIgnoresTornRecordAndRollsSegments() throws IOException {
+        LocalDateTime now = LocalDateTime.now();
+        journal.append(execution("complete", "COMPLETED", now));
+        journal.close();
+        // 模拟写入记录时进程退出：分段末尾只有部分记录
+        Path segment = segments().get(0);
+        Files.write(segment, new byte[]{0, 0, 1, 0, 1, 2, 3}, StandardOpenOption.APPEND);
+        journal = open();
+        assertEquals(1, journal.size());
+        assertEquals("complete", journal.get("complete").getExecutionId());
+
+        // 每条记录写满一个分段，超出分段数上限时删除最早的分段及其索引
+        config.getJournal().setSegmentBytes(1);
+        config.getJournal().setMaxSegments(3);
+        for (int i = 0; i < 5; i++) {
+            journal.append(execution("rolled-" + i, "COMPLETED", now.plusSeconds(i)));
+        }
+        assertEquals(3, segments().size());
+        assertNull(journal.get("complete"));
+        assertNull(journal.get("rolled-1"));
+        assertEquals("rolled-2", journal.get("rolled-2").getExecutionId());
+        assertEquals(Arrays.asList("rolled-4", "rolled-3", "rolled-2"),
+            ids(journal.query("COMPLETED", 0, Long.MAX_VALUE, 10)));
+    }
+
+    @Test
+    void testManagerReadsExpiredExecutionsFromJournal() {
+        config.getJournal().setMaxOutputLines(2);
+        config.setOutputExpirationMs(-1);
+        OutputBudget outputBudget = new OutputBudget();
+        ReflectionTestUtils.setField(outputBudget, "config", config);
+        outputBudget.init();
+        ShellExecutionManager executionManager = new ShellExecutionManager();
+        ReflectionTestUtils.setField(executionManager, "config", config);
+        ReflectionTestUtils.setField(executionManager, "outputBudget", outputBudget);
+        ReflectionTestUtils.setField(executionManager, "journal", journal);
+
+        String executionId = executionManager.createExecution("seq 3");
+        for (int i = 1; i <= 3; i++) {
+            executionManager.appendOutput(executionId, String.valueOf(i));
+        }
+        executionManager.setFinished(executionId, 0);
+        executionManager.cleanupExpiredOutputs();
+
+        ShellExecutionOutput output = executionManager.getOutput(executionId);
+        assertEquals("COMPLETED", output.getStatus());
+        assertEquals(Arrays.asList("1", "2"), output.getOutputLines());
+        assertTrue(output.getTruncated());
+        ShellOutputChunk chunk = executionManager.getOutput(executionId, 1, 0, 10);
+        assertEquals(Collections.singletonList("2"), chunk.getOutputLines());
+        assertTrue(chunk.getFinished());
+        assertFalse(chunk.isHasMore());
+        assertEquals(1, executionManager.queryHistory("completed", 0, Long.MAX_VALUE, 10).size());
+        executionManager.shutdown();
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir.resolve("journal"))) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.shellexecutor.store;
+
+import com.example.shellexecutor.config.ShellExecutorConfig;
+import com.example.shellexecutor.util.LineSplitter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 行存储测试：数据块边界、转存前后的偏移量读取以及读取与释放并发
+ */
+public class LineStoreTest {
+
+    private static final Charset UTF8 = StandardCharsets.UTF_8;
+    private static final int CHUNK_BYTES = 64;
+
+    @TempDir
+    Path spillDir;
+
+    private ShellExecutorConfig config;
+    private OutputBudget outputBudget;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        config = new ShellExecutorConfig();
+        // 很小的数据块，短行也会跨越数据块
+        config.getStorage().setChunkBytes(CHUNK_BYTES);
+        config.getStorage().setChunkPoolBytes(64 * CHUNK_BYTES);
+        config.getStorage().setSpillDir(spillDir.toString());
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private LineStore newStore(long memoryBytesPerExecution) {
+        config.getStorage().setMemoryBytesPerExecution(memoryBytesPerExecution);
+        outputBudget = new OutputBudget();
+        ReflectionTestUtils.setField(outputBudget, "config", config);
+        outputBudget.init();
+        return outputBudget.newQuota("exec").newStore("stdout");
+    }
+
+    private static void append(LineStore store, String line) {
+        byte[] bytes = line.getBytes(UTF8);
+        store.append(bytes, 0, bytes.length);
+    }
+
+    private static String line(int i) {
+        // 长度在0到150字节之间变化，覆盖空行、单字节和多字节长度头
+        StringBuilder line = new StringBuilder("line-").append(i).append('-');
+        for (int j = 0; j < (i * 7) % 145; j++) {
+            line.append((char) ('a' + (i + j) % 26));
+        }
+        return i % 50 == 0 ? "" : line.toString();
+    }
+
+    /**
+     * 从每个偏移量开始按不同行数读取，结果必须与写入的行一致
+     */
+    private static void assertReads(LineStore store, List<String> expected) {
+        assertEquals(expected.size(), store.getLineCount());
+        assertEquals(expected, store.read(0, Integer.MAX_VALUE, UTF8));
+        for (int from = 0; from <= expected.size(); from++) {
+            for (int count : new int[]{1, 3, 17}) {
+                int to = Math.min(expected.size(), from + count);
+                assertEquals(expected.subList(from, to), store.read(from, count, UTF8), "from " + from);
+            }
+        }
+        assertTrue(store.read(expected.size() + 5, 10, UTF8).isEmpty());
+        assertTrue(store.read(-1, 10, UTF8).isEmpty());
+        assertTrue(store.read(0, 0, UTF8).isEmpty());
+    }
+
+    @Test
+    void testLinesCrossChunkBoundaries() {
+        LineStore store = newStore(1024 * 1024);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            expected.add(line(i));
+            append(store, line(i));
+        }
+        assertFalse(store.isSpilled());
+        assertReads(store, expected);
+
+        // 结束后最后一个数据块裁剪为实际长度，读取结果不变；之后仍可追加
+        store.seal();
+        assertReads(store, expected);
+        expected.add("after seal");
+        append(store, "after seal");
+        assertReads(store, expected);
+        store.close();
+    }
+
+    @Test
+    void testLinesLongerThanChunk() {
+        LineStore store = newStore(1024 * 1024);
+        List<String> expected = new ArrayList<>();
+        // 跨越多个数据块的长行，长度头占2到3字节
+        for (int length : new int[]{CHUNK_BYTES - 1, CHUNK_BYTES, CHUNK_BYTES + 1, 10 * CHUNK_BYTES + 3, 20000}) {
+            char[] chars = new char[length];
+            Arrays.fill(chars, (char) ('a' + length % 26));
+            expected.add(new String(chars));
+            expected.add("short");
+        }
+        expected.forEach(line -> append(store, line));
+        assertReads(store, expected);
+        store.close();
+    }
+
+    @Test
+    void testTrailingLineWithoutNewline() {
+        LineStore store = newStore(1024 * 1024);
+        LineSplitter splitter = new LineSplitter(store::append);
+        byte[] data = "first\r\nsec".getBytes(UTF8);
+        splitter.onData(data, 0, data.length);
+        data = "ond\n\nlast".getBytes(UTF8);
+        splitter.onData(data, 0, data.length);
+        // 未结束的行在输出结束前不可见
+        assertEquals(Arrays.asList("first", "second", ""), store.read(0, 10, UTF8));
+
+        splitter.onEof();
+        assertEquals(Arrays.asList("first", "second", "", "last"), store.read(0, 10, UTF8));
+        assertEquals(Collections.singletonList("last"), store.read(3, 10, UTF8));
+        store.close();
+    }
+
+    @Test
+    void testMultiByteUtf8SplitAcrossAppends() {
+        LineStore store = newStore(1024 * 1024);
+        LineSplitter splitter = new LineSplitter(store::append);
+        List<String> expected = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            String line = "第" + i + "行 αβγ 😀 " + line(i);
+            expected.add(line);
+            text.append(line).append('\n');
+        }
+        // 逐字节写入，多字节字符被拆分到不同的读取中
+        byte[] bytes = text.toString().getBytes(UTF8);
+        for (int i = 0; i < bytes.length; i++) {
+            splitter.onData(bytes, i, 1);
+        }
+        splitter.onEof();
+        assertReads(store, expected);
+        store.close();
+    }
+
+    @Test
+    void testOffsetReadsAtAndAfterSpill() {
+        LineStore store = newStore(8 * CHUNK_BYTES);
+        List<String> expected = new ArrayList<>();
+        int spilledAt = -1;
+        for (int i = 0; i < 3000; i++) {
+            expected.add(line(i));
+            append(store, line(i));
+            if (spilledAt < 0 && store.isSpilled()) {
+                spilledAt = i;
+                // 转存前写入的行从文件读取，触发转存的行在写缓冲区中
+                assertEquals(expected.subList(0, i), store.read(0, i, UTF8));
+                assertEquals(Collections.singletonList(line(i)), store.read(i, 10, UTF8));
+                assertEquals(expected.subList(i - 2, i + 1), store.read(i - 2, 10, UTF8));
+            }
+        }
+        assertTrue(spilledAt > 0, "应当转存到磁盘");
+        assertFalse(store.isTruncated());
+        assertEquals(0, outputBudget.getMemoryUsed());
+
+        assertEquals(expected.subList(spilledAt, spilledAt + 5), store.read(spilledAt, 5, UTF8));
+        assertEquals(expected.subList(spilledAt + 1, spilledAt + 6), store.read(spilledAt + 1, 5, UTF8));
+        assertReads(store, expected);
+        store.seal();
+        assertReads(store, expected);
+        store.close();
+        assertEquals(0, outputBudget.getDiskUsed());
+        assertTrue(store.read(0, 10, UTF8).isEmpty());
+    }
+
+    @Test
+    void testReadsRacingRelease() throws Exception {
+        for (long memoryBytes : new long[]{1024 * 1024, 16 * CHUNK_BYTES}) {
+            for (int round = 0; round < 20; round++) {
+                LineStore store = newStore(memoryBytes);
+                for (int i = 0; i < 400; i++) {
+                    append(store, line(i));
+                }
+                AtomicBoolean released = new AtomicBoolean();
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Integer>> readers = new ArrayList<>();
+                for (int r = 0; r < 4; r++) {
+                    Random random = new Random(round * 31 + r);
+                    readers.add(executor.submit(() -> {
+                        start.await();
+                        int reads = 0;
+                        while (!released.get() || reads < 100) {
+                            int from = random.nextInt(420);
+                            List<String> lines = store.read(from, 1 + random.nextInt(40), UTF8);
+                            // 释放后返回空结果或释放前的一致数据，不能读到其他存储复用的数据块
+                            for (int k = 0; k < lines.size(); k++) {
+                                assertEquals(line(from + k), lines.get(k));
+                            }
+                            reads++;
+                        }
+                        return reads;
+                    }));
+                }
+                start.countDown();
+                Thread.sleep(1);
+                store.close();
+                released.set(true);
+                // 复用已归还的数据块并写入不同的内容
+                LineStore reused = outputBudget.newQuota("reused").newStore("stdout");
+                for (int i = 0; i < 200; i++) {
+                    append(reused, "XXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXX");
+                }
+                for (Future<Integer> reader : readers) {
+                    assertTrue(reader.get(10, TimeUnit.SECONDS) >= 100);
+                }
+                assertTrue(store.read(0, 10, UTF8).isEmpty());
+                reused.close();
+                assertEquals(0, outputBudget.getMemoryUsed());
+                assertEquals(0, outputBudget.getDiskUsed());
+            }
+        }
+    }
+}
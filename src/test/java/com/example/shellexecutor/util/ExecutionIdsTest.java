@@ -0,0 +1,58 @@
+package com.example.shellexecutor.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExecutionIdsTest {
+
+    private static final String LOCAL_ID = "7e775e38-791e-4f81-bdac-718f32867395";
+
+    private static String encode(String node) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(node.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testRoundTrip() {
+        for (String node : new String[]{"192.0.2.2:20880", "fe80::1:20880", "[2001:db8::1]:20880", "shell-node-1:1"}) {
+            String executionId = ExecutionIds.route(node, LOCAL_ID);
+            // URL安全且无填充，可以直接放在路径中
+            assertFalse(executionId.contains("/") || executionId.contains("+") || executionId.contains("="),
+                executionId);
+            assertEquals(node, ExecutionIds.node(executionId));
+            assertEquals(LOCAL_ID, ExecutionIds.local(executionId));
+        }
+    }
+
+    @Test
+    void testLocalIdWithoutNode() {
+        assertNull(ExecutionIds.node(LOCAL_ID));
+        assertEquals(LOCAL_ID, ExecutionIds.local(LOCAL_ID));
+        // 已去掉节点信息的ID再次处理时不变
+        String local = ExecutionIds.local(ExecutionIds.route("192.0.2.2:20880", LOCAL_ID));
+        assertEquals(LOCAL_ID, ExecutionIds.local(local));
+        assertNull(ExecutionIds.node(local));
+
+        assertNull(ExecutionIds.node(null));
+        assertNull(ExecutionIds.local(null));
+        assertNull(ExecutionIds.node("~" + LOCAL_ID));
+        assertEquals(LOCAL_ID, ExecutionIds.local("~" + LOCAL_ID));
+    }
+
+    @Test
+    void testMalformedNode() {
+        // 不是合法的Base64
+        assertNull(ExecutionIds.node("not*base64~" + LOCAL_ID));
+        assertNull(ExecutionIds.node("a~" + LOCAL_ID));
+        assertEquals(LOCAL_ID, ExecutionIds.local("not*base64~" + LOCAL_ID));
+        // 端口缺失或不是数字
+        assertNull(ExecutionIds.node(encode("192.0.2.2:port") + "~" + LOCAL_ID));
+        assertNull(ExecutionIds.node(encode("192.0.2.2:20880x") + "~" + LOCAL_ID));
+        assertNull(ExecutionIds.node(encode("192.0.2.2:") + "~" + LOCAL_ID));
+        assertNull(ExecutionIds.node(encode("192.0.2.2") + "~" + LOCAL_ID));
+        assertNull(ExecutionIds.node(encode(":20880") + "~" + LOCAL_ID));
+    }
+}